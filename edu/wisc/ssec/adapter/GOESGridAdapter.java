@@ -64,6 +64,9 @@ public class GOESGridAdapter extends GeoSfcAdapter {
 
     private boolean zeroBased;
 
+    /** decimated tiles of the array, so zooms and pans only read what is new */
+    private TilePyramid pyramid;
+
     public static HashMap getEmptySubset() {
         HashMap<String, double[]> subset = new HashMap<String, double[]>();
         subset.put(gridY_name, new double[3]);
@@ -133,6 +136,8 @@ public class GOESGridAdapter extends GeoSfcAdapter {
             e.printStackTrace();
         }
 
+        pyramid = TilePyramid.create(reader, arrayName);
+
         try {
             setRangeProcessor(new RangeProcessor(getReader(), metadata));
         } catch (Exception e) {
@@ -145,6 +150,28 @@ public class GOESGridAdapter extends GeoSfcAdapter {
         return rangeName;
     }
 
+    public Object readArray(Object subset) throws Exception {
+        if (pyramid != null) {
+            Subset select = getIndexes((HashMap) subset);
+            int[] start = select.getStart();
+            int[] count = select.getCount();
+            int[] stride = select.getStride();
+            boolean inside = true;
+            for (int k = 0; k < 2; k++) {
+                inside &= start[k] >= 0 && count[k] > 0 && stride[k] > 0 &&
+                        start[k] + (count[k] - 1) * stride[k] < array_dim_lengths[k];
+            }
+            if (inside && pyramid.serves(start, stride)) {
+                try {
+                    return pyramid.read(start, count, stride);
+                } catch (UnsupportedOperationException e) {
+                    pyramid = null;
+                }
+            }
+        }
+        return super.readArray(subset);
+    }
+
     public Set makeDomain(Object subset) throws Exception {
         double[] first = new double[2];
         double[] last = new double[2];
@@ -0,0 +1,503 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package edu.wisc.ssec.adapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Multi-resolution tile cache for a 2D array of a fixed grid (ABI, AHI full
+ * disks and the like).
+ *
+ * <p>Level {@code L} holds every {@code 2^L}-th sample of the array in both
+ * dimensions, cut into {@value #TILE} x {@value #TILE} tiles. A tile is read
+ * from the file with a strided read the first time a request touches it and
+ * is then kept in memory (bounded by the {@code hydra.tiles.mb} system
+ * property, 256 by default) and on disk under the directory named by
+ * {@code hydra.tiles.dir}, which McIDAS-V points at {@code geostiles} in the
+ * user directory (or {@code geos-tiles} under {@code java.io.tmpdir} if it
+ * is not set). Pyramids not used for {@code hydra.tiles.days}
+ * days (7 by default) are deleted the first time a pyramid is made in a
+ * session.</p>
+ *
+ * <p>A request with start, count and stride is served from the coarsest
+ * level whose decimation divides both the stride and the start, so the
+ * result is sample for sample what a direct strided read would return, but
+ * a zoom or pan only reads the tiles under the new view, and only once.
+ * Requests that would use only one sample in more than
+ * {@value #MAX_TILE_STRIDE} along a row or column of that level's tiles are
+ * not {@link #serves served}, since reading and keeping whole tiles for them
+ * costs more than the direct strided read.</p>
+ */
+public class TilePyramid {
+
+    private static final Logger logger = LoggerFactory.getLogger(TilePyramid.class);
+
+    /**
+     * System property naming the tile directory.
+     */
+    public static final String PROP_DIR = "hydra.tiles.dir";
+
+    /**
+     * System property bounding the in-memory tiles, in megabytes.
+     */
+    public static final String PROP_MEMORY_MB = "hydra.tiles.mb";
+
+    /**
+     * System property that turns the pyramid off when set to false.
+     */
+    public static final String PROP_ENABLED = "hydra.tiles.enabled";
+
+    /**
+     * System property giving how many days unused pyramids are kept on disk.
+     */
+    public static final String PROP_DAYS = "hydra.tiles.days";
+
+    /**
+     * Tile edge length, in samples of the tile's level.
+     */
+    public static final int TILE = 512;
+
+    /**
+     * Coarsest level, a decimation of 64.
+     */
+    private static final int MAX_LEVEL = 6;
+
+    /**
+     * Largest stride within a level's tiles worth reading whole tiles for.
+     */
+    public static final int MAX_TILE_STRIDE = 2;
+
+    private static final byte TYPE_BYTE = 1;
+    private static final byte TYPE_SHORT = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_DOUBLE = 5;
+
+    private static final long maxMemory = Long.getLong(PROP_MEMORY_MB, 256L) << 20;
+
+    /** Tiles of every pyramid, least recently used first. */
+    private static final LinkedHashMap<String, Object> tiles = new LinkedHashMap<>(64, 0.75f, true);
+
+    private static long memory;
+
+    private static boolean pruned;
+
+    private final MultiDimensionReader reader;
+    private final String arrayName;
+    private final int len0;
+    private final int len1;
+
+    /** Prefix of this pyramid's tile keys, and its directory name. */
+    private final String key;
+
+    /** Where tiles are kept on disk, or null for memory only. */
+    private final File dir;
+
+    private TilePyramid(MultiDimensionReader reader, String arrayName, int[] lengths, String key, File dir) {
+        this.reader = reader;
+        this.arrayName = arrayName;
+        this.len0 = lengths[0];
+        this.len1 = lengths[1];
+        this.key = key;
+        this.dir = dir;
+    }
+
+    /**
+     * Returns a pyramid over a 2D array.
+     *
+     * @param reader    reader of the array
+     * @param arrayName name of the array
+     * @return the pyramid, or null if the array is not a 2D NetCDF array or tiling is turned off
+     */
+    public static TilePyramid create(MultiDimensionReader reader, String arrayName) {
+        if (!Boolean.parseBoolean(System.getProperty(PROP_ENABLED, "true"))) {
+            return null;
+        }
+        // other readers may need the subset passed through getArray
+        if (!(reader instanceof NetCDFFile)) {
+            return null;
+        }
+        int[] lengths = reader.getDimensionLengths(arrayName);
+        if (lengths == null || lengths.length != 2) {
+            return null;
+        }
+        File source = null;
+        String location = ((NetCDFFile) reader).getNetCDFFile().getLocation();
+        if (location != null) {
+            source = new File(location);
+        }
+        String desc;
+        File dir = null;
+        if (source != null && source.isFile()) {
+            desc = source.getAbsolutePath() + " " + source.length() + " " + source.lastModified();
+            dir = new File(System.getProperty(PROP_DIR,
+                    new File(System.getProperty("java.io.tmpdir"), "geos-tiles").getPath()));
+        } else {
+            // no stable name to key the disk cache on
+            desc = reader.getClass().getName() + "@" + System.identityHashCode(reader);
+        }
+        desc += " " + arrayName + " " + lengths[0] + " " + lengths[1];
+        String key = digest(desc);
+        if (dir != null) {
+            prune(dir);
+            dir = new File(dir, key);
+            // touch, so pruning sees this pyramid as in use
+            dir.setLastModified(System.currentTimeMillis());
+        }
+        return new TilePyramid(reader, arrayName, lengths, key, dir);
+    }
+
+    /**
+     * Reads a strided block of the array, like
+     * {@link MultiDimensionReader#getArray(String, int[], int[], int[], Object)}.
+     *
+     * @param start  first index in each dimension
+     * @param count  number of samples in each dimension
+     * @param stride step in each dimension
+     * @return the samples, row major, in the array's own primitive type
+     * @throws Exception if a tile cannot be read
+     */
+    public Object read(int[] start, int[] count, int[] stride) throws Exception {
+        int level = levelFor(start, stride);
+        int first0 = start[0] >> level;
+        int first1 = start[1] >> level;
+        int step0 = stride[0] >> level;
+        int step1 = stride[1] >> level;
+        int n0 = count[0];
+        int n1 = count[1];
+
+        Object out = null;
+        int lastTile0 = (first0 + (n0 - 1) * step0) / TILE;
+        int lastTile1 = (first1 + (n1 - 1) * step1) / TILE;
+        for (int t0 = first0 / TILE; t0 <= lastTile0; t0++) {
+            // output rows that fall in this tile row
+            int i0 = firstIndexAtOrAfter(t0 * TILE, first0, step0);
+            int i1 = Math.min(n0, firstIndexAtOrAfter((t0 + 1) * TILE, first0, step0));
+            if (i0 >= i1) {
+                continue;
+            }
+            for (int t1 = first1 / TILE; t1 <= lastTile1; t1++) {
+                int j0 = firstIndexAtOrAfter(t1 * TILE, first1, step1);
+                int j1 = Math.min(n1, firstIndexAtOrAfter((t1 + 1) * TILE, first1, step1));
+                if (j0 >= j1) {
+                    continue;
+                }
+                Object tile = getTile(level, t0, t1);
+                if (out == null) {
+                    out = newArray(tile, n0 * n1);
+                }
+                int width = tileLength(len1, level, t1);
+                for (int i = i0; i < i1; i++) {
+                    int row = first0 + i * step0 - t0 * TILE;
+                    int col = first1 + j0 * step1 - t1 * TILE;
+                    copy(tile, row * width + col, step1, out, i * n1 + j0, j1 - j0);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Tells whether a request is worth serving from the tiles.
+     *
+     * @param start  first index in each dimension
+     * @param stride step in each dimension
+     * @return false if the caller should read the array directly
+     */
+    public boolean serves(int[] start, int[] stride) {
+        int level = levelFor(start, stride);
+        return (stride[0] >> level) <= MAX_TILE_STRIDE && (stride[1] >> level) <= MAX_TILE_STRIDE;
+    }
+
+    /** Coarsest level whose decimation divides both the stride and the start. */
+    private int levelFor(int[] start, int[] stride) {
+        int level = 0;
+        while (level < MAX_LEVEL) {
+            int step = 1 << (level + 1);
+            if (stride[0] % step != 0 || stride[1] % step != 0 ||
+                    start[0] % step != 0 || start[1] % step != 0 ||
+                    (len0 - 1) / step < TILE / 4 || (len1 - 1) / step < TILE / 4) {
+                break;
+            }
+            level++;
+        }
+        return level;
+    }
+
+    /** Deletes pyramids under base that have not been used for a while; once per session. */
+    private static synchronized void prune(File base) {
+        if (pruned) {
+            return;
+        }
+        pruned = true;
+        long cutoff = System.currentTimeMillis() - Long.getLong(PROP_DAYS, 7L) * 24L * 3600L * 1000L;
+        File[] pyramids = base.listFiles(File::isDirectory);
+        if (pyramids == null) {
+            return;
+        }
+        for (File pyramid : pyramids) {
+            if (pyramid.lastModified() < cutoff) {
+                File[] files = pyramid.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+                if (!pyramid.delete()) {
+                    logger.debug("could not delete old tiles {}", pyramid);
+                }
+            }
+        }
+    }
+
+    /** Smallest i with first + i * step >= bound. */
+    private static int firstIndexAtOrAfter(int bound, int first, int step) {
+        return (bound <= first) ? 0 : (bound - first + step - 1) / step;
+    }
+
+    /** Samples along one dimension of tile t at the given level. */
+    private static int tileLength(int len, int level, int t) {
+        int levelLen = ((len - 1) >> level) + 1;
+        return Math.min(TILE, levelLen - t * TILE);
+    }
+
+    private Object getTile(int level, int t0, int t1) throws Exception {
+        String tileKey = key + "/" + level + "_" + t0 + "_" + t1;
+        synchronized (tiles) {
+            Object tile = tiles.get(tileKey);
+            if (tile != null) {
+                return tile;
+            }
+        }
+        Object tile = null;
+        File file = (dir == null) ? null : new File(dir, level + "_" + t0 + "_" + t1 + ".tile");
+        if (file != null && file.isFile()) {
+            try {
+                tile = readTile(file);
+            } catch (IOException e) {
+                logger.warn("could not read tile {}", file, e);
+                file.delete();
+            }
+        }
+        if (tile == null) {
+            int step = 1 << level;
+            int[] start = {t0 * TILE * step, t1 * TILE * step};
+            int[] count = {tileLength(len0, level, t0), tileLength(len1, level, t1)};
+            tile = reader.getArray(arrayName, start, count, new int[]{step, step}, null);
+            if (!(tile instanceof byte[] || tile instanceof short[] || tile instanceof int[] ||
+                    tile instanceof float[] || tile instanceof double[])) {
+                throw new UnsupportedOperationException("cannot tile " + arrayName + " of " + tile.getClass());
+            }
+            if (file != null) {
+                try {
+                    writeTile(file, tile);
+                } catch (IOException e) {
+                    logger.warn("could not write tile {}", file, e);
+                }
+            }
+        }
+        synchronized (tiles) {
+            if (tiles.put(tileKey, tile) == null) {
+                memory += sizeOf(tile);
+            }
+            Iterator<Object> it = tiles.values().iterator();
+            while (memory > maxMemory && it.hasNext()) {
+                memory -= sizeOf(it.next());
+                it.remove();
+            }
+        }
+        return tile;
+    }
+
+    private static long sizeOf(Object array) {
+        if (array instanceof byte[]) {
+            return ((byte[]) array).length;
+        } else if (array instanceof short[]) {
+            return 2L * ((short[]) array).length;
+        } else if (array instanceof int[]) {
+            return 4L * ((int[]) array).length;
+        } else if (array instanceof float[]) {
+            return 4L * ((float[]) array).length;
+        } else {
+            return 8L * ((double[]) array).length;
+        }
+    }
+
+    private static Object newArray(Object like, int length) {
+        if (like instanceof byte[]) {
+            return new byte[length];
+        } else if (like instanceof short[]) {
+            return new short[length];
+        } else if (like instanceof int[]) {
+            return new int[length];
+        } else if (like instanceof float[]) {
+            return new float[length];
+        } else if (like instanceof double[]) {
+            return new double[length];
+        }
+        throw new IllegalArgumentException("unsupported array type " + like.getClass());
+    }
+
+    /** Copies n samples, src every srcStep from srcPos, into consecutive dst from dstPos. */
+    private static void copy(Object src, int srcPos, int srcStep, Object dst, int dstPos, int n) {
+        if (srcStep == 1) {
+            System.arraycopy(src, srcPos, dst, dstPos, n);
+        } else if (src instanceof byte[]) {
+            byte[] s = (byte[]) src;
+            byte[] d = (byte[]) dst;
+            for (int k = 0; k < n; k++) {
+                d[dstPos + k] = s[srcPos + k * srcStep];
+            }
+        } else if (src instanceof short[]) {
+            short[] s = (short[]) src;
+            short[] d = (short[]) dst;
+            for (int k = 0; k < n; k++) {
+                d[dstPos + k] = s[srcPos + k * srcStep];
+            }
+        } else if (src instanceof int[]) {
+            int[] s = (int[]) src;
+            int[] d = (int[]) dst;
+            for (int k = 0; k < n; k++) {
+                d[dstPos + k] = s[srcPos + k * srcStep];
+            }
+        } else if (src instanceof float[]) {
+            float[] s = (float[]) src;
+            float[] d = (float[]) dst;
+            for (int k = 0; k < n; k++) {
+                d[dstPos + k] = s[srcPos + k * srcStep];
+            }
+        } else {
+            double[] s = (double[]) src;
+            double[] d = (double[]) dst;
+            for (int k = 0; k < n; k++) {
+                d[dstPos + k] = s[srcPos + k * srcStep];
+            }
+        }
+    }
+
+    private static void writeTile(File file, Object tile) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("could not create " + parent);
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int) (5 + sizeOf(tile))).order(ByteOrder.LITTLE_ENDIAN);
+        if (tile instanceof byte[]) {
+            buf.put(TYPE_BYTE).putInt(((byte[]) tile).length).put((byte[]) tile);
+        } else if (tile instanceof short[]) {
+            buf.put(TYPE_SHORT).putInt(((short[]) tile).length).asShortBuffer().put((short[]) tile);
+        } else if (tile instanceof int[]) {
+            buf.put(TYPE_INT).putInt(((int[]) tile).length).asIntBuffer().put((int[]) tile);
+        } else if (tile instanceof float[]) {
+            buf.put(TYPE_FLOAT).putInt(((float[]) tile).length).asFloatBuffer().put((float[]) tile);
+        } else {
+            buf.put(TYPE_DOUBLE).putInt(((double[]) tile).length).asDoubleBuffer().put((double[]) tile);
+        }
+        buf.clear();
+        File tmp = File.createTempFile("tile", ".tmp", parent);
+        try (FileChannel fc = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                fc.write(buf);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Object readTile(File file) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < 5) {
+            throw new IOException("truncated tile");
+        }
+        byte type = buf.get();
+        int length = buf.getInt();
+        try {
+            switch (type) {
+                case TYPE_BYTE: {
+                    byte[] a = new byte[length];
+                    buf.get(a);
+                    return a;
+                }
+                case TYPE_SHORT: {
+                    short[] a = new short[length];
+                    buf.asShortBuffer().get(a);
+                    return a;
+                }
+                case TYPE_INT: {
+                    int[] a = new int[length];
+                    buf.asIntBuffer().get(a);
+                    return a;
+                }
+                case TYPE_FLOAT: {
+                    float[] a = new float[length];
+                    buf.asFloatBuffer().get(a);
+                    return a;
+                }
+                case TYPE_DOUBLE: {
+                    double[] a = new double[length];
+                    buf.asDoubleBuffer().get(a);
+                    return a;
+                }
+                default:
+                    throw new IOException("unknown tile type " + type);
+            }
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("truncated tile", e);
+        }
+    }
+
+    private static String digest(String desc) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(desc.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
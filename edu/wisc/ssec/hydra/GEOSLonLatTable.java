@@ -0,0 +1,288 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package edu.wisc.ssec.hydra;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Longitude and latitude of every pixel center of a fixed geostationary grid
+ * (ABI, AHI, ...), kept on disk and memory mapped.
+ *
+ * <p>A fixed grid never changes for a given sub-satellite longitude, scan
+ * geometry, geoid and FGF scale/offset, so the table is computed once with
+ * {@link GEOSTransform} and written to the directory named by the
+ * {@code geos.lut.dir} system property (by default {@code geos-lonlat} under
+ * {@code java.io.tmpdir}). Later sessions map the file instead of navigating
+ * the grid again.</p>
+ *
+ * <p>The file holds all longitudes, then all latitudes. A single mapping
+ * must be under 2 GB, so each plane is mapped in blocks of whole lines of at
+ * most {@link #MAX_SEGMENT_BYTES}.</p>
+ */
+public class GEOSLonLatTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GEOSLonLatTable.class);
+
+    /**
+     * System property naming the table directory.
+     */
+    public static final String PROP_DIR = "geos.lut.dir";
+
+    private static final int MAGIC = 0x47454f53;  // "GEOS"
+    private static final int HEADER_BYTES = 12;
+
+    /**
+     * Most bytes in one mapped block of a plane.
+     */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private static final Map<String, GEOSLonLatTable> tables = new HashMap<>();
+
+    private final int lenX;
+    private final int lenY;
+
+    /**
+     * Lines in each mapped block.
+     */
+    private final int segmentLines;
+
+    /**
+     * Mapped blocks of the longitude and latitude planes.
+     */
+    private final FloatBuffer[] lon;
+    private final FloatBuffer[] lat;
+
+    private GEOSLonLatTable(int lenX, int lenY, int segmentLines, FloatBuffer[] lon, FloatBuffer[] lat) {
+        this.lenX = lenX;
+        this.lenY = lenY;
+        this.segmentLines = segmentLines;
+        this.lon = lon;
+        this.lat = lat;
+    }
+
+    /**
+     * Returns the table for a grid.
+     *
+     * @param geosTran transform of the grid
+     * @param lenX     number of elements in the grid
+     * @param lenY     number of lines in the grid
+     * @param scaleX   scaleFactor from the x coordinate variable
+     * @param offsetX  addOffset from the x coordinate variable
+     * @param scaleY   scaleFactor from the y coordinate variable
+     * @param offsetY  addOffset from the y coordinate variable
+     * @param create   whether to compute the table if it is not on disk yet
+     * @return the table, or null if it does not exist and create is false or it could not be made
+     */
+    public static GEOSLonLatTable getTable(GEOSTransform geosTran, int lenX, int lenY,
+                                           double scaleX, double offsetX, double scaleY, double offsetY,
+                                           boolean create) {
+        String key = makeKey(geosTran, lenX, lenY, scaleX, offsetX, scaleY, offsetY);
+        synchronized (tables) {
+            GEOSLonLatTable table = tables.get(key);
+            if (table != null) {
+                return table;
+            }
+            if ((long) lenX * lenY > Integer.MAX_VALUE) {
+                return null;
+            }
+            File dir = new File(System.getProperty(PROP_DIR,
+                    new File(System.getProperty("java.io.tmpdir"), "geos-lonlat").getPath()));
+            File file = new File(dir, key + ".lut");
+            try {
+                if (!file.exists()) {
+                    if (!create) {
+                        return null;
+                    }
+                    write(file, geosTran, lenX, lenY, scaleX, offsetX, scaleY, offsetY);
+                }
+                table = map(file, lenX, lenY);
+            } catch (IOException | RuntimeException e) {
+                // the caller navigates each point instead
+                logger.warn("could not use lon/lat table {}", file, e);
+                file.delete();
+                return null;
+            }
+            tables.put(key, table);
+            return table;
+        }
+    }
+
+    /**
+     * Fills in the longitude and latitude of each point that is a pixel center of the grid.
+     *
+     * @param fgf    fractional FGF coordinates (x, y)
+     * @param lonlat output longitude and latitude, units: degrees
+     * @return indexes of the points that were not pixel centers inside the grid, and so were left unset
+     */
+    public int[] lookup(float[][] fgf, float[][] lonlat) {
+        float[] fx = fgf[0];
+        float[] fy = fgf[1];
+        int[] misses = new int[16];
+        int numMisses = 0;
+        for (int k = 0; k < fx.length; k++) {
+            int ix = (int) fx[k];
+            int iy = (int) fy[k];
+            if (ix == fx[k] && iy == fy[k] && ix >= 0 && ix < lenX && iy >= 0 && iy < lenY) {
+                int seg = iy / segmentLines;
+                int idx = (iy - seg * segmentLines) * lenX + ix;
+                lonlat[0][k] = lon[seg].get(idx);
+                lonlat[1][k] = lat[seg].get(idx);
+            } else {
+                if (numMisses == misses.length) {
+                    misses = Arrays.copyOf(misses, 2 * numMisses);
+                }
+                misses[numMisses++] = k;
+            }
+        }
+        return Arrays.copyOf(misses, numMisses);
+    }
+
+    private static String makeKey(GEOSTransform t, int lenX, int lenY,
+                                  double scaleX, double offsetX, double scaleY, double offsetY) {
+        String desc = t.sub_lon_degrees + " " + t.scan_geom + " " + t.h + " " +
+                t.r_eq + " " + t.r_pol + " " + t.invf + " " +
+                lenX + " " + lenY + " " + scaleX + " " + offsetX + " " + scaleY + " " + offsetY;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(desc.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void write(File file, GEOSTransform geosTran, int lenX, int lenY,
+                              double scaleX, double offsetX, double scaleY, double offsetY) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("could not create " + dir);
+        }
+        logger.debug("computing lon/lat table {} ({} x {})", file, lenX, lenY);
+
+        File tmp = File.createTempFile("geos", ".tmp", dir);
+        try (FileChannel fc = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(lenX).putInt(lenY).flip();
+            writeFully(fc, header, 0);
+
+            // navigate and write a band of lines at a time: all longitudes first, then all latitudes
+            int bandLines = Math.max(1, (1 << 20) / lenX);
+            long latStart = HEADER_BYTES + 4L * lenX * lenY;
+            for (int line = 0; line < lenY; line += bandLines) {
+                int nLines = Math.min(bandLines, lenY - line);
+                int num = nLines * lenX;
+                float[] fx = new float[num];
+                float[] fy = new float[num];
+                for (int j = 0; j < nLines; j++) {
+                    for (int i = 0; i < lenX; i++) {
+                        fx[j * lenX + i] = i;
+                        fy[j * lenX + i] = line + j;
+                    }
+                }
+                float[] lon = new float[num];
+                float[] lat = new float[num];
+                geosTran.FGFtoEarth(fx, fy, scaleX, offsetX, scaleY, offsetY, lon, lat);
+
+                ByteBuffer buf = ByteBuffer.allocate(4 * num).order(ByteOrder.LITTLE_ENDIAN);
+                buf.asFloatBuffer().put(lon);
+                writeFully(fc, buf, HEADER_BYTES + 4L * line * lenX);
+                buf.clear();
+                buf.asFloatBuffer().put(lat);
+                writeFully(fc, buf, latStart + 4L * line * lenX);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel fc, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += fc.write(buf, position);
+        }
+    }
+
+    private static GEOSLonLatTable map(File file, int lenX, int lenY) throws IOException {
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long planeBytes = 4L * lenX * lenY;
+            long expected = HEADER_BYTES + 2 * planeBytes;
+            if (fc.size() != expected) {
+                throw new IOException("unexpected size " + fc.size() + ", wanted " + expected);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (fc.read(header, header.position()) < 0) {
+                    throw new IOException("short header");
+                }
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != lenX || header.getInt(8) != lenY) {
+                throw new IOException("header does not match");
+            }
+            int segmentLines = (int) Math.max(1, Math.min(lenY, MAX_SEGMENT_BYTES / (4L * lenX)));
+            int numSegments = (lenY + segmentLines - 1) / segmentLines;
+            FloatBuffer[] lon = new FloatBuffer[numSegments];
+            FloatBuffer[] lat = new FloatBuffer[numSegments];
+            for (int seg = 0; seg < numSegments; seg++) {
+                int lines = Math.min(segmentLines, lenY - seg * segmentLines);
+                long start = 4L * seg * segmentLines * lenX;
+                long size = 4L * lines * lenX;
+                lon[seg] = mapFloats(fc, HEADER_BYTES + start, size);
+                lat[seg] = mapFloats(fc, HEADER_BYTES + planeBytes + start, size);
+            }
+            return new GEOSLonLatTable(lenX, lenY, segmentLines, lon, lat);
+        }
+    }
+
+    private static FloatBuffer mapFloats(FileChannel fc, long position, long size) throws IOException {
+        MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, position, size);
+        return buf.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+}
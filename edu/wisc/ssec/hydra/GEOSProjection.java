@@ -45,6 +45,17 @@ public class GEOSProjection extends MapProjection {
     double scaleY;
     double offsetY;
 
+    // size of the full fixed grid, for the lon/lat table
+    int gridLenX;
+    int gridLenY;
+    transient GEOSLonLatTable lonLatTable;
+
+    /**
+     * toReference requests at least this large compute and save the lon/lat table if
+     * it does not exist yet; smaller ones only use a table already on disk.
+     */
+    static final int TABLE_MIN_POINTS = 1000000;
+
     public GEOSProjection(GEOSTransform geosTran, double startX, double startY, double lenX, double lenY,
                           double scaleX, double offsetX, double scaleY, double offsetY) throws VisADException {
         super(RealTupleType.SpatialEarth2DTuple, null, false, true);
@@ -54,6 +65,8 @@ public class GEOSProjection extends MapProjection {
         this.scaleY = scaleY;
         this.offsetX = offsetX;
         this.offsetY = offsetY;
+        this.gridLenX = (int) lenX;
+        this.gridLenY = (int) lenY;
 
         rect = new Rectangle2D.Double(startX, startY, lenX, lenY);
     }
@@ -66,6 +79,8 @@ public class GEOSProjection extends MapProjection {
         this.scaleY = geosProj.scaleY;
         this.offsetX = geosProj.offsetX;
         this.offsetY = geosProj.offsetY;
+        this.gridLenX = geosProj.gridLenX;
+        this.gridLenY = geosProj.gridLenY;
 
         rect = new Rectangle2D.Double(startX, startY, lenX, lenY);
     }
@@ -77,12 +92,27 @@ public class GEOSProjection extends MapProjection {
     public float[][] toReference(float[][] values) throws VisADException {
         int num = values[0].length;
         float[][] lonlat = new float[2][num];
-        for (int k = 0; k < num; k++) {
-            double xrad = values[0][k] * scaleX + offsetX;
-            double yrad = values[1][k] * scaleY + offsetY;
-            double[] dvals = geosTran.satToEarth(xrad, yrad);
-            lonlat[0][k] = (float) dvals[0];
-            lonlat[1][k] = (float) dvals[1];
+
+        GEOSLonLatTable table = getLonLatTable(num);
+        if (table == null) {
+            geosTran.FGFtoEarth(values[0], values[1], scaleX, offsetX, scaleY, offsetY, lonlat[0], lonlat[1]);
+            return lonlat;
+        }
+
+        int[] misses = table.lookup(values, lonlat);
+        if (misses.length > 0) {
+            // navigate whatever was not at a pixel center of the grid
+            float[][] fgf = new float[2][misses.length];
+            for (int i = 0; i < misses.length; i++) {
+                fgf[0][i] = values[0][misses[i]];
+                fgf[1][i] = values[1][misses[i]];
+            }
+            float[][] missed = new float[2][misses.length];
+            geosTran.FGFtoEarth(fgf[0], fgf[1], scaleX, offsetX, scaleY, offsetY, missed[0], missed[1]);
+            for (int i = 0; i < misses.length; i++) {
+                lonlat[0][misses[i]] = missed[0][i];
+                lonlat[1][misses[i]] = missed[1][i];
+            }
         }
         return lonlat;
     }
@@ -90,42 +120,35 @@ public class GEOSProjection extends MapProjection {
     public float[][] fromReference(float[][] values) throws VisADException {
         int num = values[0].length;
         float[][] grid = new float[2][num];
-        for (int k = 0; k < num; k++) {
-            float lon = values[0][k];
-            float lat = values[1][k];
-            double[] dvals = geosTran.earthToSat((double) lon, (double) lat);
-            grid[0][k] = (float) ((dvals[0] - offsetX) / scaleX);
-            grid[1][k] = (float) ((dvals[1] - offsetY) / scaleY);
-        }
+        geosTran.earthToFGF(values[0], values[1], scaleX, offsetX, scaleY, offsetY, grid[0], grid[1]);
         return grid;
     }
 
     public double[][] toReference(double[][] values) throws VisADException {
         int num = values[0].length;
         double[][] lonlat = new double[2][num];
-        for (int k = 0; k < num; k++) {
-            double xrad = values[0][k] * scaleX + offsetX;
-            double yrad = values[1][k] * scaleY + offsetY;
-            double[] dvals = geosTran.satToEarth(xrad, yrad);
-            lonlat[0][k] = dvals[0];
-            lonlat[1][k] = dvals[1];
-        }
+        geosTran.FGFtoEarth(values[0], values[1], scaleX, offsetX, scaleY, offsetY, lonlat[0], lonlat[1]);
         return lonlat;
     }
 
     public double[][] fromReference(double[][] values) throws VisADException {
         int num = values[0].length;
         double[][] grid = new double[2][num];
-        for (int k = 0; k < num; k++) {
-            double lon = values[0][k];
-            double lat = values[1][k];
-            double[] dvals = geosTran.earthToSat(lon, lat);
-            grid[0][k] = (dvals[0] - offsetX) / scaleX;
-            grid[1][k] = (dvals[1] - offsetY) / scaleY;
-        }
+        geosTran.earthToFGF(values[0], values[1], scaleX, offsetX, scaleY, offsetY, grid[0], grid[1]);
         return grid;
     }
 
+    /**
+     * The lon/lat table of the full grid, made on disk first if this request is large enough.
+     */
+    private synchronized GEOSLonLatTable getLonLatTable(int num) {
+        if (lonLatTable == null && gridLenX > 0 && gridLenY > 0) {
+            lonLatTable = GEOSLonLatTable.getTable(geosTran, gridLenX, gridLenY,
+                    scaleX, offsetX, scaleY, offsetY, num >= TABLE_MIN_POINTS);
+        }
+        return lonLatTable;
+    }
+
     public double getScaleX() {
         return scaleX;
     }
@@ -32,6 +32,8 @@ import java.lang.Math;
 import java.lang.String;
 import java.lang.*;
 
+import visad.util.ParallelTasks;
+
 
 public class GEOSTransform {
 
@@ -157,6 +159,12 @@ public class GEOSTransform {
      * @return (lamda, theta) units: radian. This is the (x,y) or (East-West, North_South) view angle.
      */
     public double[] earthToSat(double geographic_lon, double geographic_lat) {
+        double[] xy = new double[2];
+        earthToSat(geographic_lon, geographic_lat, xy);
+        return xy;
+    }
+
+    private void earthToSat(double geographic_lon, double geographic_lat, double[] xy) {
 
         geographic_lat = geographic_lat * DEG_TO_RAD;
         geographic_lon = geographic_lon * DEG_TO_RAD;
@@ -170,7 +178,9 @@ public class GEOSTransform {
         double r_3 = r_earth * Math.sin(geocentric_lat);
 
         if (r_1 > h) { // often two geoid intersect points, use the closer one.
-            return new double[]{Double.NaN, Double.NaN};
+            xy[0] = Double.NaN;
+            xy[1] = Double.NaN;
+            return;
         }
 
         double lamda_sat = Double.NaN;
@@ -184,7 +194,8 @@ public class GEOSTransform {
             theta_sat = Math.atan(r_3 / r_1);
         }
 
-        return new double[]{lamda_sat, theta_sat};
+        xy[0] = lamda_sat;
+        xy[1] = theta_sat;
     }
 
     /**
@@ -196,19 +207,27 @@ public class GEOSTransform {
      * @return (Longitude, Latitude), units degrees
      */
     public double[] satToEarth(double x, double y) {
+        double[] lonlat = new double[2];
+        satToEarth(x, y, lonlat);
+        return lonlat;
+    }
+
+    private void satToEarth(double x, double y, double[] lonlat) {
 
         if (scan_geom.equals(GOES)) { // convert from GOES to GEOS for transfrom below
-            double[] lambda_theta_geos = new double[2];
-            lambda_theta_geos = GOES_to_GEOS(x, y);
-            x = lambda_theta_geos[0];
-            y = lambda_theta_geos[1];
+            double theta_geos = Math.asin(Math.sin(y) * Math.cos(x));
+            double lamda_geos = Math.atan(Math.tan(x) / Math.cos(y));
+            x = lamda_geos;
+            y = theta_geos;
         }
 
         double c1 = (h * Math.cos(x) * Math.cos(y)) * (h * Math.cos(x) * Math.cos(y));
         double c2 = (Math.cos(y) * Math.cos(y) + fp * Math.sin(y) * Math.sin(y)) * d;
 
         if (c1 < c2) {
-            return new double[]{Double.NaN, Double.NaN};
+            lonlat[0] = Double.NaN;
+            lonlat[1] = Double.NaN;
+            return;
         }
 
         double s_d = Math.sqrt(c1 - c2);
@@ -231,7 +250,8 @@ public class GEOSTransform {
         if (lonDegrees < -180.0) lonDegrees += 360.0;
         if (lonDegrees > 180.0) lonDegrees -= 360.0;
 
-        return new double[]{lonDegrees, latDegrees};
+        lonlat[0] = lonDegrees;
+        lonlat[1] = latDegrees;
     }
 
     /**
@@ -341,6 +361,131 @@ public class GEOSTransform {
     }
 
 
+    /**
+     * Array form of {@link #satToEarth(double, double)}, evaluated in parallel chunks.
+     *
+     * @param x   lamda (East-West) angles, units: radians
+     * @param y   theta (North-South) angles, units: radians
+     * @param lon output longitudes, units: degrees
+     * @param lat output latitudes, units: degrees
+     */
+    public void satToEarth(double[] x, double[] y, double[] lon, double[] lat) {
+        ParallelTasks.forEachRange(x.length, CHUNK, (start, stop) -> {
+            double[] lonlat = new double[2];
+            for (int k = start; k < stop; k++) {
+                satToEarth(x[k], y[k], lonlat);
+                lon[k] = lonlat[0];
+                lat[k] = lonlat[1];
+            }
+        });
+    }
+
+    /**
+     * Array form of {@link #earthToSat(double, double)}, evaluated in parallel chunks.
+     *
+     * @param lon longitudes, units: degrees
+     * @param lat latitudes, units: degrees
+     * @param x   output lamda (East-West) angles, units: radians
+     * @param y   output theta (North-South) angles, units: radians
+     */
+    public void earthToSat(double[] lon, double[] lat, double[] x, double[] y) {
+        ParallelTasks.forEachRange(lon.length, CHUNK, (start, stop) -> {
+            double[] xy = new double[2];
+            for (int k = start; k < stop; k++) {
+                earthToSat(lon[k], lat[k], xy);
+                x[k] = xy[0];
+                y[k] = xy[1];
+            }
+        });
+    }
+
+    /**
+     * Array form of {@link #FGFtoEarth(double, double, double, double, double, double)},
+     * evaluated in parallel chunks.
+     *
+     * @param fgf_x    fractional FGF coordinates, zero-based
+     * @param fgf_y    fractional FGF coordinates, zero-based
+     * @param scale_x  scaleFactor from the x coordinate variable
+     * @param offset_x addOffset from the x coordinate variable
+     * @param scale_y  scaleFactor from the y coordinate variable
+     * @param offset_y addOffset from the y coordinate variable
+     * @param lon      output longitudes, units: degrees
+     * @param lat      output latitudes, units: degrees
+     */
+    public void FGFtoEarth(double[] fgf_x, double[] fgf_y, double scale_x, double offset_x, double scale_y, double offset_y,
+                           double[] lon, double[] lat) {
+        ParallelTasks.forEachRange(fgf_x.length, CHUNK, (start, stop) -> {
+            double[] lonlat = new double[2];
+            for (int k = start; k < stop; k++) {
+                satToEarth(fgf_x[k] * scale_x + offset_x, fgf_y[k] * scale_y + offset_y, lonlat);
+                lon[k] = lonlat[0];
+                lat[k] = lonlat[1];
+            }
+        });
+    }
+
+    /**
+     * Single precision form of
+     * {@link #FGFtoEarth(double[], double[], double, double, double, double, double[], double[])}.
+     */
+    public void FGFtoEarth(float[] fgf_x, float[] fgf_y, double scale_x, double offset_x, double scale_y, double offset_y,
+                           float[] lon, float[] lat) {
+        ParallelTasks.forEachRange(fgf_x.length, CHUNK, (start, stop) -> {
+            double[] lonlat = new double[2];
+            for (int k = start; k < stop; k++) {
+                satToEarth(fgf_x[k] * scale_x + offset_x, fgf_y[k] * scale_y + offset_y, lonlat);
+                lon[k] = (float) lonlat[0];
+                lat[k] = (float) lonlat[1];
+            }
+        });
+    }
+
+    /**
+     * Array form of {@link #earthToFGF(double, double, double, double, double, double)},
+     * evaluated in parallel chunks.
+     *
+     * @param lon      longitudes, units: degrees
+     * @param lat      latitudes, units: degrees
+     * @param scale_x  scaleFactor from the x coordinate variable
+     * @param offset_x addOffset from the x coordinate variable
+     * @param scale_y  scaleFactor from the y coordinate variable
+     * @param offset_y addOffset from the y coordinate variable
+     * @param fgf_x    output fractional FGF coordinates
+     * @param fgf_y    output fractional FGF coordinates
+     */
+    public void earthToFGF(double[] lon, double[] lat, double scale_x, double offset_x, double scale_y, double offset_y,
+                           double[] fgf_x, double[] fgf_y) {
+        ParallelTasks.forEachRange(lon.length, CHUNK, (start, stop) -> {
+            double[] xy = new double[2];
+            for (int k = start; k < stop; k++) {
+                earthToSat(lon[k], lat[k], xy);
+                fgf_x[k] = (xy[0] - offset_x) / scale_x;
+                fgf_y[k] = (xy[1] - offset_y) / scale_y;
+            }
+        });
+    }
+
+    /**
+     * Single precision form of
+     * {@link #earthToFGF(double[], double[], double, double, double, double, double[], double[])}.
+     */
+    public void earthToFGF(float[] lon, float[] lat, double scale_x, double offset_x, double scale_y, double offset_y,
+                           float[] fgf_x, float[] fgf_y) {
+        ParallelTasks.forEachRange(lon.length, CHUNK, (start, stop) -> {
+            double[] xy = new double[2];
+            for (int k = start; k < stop; k++) {
+                earthToSat((double) lon[k], (double) lat[k], xy);
+                fgf_x[k] = (float) ((xy[0] - offset_x) / scale_x);
+                fgf_y[k] = (float) ((xy[1] - offset_y) / scale_y);
+            }
+        });
+    }
+
+    /**
+     * Fewest points per parallel chunk in the array methods.
+     */
+    private static final int CHUNK = 32768;
+
     /**
      * Earth Geoid definitions
      * Note:  CGMS Doc No CGMS 03, Issue 2.6 states the following geoid parameters:
@@ -0,0 +1,499 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package edu.wisc.ssec.mcidas.adde;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local disk cache of ADDE server responses, used by
+ * {@link AddeURLConnection} for image data, image directory and point
+ * data (AGET, ADIR and MDKS) requests.
+ *
+ * <p>Responses are stored uncompressed, one file per request, named by the
+ * SHA-256 digest of the decoded request (server, service, user, project and
+ * the normalized command string built by AddeURLConnection). A hit is
+ * returned as a stream over the memory-mapped file, so neither the network
+ * nor the GZIP inflate is involved.</p>
+ *
+ * <p>The cache is off unless the {@code adde.cache.dir} system property
+ * names a directory. {@code adde.cache.maxsize} bounds the directory in
+ * megabytes (default 512); the least recently used responses are removed
+ * first. Only image data for days before today (UTC) is kept until it is
+ * evicted. Directory listings and point data grow as new images and late
+ * observations arrive, and an image request without a {@code DAY=} clause,
+ * or for today, refers to whatever is latest on the server, so all of those
+ * expire after {@code adde.cache.ttl} seconds (default 300, 0 to never
+ * cache them); see {@link #expires}.</p>
+ */
+public class AddeResponseCache
+{
+  /** System property naming the cache directory. */
+  public static final String PROP_DIR = "adde.cache.dir";
+
+  /** System property giving the cache size limit in megabytes. */
+  public static final String PROP_MAXSIZE = "adde.cache.maxsize";
+
+  /** System property giving the lifetime of expiring responses in seconds. */
+  public static final String PROP_TTL = "adde.cache.ttl";
+
+  private static final String SUFFIX = ".adde";
+
+  private static final Logger LOGGER =
+    Logger.getLogger(AddeResponseCache.class.getName());
+
+  private static AddeResponseCache instance;
+  private static String instanceDir;
+
+  private final File dir;
+  private final long maxSize;
+  private final long ttlMillis;
+
+  // file name to size, least recently used first
+  private final LinkedHashMap<String, Long> entries =
+    new LinkedHashMap<String, Long>(64, 0.75f, true);
+  private long totalSize = 0;
+
+  private AddeResponseCache(File dir, long maxSize, long ttlMillis)
+  {
+    this.dir = dir;
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+
+    // pick up what earlier sessions left behind, oldest first
+    File[] files = dir.listFiles();
+    if (files != null) {
+      Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+      for (File f : files) {
+        String name = f.getName();
+        if (name.endsWith(SUFFIX)) {
+          entries.put(name, f.length());
+          totalSize += f.length();
+        } else if (name.endsWith(".tmp")) {
+          f.delete();
+        }
+      }
+    }
+    evict();
+  }
+
+  /**
+   * Returns the cache configured by the system properties, or
+   * {@code null} if caching is off.
+   *
+   * @return  the cache, or {@code null}
+   */
+  public static synchronized AddeResponseCache getInstance()
+  {
+    String path = System.getProperty(PROP_DIR);
+    if (path == null || path.trim().isEmpty()) {
+      return null;
+    }
+    if (instance == null || !path.equals(instanceDir)) {
+      File dir = new File(path);
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        LOGGER.warning("Could not create ADDE cache directory " + dir);
+        return null;
+      }
+      long maxSize = Long.getLong(PROP_MAXSIZE, 512L) * 1024L * 1024L;
+      long ttl = Long.getLong(PROP_TTL, 300L) * 1000L;
+      instance = new AddeResponseCache(dir, maxSize, ttl);
+      instanceDir = path;
+    }
+    return instance;
+  }
+
+  /**
+   * Builds the key for a request.
+   *
+   * @param host  server host
+   * @param port  server port
+   * @param svc  ADDE service (aget, adir, ...)
+   * @param cmd  decoded request string
+   * @param user  user initials
+   * @param proj  project number
+   *
+   * @return  key to pass to {@link #get} and {@link #record}
+   */
+  public static String makeKey(String host, int port, String svc, String cmd,
+                               String user, int proj)
+  {
+    String request = host.toLowerCase() + ':' + port + '\n' + svc + '\n' +
+                     user + ' ' + proj + '\n' + cmd.trim();
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      byte[] digest = md.digest(request.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(digest.length * 2 + SUFFIX.length());
+      for (byte b : digest) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+        sb.append(Character.forDigit(b & 0xf, 16));
+      }
+      return sb.append(SUFFIX).toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Tells whether the response to a request may change on the server, and
+   * so must expire. That is every request except image data whose
+   * {@code DAY=} values all name days before today (UTC). A day that
+   * cannot be parsed counts as today.
+   *
+   * @param imageData  true for an image data (AGET) request
+   * @param cmd  decoded request string
+   *
+   * @return  true if the response expires after the TTL
+   */
+  public static boolean expires(boolean imageData, String cmd)
+  {
+    if (!imageData) {
+      return true;
+    }
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    boolean sawDay = false;
+    String[] tokens = cmd.toUpperCase().trim().split("[\\s&]+");
+    for (int i = 0; i < tokens.length; i++) {
+      if (!tokens[i].startsWith("DAY=")) {
+        continue;
+      }
+      // DAY=first [second ...], up to the next keyword
+      String value = tokens[i].substring(4);
+      for (int j = i + 1; ; j++) {
+        if (!value.isEmpty()) {
+          LocalDate day = parseDay(value);
+          if (day == null || !day.isBefore(today)) {
+            return true;
+          }
+          sawDay = true;
+        }
+        if (j >= tokens.length || tokens[j].indexOf('=') >= 0) {
+          break;
+        }
+        value = tokens[j];
+      }
+    }
+    return !sawDay;
+  }
+
+  /**
+   * Parses a {@code DAY=} value, either ccyyddd or ccyy-mm-dd.
+   *
+   * @param value  the value
+   *
+   * @return  the day, or {@code null} if it is not one of those
+   */
+  private static LocalDate parseDay(String value)
+  {
+    try {
+      if (value.length() == 7 && value.chars().allMatch(Character::isDigit)) {
+        return LocalDate.ofYearDay(Integer.parseInt(value.substring(0, 4)),
+                                   Integer.parseInt(value.substring(4)));
+      }
+      if (value.length() == 10 && value.charAt(4) == '-' &&
+          value.charAt(7) == '-')
+      {
+        return LocalDate.parse(value);
+      }
+    } catch (DateTimeException | NumberFormatException e) {
+      // not a day
+    }
+    return null;
+  }
+
+  /**
+   * Returns the cached response for a request, if there is one.
+   *
+   * @param key  key from {@link #makeKey}
+   * @param expires  true if the response expires, from {@link #expires}
+   *
+   * @return  stream over the cached response, or {@code null}
+   */
+  public InputStream get(String key, boolean expires)
+  {
+    File f = new File(dir, key);
+    synchronized (this) {
+      if (!entries.containsKey(key)) {
+        return null;
+      }
+      if (expires &&
+          System.currentTimeMillis() - f.lastModified() > ttlMillis) {
+        remove(key);
+        return null;
+      }
+    }
+    try (FileChannel fc = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      MappedByteBuffer mbb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+      if (LOGGER.isLoggable(Level.FINEST)) {
+        LOGGER.finest("ADDE cache hit: " + key);
+      }
+      return new BufferInputStream(mbb);
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Dropping unreadable ADDE cache entry " + key, e);
+      synchronized (this) {
+        remove(key);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Wraps a server response so that it is written to the cache as it is
+   * read. The entry is added once the client has read the whole response;
+   * a stream closed before then is not cached.
+   *
+   * @param key  key from {@link #makeKey}
+   * @param expires  true if the response expires, from {@link #expires}
+   * @param in  response from the server
+   *
+   * @return  stream to hand to the client in place of {@code in}
+   */
+  public RecordingInputStream record(String key, boolean expires, InputStream in)
+  {
+    if (expires && ttlMillis <= 0) {
+      return null;
+    }
+    try {
+      File tmp = File.createTempFile("adde", ".tmp", dir);
+      return new RecordingInputStream(in, key, tmp);
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Not caching ADDE response " + key, e);
+      return null;
+    }
+  }
+
+  private synchronized void commit(String key, File tmp)
+  {
+    File f = new File(dir, key);
+    try {
+      Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Could not add ADDE cache entry " + key, e);
+      tmp.delete();
+      return;
+    }
+    Long old = entries.put(key, f.length());
+    if (old != null) {
+      totalSize -= old;
+    }
+    totalSize += f.length();
+    evict();
+  }
+
+  private void remove(String key)
+  {
+    Long size = entries.remove(key);
+    if (size != null) {
+      totalSize -= size;
+    }
+    new File(dir, key).delete();
+  }
+
+  private void evict()
+  {
+    Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+    while (totalSize > maxSize && it.hasNext()) {
+      Map.Entry<String, Long> e = it.next();
+      it.remove();
+      totalSize -= e.getValue();
+      new File(dir, e.getKey()).delete();
+    }
+  }
+
+  /**
+   * Server response stream that copies what is read into a temporary file,
+   * which becomes a cache entry at end of stream.
+   */
+  public class RecordingInputStream extends FilterInputStream
+  {
+    private final String key;
+    private final File tmp;
+    private OutputStream out;
+
+    RecordingInputStream(InputStream in, String key, File tmp)
+      throws IOException
+    {
+      super(in);
+      this.key = key;
+      this.tmp = tmp;
+      this.out = new BufferedOutputStream(new FileOutputStream(tmp), 65536);
+    }
+
+    public int read() throws IOException
+    {
+      int b = super.read();
+      if (b < 0) {
+        finish();
+      } else if (out != null) {
+        try {
+          out.write(b);
+        } catch (IOException e) {
+          abandon();
+        }
+      }
+      return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      int n = super.read(b, off, len);
+      if (n < 0) {
+        finish();
+      } else if (out != null) {
+        try {
+          out.write(b, off, n);
+        } catch (IOException e) {
+          abandon();
+        }
+      }
+      return n;
+    }
+
+    public long skip(long n) throws IOException
+    {
+      // read through so the skipped bytes are recorded too
+      byte[] buf = new byte[(int) Math.min(n, 8192)];
+      long skipped = 0;
+      while (skipped < n) {
+        int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+        if (r < 0) {
+          break;
+        }
+        skipped += r;
+      }
+      return skipped;
+    }
+
+    public boolean markSupported()
+    {
+      return false;
+    }
+
+    /** Drops the recording, e.g. when the server returned an error. */
+    public void abandon()
+    {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          // nothing to keep anyway
+        }
+        out = null;
+        tmp.delete();
+      }
+    }
+
+    public void close() throws IOException
+    {
+      // closed before the end, e.g. a cancelled read: only part of the
+      // response was recorded
+      abandon();
+      super.close();
+    }
+
+    private void finish()
+    {
+      if (out != null) {
+        try {
+          out.close();
+          out = null;
+          commit(key, tmp);
+        } catch (IOException e) {
+          abandon();
+        }
+      }
+    }
+  }
+
+  /** Stream over a (mapped) buffer. */
+  static class BufferInputStream extends InputStream
+  {
+    private final ByteBuffer buf;
+
+    BufferInputStream(ByteBuffer buf)
+    {
+      this.buf = buf;
+    }
+
+    public int read()
+    {
+      return buf.hasRemaining() ? (buf.get() & 0xff) : -1;
+    }
+
+    public int read(byte[] b, int off, int len)
+    {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buf.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buf.remaining());
+      buf.get(b, off, n);
+      return n;
+    }
+
+    public long skip(long n)
+    {
+      int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+      buf.position(buf.position() + k);
+      return k;
+    }
+
+    public int available()
+    {
+      return buf.remaining();
+    }
+  }
+}
@@ -627,6 +627,30 @@ public class AddeURLConnection extends URLConnection
                                  : "no") + " compression.");
     }
 
+    // image, image directory and point data responses may come from the
+    // local cache; nothing is cached for a local server or when the request
+    // carries extra binary data
+    AddeResponseCache cache = null;
+    String cacheKey = null;
+    boolean expires = AddeResponseCache.expires(reqType == AGET, cmd);
+    if ((reqType == AGET || reqType == ADIR || reqType == MDKS) &&
+        binaryData == null && !ia.isLoopbackAddress())
+    {
+      cache = AddeResponseCache.getInstance();
+    }
+    if (cache != null) {
+      cacheKey = AddeResponseCache.makeKey(url.getHost(), portToUse,
+                   new String(svc), cmd, new String(usr), proj);
+      InputStream cached = cache.get(cacheKey, expires);
+      if (cached != null) {
+        is = cached;
+        dis = new DataInputStream(is);
+        readResponseSize();
+        connected = true;
+        return;
+      }
+    }
+
     Socket t;
     try {
       t = new Socket(url.getHost(), portToUse);   // DRM 03-Mar-2001
@@ -735,6 +759,12 @@ public class AddeURLConnection extends URLConnection
         : (compressionType == COMPRESS)
             ? new UncompressInputStream(t.getInputStream())
             : t.getInputStream();
+    if (cache != null) {
+      InputStream recording = cache.record(cacheKey, expires, is);
+      if (recording != null) {
+        is = recording;
+      }
+    }
     dis = new DataInputStream(is);
 
     if (LOGGER.isLoggable(Level.FINEST) && (compressionType != portToUse) ) {
@@ -744,7 +774,22 @@ public class AddeURLConnection extends URLConnection
     }
 
     // get response from server, byte count coming
+    readResponseSize();
+
+    // if we made it to here, we're getting data
+    connected = true;
+
+  }
 
+  /**
+   * Reads the byte count at the start of the response, unless the client
+   * asked for the raw stream.
+   *
+   * @throws AddeURLException  if the server returned an error
+   */
+  private void readResponseSize()
+    throws IOException
+  {
     if(!rawStream) {
       numBytes = dis.readInt();
       if (LOGGER.isLoggable(Level.FINEST)) {
@@ -753,16 +798,15 @@ public class AddeURLConnection extends URLConnection
 
       // if server returns zero, there was an error so read trailer and exit
       if (numBytes == 0) {
+        if (is instanceof AddeResponseCache.RecordingInputStream) {
+          ((AddeResponseCache.RecordingInputStream) is).abandon();
+        }
         byte [] trailer = new byte[TRAILER_SIZE];
         dis.readFully(trailer, 0, trailer.length);
         String errMsg = new String(trailer, ERRMSG_OFFS, ERRMSG_SIZE);
         throw new AddeURLException(errMsg);
       }
     }
-
-    // if we made it to here, we're getting data
-    connected = true;
-
   }
 
   private static char AMPERSAND = '&';
@@ -71,7 +71,10 @@ import javax.swing.SwingUtilities;
 import javax.swing.ToolTipManager;
 
 import com.formdev.flatlaf.FlatDarkLaf;
+import edu.wisc.ssec.adapter.TilePyramid;
 import edu.wisc.ssec.hydra.DataBrowser;
+import edu.wisc.ssec.hydra.GEOSLonLatTable;
+import edu.wisc.ssec.mcidas.adde.AddeResponseCache;
 import edu.wisc.ssec.mcidas.adde.AddeURL;
 import edu.wisc.ssec.mcidas.adde.AddeURLStreamHandler;
 
@@ -136,6 +139,7 @@ import edu.wisc.ssec.mcidasv.data.TropomiIOSP;
 import edu.wisc.ssec.mcidasv.chooser.McIdasChooserManager;
 import edu.wisc.ssec.mcidasv.control.LambertAEA;
 import edu.wisc.ssec.mcidasv.data.McvDataManager;
+import edu.wisc.ssec.mcidasv.data.hydra.GranuleIndex;
 import edu.wisc.ssec.mcidasv.monitors.MonitorManager;
 import edu.wisc.ssec.mcidasv.servermanager.AddeEntry.EntrySource;
 import edu.wisc.ssec.mcidasv.servermanager.AddeEntry.EntryStatus;
@@ -1080,6 +1084,8 @@ public class McIDASV extends IntegratedDataViewer {
      *   <li>Clearing out the automatic display creation arguments.</li>
      *   <li>Presence of certain properties on the commandline.</li>
      *   <li>Detection and handling of a crashed McIDAS-V session.</li>
+     *   <li>Default locations of the ADDE response cache and the
+     *   geostationary lon/lat tables.</li>
      *   <li>Run action specified by {@code -doaction} flag (if any).</li>
      *   <li>Allowing tooltips to remain visible for more than 4 seconds.</li>
      *   <li>Apply preferences</li>
@@ -1100,6 +1106,31 @@ public class McIDASV extends IntegratedDataViewer {
             getServerManager();
         }
         addeEntries.startLocalServer();
+
+        // keep remote ADDE responses under the user directory unless a
+        // cache directory was given on the commandline
+        if (System.getProperty(AddeResponseCache.PROP_DIR) == null) {
+            File addeCache = new File(getUserDirectory(), "addecache");
+            System.setProperty(AddeResponseCache.PROP_DIR, addeCache.getPath());
+        }
+
+        // likewise for the geostationary fixed grid lon/lat tables
+        if (System.getProperty(GEOSLonLatTable.PROP_DIR) == null) {
+            File geosTables = new File(getUserDirectory(), "geoslut");
+            System.setProperty(GEOSLonLatTable.PROP_DIR, geosTables.getPath());
+        }
+
+        // and for the fixed grid tile pyramids
+        if (System.getProperty(TilePyramid.PROP_DIR) == null) {
+            File geosTiles = new File(getUserDirectory(), "geostiles");
+            System.setProperty(TilePyramid.PROP_DIR, geosTiles.getPath());
+        }
+
+        // and for the JPSS granule indexes
+        if (System.getProperty(GranuleIndex.PROP_DIR) == null) {
+            File jpssIndex = new File(getUserDirectory(), "jpssindex");
+            System.setProperty(GranuleIndex.PROP_DIR, jpssIndex.getPath());
+        }
         
         estimate = System.nanoTime() - startTime;
         logger.info("estimated startup duration: {} ms", estimate / 1.0e6);
@@ -273,7 +273,6 @@ public class ScatterDisplay extends DisplayControlImpl {
                   X_field.getDomainSet());
 
         int len = X_field.getDomainSet().getLength();
-        int[] lens = ((Gridded2DSet)X_field.getDomainSet()).getLengths();
         mask_range = new float[1][len];
         for (int t=0; t<len; t++) {
           mask_range[0][t] = Float.NaN;
@@ -282,9 +281,7 @@ public class ScatterDisplay extends DisplayControlImpl {
         mask_field.setSamples(mask_range, false);
                                                                                                                                                   
         try {
-          int binSize = ((lens[0]*lens[1]/(256*256))*4)/10;
-          if (binSize < 2) binSize = 2;
-          histoField = new HistogramField(X_field, Y_field, mask_field, 256, binSize);
+          histoField = new HistogramField(X_field, Y_field, mask_field, 256);
         } catch (Exception e) {
           logger.error("Problem creating HistogramField", e);
         }
@@ -32,13 +32,24 @@ import java.awt.Image;
 import java.awt.Toolkit;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
 import java.rmi.RemoteException;
 
+import java.util.Arrays;
+
 import visad.CoordinateSystem;
 import visad.Data;
 import visad.FlatField;
@@ -49,6 +60,7 @@ import visad.RealTupleType;
 import visad.RealType;
 import visad.VisADException;
 import visad.util.ImageHelper;
+import visad.util.ParallelTasks;
 
 import ucar.unidata.data.BadDataException;
 import ucar.unidata.data.grid.GridUtil;
@@ -69,6 +81,12 @@ public class FlatFileReader {
     private static final Logger logger = 
         LoggerFactory.getLogger(FlatFileReader.class);
     
+    /** Binary reads are split into about this many line blocks per thread. */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    /** Largest span of a binary file mapped for one line block. */
+    private static final long MAX_MAP_BYTES = 256L * 1024 * 1024;
+
     /** The url */
     private String url = null;
 
@@ -260,6 +278,11 @@ public class FlatFileReader {
 
     /**
      * Read floats from a binary file.
+     *
+     * <p>The file is memory mapped in blocks of output lines, which are
+     * decoded in parallel. Offsets are {@code long}, so files and bands
+     * larger than 2 GB can be read. Any part of the image beyond the end of
+     * the file is set to {@code NaN}.</p>
      */
     private void readFloatsFromBinary() {
         logger.debug("preparing to read floats...");
@@ -286,112 +309,141 @@ public class FlatFileReader {
                 return;
         }
 
-        int curPixel = 0;
-        int curElement = 0;
-        int curLine = 0;
-        int lastRead = 0;
-        int readEach = 8192;
-        int startPointer = 0;
-        int endPointer = -1;
-        int pixelPointer = 0;
+        // file position of the first element of the band in line zero, the
+        // distance between lines and the distance between elements
+        long bandStart = this.offset;
+        long lineBytes;
+        int elementBytes;
+        if (this.interleave.equals(HeaderInfo.kInterleaveSequential)) {
+            bandStart += (this.band - 1) * ((long)this.lines * this.elements * bytesEach);
+            lineBytes = (long)this.elements * bytesEach;
+            elementBytes = bytesEach;
+        } else if (this.interleave.equals(HeaderInfo.kInterleaveByLine)) {
+            bandStart += (this.band - 1) * ((long)this.elements * bytesEach);
+            lineBytes = (long)this.bandCount * this.elements * bytesEach;
+            elementBytes = bytesEach;
+        } else if (this.interleave.equals(HeaderInfo.kInterleaveByPixel)) {
+            bandStart += (this.band - 1) * bytesEach;
+            lineBytes = (long)this.bandCount * this.elements * bytesEach;
+            elementBytes = this.bandCount * bytesEach;
+        } else {
+            logger.error("unrecognized interleave type: '{}'", interleave);
+            return;
+        }
 
         int readPixels = this.strideElements * this.strideLines;
         this.floatData = new float[readPixels];
-        byte[] readBytes = new byte[readEach];
 
-        try {
-            FileInputStream fis = new FileInputStream(url);
-
-            // byte boundaries
-            assert(readEach % 64 == 0);
-
-            // assure we read the first time
-            assert(endPointer < 0);
-
-            while ((curPixel < readPixels && curLine < lines && lastRead > 0) || curPixel == 0) {
-
-                pixelPointer = this.offset;
-                
-                if (this.interleave.equals(HeaderInfo.kInterleaveSequential)) {
-                    // Skip to the right band
-                    pixelPointer += (this.band - 1) * (this.lines * this.elements * bytesEach);
-                    // Skip into the band
-                    pixelPointer += (curLine * this.elements * bytesEach) + (curElement * bytesEach);
-                } else if (this.interleave.equals(HeaderInfo.kInterleaveByLine)) {
-                    // Skip to the right line
-                    pixelPointer += curLine * (this.bandCount * this.elements * bytesEach);
-                    // Skip into the line
-                    pixelPointer += ((this.band - 1) * this.elements * bytesEach) + (curElement * bytesEach);
-                } else if (this.interleave.equals(HeaderInfo.kInterleaveByPixel)) {
-                    // Skip to the right line
-                    pixelPointer += curLine * (this.bandCount * this.elements * bytesEach);
-                    // Skip into the line
-                    pixelPointer += (curElement * bandCount * bytesEach) + ((this.band - 1) * bytesEach);
-                } else {
-                    logger.error("unrecognized interleave type: '{}'", interleave);
-                }
+        // bytes spanned by the stride elements of one line
+        long lineSpan = (long)(this.strideElements - 1) * this.stride * elementBytes + bytesEach;
+
+        // enough blocks to keep every thread busy, each mapping a bounded span
+        int threads = Runtime.getRuntime().availableProcessors();
+        int blockLines = (int)Math.ceil((double)this.strideLines / (threads * BLOCKS_PER_THREAD));
+        long maxBlockLines = Math.max(1, MAX_MAP_BYTES / (lineBytes * this.stride));
+        blockLines = (int)Math.max(1, Math.min(blockLines, maxBlockLines));
+
+        try (FileChannel channel = FileChannel.open(Paths.get(url), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int eachBytes = bytesEach;
+            int linesEach = blockLines;
+            int numBlocks = (this.strideLines + blockLines - 1) / blockLines;
+            // the blocks wait on the file, so keep them off the common pool
+            ParallelTasks.map(ParallelTasks.getIOPool(), numBlocks, b -> {
+                int firstLine = b * linesEach;
+                int lastLine = Math.min(firstLine + linesEach, this.strideLines) - 1;
+                readBinaryBlock(channel, fileSize, firstLine, lastLine, bandStart,
+                                lineBytes, elementBytes, lineSpan, eachBytes);
+                return null;
+            }, null);
+            logger.debug("read {} floats", readPixels);
 
-                // We need data outside of our buffer
-                if (pixelPointer > endPointer) {
+        } catch (NumberFormatException exc) {
+            throw new BadDataException("Error parsing binary file", exc);
+        } catch (IOException | RuntimeException e) {
+            throw new BadDataException("Error reading binary file: " + url, e);
+        }
+    }
 
-                    // Skip ahead to useful data
-                    int skipBytes = pixelPointer - endPointer - 1;
-                    if (skipBytes > 0) {
-                        logger.trace("skipping {} bytes", skipBytes);
-                        startPointer += lastRead + fis.skip(skipBytes);
-                        endPointer = startPointer;
+    /**
+     * Decode output lines {@code firstLine} through {@code lastLine} (in
+     * strided line coordinates) into {@link #floatData}.
+     */
+    private void readBinaryBlock(FileChannel channel, long fileSize, int firstLine,
+                                 int lastLine, long bandStart, long lineBytes,
+                                 int elementBytes, long lineSpan, int bytesEach)
+        throws IOException
+    {
+        long blockStart = bandStart + (long)firstLine * this.stride * lineBytes;
+        long blockEnd = bandStart + (long)lastLine * this.stride * lineBytes + lineSpan;
+        long mapEnd = Math.min(blockEnd, fileSize);
+        MappedByteBuffer block = null;
+        if (mapEnd > blockStart) {
+            block = channel.map(FileChannel.MapMode.READ_ONLY, blockStart, mapEnd - blockStart);
+        }
+        ByteOrder order = this.bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+        // distance between wanted elements, in values
+        int step = this.stride * elementBytes / bytesEach;
+        int count = this.strideElements;
+        short[] shorts = (step == 1 && bytesEach == 2) ? new short[count] : null;
+        int[] ints = (step == 1 && this.myFormat == HeaderInfo.kFormat4ByteSInt) ? new int[count] : null;
+
+        for (int line = firstLine; line <= lastLine; line++) {
+            int dest = line * count;
+            long start = (long)(line - firstLine) * this.stride * lineBytes;
+            if (block == null || start + lineSpan > block.capacity()) {
+                // past the end of the file
+                Arrays.fill(this.floatData, dest, dest + count, Float.NaN);
+                continue;
+            }
+            ByteBuffer bytes = ((ByteBuffer)block.duplicate().position((int)start)).slice().order(order);
+            switch (this.myFormat) {
+                case HeaderInfo.kFormat1ByteUInt:
+                    for (int i = 0; i < count; i++) {
+                        this.floatData[dest + i] = bytes.get(i * step) & 0xff;
                     }
-
-                    // Read more bytes 
-                    lastRead = fis.read(readBytes);
-                    if (startPointer != endPointer) {
-                        startPointer = endPointer + 1;
+                    break;
+                case HeaderInfo.kFormat2ByteUInt:
+                case HeaderInfo.kFormat2ByteSInt:
+                    // signed values are stored offset by 32768
+                    int bias = (this.myFormat == HeaderInfo.kFormat2ByteSInt) ? 32768 : 0;
+                    ShortBuffer sb = bytes.asShortBuffer();
+                    if (shorts != null) {
+                        sb.get(shorts, 0, count);
+                        for (int i = 0; i < count; i++) {
+                            this.floatData[dest + i] = (shorts[i] & 0xffff) - bias;
+                        }
+                    } else {
+                        for (int i = 0; i < count; i++) {
+                            this.floatData[dest + i] = (sb.get(i * step) & 0xffff) - bias;
+                        }
                     }
-                    endPointer = startPointer + lastRead - 1;
-                    logger.trace("read {} bytes, from {}", lastRead, startPointer);
-
-                }
-
-                int readOffset = pixelPointer - startPointer;
-                float readFloat = 0.0f;
-                
-                switch (this.myFormat) {
-                    case HeaderInfo.kFormat1ByteUInt:
-                        readFloat = (float)bytesTo1ByteUInt(readBytes, readOffset);
-                        break;
-                    case HeaderInfo.kFormat2ByteUInt:
-                        int newInt = bytesTo2ByteUInt(readBytes, readOffset);
-                        if (this.bigEndian) {
-                            newInt = (((newInt & 0xff) << 8) | ((newInt & 0xff00) >> 8));
+                    break;
+                case HeaderInfo.kFormat4ByteSInt:
+                    IntBuffer ib = bytes.asIntBuffer();
+                    if (ints != null) {
+                        ib.get(ints, 0, count);
+                        for (int i = 0; i < count; i++) {
+                            this.floatData[dest + i] = ints[i];
                         }
-                        readFloat = (float)newInt;
-                        break;
-                    case HeaderInfo.kFormat2ByteSInt:
-                        readFloat = (float)bytesTo2ByteSInt(readBytes, readOffset);
-                        break;
-                    case HeaderInfo.kFormat4ByteSInt:
-                        readFloat = (float)bytesTo4ByteSInt(readBytes, readOffset);
-                        break;
-                    case HeaderInfo.kFormat4ByteFloat:
-                        readFloat = bytesTo4ByteFloat(readBytes, readOffset);
-                        break;
-                }
-                this.floatData[curPixel++] = readFloat;
-
-                curElement += stride;
-                if (curElement >= elements) {
-                    curElement = 0;
-                    curLine += stride;
-                }
+                    } else {
+                        for (int i = 0; i < count; i++) {
+                            this.floatData[dest + i] = ib.get(i * step);
+                        }
+                    }
+                    break;
+                case HeaderInfo.kFormat4ByteFloat:
+                    FloatBuffer fb = bytes.asFloatBuffer();
+                    if (step == 1) {
+                        fb.get(this.floatData, dest, count);
+                    } else {
+                        for (int i = 0; i < count; i++) {
+                            this.floatData[dest + i] = fb.get(i * step);
+                        }
+                    }
+                    break;
             }
-
-            fis.close();
-            logger.debug("read {} floats (expected {})", curPixel, readPixels);
-
-        } catch (NumberFormatException exc) {
-            throw new BadDataException("Error parsing binary file", exc);
-        } catch (Exception e) {
-            throw new BadDataException("Error reading binary file: " + url, e);
         }
     }
 
@@ -778,41 +830,6 @@ public class FlatFileReader {
     // byte[] conversion functions
     // TODO: are these replicated elsewhere in McV?
 
-    private static int bytesTo1ByteUInt(byte[] bytes, int offset) {
-        return bytes[offset] & 0xff;
-    }
-
-    private static int bytesTo2ByteUInt(byte[] bytes, int offset) {
-        int accum = 0;
-        for ( int shiftBy = 0; shiftBy < 16; shiftBy += 8 ) {
-            accum |= ((long)(bytes[offset] & 0xff)) << shiftBy;
-            offset++;
-        }
-        return accum;
-    }
-
-    private static int bytesTo2ByteSInt(byte[] bytes, int offset) {
-        return bytesTo2ByteUInt(bytes, offset) - 32768;
-    }
-
-    private static int bytesTo4ByteSInt(byte[] bytes, int offset) {
-        int accum = 0;
-        for ( int shiftBy = 0; shiftBy < 32; shiftBy += 8 ) {
-            accum |= ((long)(bytes[offset] & 0xff)) << shiftBy;
-            offset++;
-        }
-        return accum;
-    }
-
-    private static float bytesTo4ByteFloat(byte[] bytes, int offset) {
-        int accum = 0;
-        for ( int shiftBy = 0; shiftBy < 32; shiftBy += 8 ) {
-            accum |= ((long)(bytes[offset] & 0xff)) << shiftBy;
-            offset++;
-        }
-        return Float.intBitsToFloat(accum);
-    }
-
     private static long bytesToLong(byte[] bytes) {
         if (bytes.length != 4) {
             return 0;
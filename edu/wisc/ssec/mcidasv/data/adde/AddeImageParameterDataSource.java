@@ -51,6 +51,8 @@ import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 import javax.swing.BoxLayout;
 import javax.swing.JCheckBox;
@@ -93,6 +95,7 @@ import visad.georef.MapProjection;
 import visad.meteorology.ImageSequence;
 import visad.meteorology.ImageSequenceImpl;
 import visad.meteorology.SingleBandedImage;
+import visad.util.ThreadManager;
 
 import ucar.unidata.data.BadDataException;
 import ucar.unidata.data.CompositeDataChoice;
@@ -199,6 +202,9 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
 
     private String displaySource;
 
+    /** Guards the image list and display source for the reader threads */
+    private final Object imageListLock = new Object();
+
     // keep track of extra info for derived fields, since they may be a mix of bands and resolutions
     boolean isDerived = false;
     HashMap<Integer, Double> derivedBandLineRes = new HashMap<Integer, Double>();
@@ -207,6 +213,9 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
 
     protected List<DataChoice> stashedChoices = null;
     private List iml = new ArrayList();
+
+    /** Concurrent image requests allowed per ADDE server. */
+    private static final Map<String, Semaphore> serverPermits = new ConcurrentHashMap<>();
     private List saveImageList = new ArrayList();
 
     private int previewLineRes = 1;
@@ -2002,6 +2011,7 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
                 currentDirs = null;
             }
 
+            ThreadManager threadManager = new ThreadManager("image data reading");
             int cnt = 1;
             DataChoice parent = dataChoice.getParent();
             final List<SingleBandedImage> images = new ArrayList<SingleBandedImage>();
@@ -2063,23 +2073,60 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
                     }
                 }
 
-                try {
-                    SingleBandedImage image = makeImage(aid, rangeType, true, readLabel, subset);
-                    if (image != null) {
-                        if(rangeType==null) {
+                if (rangeType == null) {
+                    // read the first time on this thread so the rest can reuse its range type
+                    try {
+                        SingleBandedImage image = makeImage(aid, rangeType, true, readLabel, subset);
+                        if (image != null) {
                             rangeType = ((FunctionType) image.getType()).getRange();
+                            synchronized (images) {
+                                images.add(image);
+                            }
                         }
-                        synchronized (images) {
-                            images.add(image);
-                        }
+                    } catch (VisADException e) {
+                        logger.error("avoiding visad exception: ",e);
+                    } catch (RemoteException e) {
+                        logger.error("avoiding remote exception: ", e);
                     }
-                } catch (VisADException e) {
-                    logger.error("avoiding visad exception: ",e);
-                } catch (RemoteException e) {
-                    logger.error("avoiding remote exception: ", e);
+                } else {
+                    final MathType sharedRangeType = rangeType;
+                    final Semaphore permits = isFromFile(aid) ? null : getServerPermits(getServer(aid.getSource()));
+                    threadManager.addRunnable(new ThreadManager.MyRunnable() {
+                        public void run() throws Exception {
+                            if (permits != null) {
+                                permits.acquire();
+                            }
+                            try {
+                                SingleBandedImage image = makeImage(aid, sharedRangeType, true, readLabel, subset);
+                                if (image != null) {
+                                    synchronized (images) {
+                                        images.add(image);
+                                    }
+                                }
+                            } catch (VisADException e) {
+                                logger.error("avoiding visad exception: ",e);
+                            } catch (RemoteException e) {
+                                logger.error("avoiding remote exception: ", e);
+                            } finally {
+                                if (permits != null) {
+                                    permits.release();
+                                }
+                            }
+                        }
+                    });
                 }
             }
 
+            try {
+                threadManager.runInParallel(getMaxFetchThreads());
+            } catch (VisADException ve) {
+                logger.error("reading image sequence: ", ve);
+            }
+            if (images.isEmpty()) {
+                return null;
+            }
+
+            // frames arrive in any order; the time map puts them back in sequence
             TreeMap imageMap = new TreeMap();
             for (SingleBandedImage image : images) {
                 imageMap.put(image.getStartTime(), image);
@@ -2195,7 +2242,9 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
         SingleBandedImage result;
         result = (SingleBandedImage)getCache(src);
         if (result != null) {
-            setDisplaySource(src, props);
+            synchronized (imageListLock) {
+                setDisplaySource(src, props);
+            }
             return result;
         }
 
@@ -2257,40 +2306,49 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
 
             } else {
                 src = aid.getSource();
+                // makeImage runs on the image sequence reader threads, so
+                // work from a local copy of the saved selection
+                String place = savePlace;
+                double lat = saveLat;
+                double lon = saveLon;
+                int numLine = saveNumLine;
+                int numEle = saveNumEle;
+                int lineMag = saveLineMag;
+                int eleMag = saveEleMag;
                 try {
-                    savePlace = this.laLoSel.getPlace();
-                    saveLat = this.laLoSel.getLatitude();
-                    saveLon = this.laLoSel.getLongitude();
-                    saveNumLine = this.laLoSel.getNumLines();
-                    saveNumEle = this.laLoSel.getNumEles();
-                    saveLineMag = this.laLoSel.getLineMag();
-                    saveEleMag = this.laLoSel.getElementMag();
+                    place = this.laLoSel.getPlace();
+                    lat = this.laLoSel.getLatitude();
+                    lon = this.laLoSel.getLongitude();
+                    numLine = this.laLoSel.getNumLines();
+                    numEle = this.laLoSel.getNumEles();
+                    lineMag = this.laLoSel.getLineMag();
+                    eleMag = this.laLoSel.getElementMag();
                 } catch (Exception e) {
                     logger.error("error reading from laLoSel", e);
-                    this.laLoSel.setPlace(savePlace);
-                    this.laLoSel.setLatitude(saveLat);
-                    this.laLoSel.setLongitude(saveLon);
-                    this.laLoSel.setNumLines(saveNumLine);
-                    this.laLoSel.setNumEles(saveNumEle);
-                    this.laLoSel.setLineMag(saveLineMag);
-                    this.laLoSel.setElementMag(saveEleMag);
+                    this.laLoSel.setPlace(place);
+                    this.laLoSel.setLatitude(lat);
+                    this.laLoSel.setLongitude(lon);
+                    this.laLoSel.setNumLines(numLine);
+                    this.laLoSel.setNumEles(numEle);
+                    this.laLoSel.setLineMag(lineMag);
+                    this.laLoSel.setElementMag(eleMag);
                 }
 
-                src = replaceKey(src, PLACE_KEY, savePlace);
+                src = replaceKey(src, PLACE_KEY, place);
                 src = removeKey(src, LINELE_KEY);
                 if (getKey(src, LATLON_KEY).length() != 0) {
-                    String latStr = Double.toString(saveLat);
+                    String latStr = Double.toString(lat);
                     if (latStr.length() > 8) {
                         latStr = latStr.substring(0,7);
                     }
-                    String lonStr = Double.toString(saveLon);
+                    String lonStr = Double.toString(lon);
                     if (lonStr.length() > 9) {
                         lonStr = lonStr.substring(0,8);
                     }
                     src = replaceKey(src, LATLON_KEY, latStr + ' ' + lonStr);
                 }
-                src = replaceKey(src, SIZE_KEY, saveNumLine + ' ' + saveNumEle);
-                src = replaceKey(src, MAG_KEY, saveLineMag + ' ' + saveEleMag);
+                src = replaceKey(src, SIZE_KEY, numLine + ' ' + numEle);
+                src = replaceKey(src, MAG_KEY, lineMag + ' ' + eleMag);
             }
 
             // Relative bundles actually have the correct line/elem stored, at the time they were saved
@@ -2307,9 +2365,13 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
 
             putCache(src, result);
             aid.setSource(src);
-            iml.add(aid);
-            setImageList(iml);
-            setDisplaySource(src, props);
+            // not the data source monitor: getData holds it while it waits
+            // for the reader threads
+            synchronized (imageListLock) {
+                iml.add(aid);
+                setImageList(iml);
+                setDisplaySource(src, props);
+            }
             return result;
 
         } catch (java.io.IOException ioe) {
@@ -3063,6 +3125,33 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
         return descriptor;
     }
 
+    /**
+     * Number of image reads {@link #makeImageSequence(DataChoice, DataSelection)}
+     * may run at once.
+     *
+     * @return {@link ucar.unidata.idv.IntegratedDataViewer#getMaxDataThreadCount()},
+     * or {@code 1} if there is no IDV.
+     */
+    private int getMaxFetchThreads() {
+        if ((getDataContext() == null) || (getIdv() == null)) {
+            return 1;
+        }
+        return Math.max(1, getIdv().getMaxDataThreadCount());
+    }
+
+    /**
+     * Limits the number of concurrent image requests sent to one ADDE
+     * server, across every data source in this session.
+     *
+     * @param server Server (host, possibly with port) of the request.
+     *
+     * @return Permits shared by all requests to {@code server}.
+     */
+    private Semaphore getServerPermits(String server) {
+        int max = getMaxFetchThreads();
+        return serverPermits.computeIfAbsent(server, k -> new Semaphore(max));
+    }
+
     private String getServer(String urlString) {
         int ix = urlString.indexOf("//") + 2;
         String temp = urlString.substring(ix);
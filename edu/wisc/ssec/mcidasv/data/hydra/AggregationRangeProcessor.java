@@ -73,6 +73,19 @@ public class AggregationRangeProcessor extends RangeProcessor {
 		rngIdx = index;
 	}
 
+	/**
+	 * Get the RangeProcessor for a single granule. Unlike
+	 * {@link #setWhichRangeProcessor(int)} this does not change any state,
+	 * so granules can be processed from several threads at once.
+	 *
+	 * @param index granule index
+	 *
+	 * @return the granule's RangeProcessor
+	 */
+	public RangeProcessor getRangeProcessor(int index) {
+		return rangeProcessors.get(index);
+	}
+
 	public synchronized void setMultiScaleIndex(int idx) {
 		rangeProcessors.get(rngIdx).setMultiScaleIndex(idx);
 	}
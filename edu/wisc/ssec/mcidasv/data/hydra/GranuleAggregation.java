@@ -51,6 +51,8 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 
+import visad.util.ParallelTasks;
+
 /**
  * Provides a view and operations on a set of contiguous data granules as if they 
  * were a single granule.
@@ -98,6 +100,12 @@ public class GranuleAggregation implements MultiDimensionReader {
    // variable can have bulk array processor set by the application
    Map<String, RangeProcessor> varToRangeProcessor = new HashMap<>();
    
+   // files in each granule's union, in order, if known; used to keep the
+   // cut scans in the GranuleIndex
+   private List<List<String>> granuleFiles = null;
+
+   private static boolean doParallel = true;
+
    private int granuleCount = -1;
    private String inTrackDimensionName = null;
    private String inTrackGeoDimensionName = null;
@@ -107,10 +115,44 @@ public class GranuleAggregation implements MultiDimensionReader {
    // assume we are working with VIIRS, will toggle if not
    private boolean isVIIRS = true;
 
+   /**
+    * Enable or disable reading the granules of a request concurrently.
+    * Each granule is still read under its own reader's lock.
+    *
+    * @param enable {@code true} to read granules in parallel
+    */
+   public static void setDoParallel(boolean enable) {
+	   doParallel = enable;
+   }
+
    public GranuleAggregation(List<NetCDFFile> ncdfal, Set<String> products,
 		   String inTrackDimensionName, String inTrackGeoDimensionName, 
 		   String crossTrackDimensionName, boolean isVIIRS) throws Exception {
+	   this(ncdfal, products, inTrackDimensionName, inTrackGeoDimensionName,
+		   crossTrackDimensionName, isVIIRS, null);
+   }
+
+   /**
+    * @param granuleFiles Files in each granule's union, in the order of
+    *        {@code ncdfal}. When given, the cut scans of each granule are
+    *        kept in the {@link GranuleIndex} and read from there while the
+    *        files are unchanged. May be {@code null}.
+    */
+   public GranuleAggregation(List<NetCDFFile> ncdfal, Set<String> products,
+		   String inTrackDimensionName, String crossTrackDimensionName, boolean isVIIRS,
+		   List<List<String>> granuleFiles) throws Exception {
+	   this(ncdfal, products, inTrackDimensionName, inTrackDimensionName,
+		   crossTrackDimensionName, isVIIRS, granuleFiles);
+   }
+
+   private GranuleAggregation(List<NetCDFFile> ncdfal, Set<String> products,
+		   String inTrackDimensionName, String inTrackGeoDimensionName, 
+		   String crossTrackDimensionName, boolean isVIIRS,
+		   List<List<String>> granuleFiles) throws Exception {
 	   if (ncdfal == null) throw new Exception("No data: empty Suomi NPP aggregation object");
+	   if (granuleFiles != null && granuleFiles.size() == ncdfal.size()) {
+		   this.granuleFiles = granuleFiles;
+	   }
 	   this.inTrackDimensionName = inTrackDimensionName;
 	   this.crossTrackDimensionName = crossTrackDimensionName;
 	   this.inTrackGeoDimensionName = inTrackGeoDimensionName;
@@ -250,6 +292,105 @@ public class GranuleAggregation implements MultiDimensionReader {
 	   }
    }
 
+   /**
+    * Look through a VIIRS granule's latitudes for cut (fill) scans.
+    *
+    * @param ncfile Granule to check.
+    * @param al Receives the 2D ranges of good data when scans were cut.
+    *
+    * @return Number of scans cut.
+    *
+    * @throws Exception if the latitudes cannot be read.
+    */
+   private static int findCutScans(NetcdfFile ncfile, List<Range> al) throws Exception {
+	   int cutScanCount = 0;
+	   for (Variable var : ncfile.getVariables()) {
+		   // look through lat grid, look for missing scans
+		   String varName = var.getShortName();
+		   if (varName.endsWith("Latitude")) {
+			   // iterate through the scan lines, looking for fill lines
+			   // NOTE: we only need to check the first column! so set
+			   // up an appropriate Range to cut the read down significantly
+			   int[] shape = var.getShape();
+			   List<Range> alr = new ArrayList<>();
+			   alr.add(new Range(0, shape[0] - 1, 1));
+			   alr.add(new Range(0, 1, 1));
+			   Array a = var.read(alr);
+			   int granLength = shape[0];
+			   int scanLength = shape[1];
+			   Index index = a.getIndex();
+			   float fVal = 0.0f;
+
+			   int rangeOffset = 0;
+			   boolean prvScanWasCut = false;
+			   boolean needClosingRange = false;
+			   boolean hadCutRanges = false;
+			   boolean someMissing = false;
+
+			   for (int i = 0; i < shape[0]; i++) {
+
+				   someMissing = false;
+				   fVal = a.getFloat(index.set(i, 0));
+				   if (fVal < -90.0f) {
+					   someMissing = true;
+				   }
+
+				   if (someMissing) {
+					   hadCutRanges = true;
+					   cutScanCount++;
+					   logger.trace("Found a cut scan " + i + ", last val: " + fVal);
+					   if ((prvScanWasCut) || (i == 0)) {
+						   if (i == 0) {
+							   rangeOffset = 0;
+						   } else {
+							   rangeOffset = i + 1;
+						   }
+					   } else {
+						   try {
+							   // We are using 2D ranges
+							   logger.trace("Adding Range: " + rangeOffset
+									   + ", " + (i - 1) + ", 1");
+							   al.add(new Range(rangeOffset, i - 1, 1));
+							   logger.trace("Adding Range: " + 0 + ", "
+									   + (scanLength - 1) + ", 1");
+							   al.add(new Range(0, scanLength - 1, 1));
+						   } catch (Exception e) {
+						   	  logger.trace("problem creating range", e);
+						   }
+						   rangeOffset = i;
+					   }
+					   prvScanWasCut = true;
+				   } else {
+					   prvScanWasCut = false;
+				   }
+
+				   // check to see if closing Range needed, good data at end
+				   if ((! prvScanWasCut) && (i == (granLength - 1))) {
+				       if (hadCutRanges) {
+					      needClosingRange = true;
+				       }
+				   }
+			   }
+
+			   if (needClosingRange) {
+				   // We are using 2D ranges
+                           logger.trace("Adding closing cut range: " + rangeOffset + ", " + (shape[0] - 1) + ", 1");
+				   al.add(new Range(rangeOffset, shape[0] - 1, 1));
+				   al.add(new Range(0, scanLength - 1, 1));
+			   }
+
+			   // if only one contiguous range, process as a normal clean granule
+			   if (! hadCutRanges) {
+				   al.clear();
+			   }
+
+			   logger.debug("Total scans cut this granule: " + cutScanCount);
+
+		   }
+	   }
+	   return cutScanCount;
+   }
+
    private void init(List<NetCDFFile> ncdfal) throws Exception {
 	   
 	   logger.debug("init in...");
@@ -269,13 +410,6 @@ public class GranuleAggregation implements MultiDimensionReader {
 	   
 	   NetcdfFile ncfile = null;
 	   for (int ncIdx = 0; ncIdx < nclist.size(); ncIdx++) {
-		   
-		   // good place to initialize the cut Range ArrayList for each granule
-		   Integer granuleIndex = Integer.valueOf(ncIdx);
-		   List<Range> al = new ArrayList<>();
-
-		   int cutScanCount = 0;
-		   
 		   ncfile = nclist.get(ncIdx); 
 		   
 		   Iterator<Variable> varIter = ncfile.getVariables().iterator();
@@ -284,103 +418,63 @@ public class GranuleAggregation implements MultiDimensionReader {
 			   logger.trace("Variable " + var.getShortName() + ", Rank: " + var.getRank());
 			   varAggrDimLengths.put(var.getFullName(), new int[var.getRank()]);
 			   varGranInTrackLengths.put(var.getFullName(), new HashMap<>());
-			   
-			   // Here, let's try to check the data for EDR fill lines
-			   // and if found, try to handle it by simply adjusting the dimensions
-			   // for this granule.  Sound like a plan?  We'll see...
-			   
-			   // TJJ May 2016 
-			   // "simply adjusting the dimensions" he says
-			   // Anyway, we now do this check for EDRs and SDRs, it can manifest for both
-			   
-			   if (isVIIRS) {
-				   
-				   // look through lat grid, look for missing scans
-				   String varName = var.getShortName();
-				   if (varName.endsWith("Latitude")) {
-					   // iterate through the scan lines, looking for fill lines
-					   // NOTE: we only need to check the first column! so set
-					   // up an appropriate Range to cut the read down significantly
-					   int[] shape = var.getShape();
-					   List<Range> alr = new ArrayList<>();
-					   alr.add(new Range(0, shape[0] - 1, 1));
-					   alr.add(new Range(0, 1, 1));
-					   Array a = var.read(alr);
-					   int granLength = shape[0];
-					   int scanLength = shape[1];
-					   Index index = a.getIndex();
-					   float fVal = 0.0f;
-
-					   int rangeOffset = 0;
-					   boolean prvScanWasCut = false;
-					   boolean needClosingRange = false;
-					   boolean hadCutRanges = false;
-					   boolean someMissing = false;
-
-					   for (int i = 0; i < shape[0]; i++) {
-
-						   someMissing = false;
-						   fVal = a.getFloat(index.set(i, 0));
-						   if (fVal < -90.0f) {
-							   someMissing = true;
-						   }
-
-						   if (someMissing) {
-							   hadCutRanges = true;
-							   cutScanCount++;
-							   logger.trace("Found a cut scan " + i + ", last val: " + fVal);
-							   if ((prvScanWasCut) || (i == 0)) {
-								   if (i == 0) {
-									   rangeOffset = 0;
-								   } else {
-									   rangeOffset = i + 1;
-								   }
-							   } else {
-								   try {
-									   // We are using 2D ranges
-									   logger.trace("Adding Range: " + rangeOffset
-											   + ", " + (i - 1) + ", 1");
-									   al.add(new Range(rangeOffset, i - 1, 1));
-									   logger.trace("Adding Range: " + 0 + ", "
-											   + (scanLength - 1) + ", 1");
-									   al.add(new Range(0, scanLength - 1, 1));
-								   } catch (Exception e) {
-								   	  logger.trace("problem creating range", e);
-								   }
-								   rangeOffset = i;
-							   }
-							   prvScanWasCut = true;
-						   } else {
-							   prvScanWasCut = false;
-						   }
-
-						   // check to see if closing Range needed, good data at end
-						   if ((! prvScanWasCut) && (i == (granLength - 1))) {
-						       if (hadCutRanges) {
-							      needClosingRange = true;
-						       }
-						   }
-					   }
-
-					   if (needClosingRange) {
-						   // We are using 2D ranges
-                           logger.trace("Adding closing cut range: " + rangeOffset + ", " + (shape[0] - 1) + ", 1");
-						   al.add(new Range(rangeOffset, shape[0] - 1, 1));
-						   al.add(new Range(0, scanLength - 1, 1));
-					   }
-
-					   // if only one contiguous range, process as a normal clean granule
-					   if (! hadCutRanges) {
-						   al.clear();
-					   }
-
-					   logger.debug("Total scans cut this granule: " + cutScanCount);
+		   }
+	   }
 
-				   }
+	   // Here, let's try to check the data for EDR fill lines
+	   // and if found, try to handle it by simply adjusting the dimensions
+	   // for this granule.  Sound like a plan?  We'll see...
+
+	   // TJJ May 2016 
+	   // "simply adjusting the dimensions" he says
+	   // Anyway, we now do this check for EDRs and SDRs, it can manifest for both
+
+	   // granules whose files are unchanged since their cut scans were
+	   // indexed skip reading the latitudes; each of the rest reads only
+	   // its own latitudes, so they can be checked concurrently
+	   List<List<Range>> cutRanges = new ArrayList<>(granuleCount);
+	   int[] cutScanCounts = new int[granuleCount];
+	   for (int ncIdx = 0; ncIdx < granuleCount; ncIdx++) {
+		   cutRanges.add(new ArrayList<>());
+	   }
+	   if (isVIIRS) {
+		   List<GranuleIndex.CutScans> known = (granuleFiles == null)
+			   ? null : GranuleIndex.loadCutScans(granuleFiles);
+		   List<GranuleIndex.CutScans> found = new ArrayList<>(granuleCount);
+		   List<Integer> unknown = new ArrayList<>();
+		   for (int ncIdx = 0; ncIdx < granuleCount; ncIdx++) {
+			   GranuleIndex.CutScans cs = (known == null) ? null : known.get(ncIdx);
+			   if (cs != null && cs.fits(nclist.get(ncIdx))) {
+				   cutScanCounts[ncIdx] = cs.apply(cutRanges.get(ncIdx));
+			   } else {
+				   unknown.add(ncIdx);
 			   }
+			   found.add(null);
 		   }
-		   granCutScans.put(granuleIndex, Integer.valueOf(cutScanCount));
-	       granCutRanges.put(granuleIndex, al);
+		   logger.debug("{} of {} granules' cut scans from index",
+			   granuleCount - unknown.size(), granuleCount);
+		   if (doParallel) {
+			   ParallelTasks.map(ParallelTasks.getIOPool(), unknown.size(), i -> {
+				   int ncIdx = unknown.get(i);
+				   cutScanCounts[ncIdx] = findCutScans(nclist.get(ncIdx), cutRanges.get(ncIdx));
+				   return null;
+			   }, null);
+		   } else {
+			   for (int ncIdx : unknown) {
+				   cutScanCounts[ncIdx] = findCutScans(nclist.get(ncIdx), cutRanges.get(ncIdx));
+			   }
+		   }
+		   if (granuleFiles != null && ! unknown.isEmpty()) {
+			   for (int ncIdx : unknown) {
+				   found.set(ncIdx, GranuleIndex.CutScans.of(granuleFiles.get(ncIdx),
+					   nclist.get(ncIdx), cutScanCounts[ncIdx], cutRanges.get(ncIdx)));
+			   }
+			   GranuleIndex.storeCutScans(granuleFiles, found);
+		   }
+	   }
+	   for (int ncIdx = 0; ncIdx < granuleCount; ncIdx++) {
+		   granCutScans.put(Integer.valueOf(ncIdx), Integer.valueOf(cutScanCounts[ncIdx]));
+		   granCutRanges.put(Integer.valueOf(ncIdx), cutRanges.get(ncIdx));
 	   }
 	   
 	   for (int ncIdx = 0; ncIdx < nclist.size(); ncIdx++) {
@@ -593,7 +687,7 @@ public class GranuleAggregation implements MultiDimensionReader {
 	   return index;
    }
    
-   private synchronized Object readArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
+   private Object readArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
 	   
 	   String mapName = array_name;
 	   array_name = mapNameIfQualityFlag(array_name);
@@ -744,84 +838,31 @@ public class GranuleAggregation implements MultiDimensionReader {
 		   }
 	   }
 	   
+	   // build the ranges for each granule up front; their sizes give each
+	   // granule's offset in the final array before anything is read
+	   List<List<Range>> granRanges = new ArrayList<>(granuleSpan);
+	   int[] granOffsets = new int[granuleSpan];
 	   int totalLength = 0;
-	   int rangeListCount = 0;
-	   List<Array> arrayList = new ArrayList<>();
-	   for (int granuleIdx = 0; granuleIdx < granuleCount; granuleIdx++) {
-		   if ((granuleIdx >= loGranuleId) && (granuleIdx <= hiGranuleId)) {
-			   Variable var = varMapList.get(loGranuleId + (granuleIdx-loGranuleId)).get(array_name);
-
-			   if (var instanceof Structure) {
-				   // what to do here?
-			   } else {
-				   List<Range> rangeList = new ArrayList<>();
-				   for (int dimensionIdx = 0; dimensionIdx < dimensionCount; dimensionIdx++) {
-					   logger.debug("Creating new Range: " + startSet[rangeListCount][dimensionIdx] +
-							   ", " + (startSet[rangeListCount][dimensionIdx] + countSet[rangeListCount][dimensionIdx] - 1) + ", " + strideSet[rangeListCount][dimensionIdx]);
-					   Range range = new Range(
-							   startSet[rangeListCount][dimensionIdx], 
-							   startSet[rangeListCount][dimensionIdx] + countSet[rangeListCount][dimensionIdx] - 1,
-							   strideSet[rangeListCount][dimensionIdx]
-					   );
-					   rangeList.add(dimensionIdx, range);
-				   }
-				   rangeListCount++;
-				   
-				   // If there were chunks of fill data to remove...
-				   List<Range> al = granCutRanges.get(Integer.valueOf(granuleIdx));
-				   if (! al.isEmpty()) {
-					   List<Variable> varChunks = new ArrayList<>();
-					   for (int rangeCount = 0; rangeCount < al.size(); rangeCount+=2) {
-						   List<Range> rl = new ArrayList<>();
-						   rl.add(al.get(rangeCount));
-						   rl.add(al.get(rangeCount + 1));
-						   varChunks.add(var.section(rl));
-					   }
-
-					   int [] newShape = var.getShape();
-					   int cutScans = granCutScans.get(granuleIdx);
-					   newShape[0] = newShape[0] - cutScans;
-					   logger.trace("New Shape: " + newShape[0] + ", " + newShape[1]);
-					   Array single = Array.factory(var.getDataType(), newShape);
-
-					   // now read variable chunk data into single contiguous array
-					   int idx = 0;
-					   for (Variable v : varChunks) {
-						   Array data = v.read();
-						   int [] tmpShape = v.getShape();
-						   for (int tIdx = 0; tIdx < tmpShape.length; tIdx++) {
-							   logger.trace("Shape[" + tIdx + "]: " + tmpShape[tIdx]);
-						   }
-						   IndexIterator ii = data.getIndexIterator();
-						   while (ii.hasNext()) {
-							   single.setFloat(idx, ii.getFloatNext());
-							   idx++;
-						   }
-					   }
-
-					   // finally, apply subset ranges
-					   logger.debug("Size of cut src array: " + single.getSize());
-					   Array subarray = single.section(rangeList);
-					   totalLength += subarray.getSize();
-					   arrayList.add(subarray);
-					   logger.debug("Size of cut sub array: " + subarray.getSize());
-
-				   } else {
-					   Array subarray = var.read(rangeList);
-					   totalLength += subarray.getSize();
-					   logger.debug("Size of reg sub array: " + subarray.getSize());
-					   arrayList.add(subarray);
-				   }
-				   
-			   }
-			   // put in an empty ArrayList placeholder to retain a slot for each granule
-		   } else {
-			   Array emptyArray = null;
-			   arrayList.add(emptyArray);
+	   for (int i = 0; i < granuleSpan; i++) {
+		   List<Range> rangeList = new ArrayList<>();
+		   int granLength = 1;
+		   for (int dimensionIdx = 0; dimensionIdx < dimensionCount; dimensionIdx++) {
+			   logger.debug("Creating new Range: " + startSet[i][dimensionIdx] +
+					   ", " + (startSet[i][dimensionIdx] + countSet[i][dimensionIdx] - 1) + ", " + strideSet[i][dimensionIdx]);
+			   Range range = new Range(
+					   startSet[i][dimensionIdx], 
+					   startSet[i][dimensionIdx] + countSet[i][dimensionIdx] - 1,
+					   strideSet[i][dimensionIdx]
+			   );
+			   rangeList.add(dimensionIdx, range);
+			   granLength *= range.length();
+		   }
+		   granRanges.add(rangeList);
+		   granOffsets[i] = totalLength;
+		   if (!(varMapList.get(loGranuleId + i).get(array_name) instanceof Structure)) {
+			   totalLength += granLength;
 		   }
 	   }
-	   
-	   // last, concatenate the individual NetCDF arrays pulled out 
 
 	   DataType arrayType = getArrayType(array_name);
 	   RangeProcessor rngProcessor = varToRangeProcessor.get(array_name);
@@ -843,61 +884,165 @@ public class GranuleAggregation implements MultiDimensionReader {
 	   }
 	   
 	   float[] finalArray = new float[totalLength];
-           
-	   int destPos = 0;
-	   int granIdx = 0;
-
-	   int remaining = totalLength;
-	   for (Array a : arrayList) {
-		   if (a != null) {
-			   Object newPrim = null;
-			   if (a.getDataType() == DataType.USHORT) {
-                   int[] intArr = new int[totalLength];
-                   short[] ushorts = (short[]) a.copyTo1DJavaArray();
-                   for (int i = 0; i < ushorts.length; i++) {
-                       short tmp = ushorts[i];
-                       if (tmp < 0) {
-                           intArr[i] = Short.toUnsignedInt(tmp);
-                       } else {
-                           intArr[i] = tmp;
-                       }
-                   }
-                   newPrim = intArr;
-               } else if (a.getDataType() == DataType.UBYTE) {
-                   arrayType = DataType.UBYTE;
-                   int[] intArr = new int[totalLength];
-                   byte[] ubytes = (byte[]) a.copyTo1DJavaArray();
-                   for (int i = 0; i < ubytes.length; i++) {
-                       byte tmp = ubytes[i];
-                       if (tmp < 0) {
-                           intArr[i] = Byte.toUnsignedInt(tmp);
-                       } else {
-                           intArr[i] = tmp;
-                       }
-                   }
-                   newPrim = intArr;
+
+	   // each granule is read, processed, and copied into its own slice of
+	   // finalArray, so the granules can be done in any order
+	   if (doParallel) {
+		   final String varName = array_name;
+		   final DataType varType = arrayType;
+		   final int firstGranule = loGranuleId;
+		   ParallelTasks.map(ParallelTasks.getIOPool(), granuleSpan, i -> {
+			   readGranule(varName, mapName, firstGranule + i, granRanges.get(i), varType,
+					   rngProcessor, finalArray, granOffsets[i], start, count);
+			   return null;
+		   }, null);
+	   } else {
+		   for (int i = 0; i < granuleSpan; i++) {
+			   readGranule(array_name, mapName, loGranuleId + i, granRanges.get(i), arrayType,
+					   rngProcessor, finalArray, granOffsets[i], start, count);
+		   }
+	   }
+       
+	   return finalArray;
+   }
+
+   /**
+    * Read one granule's section of a variable, pass it through the
+    * RangeProcessor, and copy the result into {@code finalArray} starting at
+    * {@code destPos}. Only the granule's own reader is locked while reading.
+    */
+   private void readGranule(String array_name, String mapName, int granuleIdx, List<Range> rangeList,
+		   DataType arrayType, RangeProcessor rngProcessor, float[] finalArray, int destPos,
+		   int[] start, int[] count) throws Exception {
+
+	   Variable var = varMapList.get(granuleIdx).get(array_name);
+	   if (var instanceof Structure) {
+		   // what to do here?
+		   return;
+	   }
+
+	   Array a = null;
+	   synchronized (ncdfal.get(granuleIdx)) {
+		   // If there were chunks of fill data to remove...
+		   List<Range> al = granCutRanges.get(Integer.valueOf(granuleIdx));
+		   if (! al.isEmpty()) {
+			   List<Variable> varChunks = new ArrayList<>();
+			   for (int rangeCount = 0; rangeCount < al.size(); rangeCount+=2) {
+				   List<Range> rl = new ArrayList<>();
+				   rl.add(al.get(rangeCount));
+				   rl.add(al.get(rangeCount + 1));
+				   varChunks.add(var.section(rl));
+			   }
+
+			   int [] newShape = var.getShape();
+			   int cutScans = granCutScans.get(granuleIdx);
+			   newShape[0] = newShape[0] - cutScans;
+			   logger.trace("New Shape: " + newShape[0] + ", " + newShape[1]);
+			   Array single = Array.factory(var.getDataType(), newShape);
+
+			   // now read variable chunk data into single contiguous array
+			   int idx = 0;
+			   for (Variable v : varChunks) {
+				   Array data = v.read();
+				   int [] tmpShape = v.getShape();
+				   for (int tIdx = 0; tIdx < tmpShape.length; tIdx++) {
+					   logger.trace("Shape[" + tIdx + "]: " + tmpShape[tIdx]);
+				   }
+				   // same element type on both sides, so this is a bulk copy
+				   Array.arraycopy(data, 0, single, idx, (int) data.getSize());
+				   idx += (int) data.getSize();
+			   }
+
+			   // finally, apply subset ranges
+			   logger.debug("Size of cut src array: " + single.getSize());
+			   a = single.section(rangeList);
+			   logger.debug("Size of cut sub array: " + a.getSize());
+
+		   } else {
+			   a = var.read(rangeList);
+			   logger.debug("Size of reg sub array: " + a.getSize());
+		   }
+	   }
+
+	   int totalLength = finalArray.length;
+	   int remaining = Math.max(0, totalLength - destPos);
+	   int length = (int) Math.min(a.getSize(), remaining);
+
+	   // unsigned data without a LUT or quality flag is decoded straight into
+	   // finalArray, with the range processing done in the same pass
+	   boolean isLUT = (lutMap != null) && lutMap.containsKey(mapName);
+	   boolean isQF = (qfMap != null) && qfMap.containsKey(mapName);
+	   if ((a.getDataType() == DataType.USHORT && !isLUT) || (a.getDataType() == DataType.UBYTE && !isQF)) {
+		   RangeProcessor granProcessor = (rngProcessor == null) ? null :
+				   ((AggregationRangeProcessor) rngProcessor).getRangeProcessor(granuleIdx);
+		   decodeUnsigned(a, granProcessor, finalArray, destPos, length);
+		   return;
+	   }
+
+	   Object newPrim = null;
+	   if (a.getDataType() == DataType.USHORT) {
+		   int[] intArr = new int[(int) a.getSize()];
+		   short[] ushorts = (short[]) a.copyTo1DJavaArray();
+		   for (int i = 0; i < ushorts.length; i++) {
+			   short tmp = ushorts[i];
+			   if (tmp < 0) {
+				   intArr[i] = Short.toUnsignedInt(tmp);
 			   } else {
-				   newPrim = a.get1DJavaArray(DataType.FLOAT);
+				   intArr[i] = tmp;
 			   }
+		   }
+		   newPrim = intArr;
+	   } else if (a.getDataType() == DataType.UBYTE) {
+		   arrayType = DataType.UBYTE;
+		   int[] intArr = new int[(int) a.getSize()];
+		   byte[] ubytes = (byte[]) a.copyTo1DJavaArray();
+		   for (int i = 0; i < ubytes.length; i++) {
+			   byte tmp = ubytes[i];
+			   if (tmp < 0) {
+				   intArr[i] = Byte.toUnsignedInt(tmp);
+			   } else {
+				   intArr[i] = tmp;
+			   }
+		   }
+		   newPrim = intArr;
+	   } else {
+		   newPrim = a.get1DJavaArray(DataType.FLOAT);
+	   }
 
-			   Object primArray = processArray(
-					   mapName, arrayType, granIdx, newPrim, rngProcessor, start, count
-			   );
+	   Object primArray = processArray(
+			   mapName, arrayType, granuleIdx, newPrim, rngProcessor, start, count
+	   );
 
-               if (primArray != null) {
-                   if (a.getSize() > remaining) {
-                       System.arraycopy(primArray, 0, finalArray, destPos, remaining);
-                   } else {
-                       System.arraycopy(primArray, 0, finalArray, destPos, (int) a.getSize());
-                   }
-                   destPos += a.getSize();
-                   remaining -= (int) a.getSize();
-               }
+	   if (primArray != null) {
+		   System.arraycopy(primArray, 0, finalArray, destPos, length);
+	   }
+   }
+
+   /**
+    * Decode USHORT or UBYTE values from the backing storage of {@code a}
+    * directly into {@code dest}. Arrays read straight from a variable use
+    * their storage as is; sections (e.g. of a scan-gap cut array) are walked
+    * with an index iterator. Nothing is allocated either way.
+    */
+   private static void decodeUnsigned(Array a, RangeProcessor rngProcessor, float[] dest, int destPos, int length) {
+	   Object storage = a.getStorage();
+	   boolean isUshort = a.getDataType() == DataType.USHORT;
+	   boolean direct = java.lang.reflect.Array.getLength(storage) == a.getSize();
+
+	   if (direct && rngProcessor != null) {
+		   if (isUshort) {
+			   rngProcessor.processRangeUshorts((short[]) storage, 0, dest, destPos, length);
+		   } else {
+			   rngProcessor.processRangeUbytes((byte[]) storage, 0, dest, destPos, length);
 		   }
-		   granIdx++;
+		   return;
+	   }
+
+	   IndexIterator ii = a.getIndexIterator();
+	   for (int k = 0; k < length; k++) {
+		   float val = isUshort ? Short.toUnsignedInt(ii.getShortNext()) : Byte.toUnsignedInt(ii.getByteNext());
+		   dest[destPos + k] = (rngProcessor != null) ? rngProcessor.processValue(val) : val;
 	   }
-       
-	   return finalArray;
    }
    
    /**
@@ -931,7 +1076,11 @@ public class GranuleAggregation implements MultiDimensionReader {
 		   return values;
 	   }
 	   else {
-		   ((AggregationRangeProcessor) rngProcessor).setWhichRangeProcessor(granIdx);
+		   // use the granule's own processor directly rather than selecting it
+		   // on the shared AggregationRangeProcessor, so granules can be
+		   // processed concurrently
+		   RangeProcessor granProcessor =
+				   ((AggregationRangeProcessor) rngProcessor).getRangeProcessor(granIdx);
 
 		   Object outArray = null;
 
@@ -941,20 +1090,20 @@ public class GranuleAggregation implements MultiDimensionReader {
 				   float lut[] = lutMap.get(mapName);
 				   outArray = rngProcessor.processRangeApplyLUT((short[]) values, lut);
 			   } else {
-				   outArray = rngProcessor.processRange((short[]) values, null);
+				   outArray = granProcessor.processRange((short[]) values, null);
 			   }
 		   } else if (arrayType == DataType.BYTE || arrayType == DataType.UBYTE) {
 			   // if variable is a bit-field quality flag, apply mask
-			   if ((qfMap != null) && (qfMap.containsKey(origName))) {
-				   QualityFlag qf = qfMap.get(origName);
+			   if ((qfMap != null) && (qfMap.containsKey(mapName))) {
+				   QualityFlag qf = qfMap.get(mapName);
 				   outArray = rngProcessor.processRangeQualityFlag((int []) values, null, qf);
 			   } else {
-				   outArray = rngProcessor.processRange((byte[]) values, null);
+				   outArray = granProcessor.processRange((byte[]) values, null);
 			   }
 		   } else if (arrayType == DataType.FLOAT) {
-			   outArray = rngProcessor.processRange((float[]) values, null);
+			   outArray = granProcessor.processRange((float[]) values, null);
 		   } else if (arrayType == DataType.DOUBLE) {
-			   outArray = rngProcessor.processRange((double[]) values, null);
+			   outArray = granProcessor.processRange((double[]) values, null);
 		   } else if (arrayType == DataType.USHORT) {
 				AggregationRangeProcessor aggRangeProc = ((AggregationRangeProcessor) rngProcessor);
 				   // if variable is a LUT var, apply LUT
@@ -962,7 +1111,7 @@ public class GranuleAggregation implements MultiDimensionReader {
 					float lut[] = lutMap.get(mapName);
 					outArray = aggRangeProc.processRangeUshortsApplyLUT((int[]) values , lut);
 				} else {
-					outArray = aggRangeProc.processRangeUshort((int[]) values, null);
+					outArray = granProcessor.processRangeUshorts((int[]) values, null);
 				}
 		   }
 
@@ -0,0 +1,575 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.nc2.Attribute;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+
+import visad.util.ParallelTasks;
+
+/**
+ * Granule-level metadata that {@link SuomiNPPDataSource} needs before it
+ * can build its aggregation: the geolocation reference, instrument,
+ * product collections and nominal times of each file.
+ *
+ * <p>Files are summarized on the shared I/O pool of {@link ParallelTasks},
+ * since opening an HDF5 or NetCDF-4 granule is mostly waiting on I/O.
+ * Summaries are also kept in one index file per source directory, so
+ * reopening the same granules does not open them again. An entry is only
+ * used while the file's modification time and length are unchanged.</p>
+ *
+ * <p>The index also keeps the {@link CutScans} that
+ * {@link GranuleAggregation} finds in each granule's union of data and
+ * geolocation files, so a reopen does not read the latitudes again.</p>
+ *
+ * <p>The index lives in the directory named by the {@value #PROP_DIR}
+ * system property, which McIDAS-V points at {@code jpssindex} in the user
+ * directory ({@code jpss-index} under {@code java.io.tmpdir} if it is not
+ * set), and can be turned off with
+ * {@code -Dmcv.jpss.index.enabled=false}.</p>
+ */
+public final class GranuleIndex {
+
+    private static final Logger logger =
+        LoggerFactory.getLogger(GranuleIndex.class);
+
+    /** System property naming the index directory. */
+    public static final String PROP_DIR = "mcv.jpss.index.dir";
+
+    /** Bump when {@link Summary} or {@link CutScans} change shape. */
+    private static final int INDEX_VERSION = 2;
+
+    private static final boolean ENABLED =
+        Boolean.parseBoolean(System.getProperty("mcv.jpss.index.enabled", "true"));
+
+    /** Serializes index file updates within this session. */
+    private static final Object indexLock = new Object();
+
+    private GranuleIndex() {
+    }
+
+    /**
+     * Metadata pulled from one granule file.
+     */
+    static final class Summary implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        long lastModified;
+        long length;
+
+        /** {@code N_GEO_Ref} global attribute (NOAA). */
+        String geoRef;
+
+        /** {@code time_coverage_start} global attribute (NASA, Enterprise). */
+        String timeCoverageStart;
+
+        /** {@code instrument} global attribute (NASA). */
+        String instrument;
+
+        /** {@code instrument_name} global attribute (Enterprise). */
+        String instrumentName;
+
+        /** Number of groups directly under the root group. */
+        int groupCount;
+
+        /** One entry per {@code Data_Products} group, in file order. */
+        List<ProductGroup> dataProducts = new ArrayList<>();
+
+        /**
+         * Cut scans of the union this file leads, or null if not checked
+         * yet.
+         */
+        CutScans cutScans;
+    }
+
+    /**
+     * What {@code setup()} needs from one {@code Data_Products} group.
+     */
+    static final class ProductGroup implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * One entry per non-geolocation product group, in file order:
+         * {@code Instrument_Short_Name}, the {@code Band_ID} of an EDR (or
+         * null) and {@code N_Collection_Short_Name}. Any may be null.
+         */
+        List<String[]> products = new ArrayList<>();
+
+        /** First {@code AggregateBeginningDate} in the group, or null. */
+        String beginningDate;
+
+        /** {@code AggregateBeginningTime} paired with the date above. */
+        String beginningTime;
+    }
+
+    /**
+     * The scans {@link GranuleAggregation} cut from one granule's union,
+     * along with what they were found in.
+     */
+    static final class CutScans implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Paths of the union's files, in order. */
+        String[] files;
+
+        /** Modification time of each file when checked. */
+        long[] lastModified;
+
+        /** Length of each file when checked. */
+        long[] length;
+
+        /** Shape of each latitude variable, by full name. */
+        HashMap<String, int[]> latitudeShapes;
+
+        /** Number of scans cut. */
+        int count;
+
+        /** First, last and stride of each range of good data, in order. */
+        int[] ranges;
+
+        /**
+         * Record the cut scans found in a union.
+         *
+         * @param files Paths of the union's files, in order.
+         * @param ncfile The union.
+         * @param count Number of scans cut.
+         * @param ranges Ranges of good data.
+         *
+         * @return The record.
+         */
+        static CutScans of(List<String> files, NetcdfFile ncfile, int count,
+                           List<Range> ranges)
+        {
+            CutScans cs = new CutScans();
+            cs.files = files.toArray(new String[0]);
+            cs.lastModified = new long[cs.files.length];
+            cs.length = new long[cs.files.length];
+            for (int i = 0; i < cs.files.length; i++) {
+                File f = new File(cs.files[i]);
+                cs.lastModified[i] = f.lastModified();
+                cs.length[i] = f.length();
+            }
+            cs.latitudeShapes = latitudeShapes(ncfile);
+            cs.count = count;
+            cs.ranges = new int[3 * ranges.size()];
+            for (int i = 0; i < ranges.size(); i++) {
+                Range r = ranges.get(i);
+                cs.ranges[3 * i] = r.first();
+                cs.ranges[3 * i + 1] = r.last();
+                cs.ranges[3 * i + 2] = r.stride();
+            }
+            return cs;
+        }
+
+        /**
+         * @return Whether the union's latitudes still have the shapes
+         *         these cut scans were found in.
+         */
+        boolean fits(NetcdfFile ncfile) {
+            Map<String, int[]> shapes = latitudeShapes(ncfile);
+            if (shapes.size() != latitudeShapes.size()) {
+                return false;
+            }
+            for (Map.Entry<String, int[]> e : shapes.entrySet()) {
+                if (! Arrays.equals(e.getValue(), latitudeShapes.get(e.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Add the ranges of good data to a granule's cut ranges.
+         *
+         * @param al Receives the ranges.
+         *
+         * @return Number of scans cut.
+         *
+         * @throws InvalidRangeException if a stored range is not valid.
+         */
+        int apply(List<Range> al) throws InvalidRangeException {
+            for (int i = 0; i < ranges.length; i += 3) {
+                al.add(new Range(ranges[i], ranges[i + 1], ranges[i + 2]));
+            }
+            return count;
+        }
+
+        /** Whether these are for the given files, unchanged. */
+        private boolean current(List<String> paths) {
+            if (paths.size() != files.length) {
+                return false;
+            }
+            for (int i = 0; i < files.length; i++) {
+                File f = new File(paths.get(i));
+                if (! files[i].equals(paths.get(i))
+                        || (f.lastModified() != lastModified[i])
+                        || (f.length() != length[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Summarize the given granule files, using the directory indexes where
+     * they are current and opening the rest in parallel.
+     *
+     * @param paths Absolute paths of the granules.
+     *
+     * @return Summaries keyed by path, in the order given.
+     *
+     * @throws Exception if a granule cannot be read.
+     */
+    static Map<String, Summary> summarize(List<String> paths) throws Exception {
+        Map<File, List<String>> byDir = new LinkedHashMap<>();
+        for (String path : paths) {
+            File dir = new File(path).getAbsoluteFile().getParentFile();
+            byDir.computeIfAbsent(dir, k -> new ArrayList<>()).add(path);
+        }
+
+        Map<String, Summary> found = new HashMap<>();
+        Map<File, Map<String, Summary>> indexes = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<File, List<String>> e : byDir.entrySet()) {
+            Map<String, Summary> index = ENABLED ? load(e.getKey()) : new HashMap<>();
+            indexes.put(e.getKey(), index);
+            for (String path : e.getValue()) {
+                File f = new File(path);
+                Summary s = index.get(f.getName());
+                if ((s != null) && (s.lastModified == f.lastModified())
+                        && (s.length == f.length())) {
+                    found.put(path, s);
+                } else {
+                    missing.add(path);
+                }
+            }
+        }
+        logger.debug("{} of {} granules summarized from index", found.size(), paths.size());
+
+        if (! missing.isEmpty()) {
+            List<Summary> read = ParallelTasks.map(ParallelTasks.getIOPool(),
+                missing.size(), i -> read(missing.get(i)), null);
+            for (int i = 0; i < missing.size(); i++) {
+                String path = missing.get(i);
+                found.put(path, read.get(i));
+                File f = new File(path);
+                indexes.get(f.getAbsoluteFile().getParentFile()).put(f.getName(), read.get(i));
+            }
+            if (ENABLED) {
+                for (Map.Entry<File, Map<String, Summary>> e : indexes.entrySet()) {
+                    store(e.getKey(), e.getValue());
+                }
+            }
+        }
+
+        Map<String, Summary> result = new LinkedHashMap<>();
+        for (String path : paths) {
+            result.put(path, found.get(path));
+        }
+        return result;
+    }
+
+    /**
+     * Find the indexed cut scans of granules whose files are unchanged.
+     *
+     * @param granules Files of each granule's union, in order; the first
+     *        file's index entry holds the cut scans.
+     *
+     * @return One entry per granule, null where none are current.
+     */
+    static List<CutScans> loadCutScans(List<List<String>> granules) {
+        List<CutScans> result = new ArrayList<>(granules.size());
+        Map<File, Map<String, Summary>> indexes = new HashMap<>();
+        for (List<String> files : granules) {
+            CutScans cs = null;
+            if (ENABLED && ! files.isEmpty()) {
+                File f = new File(files.get(0)).getAbsoluteFile();
+                Map<String, Summary> index =
+                    indexes.computeIfAbsent(f.getParentFile(), GranuleIndex::load);
+                Summary s = index.get(f.getName());
+                if ((s != null) && (s.cutScans != null) && s.cutScans.current(files)) {
+                    cs = s.cutScans;
+                }
+            }
+            result.add(cs);
+        }
+        return result;
+    }
+
+    /**
+     * Keep the cut scans found in granules in the index of each granule's
+     * first file. Granules whose first file has no current summary are
+     * skipped.
+     *
+     * @param granules Files of each granule's union, in order.
+     * @param found Cut scans of each granule, null to leave it alone.
+     */
+    static void storeCutScans(List<List<String>> granules, List<CutScans> found) {
+        if (! ENABLED) {
+            return;
+        }
+        Map<File, List<Integer>> byDir = new LinkedHashMap<>();
+        for (int i = 0; i < granules.size(); i++) {
+            if ((found.get(i) != null) && ! granules.get(i).isEmpty()) {
+                File dir = new File(granules.get(i).get(0)).getAbsoluteFile().getParentFile();
+                byDir.computeIfAbsent(dir, k -> new ArrayList<>()).add(i);
+            }
+        }
+        synchronized (indexLock) {
+            for (Map.Entry<File, List<Integer>> e : byDir.entrySet()) {
+                Map<String, Summary> index = load(e.getKey());
+                boolean changed = false;
+                for (int i : e.getValue()) {
+                    File f = new File(granules.get(i).get(0));
+                    Summary s = index.get(f.getName());
+                    if ((s != null) && (s.lastModified == f.lastModified())
+                            && (s.length == f.length())) {
+                        s.cutScans = found.get(i);
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    store(e.getKey(), index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Close a reader, for when the ones around it could not be opened.
+     *
+     * @param reader Reader to close.
+     */
+    static void closeQuietly(NetCDFFile reader) {
+        try {
+            reader.close();
+        } catch (Exception e) {
+            logger.debug("Could not close granule reader", e);
+        }
+    }
+
+    /**
+     * Open one granule and pull out its summary, reading the same
+     * attributes {@code SuomiNPPDataSource.setup()} used to read inline.
+     */
+    private static Summary read(String path) throws IOException {
+        logger.debug("Trying to open file: " + path);
+        File f = new File(path);
+        Summary s = new Summary();
+        s.lastModified = f.lastModified();
+        s.length = f.length();
+        NetcdfFile ncfile = NetcdfFile.open(path);
+        try {
+            s.geoRef = stringValue(ncfile.findGlobalAttribute("N_GEO_Ref"));
+            s.timeCoverageStart = stringValue(ncfile.findGlobalAttribute("time_coverage_start"));
+            s.instrument = stringValue(ncfile.findGlobalAttribute("instrument"));
+            s.instrumentName = stringValue(ncfile.findGlobalAttribute("instrument_name"));
+            List<Group> gl = ncfile.getRootGroup().getGroups();
+            if (gl == null) {
+                return s;
+            }
+            s.groupCount = gl.size();
+            for (Group g : gl) {
+                if (! g.getFullName().contains("Data_Products")) {
+                    continue;
+                }
+                ProductGroup pg = new ProductGroup();
+                List<Group> dpg = g.getGroups();
+                for (Group subG : dpg) {
+                    // use actual product, not geolocation
+                    if (subG.getFullName().contains("-GEO")) {
+                        continue;
+                    }
+                    String band = null;
+                    Attribute adtt = subG.findAttribute("N_Dataset_Type_Tag");
+                    if ((adtt != null) && "EDR".equals(adtt.getStringValue())) {
+                        // last Band_ID wins, as it did when read inline
+                        for (Variable v : subG.getVariables()) {
+                            Attribute mBand = v.findAttribute("Band_ID");
+                            if (mBand != null) {
+                                band = mBand.getStringValue();
+                            }
+                        }
+                    }
+                    pg.products.add(new String[] {
+                        stringValue(subG.findAttribute("Instrument_Short_Name")),
+                        band,
+                        stringValue(subG.findAttribute("N_Collection_Short_Name"))
+                    });
+                }
+                // only the first date/time pair is ever used for the name
+                search:
+                for (Group subG : dpg) {
+                    for (Variable v : subG.getVariables()) {
+                        Attribute aDate = v.findAttribute("AggregateBeginningDate");
+                        Attribute aTime = v.findAttribute("AggregateBeginningTime");
+                        if ((aDate != null) && (aTime != null)) {
+                            pg.beginningDate = aDate.getStringValue();
+                            pg.beginningTime = aTime.getStringValue();
+                            break search;
+                        }
+                    }
+                }
+                s.dataProducts.add(pg);
+            }
+        } finally {
+            ncfile.close();
+        }
+        return s;
+    }
+
+    private static String stringValue(Attribute a) {
+        return (a == null) ? null : a.getStringValue();
+    }
+
+    /** Directory holding the indexes. */
+    private static File indexDir() {
+        return new File(System.getProperty(PROP_DIR,
+            new File(System.getProperty("java.io.tmpdir"), "jpss-index").getPath()));
+    }
+
+    /**
+     * Latitude variable shapes of a union, which are in its header.
+     */
+    private static HashMap<String, int[]> latitudeShapes(NetcdfFile ncfile) {
+        HashMap<String, int[]> shapes = new HashMap<>();
+        for (Variable var : ncfile.getVariables()) {
+            if (var.getShortName().endsWith("Latitude")) {
+                shapes.put(var.getFullName(), var.getShape());
+            }
+        }
+        return shapes;
+    }
+
+    /** Index file for a source directory. */
+    private static File indexFile(File dir) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(dir.getPath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return new File(indexDir(), sb + ".idx");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Summary> load(File dir) {
+        File file = indexFile(dir);
+        if (! file.isFile()) {
+            return new HashMap<>();
+        }
+        synchronized (indexLock) {
+            try (ObjectInputStream in = new ObjectInputStream(
+                    new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+                if ((in.readInt() != INDEX_VERSION)
+                        || ! dir.getPath().equals(in.readUTF())) {
+                    return new HashMap<>();
+                }
+                return (HashMap<String, Summary>) in.readObject();
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                logger.debug("Ignoring unreadable granule index " + file, e);
+                return new HashMap<>();
+            }
+        }
+    }
+
+    /**
+     * Write a directory's index, dropping entries for files that are gone.
+     * Written to a temporary file and moved into place, so a concurrent
+     * reader never sees half an index.
+     */
+    private static void store(File dir, Map<String, Summary> index) {
+        HashMap<String, Summary> live = new HashMap<>();
+        for (Map.Entry<String, Summary> e : index.entrySet()) {
+            if (new File(dir, e.getKey()).isFile()) {
+                live.put(e.getKey(), e.getValue());
+            }
+        }
+        File file = indexFile(dir);
+        File indexDir = file.getParentFile();
+        synchronized (indexLock) {
+            File tmp = null;
+            try {
+                if (! indexDir.isDirectory() && ! indexDir.mkdirs()) {
+                    logger.debug("Cannot create granule index directory " + indexDir);
+                    return;
+                }
+                tmp = File.createTempFile("idx", ".tmp", indexDir);
+                try (ObjectOutputStream out = new ObjectOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+                    out.writeInt(INDEX_VERSION);
+                    out.writeUTF(dir.getPath());
+                    out.writeObject(live);
+                }
+                Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                tmp = null;
+            } catch (IOException e) {
+                logger.debug("Could not write granule index " + file, e);
+            } finally {
+                if (tmp != null) {
+                    tmp.delete();
+                }
+            }
+        }
+    }
+}
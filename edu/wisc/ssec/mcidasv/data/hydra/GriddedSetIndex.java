@@ -0,0 +1,229 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.util.Arrays;
+
+/**
+ * Uniform bucket index over the cells of a 2D grid of (x, y) locations,
+ * used to invert the grid (value to fractional grid coordinates) without the
+ * iterative search done by {@link visad.Gridded2DSet#valueToGrid}.
+ *
+ * <p>Each grid cell is registered in every bucket its bounding box overlaps,
+ * in compressed (offset plus cell list) form. A lookup checks only the cells
+ * of one bucket, using the same two-triangle inversion VisAD uses for
+ * Gridded2DSet. Cells with a missing corner are not indexed.</p>
+ */
+public class GriddedSetIndex {
+
+   // average number of cells per bucket to aim for
+   private static final int CELLS_PER_BUCKET = 4;
+
+   private final float[] xs;
+   private final float[] ys;
+   private final int lenX;
+   private final int lenY;
+
+   private float minX = Float.MAX_VALUE;
+   private float minY = Float.MAX_VALUE;
+   private float maxX = -Float.MAX_VALUE;
+   private float maxY = -Float.MAX_VALUE;
+
+   private int nbx;
+   private int nby;
+   private float bucketW;
+   private float bucketH;
+
+   // orientation of the grid, as determined by Gridded2DSet
+   private boolean pos = true;
+
+   // cells of bucket b are cells[offsets[b]] to cells[offsets[b+1]-1]
+   private int[] offsets;
+   private int[] cells;
+
+   /**
+    * @param locs grid locations, {@code locs[0]} x and {@code locs[1]} y,
+    *             x varying fastest
+    * @param lenX grid length in x
+    * @param lenY grid length in y
+    */
+   public GriddedSetIndex(float[][] locs, int lenX, int lenY) {
+      this.xs = locs[0];
+      this.ys = locs[1];
+      this.lenX = lenX;
+      this.lenY = lenY;
+      build();
+   }
+
+   private void build() {
+      int numCells = 0;
+      boolean oriented = false;
+      for (int j=0; j<lenY-1; j++) {
+         for (int i=0; i<lenX-1; i++) {
+            int k = j*lenX + i;
+            if (!cellIsValid(k)) continue;
+            numCells++;
+            if (!oriented) {
+               int[] c = corners(k);
+               pos = ((xs[c[1]]-xs[c[0]])*(ys[c[2]]-ys[c[0]])
+                     - (ys[c[1]]-ys[c[0]])*(xs[c[2]]-xs[c[0]])) > 0;
+               oriented = true;
+            }
+            for (int c : corners(k)) {
+               minX = Math.min(minX, xs[c]);
+               maxX = Math.max(maxX, xs[c]);
+               minY = Math.min(minY, ys[c]);
+               maxY = Math.max(maxY, ys[c]);
+            }
+         }
+      }
+
+      if (numCells == 0) {
+         nbx = 0;
+         nby = 0;
+         offsets = new int[1];
+         cells = new int[0];
+         return;
+      }
+
+      // roughly square buckets, about CELLS_PER_BUCKET cells each
+      double w = Math.max(maxX - minX, Float.MIN_NORMAL);
+      double h = Math.max(maxY - minY, Float.MIN_NORMAL);
+      double numBuckets = Math.max(1.0, (double) numCells / CELLS_PER_BUCKET);
+      double side = Math.sqrt(w*h/numBuckets);
+      nbx = (int) Math.max(1, Math.min(Math.ceil(w/side), 1 << 15));
+      nby = (int) Math.max(1, Math.min(Math.ceil(h/side), 1 << 15));
+      bucketW = (float) (w/nbx);
+      bucketH = (float) (h/nby);
+
+      // two passes: count the cells in each bucket, then fill
+      int[] counts = new int[nbx*nby + 1];
+      for (int pass=0; pass<2; pass++) {
+         for (int j=0; j<lenY-1; j++) {
+            for (int i=0; i<lenX-1; i++) {
+               int k = j*lenX + i;
+               if (!cellIsValid(k)) continue;
+               int[] c = corners(k);
+               float cx0 = Math.min(Math.min(xs[c[0]], xs[c[1]]), Math.min(xs[c[2]], xs[c[3]]));
+               float cx1 = Math.max(Math.max(xs[c[0]], xs[c[1]]), Math.max(xs[c[2]], xs[c[3]]));
+               float cy0 = Math.min(Math.min(ys[c[0]], ys[c[1]]), Math.min(ys[c[2]], ys[c[3]]));
+               float cy1 = Math.max(Math.max(ys[c[0]], ys[c[1]]), Math.max(ys[c[2]], ys[c[3]]));
+               int bx0 = bucketX(cx0);
+               int bx1 = bucketX(cx1);
+               int by0 = bucketY(cy0);
+               int by1 = bucketY(cy1);
+               for (int by=by0; by<=by1; by++) {
+                  for (int bx=bx0; bx<=bx1; bx++) {
+                     int b = by*nbx + bx;
+                     if (pass == 0) {
+                        counts[b+1]++;
+                     }
+                     else {
+                        cells[counts[b]++] = k;
+                     }
+                  }
+               }
+            }
+         }
+         if (pass == 0) {
+            for (int b=0; b<nbx*nby; b++) {
+               counts[b+1] += counts[b];
+            }
+            offsets = Arrays.copyOf(counts, counts.length);
+            cells = new int[counts[nbx*nby]];
+         }
+      }
+   }
+
+   private boolean cellIsValid(int k) {
+      for (int c : corners(k)) {
+         if (Float.isNaN(xs[c]) || Float.isNaN(ys[c])) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   // lower left, lower right, upper left, upper right
+   private int[] corners(int k) {
+      return new int[] {k, k+1, k+lenX, k+lenX+1};
+   }
+
+   private int bucketX(float x) {
+      return Math.min(nbx-1, Math.max(0, (int) ((x - minX)/bucketW)));
+   }
+
+   private int bucketY(float y) {
+      return Math.min(nby-1, Math.max(0, (int) ((y - minY)/bucketH)));
+   }
+
+   /**
+    * Fractional grid coordinates of each (x, y) value, or NaN where the value
+    * is not inside any indexed cell.
+    *
+    * @param values {@code values[0]} x and {@code values[1]} y
+    *
+    * @return {@code float[2][values[0].length]} grid coordinates
+    */
+   public float[][] valueToGrid(float[][] values) {
+      int n = values[0].length;
+      float[][] grid = new float[2][n];
+      float[][] cornerLocs = new float[2][4];
+      float[] weights = new float[2];
+
+      for (int p=0; p<n; p++) {
+         grid[0][p] = Float.NaN;
+         grid[1][p] = Float.NaN;
+         float x = values[0][p];
+         float y = values[1][p];
+         if (nbx == 0 || !(x >= minX && x <= maxX && y >= minY && y <= maxY)) {
+            continue;
+         }
+         int b = bucketY(y)*nbx + bucketX(x);
+         for (int q=offsets[b]; q<offsets[b+1]; q++) {
+            int k = cells[q];
+            cornerLocs[0][0] = xs[k];
+            cornerLocs[1][0] = ys[k];
+            cornerLocs[0][1] = xs[k+1];
+            cornerLocs[1][1] = ys[k+1];
+            cornerLocs[0][2] = xs[k+lenX];
+            cornerLocs[1][2] = ys[k+lenX];
+            cornerLocs[0][3] = xs[k+lenX+1];
+            cornerLocs[1][3] = ys[k+lenX+1];
+            ReprojectSwath.visad2DWeights(y, x, cornerLocs, weights, pos);
+            if (!Float.isNaN(weights[0]) && !Float.isNaN(weights[1])) {
+               grid[0][p] = (k % lenX) + weights[0];
+               grid[1][p] = (k / lenX) + weights[1];
+               break;
+            }
+         }
+      }
+      return grid;
+   }
+}
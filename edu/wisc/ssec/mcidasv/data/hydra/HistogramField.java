@@ -27,17 +27,28 @@
  */
 package edu.wisc.ssec.mcidasv.data.hydra;
 
+import java.util.concurrent.ForkJoinPool;
+
 import visad.*;
+import visad.util.ParallelTasks;
 
 public class HistogramField {
 
+    /** Fewest samples worth handing to a separate binning task. */
+    private static final int MIN_CHUNK = 1 << 16;
+
+    /** Cap on the memory used by the per-task partial histograms. */
+    private static final long MAX_PARTIAL_BYTES = 64L << 20;
+
     Linear2DSet histSet;
     Linear1DSet set0;
     Linear1DSet set1;
     int len0;
     int len1;
-    int[] count;
-    int[][] indexes;
+    /** Bin {@code b} holds samples {@code binMembers[binStart[b] .. binStart[b+1]-1]}. */
+    int[] binStart;
+    /** Sample indexes grouped by bin, ascending within each bin. */
+    int[] binMembers;
     FlatField field_0;
     FlatField field_1;
     FlatField mask_field;
@@ -48,9 +59,20 @@ public class HistogramField {
 
     public FlatField scatterDensityField;
 
+    /**
+     * Bin the scatter pairs of two fields.
+     *
+     * @param field_0 X field.
+     * @param field_1 Y field, on the same domain as {@code field_0}.
+     * @param mask_field Field that selections are written to.
+     * @param n_bins Number of bins along each axis (not used for integer
+     *               fields, which get one bin per value).
+     *
+     * @throws Exception if VisAD had problems.
+     */
     public HistogramField(FlatField field_0, FlatField field_1,
             FlatField mask_field,
-            int n_bins, int bin_size)
+            int n_bins)
             throws Exception {
         this.field_0 = field_0;
         this.field_1 = field_1;
@@ -79,110 +101,56 @@ public class HistogramField {
         double[] minmax_0 = {Double.MAX_VALUE, -Double.MAX_VALUE};
         double[] minmax_1 = {Double.MAX_VALUE, -Double.MAX_VALUE};
 
-
-        if (rangeType == Integer.TYPE) {
-          //Ghansham: Dont do any allocation here. Do based on the individual ranges of fieldX and fieldY respectively
-        } else {
-            indexes = new int[n_bins * n_bins][1];
-            count = new int[n_bins * n_bins];
-        }
-
-
-        double[][] val = new double[2][1];
-        int[] histIdx = null;
+        double[] dvals_0 = null;
+        double[] dvals_1 = null;
+        float[] fvals_0 = null;
+        float[] fvals_1 = null;
+        int n_samples;
 
         if (rangeType == Double.TYPE) {
-            double[][] vals_0 = field_0.getValues(false);
-            double[][] vals_1 = field_1.getValues(false);
-            int n_samples = vals_0[0].length;
+            dvals_0 = field_0.getValues(false)[0];
+            dvals_1 = field_1.getValues(false)[0];
+            n_samples = dvals_0.length;
             for (int k = 0; k < n_samples; k++) {
-                double v0 = vals_0[0][k];
+                double v0 = dvals_0[k];
                 if (v0 < minmax_0[0]) {
                     minmax_0[0] = v0;
-                } else if (v0 > minmax_0[1]) {
-                    minmax_0[1] = v0;
                 }
-
-                double v1 = vals_1[0][k];
-                if (v1 < minmax_1[0]) {
-                    minmax_1[0] = v1;
-                } else if (v1 > minmax_1[1]) {
-                    minmax_1[1] = v1;
-                }
-            }
-
-            histSet = new Linear2DSet(minmax_0[0], minmax_0[1], n_bins,
-                    minmax_1[0], minmax_1[1], n_bins);
-
-            for (int k = 0; k < n_samples; k++) {
-                val[0][0] = vals_0[0][k];
-                val[1][0] = vals_1[0][k];
-                histIdx = histSet.doubleToIndex(val);
-                if (histIdx[0] >= 0) {
-                    int len = indexes[histIdx[0]].length;
-                    if (count[histIdx[0]] > len - 1) { //-grow array
-                        int[] tmp = new int[len + bin_size];
-                        System.arraycopy(indexes[histIdx[0]], 0, tmp, 0, len);
-                        indexes[histIdx[0]] = tmp;
-                    }
-                    indexes[histIdx[0]][count[histIdx[0]]++] = k;
-                }
-            }
-        } else if (rangeType == Float.TYPE) {
-            float[][] vals_0 = field_0.getFloats(false);
-            float[][] vals_1 = field_1.getFloats(false);
-            int n_samples = vals_0[0].length;
-            for (int k = 0; k < n_samples; k++) {
-                double v0 = vals_0[0][k];
-                if (v0 < minmax_0[0]) {
-                    minmax_0[0] = v0;
-                } else if (v0 > minmax_0[1]) {
+                if (v0 > minmax_0[1]) {
                     minmax_0[1] = v0;
                 }
-                double v1 = vals_1[0][k];
+                double v1 = dvals_1[k];
                 if (v1 < minmax_1[0]) {
                     minmax_1[0] = v1;
-                } else if (v1 > minmax_1[1]) {
-                    minmax_1[1] = v1;
                 }
-
-            }
-            histSet = new Linear2DSet(minmax_0[0], minmax_0[1], n_bins, minmax_1[0], minmax_1[1], n_bins);
-            for (int k = 0; k < n_samples; k++) {
-                val[0][0] = vals_0[0][k];
-                val[1][0] = vals_1[0][k];
-                histIdx = histSet.doubleToIndex(val);
-                if (histIdx[0] >= 0) {
-                    int len = indexes[histIdx[0]].length;
-                    if (count[histIdx[0]] > len - 1) { //-grow array
-
-                        int[] tmp = new int[len + bin_size];
-                        System.arraycopy(indexes[histIdx[0]], 0, tmp, 0, len);
-                        indexes[histIdx[0]] = tmp;
-                    }
-                    indexes[histIdx[0]][count[histIdx[0]]++] = k;
+                if (v1 > minmax_1[1]) {
+                    minmax_1[1] = v1;
                 }
             }
-        } else if (rangeType == Integer.TYPE) {
-            float[][] vals_0 = field_0.getFloats(false);
-            float[][] vals_1 = field_1.getFloats(false);
-            int n_samples = vals_0[0].length;
+        } else {
+            fvals_0 = field_0.getFloats(false)[0];
+            fvals_1 = field_1.getFloats(false)[0];
+            n_samples = fvals_0.length;
             for (int k = 0; k < n_samples; k++) {
-                double v0 = vals_0[0][k];
+                float v0 = fvals_0[k];
                 if (v0 < minmax_0[0]) {
                     minmax_0[0] = v0;
-                } else if (v0 > minmax_0[1]) {
+                }
+                if (v0 > minmax_0[1]) {
                     minmax_0[1] = v0;
                 }
-                double v1 = vals_1[0][k];
+                float v1 = fvals_1[k];
                 if (v1 < minmax_1[0]) {
                     minmax_1[0] = v1;
-                } else if (v1 > minmax_1[1]) {
+                }
+                if (v1 > minmax_1[1]) {
                     minmax_1[1] = v1;
                 }
             }
+        }
 
-
+        if (rangeType == Integer.TYPE) {
+            //Ghansham: one bin per grey count, based on the individual ranges of fieldX and fieldY
             int startX = (int) minmax_0[0];
             int endX = (int) minmax_0[1];
             int startY = (int) minmax_1[0];
@@ -190,37 +158,12 @@ public class HistogramField {
             int lenX = endX - startX + 1;
             int lenY = endY - startY + 1;
             histSet = new Linear2DSet(startX, endX, lenX, startY, endY, lenY);
-
-
-
-            //Ghansham:Allocate here based on length of lenghts of XField and YField
-            indexes = new int[lenY * lenX][]; //Ghansham:Dont allocate here if not required.
-            count = new int[lenY * lenX];
-
-            //First calculate frequency of each grey count.
-            for (int k = 0; k < n_samples; k++) {
-                val[0][0] = vals_0[0][k];
-                val[1][0] = vals_1[0][k];
-                histIdx = histSet.doubleToIndex(val);
-                if (histIdx[0] >= 0) {
-                    count[histIdx[0]]++;
-                }
-            }
-
-            for (int k = 0; k < n_samples; k++) {
-                val[0][0] = vals_0[0][k];
-                val[1][0] = vals_1[0][k];
-                histIdx = histSet.doubleToIndex(val);
-                if (histIdx[0] >= 0) {
-                    if (indexes[histIdx[0]] == null) { //Tricky stuff is here: encountering a particular grey count first time.
-                        indexes[histIdx[0]] = new int[count[histIdx[0]]]; //Allocating the values based on the frequency of this grey count (calculate earlier). No extra allocation at all
-                        count[histIdx[0]] = 0;  //Resetting the frequency to 0.
-                    }
-                    indexes[histIdx[0]][count[histIdx[0]]++] = k;
-                }
-            }
+        } else {
+            histSet = new Linear2DSet(minmax_0[0], minmax_0[1], n_bins,
+                    minmax_1[0], minmax_1[1], n_bins);
         }
 
+        binSamples(fvals_0, fvals_1, dvals_0, dvals_1, n_samples);
 
         set0 = histSet.getLinear1DComponent(0);
         set1 = histSet.getLinear1DComponent(1);
@@ -231,19 +174,110 @@ public class HistogramField {
         Linear2DSet dSet = (Linear2DSet) histSet.changeMathType(new RealTupleType(RealType.XAxis, RealType.YAxis));
         scatterDensityField = new FlatField(
             new FunctionType(((SetType)dSet.getType()).getDomain(), RealType.getRealType("ScatterDensity")), dSet);
-        float[][] fltCount = new float[1][count.length];
-        for (int i=0; i<count.length; i++) { 
-            fltCount[0][i] = (float) count[i];
-            if (count[i] == 0) {
+        int numBins = binStart.length - 1;
+        float[][] fltCount = new float[1][numBins];
+        for (int i=0; i<numBins; i++) { 
+            int count = binStart[i + 1] - binStart[i];
+            if (count == 0) {
                fltCount[0][i] = Float.NaN;
             }
             else {
-               fltCount[0][i] = (float) java.lang.Math.log((double)fltCount[0][i]);
+               fltCount[0][i] = (float) java.lang.Math.log((double) count);
             }
         }
         scatterDensityField.setSamples(fltCount);
     }
 
+    /**
+     * Fill {@link #binStart} and {@link #binMembers} for the samples in
+     * either the float or the double arrays. Each task histograms its own
+     * slice of the samples; the partial counts are then turned into write
+     * cursors so a second pass can place every sample without any
+     * per-bin reallocation.
+     */
+    private void binSamples(final float[] fvals_0, final float[] fvals_1,
+                            final double[] dvals_0, final double[] dvals_1,
+                            final int n_samples)
+            throws VisADException {
+        Linear1DSet axis0 = histSet.getLinear1DComponent(0);
+        Linear1DSet axis1 = histSet.getLinear1DComponent(1);
+        final double first0 = axis0.getFirst();
+        final double step0 = axis0.getStep();
+        final int n0 = axis0.getLength();
+        final double first1 = axis1.getFirst();
+        final double step1 = axis1.getStep();
+        final int n1 = axis1.getLength();
+        final int numBins = n0 * n1;
+
+        long tasks = Math.min(ForkJoinPool.getCommonPoolParallelism(),
+                              n_samples / MIN_CHUNK);
+        tasks = Math.min(tasks, MAX_PARTIAL_BYTES / (4L * numBins));
+        final int numTasks = (int) Math.max(1L, tasks);
+        final int[][] partial = new int[numTasks][];
+
+        ParallelTasks.map(numTasks, t -> {
+            int from = (int) ((long) n_samples * t / numTasks);
+            int to = (int) ((long) n_samples * (t + 1) / numTasks);
+            int[] counts = new int[numBins];
+            for (int k = from; k < to; k++) {
+                int bin = (dvals_0 != null)
+                          ? bin(dvals_0[k], dvals_1[k], first0, step0, n0, first1, step1, n1)
+                          : bin(fvals_0[k], fvals_1[k], first0, step0, n0, first1, step1, n1);
+                if (bin >= 0) {
+                    counts[bin]++;
+                }
+            }
+            partial[t] = counts;
+            return null;
+        });
+
+        binStart = new int[numBins + 1];
+        int total = 0;
+        for (int b = 0; b < numBins; b++) {
+            binStart[b] = total;
+            for (int t = 0; t < numTasks; t++) {
+                int count = partial[t][b];
+                partial[t][b] = total;
+                total += count;
+            }
+        }
+        binStart[numBins] = total;
+        binMembers = new int[total];
+
+        ParallelTasks.map(numTasks, t -> {
+            int from = (int) ((long) n_samples * t / numTasks);
+            int to = (int) ((long) n_samples * (t + 1) / numTasks);
+            int[] cursor = partial[t];
+            for (int k = from; k < to; k++) {
+                int bin = (dvals_0 != null)
+                          ? bin(dvals_0[k], dvals_1[k], first0, step0, n0, first1, step1, n1)
+                          : bin(fvals_0[k], fvals_1[k], first0, step0, n0, first1, step1, n1);
+                if (bin >= 0) {
+                    binMembers[cursor[bin]++] = k;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Same result as {@code histSet.doubleToIndex} for one pair: nearest
+     * bin center, or -1 if either value is missing or outside the set.
+     */
+    private static int bin(double v0, double v1,
+                           double first0, double step0, int n0,
+                           double first1, double step1, int n1) {
+        double t0 = (v0 - first0) / step0;
+        if (!(t0 > -0.5 && t0 < n0 - 0.5)) {
+            return -1;
+        }
+        double t1 = (v1 - first1) / step1;
+        if (!(t1 > -0.5 && t1 < n1 - 0.5)) {
+            return -1;
+        }
+        return (int) (t1 + 0.5) * n0 + (int) (t0 + 0.5);
+    }
+
     public FlatField getScatterDensityField() {
         return scatterDensityField;
     }
@@ -311,14 +345,15 @@ public class HistogramField {
 
         int lenX = set0.getLengthX();
 
+        // bins h00..h01 of a row are adjacent, so their samples are too
+        byte[] maskBytes = mask[(byte)maskVal];
         for (int j = h10; j <= h11; j++) {
             int col_factor = j * lenX;
-            for (int i = h00; i <= h01; i++) {
-                int idx = col_factor + i;
-                for (int k = 0; k < count[idx]; k++) {
-                    maskRange[0][indexes[idx][k]] = maskVal;
-                    mask[(byte)maskVal][indexes[idx][k]] = (byte)maskVal;
-                }
+            int end = binStart[col_factor + h01 + 1];
+            for (int k = binStart[col_factor + h00]; k < end; k++) {
+                int sample = binMembers[k];
+                maskRange[0][sample] = maskVal;
+                maskBytes[sample] = (byte)maskVal;
             }
         }
 
@@ -348,7 +383,9 @@ public class HistogramField {
             for (int jj = 0; jj < lenY - 1; jj++) {
                 for (int ii = 0; ii < lenX - 1; ii++) {
                     int idx = jj * lenX + ii; //Calclualting the index value in the start only.
-                    if (count[idx] > 0) { //No need to do go further if the frequency of particular grey count is zero.
+                    int start = binStart[idx];
+                    int end = binStart[idx + 1];
+                    if (end > start) { //No need to do go further if the frequency of particular grey count is zero.
                         int inside_cnt = 0;
                         if (!checked[ii][jj]) {
                             float x = samples0[0][ii];
@@ -401,15 +438,16 @@ public class HistogramField {
                         if (inside_cnt == 0) {
                             continue;
                         } else if (inside_cnt == 4) {
-                            for (int k = 0; k < count[idx]; k++) {
-                                maskRange[0][indexes[idx][k]] = maskVal;
+                            for (int k = start; k < end; k++) {
+                                maskRange[0][binMembers[k]] = maskVal;
                             }
                         } else if (inside_cnt > 0 && inside_cnt < 4) {
-                            for (int k = 0; k < count[idx]; k++) {
-                                float xx = vals_0[0][indexes[idx][k]];
-                                float yy = vals_1[0][indexes[idx][k]];
+                            for (int k = start; k < end; k++) {
+                                int sample = binMembers[k];
+                                float xx = vals_0[0][sample];
+                                float yy = vals_1[0][sample];
                                 if (DelaunayCustom.inside(curve, xx, yy)) {
-                                    maskRange[0][indexes[idx][k]] = maskVal;
+                                    maskRange[0][sample] = maskVal;
                                 }
                             }
                         }
@@ -417,6 +455,18 @@ public class HistogramField {
                 }
             }
         } else {
+            // fetch the values once rather than for every partly covered bin
+            float[][] fvals_0 = null;
+            float[][] fvals_1 = null;
+            double[][] dvals_0 = null;
+            double[][] dvals_1 = null;
+            if (rangeType == Float.TYPE) {
+                fvals_0 = field_0.getFloats(false);
+                fvals_1 = field_1.getFloats(false);
+            } else if (rangeType == Double.TYPE) {
+                dvals_0 = field_0.getValues(false);
+                dvals_1 = field_1.getValues(false);
+            }
             int len = set0.getLength();
             checked = new boolean[len][len];
             inside = new boolean[len][len];
@@ -427,7 +477,9 @@ public class HistogramField {
             for (int jj = 0; jj < len - 1; jj++) {
                 for (int ii = 0; ii < len - 1; ii++) {
                     int idx = jj * set0.getLengthX() + ii; //Calclualting the index value in the start only.
-                    if (count[idx] > 0) { //No need to do go further if the frequency of particular value is zero.
+                    int start = binStart[idx];
+                    int end = binStart[idx + 1];
+                    if (end > start) { //No need to do go further if the frequency of particular value is zero.
                         int inside_cnt = 0;
                         if (!checked[ii][jj]) {
                             float x = samples0[0][ii];
@@ -480,45 +532,30 @@ public class HistogramField {
                             continue;
                         }
 
-                        if (rangeType == Float.TYPE) {
-                            float[][] vals_0 = field_0.getFloats(false);
-                            float[][] vals_1 = field_1.getFloats(false);
-                            if (inside_cnt == 4) {
-
-                                for (int k = 0; k < count[idx]; k++) {
-                                    maskRange[0][indexes[idx][k]] = maskVal;
-                                    mask[(byte)maskVal][indexes[idx][k]] = (byte)maskVal;
-                                }
+                        if (inside_cnt == 4) {
+                            for (int k = start; k < end; k++) {
+                                int sample = binMembers[k];
+                                maskRange[0][sample] = maskVal;
+                                mask[(byte)maskVal][sample] = (byte)maskVal;
                             }
-                            if (inside_cnt > 0 && inside_cnt < 4) {
-
-                                for (int k = 0; k < count[idx]; k++) {
-                                    float xx = vals_0[0][indexes[idx][k]];
-                                    float yy = vals_1[0][indexes[idx][k]];
-                                    if (DelaunayCustom.inside(curve, xx, yy)) {
-                                        maskRange[0][indexes[idx][k]] = maskVal;
-                                        mask[(byte)maskVal][indexes[idx][k]] = (byte)maskVal;
-                                    }
+                        } else if (rangeType == Float.TYPE) {
+                            for (int k = start; k < end; k++) {
+                                int sample = binMembers[k];
+                                float xx = fvals_0[0][sample];
+                                float yy = fvals_1[0][sample];
+                                if (DelaunayCustom.inside(curve, xx, yy)) {
+                                    maskRange[0][sample] = maskVal;
+                                    mask[(byte)maskVal][sample] = (byte)maskVal;
                                 }
                             }
                         } else if (rangeType == Double.TYPE) {
-                            double[][] vals_0 = field_0.getValues(false);
-                            double[][] vals_1 = field_1.getValues(false);
-                            if (inside_cnt == 4) {
-                                for (int k = 0; k < count[idx]; k++) {
-                                    maskRange[0][indexes[idx][k]] = maskVal;
-                                    mask[(byte)maskVal][indexes[idx][k]] = (byte)maskVal;
-                                }
-                            }
-                            if (inside_cnt > 0 && inside_cnt < 4) {
-
-                                for (int k = 0; k < count[idx]; k++) {
-                                    double xx = vals_0[0][indexes[idx][k]];
-                                    double yy = vals_1[0][indexes[idx][k]];
-                                    if (DelaunayCustom.inside(curve, (float) xx, (float) yy)) {
-                                        maskRange[0][indexes[idx][k]] = maskVal;
-                                        mask[(byte)maskVal][indexes[idx][k]] = (byte)maskVal;
-                                    }
+                            for (int k = start; k < end; k++) {
+                                int sample = binMembers[k];
+                                double xx = dvals_0[0][sample];
+                                double yy = dvals_1[0][sample];
+                                if (DelaunayCustom.inside(curve, (float) xx, (float) yy)) {
+                                    maskRange[0][sample] = maskVal;
+                                    mask[(byte)maskVal][sample] = (byte)maskVal;
                                 }
                             }
                         }
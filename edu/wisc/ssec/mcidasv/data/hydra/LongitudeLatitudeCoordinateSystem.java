@@ -55,6 +55,9 @@ public class LongitudeLatitudeCoordinateSystem extends CoordinateSystem {
 
    Gridded1DSet goodLinesSet;
 
+   // bucket index over projSet for fromReference, built on first use
+   private transient GriddedSetIndex projIndex;
+
    //- assumes incoming GriddedSet is (longitude,latitude) with range (-180,+180)
    boolean neg180pos180 = true;  //false: longitude range (0,+360)
 
@@ -185,7 +188,7 @@ public class LongitudeLatitudeCoordinateSystem extends CoordinateSystem {
      //float[][] grid_vals = gset.valueToGrid(values);
      // use the projected set
      values = projCS.fromReference(values);
-     float[][] grid_vals = projSet.valueToGrid(values);
+     float[][] grid_vals = getProjIndex().valueToGrid(values);
 
      // return original domain coordinates if missing geo lines were removed
      if (goodLinesSet != null) {
@@ -270,7 +273,7 @@ public class LongitudeLatitudeCoordinateSystem extends CoordinateSystem {
      }
 
      // use the projected set
-     float[][] grid_vals = projSet.valueToGrid(Set.doubleToFloat(values));
+     float[][] grid_vals = getProjIndex().valueToGrid(projCS.fromReference(Set.doubleToFloat(values)));
 
      // return original domain coordinates if missing geo lines were removed
      if (goodLinesSet != null) {
@@ -283,6 +286,13 @@ public class LongitudeLatitudeCoordinateSystem extends CoordinateSystem {
      return Set.floatToDouble(coords);
    }
 
+   private synchronized GriddedSetIndex getProjIndex() throws VisADException {
+     if (projIndex == null) {
+       projIndex = new GriddedSetIndex(projSet.getSamples(false), projSet.getLength(0), projSet.getLength(1));
+     }
+     return projIndex;
+   }
+
    public Rectangle2D getDefaultMapArea() {
      float[] lo = domainSet.getLow();
      float[] hi = domainSet.getHi();
@@ -0,0 +1,267 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Mergeable approximate quantile sketch, after Karnin, Lang and Liberty
+ * (KLL).
+ *
+ * <p>Values are kept in a stack of levels; an item on level {@code h}
+ * stands for {@code 2^h} inputs. When a level grows past its capacity it
+ * is sorted and every other item is promoted, so memory stays
+ * proportional to {@code k} no matter how many values are added. Two
+ * sketches are merged by concatenating their levels and compacting
+ * again, which lets chunks of a field be summarized in parallel.</p>
+ *
+ * <p>The normalized rank error is roughly {@code 1.7 / k}.</p>
+ */
+public class QuantileSketch {
+
+    /** Default accuracy parameter, good to about 0.2% in rank. */
+    public static final int DEFAULT_K = 1024;
+
+    /** Capacity ratio between adjacent levels. */
+    private static final double DECAY = 2.0 / 3.0;
+
+    /** Smallest capacity given to any level. */
+    private static final int MIN_CAPACITY = 8;
+
+    private final int k;
+
+    private final Random random;
+
+    private float[][] levels;
+
+    private int[] sizes;
+
+    private int numLevels;
+
+    /** Capacity of each level for the current number of levels. */
+    private int[] capacities;
+
+    private long count;
+
+    /** Items and cumulative weights, sorted by value; built on demand. */
+    private float[] sortedItems;
+
+    private long[] sortedWeights;
+
+    /**
+     * Create an empty sketch with {@link #DEFAULT_K}.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K, 0L);
+    }
+
+    /**
+     * Create an empty sketch.
+     *
+     * @param k Accuracy parameter; larger is more accurate.
+     * @param seed Seed for the compaction coin flips, so that results are
+     *             repeatable.
+     */
+    public QuantileSketch(int k, long seed) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY);
+        }
+        this.k = k;
+        this.random = new Random(seed);
+        this.levels = new float[][] { new float[k] };
+        this.sizes = new int[1];
+        this.numLevels = 1;
+        this.capacities = new int[] { k };
+    }
+
+    /**
+     * Number of values added to this sketch (including merged sketches).
+     *
+     * @return Number of values summarized.
+     */
+    public long getN() {
+        return count;
+    }
+
+    /**
+     * Add a value. {@code NaN} should be filtered out by the caller.
+     *
+     * @param value Value to add.
+     */
+    public void update(float value) {
+        if (sizes[0] == levels[0].length) {
+            levels[0] = Arrays.copyOf(levels[0], 2 * levels[0].length);
+        }
+        levels[0][sizes[0]++] = value;
+        count++;
+        sortedItems = null;
+        if (sizes[0] >= capacities[0]) {
+            compress();
+        }
+    }
+
+    /**
+     * Fold another sketch into this one. {@code other} is not modified.
+     *
+     * @param other Sketch to merge.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        while (numLevels < other.numLevels) {
+            addLevel();
+        }
+        for (int h = 0; h < other.numLevels; h++) {
+            append(h, other.levels[h], 0, other.sizes[h]);
+        }
+        count += other.count;
+        sortedItems = null;
+        compress();
+    }
+
+    /**
+     * Estimate the value at the given normalized rank.
+     *
+     * @param rank Rank from 0 to 1, inclusive.
+     *
+     * @return Estimated value, or {@code NaN} if the sketch is empty.
+     */
+    public double getQuantile(double rank) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        buildSorted();
+        long target = (long) Math.ceil(rank * count);
+        int idx = Arrays.binarySearch(sortedWeights, Math.max(target, 1L));
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        return sortedItems[Math.min(idx, sortedItems.length - 1)];
+    }
+
+    private void addLevel() {
+        if (numLevels == levels.length) {
+            levels = Arrays.copyOf(levels, 2 * levels.length);
+            sizes = Arrays.copyOf(sizes, levels.length);
+        }
+        levels[numLevels] = new float[MIN_CAPACITY];
+        sizes[numLevels] = 0;
+        numLevels++;
+        capacities = new int[numLevels];
+        for (int h = 0; h < numLevels; h++) {
+            int depth = numLevels - h - 1;
+            capacities[h] = Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(DECAY, depth)));
+        }
+    }
+
+    private void append(int level, float[] items, int from, int to) {
+        int n = to - from;
+        int size = sizes[level];
+        if (size + n > levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(size + n, 2 * levels[level].length));
+        }
+        System.arraycopy(items, from, levels[level], size, n);
+        sizes[level] = size + n;
+    }
+
+    /**
+     * Compact, bottom up, every level that is over capacity. Promoting half
+     * of a level's items to the next one up keeps the total weight the
+     * same.
+     */
+    private void compress() {
+        for (int h = 0; h < numLevels; h++) {
+            int size = sizes[h];
+            if (size < capacities[h]) {
+                continue;
+            }
+            if (h + 1 == numLevels) {
+                addLevel();
+            }
+            float[] items = levels[h];
+            Arrays.sort(items, 0, size);
+            // an odd item out stays behind at this level
+            int keep = size & 1;
+            int pairs = (size - keep) / 2;
+            int offset = random.nextBoolean() ? 1 : 0;
+            int next = sizes[h + 1];
+            if (next + pairs > levels[h + 1].length) {
+                levels[h + 1] = Arrays.copyOf(levels[h + 1], Math.max(next + pairs, 2 * levels[h + 1].length));
+            }
+            float[] up = levels[h + 1];
+            for (int i = 0; i < pairs; i++) {
+                up[next + i] = items[keep + 2 * i + offset];
+            }
+            sizes[h + 1] = next + pairs;
+            sizes[h] = keep;
+        }
+    }
+
+    private void buildSorted() {
+        if (sortedItems != null) {
+            return;
+        }
+        int total = 0;
+        for (int h = 0; h < numLevels; h++) {
+            total += sizes[h];
+        }
+        // pack (value, level) so one primitive sort orders every item
+        long[] packed = new long[total];
+        int n = 0;
+        for (int h = 0; h < numLevels; h++) {
+            float[] items = levels[h];
+            for (int i = 0; i < sizes[h]; i++) {
+                packed[n++] = ((long) sortableBits(items[i]) << 8) | h;
+            }
+        }
+        Arrays.sort(packed);
+        float[] values = new float[total];
+        long[] weights = new long[total];
+        long cumulative = 0L;
+        for (int i = 0; i < total; i++) {
+            values[i] = fromSortableBits((int) (packed[i] >> 8));
+            cumulative += 1L << (packed[i] & 0xff);
+            weights[i] = cumulative;
+        }
+        sortedItems = values;
+        sortedWeights = weights;
+    }
+
+    /** Map a float to an int with the same ordering. */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return (bits < 0) ? bits ^ 0x7fffffff : bits;
+    }
+
+    private static float fromSortableBits(int bits) {
+        return Float.intBitsToFloat((bits < 0) ? bits ^ 0x7fffffff : bits);
+    }
+}
@@ -654,6 +654,86 @@ public class RangeProcessor {
         return new_values;
     }
 
+    /**
+     * Process a range of unsigned {@code short} values straight into a
+     * destination array. Equivalent to {@link #processRangeUshorts(int[], Map)}
+     * with no subset, but without widening the input to {@code int[]} or
+     * allocating an output array.
+     *
+     * @param values Raw values, interpreted as unsigned. Cannot be {@code null}.
+     * @param srcPos First value to process.
+     * @param dest Destination array. Cannot be {@code null}.
+     * @param destPos Position in {@code dest} of the first processed value.
+     * @param length Number of values to process.
+     */
+
+    public void processRangeUshorts(short[] values, int srcPos, float[] dest, int destPos, int length) {
+        for (int k = 0; k < length; k++) {
+            dest[destPos + k] = processValue((float) Short.toUnsignedInt(values[srcPos + k]));
+        }
+    }
+
+    /**
+     * Process a range of unsigned {@code byte} values straight into a
+     * destination array, applying the same missing value, valid range and
+     * scale/offset handling as {@link #processRangeUshorts(short[], int, float[], int, int)}.
+     *
+     * @param values Raw values, interpreted as unsigned. Cannot be {@code null}.
+     * @param srcPos First value to process.
+     * @param dest Destination array. Cannot be {@code null}.
+     * @param destPos Position in {@code dest} of the first processed value.
+     * @param length Number of values to process.
+     */
+
+    public void processRangeUbytes(byte[] values, int srcPos, float[] dest, int destPos, int length) {
+        for (int k = 0; k < length; k++) {
+            dest[destPos + k] = processValue((float) Byte.toUnsignedInt(values[srcPos + k]));
+        }
+    }
+
+    /**
+     * Apply missing value, valid range, and scale/offset handling to a single
+     * (already unsigned-converted) value, as done per element by
+     * {@link #processRangeUshorts(int[], Map)} when there is no subset.
+     *
+     * @param val Raw value.
+     *
+     * @return Processed value, or {@code Float.NaN} if missing or out of range.
+     */
+
+    public float processValue(float val) {
+        if (missing != null) {
+            for (int mvIdx = 0; mvIdx < missing.length; mvIdx++) {
+                if (val == missing[mvIdx]) {
+                    return Float.NaN;
+                }
+            }
+        }
+
+        if (rangeCheckBeforeScaling) {
+            if ((val < valid_low) || (val > valid_high)) {
+                return Float.NaN;
+            }
+        }
+
+        float newVal = val;
+        if (scale != null) {
+            if (unpack) {
+                newVal = (scale[soIndex] * val) + offset[soIndex];
+            } else {
+                newVal = scale[soIndex] * (val - offset[soIndex]);
+            }
+        }
+
+        // do valid range check AFTER scaling?
+        if (!rangeCheckBeforeScaling) {
+            if ((newVal < valid_low) || (newVal > valid_high)) {
+                newVal = Float.NaN;
+            }
+        }
+        return newVal;
+    }
+
     /**
      * Process a range of data from an array of {@code float} values.
      * 
@@ -28,7 +28,10 @@
 package edu.wisc.ssec.mcidasv.data.hydra;
 
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import visad.CoordinateSystem;
 import visad.FlatField;
@@ -38,7 +41,7 @@ import visad.RealTupleType;
 import visad.RealType;
 import visad.SetType;
 import visad.VisADException;
-import visad.util.ThreadManager;
+import visad.util.ParallelTasks;
 
 public class ReprojectSwath {
   private static int count = 0;
@@ -66,8 +69,13 @@ public class ReprojectSwath {
   int rngTupDim;
   FlatField grdFF;
 
-  int[][][] quads;
+  // four corner (LL, LR, UL, UR) indexes into swathGridCoord per grid point
+  int[] quads;
   int mode;
+
+  // resampling plans already built for this swath geolocation and grid,
+  // most recently used first
+  private final List<GatherPlan> gatherPlans = new ArrayList<>();
   
   public static final int NEAREST = 1;
   public static final int BILINEAR_VISAD = 0;
@@ -75,11 +83,72 @@ public class ReprojectSwath {
   int numProc = Runtime.getRuntime().availableProcessors();
   private static boolean doParallel = false;
 
-  private static ReprojectSwath lastReproject = null;
+  // pool for reprojections; the common pool unless a thread budget is set
+  private static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+  // the pool read when the current operation started, used by all its stages
+  private ForkJoinPool workPool;
+
+  // swath to grid projections keyed on (grid, swath domain), most recently used first
+  private static final List<ReprojectSwath> reprojectCache = new ArrayList<>();
 
+  // most gather plans kept per swath geolocation
+  private static final int MAX_GATHER_PLANS = 4;
+
+  private static double cacheMemoryPercentage = 0.10;
+
+  /**
+   * Also project the swath points to the grid in parallel. This stage calls
+   * the swath and grid CoordinateSystems from several threads at once.
+   * LongitudeLatitudeCoordinateSystem is safe to share (its arrays and cell
+   * index are only read once built), but the grid is usually a map
+   * projection, and those are not known to be thread-safe, so this is off
+   * unless enabled. The other stages only touch this class's own arrays and
+   * run on the pool whenever the swath is large enough.
+   *
+   * @param enable true to project in parallel
+   */
   public static void setDoParallel(boolean enable) {
      doParallel = enable;
   }
+
+  /**
+   * Set the number of threads used for reprojection. Defaults to the common
+   * ForkJoinPool. A reprojection already running finishes on the pool it
+   * started with; the threads of a replaced pool exit once idle.
+   *
+   * @param threads number of threads, at least 1
+   */
+  public static synchronized void setThreadBudget(int threads) {
+     threads = Math.max(1, threads);
+     if (threads != pool.getParallelism()) {
+        pool = new ForkJoinPool(threads);
+     }
+  }
+
+  public static int getThreadBudget() {
+     return pool.getParallelism();
+  }
+
+  /**
+   * Set the fraction of the maximum heap that cached swath projections and
+   * resampling plans may use. The most recently used projection is always
+   * kept.
+   *
+   * @param percentage fraction of {@link Runtime#maxMemory()}
+   */
+  public static void setCacheMemoryPercent(double percentage) {
+     cacheMemoryPercentage = percentage;
+  }
+
+  /**
+   * Drop all cached swath projections and resampling plans.
+   */
+  public static void clearCache() {
+     synchronized (reprojectCache) {
+        reprojectCache.clear();
+     }
+  }
   
   public static FlatField swathToGrid(Linear2DSet grid, FlatField[] swaths, int mode) throws Exception {
      return swathToGrid(grid, swaths, mode, true);
@@ -106,26 +175,88 @@ public class ReprojectSwath {
   }
   
   public static FlatField swathToGrid(Linear2DSet grid, FlatField swath, int mode, boolean filter) throws Exception {
-    ReprojectSwath obj = null;
-    FlatField ff = null;
-
-    if (lastReproject != null) {
-       if (grid.equals(lastReproject.grid) && (swath.getDomainSet()).equals(lastReproject.swathDomain)) {
-         obj = lastReproject;
-         ff = obj.reproject(swath, mode, filter);
+    ReprojectSwath obj = getCachedReproject(grid, swath.getDomainSet());
+    if (obj == null) {
+       obj = new ReprojectSwath(grid, swath);
+       addCachedReproject(obj);
+    }
+    synchronized (obj) {
+       try {
+          return obj.reproject(swath, mode, filter);
        }
-       else {
-         obj = new ReprojectSwath(grid, swath);
-         ff = obj.reproject(mode, filter);
+       finally {
+          obj.releaseData();
        }
     }
-    else {
-      obj = new ReprojectSwath(grid, swath);
-      ff = obj.reproject(mode, filter);
+  }
+
+  // the cache keeps only the geolocation and resampling plans, so drop the
+  // swath and grid values once a reprojection is done
+  private void releaseData() {
+    swathRange = null;
+    gridRange = null;
+    grdFF = null;
+  }
+
+  private static ReprojectSwath getCachedReproject(Linear2DSet grid, visad.Set swathDomain) {
+    synchronized (reprojectCache) {
+       for (int k=0; k<reprojectCache.size(); k++) {
+          ReprojectSwath obj = reprojectCache.get(k);
+          if (grid.equals(obj.grid) && swathDomain.equals(obj.swathDomain)) {
+             reprojectCache.remove(k);
+             reprojectCache.add(0, obj);
+             return obj;
+          }
+       }
+    }
+    return null;
+  }
+
+  private static void addCachedReproject(ReprojectSwath obj) {
+    synchronized (reprojectCache) {
+       reprojectCache.add(0, obj);
+       trimCache();
+    }
+  }
+
+  // evict least recently used projections until under the memory limit
+  private static void trimCache() {
+    synchronized (reprojectCache) {
+       long maxBytes = (long) (cacheMemoryPercentage * Runtime.getRuntime().maxMemory());
+       long total = 0;
+       for (int k=0; k<reprojectCache.size(); k++) {
+          total += reprojectCache.get(k).getCachedBytes();
+          if (k > 0 && total > maxBytes) {
+             while (reprojectCache.size() > k) {
+                reprojectCache.remove(reprojectCache.size()-1);
+             }
+             break;
+          }
+       }
     }
-    lastReproject = obj;
+  }
 
-    return ff;
+  /**
+   * @return approximate number of bytes held by this projection and its
+   *         resampling plans: the grid coordinates and index of every swath
+   *         point, any swath or grid values not yet released, and the plans
+   */
+  long getCachedBytes() {
+    long bytes = 12L * trackLen * xtrackLen;
+    float[][] swathValues = swathRange;
+    if (swathValues != null) {
+       bytes += 4L * swathValues.length * trackLen * xtrackLen;
+    }
+    float[][] gridValues = gridRange;
+    if (gridValues != null) {
+       bytes += 4L * gridValues.length * gridLen;
+    }
+    synchronized (gatherPlans) {
+       for (GatherPlan plan : gatherPlans) {
+          bytes += plan.getBytes();
+       }
+    }
+    return bytes;
   }
   
   public ReprojectSwath() {
@@ -135,10 +266,11 @@ public class ReprojectSwath {
       
     init(grid, swath);
     
-    if (trackLen < 200 || doParallel == false) {
+    if (trackLen < 200) {
         numProc = 1;
     }
 
+    workPool = pool;
     projectSwathToGrid();
   }
   
@@ -161,53 +293,56 @@ public class ReprojectSwath {
     
      allSwathGridCoords = new float[2][swathLen];
      allSwathGridIndexs = new int[swathLen];
-     swathGridCoord = new float[2][gridLen];
-     swathIndexAtGrid = new int[gridLen];
-    
-     quads = new int[gridYLen][gridXLen][4];
    }
-
-  /*
-  public FlatField reproject(Linear2DSet grid, FlatField swath, int mode, boolean filter) throws Exception {
-    init();
-    
-    if (trackLen < 200 || doParallel == false) {
-        numProc = 1;
-    }
-  
-    return reproject(mode, filter);
-  }
-  */
     
   public FlatField reproject(int mode, boolean filter) throws Exception {
-    this.mode = mode;
-    
-    initGrid();
-
-    getBoundingQuadAtGridPts();
-
-    interpolateToGrid();
-    
-    if (filter) {
-       grdFF.setSamples(filter(), false);
-    }
-    else {
-       grdFF.setSamples(gridRange, false);
-    }
-    
-    return grdFF;
+    return reproject(mode, filter, swathRange);
   }
 
   private FlatField reproject(FlatField swath, int mode, boolean filter) throws Exception {
-     this.mode = mode;
-     swathRange = swath.getFloats(false);
      ftype = (FunctionType) swath.getType();
-     
-     initGrid();
-     
-     getBoundingQuadAtGridPts();
-     
-     interpolateToGrid();
+     return reproject(mode, filter, swath.getFloats(false));
+  }
+
+  /**
+   * Resample {@code range} onto the grid. The resampling plan depends only on
+   * the geolocation, the mode, and which swath points are missing in the
+   * first range component, so it is built once and then reused by any band
+   * with the same missing points.
+   */
+  private FlatField reproject(int mode, boolean filter, float[][] range) throws Exception {
+     this.mode = mode;
+     swathRange = range;
+     workPool = pool;
+
+     long[] missing = getMissingMask(swathRange[0]);
+     GatherPlan plan = getGatherPlan(mode, missing);
+     if (plan == null) {
+        initGrid();
+
+        getBoundingQuadAtGridPts();
+
+        plan = makeGatherPlan(missing);
+
+        // only needed to build the plan
+        quads = null;
+        swathGridCoord = null;
+        swathIndexAtGrid = null;
+
+        synchronized (gatherPlans) {
+           gatherPlans.add(0, plan);
+           while (gatherPlans.size() > MAX_GATHER_PLANS) {
+              gatherPlans.remove(gatherPlans.size()-1);
+           }
+        }
+        trimCache();
+     }
+
+     initRange();
+
+     final GatherPlan gatherPlan = plan;
+     runTiled(0, gridYLen-1, (start, stop) ->
+        gatherPlan.interpolate(swathRange, gridRange, start*gridXLen, (stop+1)*gridXLen - 1));
      
      if (filter) {
        grdFF.setSamples(filter(), false);
@@ -218,31 +353,34 @@ public class ReprojectSwath {
      
      return grdFF;
   }
-  
-   private void getBoundingQuadAtGridPts() throws VisADException, RemoteException {
-    int ystart = 3;
-    int ystop = gridYLen-4;
-    int subLen = ((ystop - ystart)+1)/numProc;
-    int rem = ((ystop - ystart)+1) % numProc;
-    
-    
-    ThreadManager threadManager = new ThreadManager("getBoundingQuadAtGridPts");
-    for (int i=0; i<numProc; i++) {
-        final int start = i*subLen + ystart;
-        final int stop = (i != numProc-1 ) ? (start + subLen - 1): (start + subLen + rem - 1);
-          threadManager.addRunnable(new ThreadManager.MyRunnable() {
-                  public void run()  throws Exception {
-                     getBoundingQuadAtGridPts(start, stop);
-                  }
-              });
-    }
-    
-    if (numProc == 1 || !doParallel) {
-       threadManager.runSequentially();
+
+  private GatherPlan getGatherPlan(int mode, long[] missing) {
+    synchronized (gatherPlans) {
+       for (int k=0; k<gatherPlans.size(); k++) {
+          GatherPlan plan = gatherPlans.get(k);
+          if (plan.mode == mode && Arrays.equals(plan.missing, missing)) {
+             gatherPlans.remove(k);
+             gatherPlans.add(0, plan);
+             return plan;
+          }
+       }
     }
-    else {
-       threadManager.runAllParallel();
+    return null;
+  }
+
+  // one bit per swath point, set where the value is NaN
+  private static long[] getMissingMask(float[] values) {
+    long[] mask = new long[(values.length + 63) >>> 6];
+    for (int k=0; k<values.length; k++) {
+       if (Float.isNaN(values[k])) {
+          mask[k >>> 6] |= 1L << k;
+       }
     }
+    return mask;
+  }
+  
+   private void getBoundingQuadAtGridPts() throws VisADException, RemoteException {
+    runTiled(3, gridYLen-4, (start, stop) -> getBoundingQuadAtGridPts(start, stop));
   }
 
   // start to stop inclusive
@@ -251,53 +389,27 @@ public class ReprojectSwath {
     for (int j=grdYstart; j<=grdYstop; j++) {
        for (int i=3; i<gridXLen-3; i++) {
           int grdIdx = i + j*gridXLen;
+          int q = 4*grdIdx;
 
-          int ll = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "LL");
-          quads[j][i][0] = ll;
-
-          int lr = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "LR");
-          quads[j][i][1] = lr;
-
-          int ul = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "UL");
-          quads[j][i][2] = ul;
-
-          int ur = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "UR");
-          quads[j][i][3] = ur;
+          quads[q] = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "LL");
+          quads[q+1] = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "LR");
+          quads[q+2] = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "UL");
+          quads[q+3] = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "UR");
        }
     }
   }
   
-  public void interpolateToGrid() throws VisADException, RemoteException {
-    int ystart = 3;
-    int ystop = gridYLen-4;
-    int subLen = ((ystop - ystart)+1)/numProc;
-    int rem = ((ystop - ystart)+1) % numProc;
-    
-    ThreadManager threadManager = new ThreadManager("interpolateToGrid");
-    for (int i=0; i<numProc; i++) {
-        final int start = i*subLen + ystart;
-        final int stop = (i != numProc-1 ) ? (start + subLen - 1): (start + subLen + rem - 1);
-          threadManager.addRunnable(new ThreadManager.MyRunnable() {
-                  public void run()  throws Exception {
-                     interpolateToGrid(start, stop);
-                  }
-              });
-    }
-    
-    if (numProc == 1 || !doParallel) {
-       threadManager.runSequentially();
-    }
-    else {
-       threadManager.runAllParallel();
-    }
+  private GatherPlan makeGatherPlan(long[] missing) throws VisADException, RemoteException {
+    final GatherPlan plan = new GatherPlan(mode, missing, gridLen);
+    runTiled(3, gridYLen-4, (start, stop) -> makeGatherPlan(plan, start, stop));
+    return plan;
   }
 
   // start to stop inclusive
-  public void interpolateToGrid(int grdYstart, int grdYstop) throws VisADException, RemoteException {
+  private void makeGatherPlan(GatherPlan plan, int grdYstart, int grdYstop) {
 
     float[][] corners = new float[2][4];
-    float[][] rngVals = new float[rngTupDim][4];
-    float[] values = new float[4];
+    float[] weights = new float[2];
     float gx;
     float gy;
 
@@ -310,46 +422,31 @@ public class ReprojectSwath {
           java.util.Arrays.fill(corners[0], Float.NaN);
           java.util.Arrays.fill(corners[1], Float.NaN);
         
-          int ll = quads[j][i][0];
-          int lr = quads[j][i][1];
-          int ul = quads[j][i][2];
-          int ur = quads[j][i][3];
-
-          if (ll >= 0) {
-             corners[0][0] = swathGridCoord[0][ll] - gx;
-             corners[1][0] = swathGridCoord[1][ll] - gy;
-          }
-          if (lr >= 0) {
-             corners[0][1] = swathGridCoord[0][lr] - gx;
-             corners[1][1] = swathGridCoord[1][lr] - gy;
-          }
-          if (ul >= 0) {
-             corners[0][2] = swathGridCoord[0][ul] - gx;
-             corners[1][2] = swathGridCoord[1][ul] - gy;
-          }
-          if (ur >= 0) {
-             corners[0][3] = swathGridCoord[0][ur] - gx;
-             corners[1][3] = swathGridCoord[1][ur] - gy;
-          }
+          int ll = quads[4*grdIdx];
+          int lr = quads[4*grdIdx+1];
+          int ul = quads[4*grdIdx+2];
+          int ur = quads[4*grdIdx+3];
 
           if (mode == NEAREST) { // Nearest neighbor
-             for (int t=0; t<rngTupDim; t++) {
-                java.util.Arrays.fill(values, Float.NaN);
-                if (ll >=0) {
-                   values[0] = swathRange[t][swathIndexAtGrid[ll]];
-                }
-                if (lr >= 0) {
-                   values[1] = swathRange[t][swathIndexAtGrid[lr]];
-                }
-                if (ul >= 0) {
-                   values[2] = swathRange[t][swathIndexAtGrid[ul]];
-                }
-                if (ur >= 0) {
-                   values[3] = swathRange[t][swathIndexAtGrid[ur]];
-                }
-                float val = nearest(0f, 0f, corners, values);
-                gridRange[t][grdIdx] = val;
+             if (ll >= 0) {
+                corners[0][0] = swathGridCoord[0][ll] - gx;
+                corners[1][0] = swathGridCoord[1][ll] - gy;
+             }
+             if (lr >= 0) {
+                corners[0][1] = swathGridCoord[0][lr] - gx;
+                corners[1][1] = swathGridCoord[1][lr] - gy;
+             }
+             if (ul >= 0) {
+                corners[0][2] = swathGridCoord[0][ul] - gx;
+                corners[1][2] = swathGridCoord[1][ul] - gy;
              }
+             if (ur >= 0) {
+                corners[0][3] = swathGridCoord[0][ur] - gx;
+                corners[1][3] = swathGridCoord[1][ur] - gy;
+             }
+             int closest = nearest(0f, 0f, corners);
+             int corner = (closest == 0) ? ll : (closest == 1) ? lr : (closest == 2) ? ul : ur;
+             plan.index[grdIdx] = (corner >= 0) ? swathIndexAtGrid[corner] : -1;
           }
           else if (mode == BILINEAR_VISAD) {  //from VisAD
              if (!(ll >= 0 && lr >= 0 && ul >= 0 && ur >= 0)) {
@@ -363,40 +460,13 @@ public class ReprojectSwath {
              corners[1][2] = swathGridCoord[1][ul];
              corners[0][3] = swathGridCoord[0][ur];
              corners[1][3] = swathGridCoord[1][ur];
-             for (int t=0; t<rngTupDim; t++) {
-                java.util.Arrays.fill(values, Float.NaN);
-                values[0] = swathRange[t][swathIndexAtGrid[ll]];
-                values[1] = swathRange[t][swathIndexAtGrid[lr]];
-                values[2] = swathRange[t][swathIndexAtGrid[ul]];
-                values[3] = swathRange[t][swathIndexAtGrid[ur]];
-                float val = visad2D(gy, gx, corners, values);
-                gridRange[t][grdIdx] = val;
-             }
-          }
-          else if (mode == 1) { //TODO: not working yet
-             if (!(ll >= 0 && lr >= 0 && ul >= 0 && ur >= 0)) {
-                continue;
-             }
-             gx -= swathGridCoord[0][ll];
-             gy -= swathGridCoord[1][ll];
-             corners[0][0] = 0f;
-             corners[1][0] = 0f;
-             corners[0][1] = swathGridCoord[0][ul] - swathGridCoord[0][ll];
-             corners[1][1] = swathGridCoord[1][ul] - swathGridCoord[1][ll];
-             corners[0][2] = swathGridCoord[0][ur] - swathGridCoord[0][ll];
-             corners[1][2] = swathGridCoord[1][ur] - swathGridCoord[1][ll];
-             corners[0][3] = swathGridCoord[0][lr] - swathGridCoord[0][ll];
-             corners[1][3] = swathGridCoord[1][lr] - swathGridCoord[1][ll];
-             for (int t=0; t<rngTupDim; t++) {
-                java.util.Arrays.fill(values, Float.NaN);
-                values[0] = swathRange[t][swathIndexAtGrid[ll]];
-                values[1] = swathRange[t][swathIndexAtGrid[ul]];
-                values[2] = swathRange[t][swathIndexAtGrid[ur]];
-                values[3] = swathRange[t][swathIndexAtGrid[lr]];
-                float val = biLinearIntrp(gy, gx, corners, values);
-                gridRange[t][grdIdx] = val;
-             }
-
+             visad2DWeights(gy, gx, corners, weights);
+             plan.index[4*grdIdx] = swathIndexAtGrid[ll];
+             plan.index[4*grdIdx+1] = swathIndexAtGrid[lr];
+             plan.index[4*grdIdx+2] = swathIndexAtGrid[ul];
+             plan.index[4*grdIdx+3] = swathIndexAtGrid[ur];
+             plan.weight[2*grdIdx] = weights[0];
+             plan.weight[2*grdIdx+1] = weights[1];
           }
        }
     }
@@ -404,25 +474,11 @@ public class ReprojectSwath {
   }
 
  public void projectSwathToGrid() throws VisADException, RemoteException {
-    int subLen = trackLen/numProc;
-    int rem = trackLen % numProc;
-    
-    ThreadManager threadManager = new ThreadManager("projectSwathToGrid");
-    for (int i=0; i<numProc; i++) {
-        final int start = i*subLen;
-        final int stop = (i != numProc-1 ) ? (start + subLen - 1): (start + subLen + rem - 1);
-          threadManager.addRunnable(new ThreadManager.MyRunnable() {
-                  public void run()  throws Exception {
-                     projectSwathToGrid(start, stop);
-                  }
-              });
-    }
-    
-    if (numProc == 1 || !doParallel) {
-       threadManager.runSequentially();
+    if (doParallel) {
+       runTiled(0, trackLen-1, (start, stop) -> projectSwathToGrid(start, stop));
     }
     else {
-       threadManager.runAllParallel();
+       projectSwathToGrid(0, trackLen-1);
     }
  }
  
@@ -453,6 +509,10 @@ public class ReprojectSwath {
  }
  
  public void initGrid() throws VisADException {
+    swathGridCoord = new float[2][gridLen];
+    swathIndexAtGrid = new int[gridLen];
+    quads = new int[4*gridLen];
+
     Arrays.fill(swathGridCoord[0], -999.9f);
     Arrays.fill(swathGridCoord[1], -999.9f);
     Arrays.fill(swathIndexAtGrid, -1);
@@ -473,12 +533,10 @@ public class ReprojectSwath {
        }
     }
     
-    for (int j=0; j<gridYLen; j++) {
-       for (int i=0; i<gridXLen; i++) {
-          java.util.Arrays.fill(quads[j][i], -1);
-       }
-    }
-    
+    Arrays.fill(quads, -1);
+ }
+
+ private void initRange() throws VisADException {
     RealTupleType rtt = ((SetType)grid.getType()).getDomain();
     grdFF = new FlatField(new FunctionType(rtt, ftype.getRange()), grid);
     gridRange = grdFF.getFloats(false);
@@ -488,6 +546,99 @@ public class ReprojectSwath {
     }
  }
 
+ /** Work on rows (or swath lines) start to stop inclusive. */
+ private interface RowTask {
+    void run(int start, int stop) throws Exception;
+ }
+
+ /**
+  * Run {@code task} over rows start to stop inclusive. For large swaths the
+  * rows are split into about eight tiles per thread on the pool this
+  * operation started with, so idle threads pick up tiles while rows with
+  * heavy swath coverage are still running. Each row is computed the same
+  * way either way, so the results do not depend on the split.
+  */
+ private void runTiled(int start, int stop, RowTask task) throws VisADException, RemoteException {
+    if (stop < start) {
+       return;
+    }
+    ForkJoinPool fjPool = (workPool != null) ? workPool : pool;
+    try {
+       if (numProc == 1) {
+          task.run(start, stop);
+          return;
+       }
+       ParallelTasks.forEachRange(fjPool, stop - start + 1, 1,
+          (from, to) -> task.run(start + from, start + to - 1));
+    }
+    catch (VisADException | RemoteException | RuntimeException e) {
+       throw e;
+    }
+    catch (Exception e) {
+       throw new VisADException(e.toString());
+    }
+ }
+
+ /**
+  * Precomputed swath-to-grid resampling for one swath geolocation, grid,
+  * mode and set of missing swath points. For NEAREST it holds one swath
+  * index per grid point; for BILINEAR_VISAD the four corner swath indexes
+  * and the two unit square coordinates from {@link #visad2D}. Applying it is
+  * a single gather pass per range component.
+  */
+ private static class GatherPlan {
+    final int mode;
+    final long[] missing;
+    final int[] index;
+    final float[] weight;
+
+    GatherPlan(int mode, long[] missing, int gridLen) {
+       this.mode = mode;
+       this.missing = missing;
+       if (mode == NEAREST) {
+          index = new int[gridLen];
+          weight = null;
+       }
+       else {
+          index = new int[4*gridLen];
+          weight = new float[2*gridLen];
+       }
+       Arrays.fill(index, -1);
+    }
+
+    long getBytes() {
+       return 8L*missing.length + 4L*index.length + ((weight != null) ? 4L*weight.length : 0L);
+    }
+
+    // grid points start to stop inclusive
+    void interpolate(float[][] swathRange, float[][] gridRange, int start, int stop) {
+       for (int t=0; t<gridRange.length; t++) {
+          float[] src = swathRange[t];
+          float[] dst = gridRange[t];
+          if (mode == NEAREST) {
+             for (int g=start; g<=stop; g++) {
+                int k = index[g];
+                if (k >= 0) {
+                   dst[g] = src[k];
+                }
+             }
+          }
+          else {
+             for (int g=start; g<=stop; g++) {
+                int q = 4*g;
+                if (index[q] < 0) {
+                   continue;
+                }
+                float gxx = weight[2*g];
+                float gyy = weight[2*g+1];
+                // same expression as visad2D so results are identical
+                dst[g] = src[index[q]]*(1f-gxx)*(1f-gyy) + src[index[q+2]]*(1f-gxx)*gyy
+                       + src[index[q+3]]*gxx*gyy + src[index[q+1]]*gxx*(1f-gyy);
+             }
+          }
+       }
+    }
+ }
  private float[][] filter() throws VisADException, RemoteException {
 
     double mag = 3.0;
@@ -518,9 +669,16 @@ public class ReprojectSwath {
     for (int t=0; t<rngTupDim; t++) {
        java.util.Arrays.fill(newRange[t], Float.NaN);
     }
+    runTiled(2, gridYLen-3, (start, stop) -> filter(weights, newRange, start, stop));
+
+    return newRange;
+ }
+
+ // start to stop inclusive
+ private void filter(float[][] weights, float[][] newRange, int grdYstart, int grdYstop) {
     float[] sum = new float[rngTupDim];
 
-    for (int j=2; j<gridYLen-2; j++) {
+    for (int j=grdYstart; j<=grdYstop; j++) {
        for (int i=2; i<gridXLen-2; i++) {
          int grdIdx = i + j*gridXLen;
 
@@ -540,8 +698,6 @@ public class ReprojectSwath {
          }
        }
     }
-
-    return newRange;
  }
  private static int findSwathGridLoc(int grdIdx, float[][] swathGridCoord, int gridYLen, int gridXLen, String which) {
   
@@ -792,7 +948,8 @@ public class ReprojectSwath {
     return intrp;
  }
 
- private static float nearest(float gy, float gx, float[][] corners, float[] values) {
+ // index of the corner closest to (gx, gy); 0 if none has valid coordinates
+ private static int nearest(float gy, float gx, float[][] corners) {
    float minDist = Float.MAX_VALUE;
 
    float delx;
@@ -809,10 +966,29 @@ public class ReprojectSwath {
       }
    }
 
-   return values[closest];
+   return closest;
  }
  public static float visad2D(float gy, float gx, float[][] corners, float[] values) {
-    boolean Pos = true;
+    float[] weights = new float[2];
+    visad2DWeights(gy, gx, corners, weights);
+    float gxx = weights[0];
+    float gyy = weights[1];
+
+    // bilinear interpolation within the unit square:
+
+    float intrp = values[0]*(1f-gxx)*(1f-gyy) + values[2]*(1f-gxx)*gyy + values[3]*gxx*gyy + values[1]*gxx*(1f-gyy);
+
+
+    return intrp;
+ }
+
+ // position (gxx, gyy) of (gx, gy) within the unit square of the quad, or NaN if outside
+ static void visad2DWeights(float gy, float gx, float[][] corners, float[] weights) {
+    visad2DWeights(gy, gx, corners, weights, true);
+ }
+
+ // as above, Pos being the orientation of the grid (see Gridded2DSet)
+ static void visad2DWeights(float gy, float gx, float[][] corners, float[] weights, boolean Pos) {
 
     // A:0, B:1, C:2, D:3
     float v0x = corners[0][0];
@@ -931,12 +1107,8 @@ public class ReprojectSwath {
 
     }
 
-    // bilinear interpolation within the unit square:
-
-    float intrp = values[0]*(1f-gxx)*(1f-gyy) + values[2]*(1f-gxx)*gyy + values[3]*gxx*gyy + values[1]*gxx*(1f-gyy);
-
-
-    return intrp;
+    weights[0] = gxx;
+    weights[1] = gyy;
  }
 
 }
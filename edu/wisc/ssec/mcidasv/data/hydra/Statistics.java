@@ -39,11 +39,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import org.apache.commons.math3.random.EmpiricalDistribution;
 import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.stat.StatUtils;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 import visad.Data;
 import visad.FlatField;
@@ -60,6 +58,12 @@ import visad.python.JPythonMethods;
 /**
  * Used to obtain various commonly used statistics for VisAD 
  * {@link FlatField FlatFields}.
+ * 
+ * <p>By default the range values are summarized in a single streaming
+ * pass by {@link StreamingStatistics}, without copying them; percentiles
+ * are then approximate. Pass {@code exact = true} to the constructor (or
+ * {@code "EXACT"} to {@link #describe(Object...)}) to keep every value in
+ * a {@link DescriptiveStatistics} and get exact percentiles.</p>
  */
 public class Statistics {
     
@@ -95,6 +99,12 @@ public class Statistics {
     
     DescriptiveStatistics[] descriptiveStats = null;
     
+    StreamingStatistics[] streamingStats = null;
+    
+    private final FlatField field;
+    
+    private final boolean exact;
+    
     double[][] values_x;
     double[][] rngVals;
     
@@ -110,22 +120,62 @@ public class Statistics {
 
     private static final String FLAG_NO_NAV = "NO_NAV";
     
+    private static final String FLAG_EXACT = "EXACT";
+    
+    /**
+     * Compute streaming statistics for {@code fltFld}.
+     *
+     * @param fltFld Field to summarize.
+     *
+     * @throws VisADException if VisAD had problems.
+     *
+     * @see #Statistics(FlatField, boolean)
+     */
     public Statistics(FlatField fltFld) throws VisADException {
-        rngVals = fltFld.getValues(false);
-        rngTupLen = rngVals.length;
+        this(fltFld, false);
+    }
+    
+    /**
+     * Compute statistics for {@code fltFld}.
+     *
+     * @param fltFld Field to summarize.
+     * @param exact If {@code true}, copy every value so that percentiles 
+     *              are exact. Otherwise read the float range in place and 
+     *              estimate percentiles with a {@link QuantileSketch}.
+     *
+     * @throws VisADException if VisAD had problems.
+     */
+    public Statistics(FlatField fltFld, boolean exact) throws VisADException {
+        this.field = fltFld;
+        this.exact = exact;
         numPoints = fltFld.getDomainSet().getLength();
-        numGoodPoints = new int[rngTupLen];
-        
-        values_x = new double[rngTupLen][];
-        
-        for (int k = 0; k < rngTupLen; k++) {
-            values_x[k] = removeMissing(rngVals[k]);
-            numGoodPoints[k] = values_x[k].length;
-        }
         
-        descriptiveStats = new DescriptiveStatistics[rngTupLen];
-        for (int k = 0; k < rngTupLen; k++) {
-            descriptiveStats[k] = new DescriptiveStatistics(values_x[k]);
+        if (exact) {
+            rngVals = fltFld.getValues(false);
+            rngTupLen = rngVals.length;
+            numGoodPoints = new int[rngTupLen];
+            
+            values_x = new double[rngTupLen][];
+            
+            for (int k = 0; k < rngTupLen; k++) {
+                values_x[k] = removeMissing(rngVals[k]);
+                numGoodPoints[k] = values_x[k].length;
+            }
+            
+            descriptiveStats = new DescriptiveStatistics[rngTupLen];
+            for (int k = 0; k < rngTupLen; k++) {
+                descriptiveStats[k] = new DescriptiveStatistics(values_x[k]);
+            }
+        } else {
+            float[][] floats = fltFld.getFloats(false);
+            rngTupLen = floats.length;
+            numGoodPoints = new int[rngTupLen];
+            
+            streamingStats = new StreamingStatistics[rngTupLen];
+            for (int k = 0; k < rngTupLen; k++) {
+                streamingStats[k] = StreamingStatistics.of(floats[k]);
+                numGoodPoints[k] = (int) streamingStats[k].getN();
+            }
         }
         
         MathType rangeType = ((FunctionType) fltFld.getType()).getRange();
@@ -164,21 +214,42 @@ public class Statistics {
         return numGoodPoints;
     }
     
+    /**
+     * Whether percentiles are computed exactly.
+     *
+     * @return {@code true} if every value was kept.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+    
     /** 
-     * Get the original range values.
+     * Get the original range values. In streaming mode these are read 
+     * from the field on first use.
      *
      * @return Original range values.
+     *
+     * @throws VisADException if VisAD had problems.
      */
-    public double[][] getRngVals() {
+    public double[][] getRngVals() throws VisADException {
+        if (rngVals == null) {
+            rngVals = field.getValues(false);
+        }
         return rngVals;
     }
     
     /** 
-     * Get the range values actually used (missing removed).
+     * Get the range values actually used (missing removed). In streaming 
+     * mode these are read from the field on first use.
      * 
      * @return Range values used.
+     *
+     * @throws VisADException if VisAD had problems.
      */
-    public double[][] getValues() {
+    public double[][] getValues() throws VisADException {
+        if (values_x == null) {
+            values_x = removeMissing(getRngVals());
+        }
         return values_x;
     }
     
@@ -217,7 +288,9 @@ public class Statistics {
     public Data mean() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getMean();
+            stats[k] = exact
+                       ? descriptiveStats[k].getMean()
+                       : streamingStats[k].getMean();
         }
         return makeStat(stats);
     }
@@ -225,7 +298,9 @@ public class Statistics {
     public Data geometricMean() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getGeometricMean();
+            stats[k] = exact
+                       ? descriptiveStats[k].getGeometricMean()
+                       : StreamingStatistics.geometricMean(field.getFloats(false)[k]);
         }
         return makeStat(stats);
     }
@@ -234,7 +309,9 @@ public class Statistics {
     public Data max() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getMax();
+            stats[k] = exact
+                       ? descriptiveStats[k].getMax()
+                       : streamingStats[k].getMax();
         }
         return makeStat(stats);
     }
@@ -242,7 +319,9 @@ public class Statistics {
     public Data min() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getMin();
+            stats[k] = exact
+                       ? descriptiveStats[k].getMin()
+                       : streamingStats[k].getMin();
         }
         return makeStat(stats);
     }
@@ -250,7 +329,9 @@ public class Statistics {
     public Data median() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getPercentile(50.0);
+            stats[k] = exact
+                       ? descriptiveStats[k].getPercentile(50.0)
+                       : streamingStats[k].getPercentile(50.0);
         }
         return makeStat(stats);
     }
@@ -258,7 +339,9 @@ public class Statistics {
     public Data percentile(double p) throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getPercentile(p);
+            stats[k] = exact
+                       ? descriptiveStats[k].getPercentile(p)
+                       : streamingStats[k].getPercentile(p);
         }
         return makeStat(stats);
     }
@@ -266,7 +349,9 @@ public class Statistics {
     public Data variance() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getVariance();
+            stats[k] = exact
+                       ? descriptiveStats[k].getVariance()
+                       : streamingStats[k].getVariance();
         }
         return makeStat(stats);
     }
@@ -274,7 +359,9 @@ public class Statistics {
     public Data kurtosis() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getKurtosis();
+            stats[k] = exact
+                       ? descriptiveStats[k].getKurtosis()
+                       : streamingStats[k].getKurtosis();
         }
         return makeStat(stats);
     }
@@ -282,7 +369,9 @@ public class Statistics {
     public Data standardDeviation() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getStandardDeviation();
+            stats[k] = exact
+                       ? descriptiveStats[k].getStandardDeviation()
+                       : streamingStats[k].getStandardDeviation();
         }
         return makeStat(stats);
     }
@@ -290,13 +379,29 @@ public class Statistics {
     public Data skewness() throws VisADException, RemoteException {
         double[] stats = new double[rngTupLen];
         for (int k = 0; k < rngTupLen; k++) {
-            stats[k] = descriptiveStats[k].getSkewness();
+            stats[k] = exact
+                       ? descriptiveStats[k].getSkewness()
+                       : streamingStats[k].getSkewness();
         }
         return makeStat(stats);
     }
     
     public Data correlation(FlatField fltFld)
         throws VisADException, RemoteException {
+        double[] stats = new double[rngTupLen];
+        
+        if (!exact) {
+            float[][] floats_x = field.getFloats(false);
+            float[][] floats_y = fltFld.getFloats(false);
+            if (floats_y.length != rngTupLen) {
+                throw new VisADException("fields must have same range tuple length");
+            }
+            for (int k = 0; k < rngTupLen; k++) {
+                stats[k] = StreamingStatistics.correlation(floats_x[k], floats_y[k]);
+            }
+            return makeStat(stats);
+        }
+        
         double[][] values_x = this.rngVals;
         double[][] values_y = fltFld.getValues(false);
         
@@ -304,8 +409,6 @@ public class Statistics {
             throw new VisADException("fields must have same range tuple length");
         }
         
-        double[] stats = new double[rngTupLen];
-        
         for (int k = 0; k < rngTupLen; k++) {
             double[][] newVals = removeMissingAND(values_x[k], values_y[k]);
             stats[k] = pCorrelation.correlation(newVals[0], newVals[1]);
@@ -356,7 +459,9 @@ public class Statistics {
      * <p>Some notes about {@code params}:
      * <ul>
      *     <li>Understands {@code FlatField} and {@code String} objects.</li>
-     *     <li>Strings must be found within {@link DescribeParams}.</li>
+     *     <li>Strings must be found within {@link DescribeParams}, or be
+     *     {@code "NO_NAV"} (ignore off-earth pixels) or {@code "EXACT"}
+     *     (exact rather than streaming percentiles).</li>
      *     <li>Strings control descriptions returned for all fields in 
      *     {@code params}.</li>
      *     <li>{@code FlatField} and {@code String} objects may appear in any order.</li>
@@ -425,14 +530,29 @@ public class Statistics {
         return sb.toString();
     }
     
+    /**
+     * Count the non-missing values of the first range component into 
+     * {@code bins} equal-width bins between its minimum and maximum.
+     *
+     * @param field Field to bin.
+     * @param bins Number of bins.
+     *
+     * @return Count in each bin.
+     *
+     * @throws VisADException if VisAD had problems.
+     */
     public static Long[] histogram(FlatField field, int bins)
         throws VisADException {
+        float[] values = field.getFloats(false)[0];
+        StreamingStatistics stats = StreamingStatistics.of(values);
+        return histogram(values, bins, stats.getMin(), stats.getMax());
+    }
+    
+    private static Long[] histogram(float[] values, int bins, double min, double max) {
+        long[] counts = StreamingStatistics.histogram(values, bins, min, max);
         Long[] histogram = new Long[bins];
-        EmpiricalDistribution distribution = new EmpiricalDistribution(bins);
-        distribution.load(field.getValues(false)[0]);
-        int k = 0;
-        for (SummaryStatistics stats : distribution.getBinStats()) {
-            histogram[k++] = stats.getN();
+        for (int k = 0; k < bins; k++) {
+            histogram[k] = counts[k];
         }
         return histogram;
     }
@@ -440,9 +560,12 @@ public class Statistics {
     public static String sparkline(FlatField field, Statistics s)
         throws VisADException, RemoteException 
     {
-        Long[] values = histogram(field, 20);
         Real sMin = (Real) s.min();
         Real sMax = (Real) s.max();
+        Long[] values = (s.field == field)
+                        ? histogram(field.getFloats(false)[0], 20, 
+                                    sMin.getValue(), sMax.getValue())
+                        : histogram(field, 20);
         Collection<Long> collection = asList(values);
         long max = Collections.max(collection);
         long min = Collections.min(collection);
@@ -464,6 +587,7 @@ public class Statistics {
     private static class DescribeConfig {
             EnumSet<DescribeParams> params;
             boolean useOffEarth = true; // default = current behavior
+            boolean exact = false;
         }
     
         private static DescribeConfig parseParams(List<String> ps) {
@@ -482,6 +606,10 @@ public class Statistics {
                     config.useOffEarth = false;
                     continue;
                 }
+                if (FLAG_EXACT.equals(up)) {
+                    config.exact = true;
+                    continue;
+                }
 
                 // --- statistical params ---
                 paramSet.add(DescribeParams.valueOf(up));
@@ -503,6 +631,7 @@ public class Statistics {
         
         private final EnumSet<DescribeParams> params;
         private final boolean useOffEarth;
+        private final boolean exact;
         
         public Description(FlatField field, List<String> params) {
             this.field = field;
@@ -511,6 +640,7 @@ public class Statistics {
 
             this.params = cfg.params;
             this.useOffEarth = cfg.useOffEarth;
+            this.exact = cfg.exact;
         }
         
         public String makeDescription()
@@ -522,21 +652,28 @@ public class Statistics {
                 workingField = JPythonMethods.setMissingNoNavigation(field);
             }
 
-            Statistics s = new Statistics(workingField);
-            int originalGood = new Statistics(field).getNumGoodPoints()[0];
+            Statistics s = new Statistics(workingField, exact);
             int filteredGood = s.getNumGoodPoints()[0];
-            int navMasked = originalGood - filteredGood;			
+            int navMasked = 0;
+            if (!useOffEarth) {
+                int originalGood = new Statistics(field).getNumGoodPoints()[0];
+                navMasked = originalGood - filteredGood;
+            }
             double max = ((Real) s.max()).getValue();
             double min = ((Real) s.min()).getValue();
             double q1 = ((Real) s.percentile(25.0)).getValue();
             double q3 = ((Real) s.percentile(75.0)).getValue();
-            double[] modes = StatUtils.mode(workingField.getValues(false)[0]);
             
             StringBuilder tmp = new StringBuilder(128);
-            for (int i = 0; i < modes.length; i++) {
-                tmp.append(fmtMe(modes[i]));
-                if ((i + 1) < modes.length) {
-                    tmp.append(", ");
+            if (params.contains(DescribeParams.MODE)) {
+                double[] modes = exact
+                                 ? StatUtils.mode(workingField.getValues(false)[0])
+                                 : StreamingStatistics.mode(workingField.getFloats(false)[0]);
+                for (int i = 0; i < modes.length; i++) {
+                    tmp.append(fmtMe(modes[i]));
+                    if ((i + 1) < modes.length) {
+                        tmp.append(", ");
+                    }
                 }
             }
             
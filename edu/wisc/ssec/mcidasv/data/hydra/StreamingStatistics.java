@@ -0,0 +1,419 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import visad.util.ParallelTasks;
+
+/**
+ * Single pass, mergeable summary statistics for one range component of a
+ * {@link visad.FlatField}.
+ *
+ * <p>The values are read in place (no {@code double} copy) in chunks on
+ * the common fork/join pool. Each chunk keeps running central moments and
+ * a {@link QuantileSketch}; the chunk results are then merged. {@code NaN}
+ * values are treated as missing and skipped.</p>
+ *
+ * <p>Moments, variance, skewness and kurtosis follow the definitions used
+ * by commons-math {@code DescriptiveStatistics}, so only the percentiles
+ * are approximate.</p>
+ */
+public class StreamingStatistics {
+
+    /** Values handled by one task. */
+    private static final int CHUNK = 1 << 18;
+
+    private long n;
+
+    private double min = Double.NaN;
+
+    private double max = Double.NaN;
+
+    private double mean;
+
+    /** Sums of the 2nd, 3rd and 4th powers of deviations from the mean. */
+    private double m2;
+
+    private double m3;
+
+    private double m4;
+
+    private final QuantileSketch sketch;
+
+    private StreamingStatistics(long seed) {
+        sketch = new QuantileSketch(QuantileSketch.DEFAULT_K, seed);
+    }
+
+    /**
+     * Summarize {@code values}.
+     *
+     * @param values Values to summarize. Not modified.
+     *
+     * @return Merged statistics for all non-{@code NaN} values.
+     */
+    public static StreamingStatistics of(final float[] values) {
+        List<StreamingStatistics> parts = runChunked(values.length, (chunk, from, to) -> {
+            StreamingStatistics s = new StreamingStatistics(chunk);
+            for (int i = from; i < to; i++) {
+                s.add(values[i]);
+            }
+            return s;
+        });
+        StreamingStatistics result = parts.get(0);
+        for (int i = 1; i < parts.size(); i++) {
+            result.merge(parts.get(i));
+        }
+        return result;
+    }
+
+    private void add(float value) {
+        if (Float.isNaN(value)) {
+            return;
+        }
+        if (n == 0) {
+            min = value;
+            max = value;
+        } else if (value < min) {
+            min = value;
+        } else if (value > max) {
+            max = value;
+        }
+        // same update as the commons-math FourthMoment
+        double n0 = n;
+        n++;
+        double dev = value - mean;
+        double nDev = dev / n;
+        double nDevSq = nDev * nDev;
+        double term1 = dev * nDev * n0;
+        mean += nDev;
+        m4 += term1 * nDevSq * (n * n - 3.0 * n + 3.0) + 6.0 * nDevSq * m2 - 4.0 * nDev * m3;
+        m3 += term1 * nDev * (n - 2.0) - 3.0 * nDev * m2;
+        m2 += term1;
+        sketch.update(value);
+    }
+
+    /**
+     * Fold {@code other} into this summary, using the pairwise moment
+     * update of Pebay (2008).
+     */
+    private void merge(StreamingStatistics other) {
+        if (other.n == 0) {
+            return;
+        }
+        if (n == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        double na = n;
+        double nb = other.n;
+        double nab = na + nb;
+        double delta = other.mean - mean;
+        double delta2 = delta * delta;
+        double newM4 = m4 + other.m4
+            + delta2 * delta2 * na * nb * (na * na - na * nb + nb * nb) / (nab * nab * nab)
+            + 6.0 * delta2 * (na * na * other.m2 + nb * nb * m2) / (nab * nab)
+            + 4.0 * delta * (na * other.m3 - nb * m3) / nab;
+        double newM3 = m3 + other.m3
+            + delta2 * delta * na * nb * (na - nb) / (nab * nab)
+            + 3.0 * delta * (na * other.m2 - nb * m2) / nab;
+        m2 = m2 + other.m2 + delta2 * na * nb / nab;
+        m3 = newM3;
+        m4 = newM4;
+        mean += delta * nb / nab;
+        n += other.n;
+        sketch.merge(other.sketch);
+    }
+
+    /**
+     * @return Number of non-missing values.
+     */
+    public long getN() {
+        return n;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return (n == 0) ? Double.NaN : mean;
+    }
+
+    /**
+     * @return Bias-corrected sample variance.
+     */
+    public double getVariance() {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return (n == 1) ? 0.0 : m2 / (n - 1.0);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getSkewness() {
+        if (n < 3) {
+            return Double.NaN;
+        }
+        double variance = m2 / (n - 1.0);
+        if (variance < 10E-20) {
+            return 0.0;
+        }
+        return (n * m3) / ((n - 1.0) * (n - 2.0) * Math.sqrt(variance) * variance);
+    }
+
+    public double getKurtosis() {
+        if (n <= 3) {
+            return Double.NaN;
+        }
+        double variance = m2 / (n - 1.0);
+        if (variance < 10E-20) {
+            return 0.0;
+        }
+        double n0 = n;
+        return (n0 * (n0 + 1.0) * m4 - 3.0 * m2 * m2 * (n0 - 1.0))
+            / ((n0 - 1.0) * (n0 - 2.0) * (n0 - 3.0) * variance * variance);
+    }
+
+    /**
+     * Approximate percentile. The position follows the commons-math
+     * {@code Percentile} default: {@code p * (n + 1) / 100}, with the
+     * minimum and maximum returned exactly at either end.
+     *
+     * @param p Percentile, from 0 (exclusive) to 100.
+     *
+     * @return Estimated percentile, or {@code NaN} if there are no values.
+     */
+    public double getPercentile(double p) {
+        if (p <= 0.0 || p > 100.0) {
+            throw new IllegalArgumentException("percentile out of range: " + p);
+        }
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double pos = p * (n + 1) / 100.0;
+        if (pos < 1.0) {
+            return min;
+        }
+        if (pos >= n) {
+            return max;
+        }
+        return sketch.getQuantile(pos / n);
+    }
+
+    /**
+     * Geometric mean of the non-missing {@code values}.
+     *
+     * @param values Values to use.
+     *
+     * @return {@code exp(mean(log(v)))}; {@code NaN} if any value is
+     *         negative or there are no values.
+     */
+    public static double geometricMean(final float[] values) {
+        List<double[]> parts = runChunked(values.length, (chunk, from, to) -> {
+            double sum = 0.0;
+            long count = 0L;
+            for (int i = from; i < to; i++) {
+                if (!Float.isNaN(values[i])) {
+                    sum += Math.log(values[i]);
+                    count++;
+                }
+            }
+            return new double[] { sum, count };
+        });
+        double sum = 0.0;
+        double count = 0.0;
+        for (double[] part : parts) {
+            sum += part[0];
+            count += part[1];
+        }
+        return (count == 0.0) ? Double.NaN : Math.exp(sum / count);
+    }
+
+    /**
+     * Pearson correlation of the pairs where neither value is missing.
+     *
+     * @param x First set of values.
+     * @param y Second set of values; same length as {@code x}.
+     *
+     * @return Correlation coefficient, or {@code NaN} if fewer than two
+     *         pairs are present or either variable is constant.
+     */
+    public static double correlation(final float[] x, final float[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("arrays must have the same length");
+        }
+        // {n, meanX, meanY, sxx, syy, sxy}
+        List<double[]> parts = runChunked(x.length, (chunk, from, to) -> {
+            double[] s = new double[6];
+            for (int i = from; i < to; i++) {
+                float xi = x[i];
+                float yi = y[i];
+                if (Float.isNaN(xi) || Float.isNaN(yi)) {
+                    continue;
+                }
+                s[0] += 1.0;
+                double dx = xi - s[1];
+                double dy = yi - s[2];
+                s[1] += dx / s[0];
+                s[2] += dy / s[0];
+                s[3] += dx * (xi - s[1]);
+                s[4] += dy * (yi - s[2]);
+                s[5] += dx * (yi - s[2]);
+            }
+            return s;
+        });
+        double[] total = new double[6];
+        for (double[] s : parts) {
+            if (s[0] == 0.0) {
+                continue;
+            }
+            double na = total[0];
+            double nab = na + s[0];
+            double dx = s[1] - total[1];
+            double dy = s[2] - total[2];
+            double f = na * s[0] / nab;
+            total[3] += s[3] + dx * dx * f;
+            total[4] += s[4] + dy * dy * f;
+            total[5] += s[5] + dx * dy * f;
+            total[1] += dx * s[0] / nab;
+            total[2] += dy * s[0] / nab;
+            total[0] = nab;
+        }
+        if (total[0] < 2.0) {
+            return Double.NaN;
+        }
+        return total[5] / Math.sqrt(total[3] * total[4]);
+    }
+
+    /**
+     * Count non-missing {@code values} into {@code bins} equal-width bins
+     * between {@code min} and {@code max}, using the same bin assignment
+     * as commons-math {@code EmpiricalDistribution}.
+     *
+     * @param values Values to bin.
+     * @param bins Number of bins.
+     * @param min Lower edge of the first bin.
+     * @param max Upper edge of the last bin.
+     *
+     * @return Count in each bin.
+     */
+    public static long[] histogram(final float[] values, final int bins,
+                                   final double min, final double max)
+    {
+        final double delta = (max - min) / bins;
+        List<long[]> parts = runChunked(values.length, (chunk, from, to) -> {
+            long[] counts = new long[bins];
+            for (int i = from; i < to; i++) {
+                float v = values[i];
+                if (!Float.isNaN(v)) {
+                    int bin = (int) Math.ceil((v - min) / delta) - 1;
+                    counts[Math.min(Math.max(bin, 0), bins - 1)]++;
+                }
+            }
+            return counts;
+        });
+        long[] counts = new long[bins];
+        for (long[] part : parts) {
+            for (int i = 0; i < bins; i++) {
+                counts[i] += part[i];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Most frequent non-missing value(s), smallest first. Needs one
+     * {@code float} copy of the values for sorting.
+     *
+     * @param values Values to search.
+     *
+     * @return Every value that occurs the maximum number of times.
+     */
+    public static double[] mode(float[] values) {
+        float[] sorted = new float[values.length];
+        int count = 0;
+        for (float v : values) {
+            if (!Float.isNaN(v)) {
+                sorted[count++] = v;
+            }
+        }
+        Arrays.parallelSort(sorted, 0, count);
+        int best = 0;
+        List<Float> modes = new ArrayList<>();
+        for (int i = 0; i < count; ) {
+            int j = i + 1;
+            while (j < count && sorted[j] == sorted[i]) {
+                j++;
+            }
+            int run = j - i;
+            if (run > best) {
+                best = run;
+                modes.clear();
+            }
+            if (run == best) {
+                modes.add(sorted[i]);
+            }
+            i = j;
+        }
+        double[] result = new double[modes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = modes.get(i);
+        }
+        return result;
+    }
+
+    /** Work done on one chunk of an array. */
+    private interface Chunk<T> {
+        T run(int chunk, int from, int to);
+    }
+
+    /**
+     * Run {@code task} over {@code [0, num)} in chunks of {@link #CHUNK},
+     * returning the per-chunk results in order. Always returns at least
+     * one result.
+     */
+    private static <T> List<T> runChunked(int num, Chunk<T> task) {
+        int chunks = (int) Math.max(1, ((long) num + CHUNK - 1) / CHUNK);
+        return ParallelTasks.map(chunks, chunk ->
+            task.run(chunk, chunk * CHUNK, (int) Math.min(num, (long) (chunk + 1) * CHUNK)));
+    }
+}
@@ -96,6 +96,7 @@ import visad.VisADException;
 import visad.data.units.NoSuchUnitException;
 import visad.data.units.ParseException;
 import visad.data.units.Parser;
+import visad.util.ParallelTasks;
 import visad.util.Util;
 
 /**
@@ -337,6 +338,8 @@ public class SuomiNPPDataSource extends HydraDataSource {
     	
     	// aggregations will use sets of NetCDFFile readers
     	List<NetCDFFile> ncdfal = new ArrayList<>();
+    	// the files in each granule's union, for the cut scan index
+    	List<List<String>> unionFiles = new ArrayList<>();
     	
     	// we should be able to find an XML Product Profile for each data/product type
 		Map<String, SuomiNPPProductProfile> profiles = new HashMap<>();
@@ -350,7 +353,15 @@ public class SuomiNPPDataSource extends HydraDataSource {
     	try {
     		
     		// for each source file provided, find the appropriate geolocation,
-    		// get the nominal time and various other granule-level metadata
+    		// get the nominal time and various other granule-level metadata.
+    		// The granules are summarized up front, in parallel or from the
+    		// directory index, then walked in their original order here.
+    		List<String> allFiles = new ArrayList<>();
+    		for (Object key : filenameMap.keySet()) {
+    			allFiles.addAll((List<String>) filenameMap.get(key));
+    		}
+    		Map<String, GranuleIndex.Summary> summaries = GranuleIndex.summarize(allFiles);
+
     		Iterator keyIterator = filenameMap.keySet().iterator();
     		while (keyIterator.hasNext()) {
     			String keyStr = (String) keyIterator.next();
@@ -358,167 +369,123 @@ public class SuomiNPPDataSource extends HydraDataSource {
         		granuleCount = fileNames.size();
         		setProperty(Constants.PROP_GRANULE_COUNT, granuleCount + " Granule");
     			for (int fileCount = 0; fileCount < granuleCount; fileCount++) {
-    				// need to open the main NetCDF file to determine the geolocation product
-    				NetcdfFile ncfile = null;
-    				String fileAbsPath = null;
+    				String fileAbsPath = (String) fileNames.get(fileCount);
+    				GranuleIndex.Summary granule = summaries.get(fileAbsPath);
     				try {
-    					fileAbsPath = (String) fileNames.get(fileCount);
-    					logger.debug("Trying to open file: " + fileAbsPath);
-    					ncfile = NetcdfFile.open(fileAbsPath);
     					if (! isCombinedProduct) {
     						if (isNOAA) {
-	    						Attribute a = ncfile.findGlobalAttribute("N_GEO_Ref");
-	    						logger.debug("Value of GEO global attribute: " + a.getStringValue());
-	    						String tmpGeoProductID = a.getStringValue();
-	    						geoProductIDs.add(tmpGeoProductID);
+	    						if (granule.geoRef == null) {
+	    							throw new Exception("No N_GEO_Ref global attribute");
+	    						}
+	    						logger.debug("Value of GEO global attribute: " + granule.geoRef);
+	    						geoProductIDs.add(granule.geoRef);
     						} else {
     							geoProductIDs.add(keyStr.replace("L1B", "GEO"));
     						}
     					}
-    					Group rg = ncfile.getRootGroup();
 
                         // Since no sub-groups for Enterprise EDRs, need to set date and instrument here
                         if (isEnterprise) {
                             if (! nameHasBeenSet) {
-                                Attribute coverageStartTime = ncfile.findGlobalAttribute("time_coverage_start");
                                 Date d = new Date();
-                                if (coverageStartTime != null) {
-                                    d = sdfEnterprise.parse(coverageStartTime.getStringValue());
+                                if (granule.timeCoverageStart != null) {
+                                    d = sdfEnterprise.parse(granule.timeCoverageStart);
                                 } else {
                                     logger.error("Warning: unable to retrieve granule start time");
                                 }
                                 theDate = d;
-                                instrumentName = ncfile.findGlobalAttribute("instrument_name");
+                                instrumentName = new Attribute("instrument_name", granule.instrumentName);
                                 setName(instrumentName.getStringValue() + " " + sdfOut.format(theDate));
                             }
                             nameHasBeenSet = true;
                         }
 
-    					List<Group> gl = rg.getGroups();
-    					if (gl != null) {
-    						for (Group g : gl) {
-    							logger.trace("Group name: " + g.getFullName());
-    							if (isNOAA) {
-									// when we find the Data_Products group, go down another group level and pull out 
-									// what we will use for nominal day and time (for now anyway).
-									// XXX TJJ fileCount check is so we don't count the GEO file in time array!
-									if (g.getFullName().contains("Data_Products")
-											&& (fileCount != fileNames.size())) {
-										List<Group> dpg = g.getGroups();
-
-										// cycle through once looking for XML Product Profiles
-										for (Group subG : dpg) {
-
-											String subName = subG.getFullName();
-											// use actual product, not geolocation, to id XML Product Profile
-											if (!subName.contains("-GEO")) {
-												// determine the instrument name (VIIRS, ATMS, CrIS, OMPS)
-												instrumentName = subG.findAttribute("Instrument_Short_Name");
-
-												// note any EDR products, will need to check for and remove
-												// fill scans later
-												Attribute adtt = subG.findAttribute("N_Dataset_Type_Tag");
-												if (adtt != null) {
-													String baseName = adtt.getStringValue();
-													if ((baseName != null) && (baseName.equals("EDR"))) {
-														// have to loop through sub groups variables to determine band
-														List<Variable> tmpVar = subG.getVariables();
-														for (Variable v : tmpVar) {
-															// if Imagery EDR attribute for band is specified, save it
-															Attribute mBand = v.findAttribute("Band_ID");
-															if (mBand != null) {
-																whichEDR = mBand.getStringValue();
-															}
-														}
-													}
-												}
-
-												// This is also where we find the attribute which tells us which
-												// XML Product Profile to use!
-												Attribute axpp = subG.findAttribute("N_Collection_Short_Name");
-												if (axpp != null) {
-													String baseName = axpp.getStringValue();
-													productName = baseName;
-													
-													// TJJ Apr 2018
-													// Hack so we can look at CrIS Full Spectrum, until we can
-													// track down existence of an official Product Profile for it.
-													// http://mcidas.ssec.wisc.edu/inquiry-v/?inquiry=2634
-													// The regular SDR profile lets us visualize it.
-
-													SuomiNPPProductProfile profile = new SuomiNPPProductProfile();
-													String productProfileFileName = null;
-													if (productName.equals("CrIS-FS-SDR")) {
-														productProfileFileName = profile.getProfileFileName("CrIS-SDR");
-													} else {
-														productProfileFileName = profile.getProfileFileName(productName);
-													}
-
-													logger.info("Found profile: " + productProfileFileName + " for prod: " + productName);
-													profiles.put(productName, profile);
-													if (productProfileFileName == null) {
-														throw new Exception("XML Product Profile not found in catalog for: " + productName);
-													}
-													try {
-														profile.addMetaDataFromFile(productProfileFileName);
-													} catch (Exception nppppe) {
-														logger.error("Error parsing XML Product Profile: "
-																+ productProfileFileName);
-														throw new Exception("XML Product Profile Error", nppppe);
-													}
-												}
-											}
-										}
+    					if (isNOAA) {
+    						// when we find the Data_Products group, go down another group level and pull out
+    						// what we will use for nominal day and time (for now anyway).
+    						for (GranuleIndex.ProductGroup dp : granule.dataProducts) {
+
+    							// look for XML Product Profiles
+    							for (String[] product : dp.products) {
+    								// determine the instrument name (VIIRS, ATMS, CrIS, OMPS)
+    								instrumentName = (product[0] == null) ? null
+    										: new Attribute("Instrument_Short_Name", product[0]);
+
+    								// note any EDR products, will need to check for and remove
+    								// fill scans later
+    								if (product[1] != null) {
+    									whichEDR = product[1];
+    								}
+
+    								// This is also where we find the attribute which tells us which
+    								// XML Product Profile to use! Every granule names the same one,
+    								// so only the first is parsed.
+    								if (product[2] != null) {
+    									productName = product[2];
+    								}
+    								if ((product[2] != null) && ! profiles.containsKey(productName)) {
+
+    									// TJJ Apr 2018
+    									// Hack so we can look at CrIS Full Spectrum, until we can
+    									// track down existence of an official Product Profile for it.
+    									// http://mcidas.ssec.wisc.edu/inquiry-v/?inquiry=2634
+    									// The regular SDR profile lets us visualize it.
+
+    									SuomiNPPProductProfile profile = new SuomiNPPProductProfile();
+    									String productProfileFileName = null;
+    									if (productName.equals("CrIS-FS-SDR")) {
+    										productProfileFileName = profile.getProfileFileName("CrIS-SDR");
+    									} else {
+    										productProfileFileName = profile.getProfileFileName(productName);
+    									}
 
-										// 2nd pass through sub-group to extract date/time for aggregation
-										for (Group subG : dpg) {
-											List<Variable> vl = subG.getVariables();
-											for (Variable v : vl) {
-												Attribute aDate = v.findAttribute("AggregateBeginningDate");
-												Attribute aTime = v.findAttribute("AggregateBeginningTime");
-												// did we find the attributes we are looking for?
-												if ((aDate != null) && (aTime != null)) {
-													// set time for display to day/time of 1st granule examined
-												    if (! nameHasBeenSet) {
-												        String sDate = aDate.getStringValue();
-												        String sTime = aTime.getStringValue();
-												        logger.debug("For day/time, using: " + sDate
-												                + sTime.substring(0, sTime.indexOf('Z') - 3));
-												        Date d = sdf.parse(sDate
-												                + sTime.substring(0, sTime.indexOf('Z') - 3));
-												        theDate = d;
-												        setName(instrumentName.getStringValue() + " "
-												                + sdfOut.format(d));
-												        nameHasBeenSet = true;
-												    }
-													break;
-												}
-											}
-										}
-										if (! nameHasBeenSet) {
-											throw new VisADException(
-													"No date time found in Suomi NPP granule");
-										}
-									} 
-                                } else {
-									// NASA data - date/time from global attribute
-									// set time for display to day/time of 1st granule examined
-									Attribute timeStartNASA = ncfile.findGlobalAttribute("time_coverage_start");
-									Date d = sdfNASA.parse(timeStartNASA.getStringValue());
-									theDate = d;
-									if (! nameHasBeenSet) {
-										instrumentName = ncfile.findGlobalAttribute("instrument");
-										setName(instrumentName.getStringValue() + " " + sdfOut.format(d));
-										nameHasBeenSet = true;
-									}
-								}    	    			
+    									logger.info("Found profile: " + productProfileFileName + " for prod: " + productName);
+    									profiles.put(productName, profile);
+    									if (productProfileFileName == null) {
+    										throw new Exception("XML Product Profile not found in catalog for: " + productName);
+    									}
+    									try {
+    										profile.addMetaDataFromFile(productProfileFileName);
+    									} catch (Exception nppppe) {
+    										logger.error("Error parsing XML Product Profile: "
+    												+ productProfileFileName);
+    										throw new Exception("XML Product Profile Error", nppppe);
+    									}
+    								}
+    							}
+
+    							// set time for display to day/time of 1st granule examined
+    							if ((dp.beginningDate != null) && ! nameHasBeenSet) {
+    								String sDate = dp.beginningDate;
+    								String sTime = dp.beginningTime;
+    								logger.debug("For day/time, using: " + sDate
+    										+ sTime.substring(0, sTime.indexOf('Z') - 3));
+    								Date d = sdf.parse(sDate
+    										+ sTime.substring(0, sTime.indexOf('Z') - 3));
+    								theDate = d;
+    								setName(instrumentName.getStringValue() + " "
+    										+ sdfOut.format(d));
+    								nameHasBeenSet = true;
+    							}
+    							if (! nameHasBeenSet) {
+    								throw new VisADException(
+    										"No date time found in Suomi NPP granule");
+    							}
+    						}
+    					} else if (granule.groupCount > 0) {
+    						// NASA data - date/time from global attribute
+    						// set time for display to day/time of 1st granule examined
+    						Date d = sdfNASA.parse(granule.timeCoverageStart);
+    						theDate = d;
+    						if (! nameHasBeenSet) {
+    							instrumentName = new Attribute("instrument", granule.instrument);
+    							setName(instrumentName.getStringValue() + " " + sdfOut.format(d));
+    							nameHasBeenSet = true;
     						}
     					}
     				} catch (Exception e) {
     					logger.warn("Exception during processing of file: " + fileAbsPath);
     					throw (e);
-    				} finally {
-    					ncfile.close();
     				}
     			}
 
@@ -526,9 +493,11 @@ public class SuomiNPPDataSource extends HydraDataSource {
     		
     		// build each union aggregation element
     		Iterator<String> iterator = geoProductIDs.iterator();
+    		List<String> ncmlDocs = new ArrayList<>(granuleCount);
     		for (int elementNum = 0; elementNum < granuleCount; elementNum++) {
     			
     			String s = null;
+    			List<String> members = new ArrayList<>();
     			
     			// build an XML (NCML actually) representation of the union aggregation of these two files
     			Namespace ns = Namespace.getNamespace("http://www.unidata.ucar.edu/namespaces/netcdf/ncml-2.2");
@@ -547,6 +516,7 @@ public class SuomiNPPDataSource extends HydraDataSource {
         			Element fData = new Element("netcdf", ns);
         			fData.setAttribute("location", (String) l.get(elementNum));
         			agg.addContent(fData);
+        			members.add((String) l.get(elementNum));
         			s = (String) l.get(elementNum);
     	        }
     			
@@ -674,14 +644,24 @@ public class SuomiNPPDataSource extends HydraDataSource {
                         // add this to list used if we create a zipped bundle
                         geoSources.add(geoFilename);
                         agg.addContent(fGeo);
+                        members.add(geoFilename);
                     }
     			}
 
     			root.addContent(agg);    
     		    XMLOutputter xmlOut = new XMLOutputter();
-    		    String ncmlStr = xmlOut.outputString(document);
-    		    ByteArrayInputStream is = new ByteArrayInputStream(ncmlStr.getBytes());			
-    		    MultiDimensionReader netCDFReader = new NetCDFFile(is);
+    		    ncmlDocs.add(xmlOut.outputString(document));
+    		    unionFiles.add(members);
+    		}
+
+    		// opening a union reads the headers of both of its files, so open
+    		// them all in parallel before walking their metadata in order
+    		List<NetCDFFile> readers = ParallelTasks.map(ParallelTasks.getIOPool(), ncmlDocs.size(),
+    		    i -> new NetCDFFile(new ByteArrayInputStream(ncmlDocs.get(i).getBytes())),
+    		    GranuleIndex::closeQuietly);
+
+    		for (int elementNum = 0; elementNum < granuleCount; elementNum++) {
+    		    MultiDimensionReader netCDFReader = readers.get(elementNum);
     		    
     	    	// let's try and look through the NetCDF reader and see what we can learn...
     	    	NetcdfFile ncdff = ((NetCDFFile) netCDFReader).getNetCDFFile();
@@ -1400,13 +1380,13 @@ public class SuomiNPPDataSource extends HydraDataSource {
     	// initialize the aggregation reader object
     	try {
     		if (isNOAA) {
-    		    nppAggReader = new GranuleAggregation(ncdfal, pathToProducts, "Track", "XTrack", isVIIRS);
+    		    nppAggReader = new GranuleAggregation(ncdfal, pathToProducts, "Track", "XTrack", isVIIRS, unionFiles);
     		    ((GranuleAggregation) nppAggReader).setQfMap(qfMap);
             } else if (isEnterprise) {
-                nppAggReader = new GranuleAggregation(ncdfal, pathToProducts, "Rows", "Columns", isVIIRS);
+                nppAggReader = new GranuleAggregation(ncdfal, pathToProducts, "Rows", "Columns", isVIIRS, unionFiles);
                 ((GranuleAggregation) nppAggReader).setQfMap(qfMap);
     		} else {
-    			nppAggReader = new GranuleAggregation(ncdfal, pathToProducts, "number_of_lines", "number_of_pixels", isVIIRS);
+    			nppAggReader = new GranuleAggregation(ncdfal, pathToProducts, "number_of_lines", "number_of_pixels", isVIIRS, unionFiles);
     		    ((GranuleAggregation) nppAggReader).setLUTMap(lutMap);
     		}
     	} catch (Exception e) {
@@ -127,6 +127,9 @@ public class DataManager {
     /** The cache percent property */
     public static final String PROP_CACHE_PERCENT = "idv.data.cache.percent";
 
+    /** Where cached field values live: none, mapped or direct */
+    public static final String PROP_CACHE_OFFHEAP = "idv.data.cache.offheap";
+
     /** bbox property */
     public static final String PROP_GEOSUBSET_BBOX =
         "idv.data.geosubset.bbox";
@@ -369,6 +372,11 @@ public class DataManager {
             .setMemoryPercent(dataContext.getIdv().getStateManager()
             .getPreferenceOrProperty(PROP_CACHE_PERCENT,
                                      0.25));
+            visad.data.CachedFlatField.setOffHeapMode(
+                dataContext.getIdv().getStateManager()
+                .getPreferenceOrProperty(PROP_CACHE_OFFHEAP,
+                                         visad.data.CachedFlatField
+                                         .getOffHeapMode()));
 
             AccountManager accountManager =
                 AccountManager.getGlobalAccountManager();
@@ -149,6 +149,9 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
     /** Use this so this object is unique in the data cache */
     protected Object dataCacheKey = ucar.unidata.util.Misc.getUniqueId();
 
+    /** Bumped every time the data cache is flushed */
+    private volatile int cacheVersion = 0;
+
     /**
      *  The alias property.
      */
@@ -1139,7 +1142,20 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
      */
     protected void flushCache() {
         // System.out.println("flushing cache");
+        cacheVersion++;
         CacheManager.remove(dataCacheKey);
+        DerivedDataCache.flush(this);
+    }
+
+    /**
+     * Get the number of times the data cache has been flushed. Caches of
+     * data computed from this data source, like the derived quantities,
+     * keep this to tell old results from new ones.
+     *
+     * @return the cache version
+     */
+    public int getCacheVersion() {
+        return cacheVersion;
     }
 
 
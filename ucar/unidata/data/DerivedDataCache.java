@@ -0,0 +1,268 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package ucar.unidata.data;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ucar.unidata.util.CacheManager;
+
+import visad.Data;
+import visad.FieldImpl;
+import visad.FlatField;
+import visad.FunctionType;
+import visad.MathType;
+import visad.RealTupleType;
+import visad.Unit;
+import visad.VisADException;
+
+import visad.data.CachedFlatField;
+
+import java.rmi.RemoteException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Results of derived quantities, shared by every DerivedDataChoice that
+ * evaluates the same formula on the same operands.
+ *
+ * Several displays of, say, dewpoint from one model run each hold their
+ * own copy of the DerivedDataChoice. The key built by {@link #makeKey}
+ * uses the formula, the operand DataChoices (by equals, so copies match),
+ * the DataSelection, the request properties and the cache version of every
+ * DataSource the operands come from, so the formula is evaluated and the
+ * operands are read once. Results are held by the CacheManager, so they
+ * are dropped when it needs memory and only kept when caching is on, and
+ * grids are stored as CachedFlatFields so the DataCacheManager can page
+ * them out. {@link #flush(DataSource)} drops the entries of a data source
+ * when it reloads or is removed. The keys remembered for that are pruned
+ * whenever a result is stored, once the CacheManager has let go of them.
+ */
+final class DerivedDataCache {
+
+    private static final Logger logger =
+        LoggerFactory.getLogger(DerivedDataCache.class);
+
+    /** The CacheManager key everything is kept under */
+    private static final Object CACHE_KEY = DerivedDataCache.class;
+
+    /**
+     * Maps a DataSource to the keys that used it. The keys hold their
+     * sources, so entries are dropped by pruning rather than weakly.
+     */
+    private static final Map<Object, Set<List>> sourceToKeys =
+        new HashMap<Object, Set<List>>();
+
+    /** Not instantiated */
+    private DerivedDataCache() {}
+
+    /**
+     * Make the key for one evaluation
+     *
+     * @param formulaId  the descriptor id, or null for an end user formula
+     * @param code  the code that will be evaluated
+     * @param operands  pairs of operand name and the DataChoice it is read
+     *                  from, or the value of a user operand
+     * @param dataSelection  the selection the operands are read with
+     * @param requestProperties  the request properties
+     * @param sources  the DataSources the operands come from
+     *
+     * @return the key
+     */
+    static List makeKey(String formulaId, String code, List operands,
+                        DataSelection dataSelection,
+                        Hashtable requestProperties, List sources) {
+        List key = new ArrayList();
+        key.add(formulaId);
+        key.add(code);
+        key.add(operands);
+        key.add(dataSelection.cloneMe());
+        if (requestProperties != null) {
+            Hashtable newProperties = (Hashtable) requestProperties.clone();
+            newProperties.remove(DataChoice.PROP_REQUESTER);
+            key.add(newProperties.toString());
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            Object source = sources.get(i);
+            key.add(source);
+            key.add((source instanceof DataSourceImpl)
+                    ? ((DataSourceImpl) source).getCacheVersion()
+                    : 0);
+        }
+        return key;
+    }
+
+    /**
+     * Look up a result
+     *
+     * @param key  from {@link #makeKey}
+     *
+     * @return the result, or null
+     */
+    static Data get(List key) {
+        return (Data) CacheManager.get(CACHE_KEY, key);
+    }
+
+    /**
+     * Hold on to a result, if caching is on
+     *
+     * @param key  from {@link #makeKey}
+     * @param result  the result
+     * @param sources  the DataSources the operands came from
+     *
+     * @return the result as stored, which callers should use in place of
+     *         the one passed in
+     *
+     * @throws RemoteException  Java RMI problem
+     * @throws VisADException  VisAD problem
+     */
+    static Data put(List key, Data result, List sources)
+            throws VisADException, RemoteException {
+        if ( !CacheManager.getDoCache()) {
+            return result;
+        }
+        Data cached = toCached(result);
+        CacheManager.put(CACHE_KEY, key, cached);
+        synchronized (sourceToKeys) {
+            prune();
+            for (int i = 0; i < sources.size(); i++) {
+                Set<List> keys = sourceToKeys.get(sources.get(i));
+                if (keys == null) {
+                    keys = new HashSet<List>();
+                    sourceToKeys.put(sources.get(i), keys);
+                }
+                keys.add(key);
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Forget the keys whose results the CacheManager no longer holds, and
+     * the sources left without keys. Called with sourceToKeys locked.
+     */
+    private static void prune() {
+        for (Iterator<Set<List>> it = sourceToKeys.values().iterator();
+                it.hasNext(); ) {
+            Set<List> keys = it.next();
+            for (Iterator<List> keyIt = keys.iterator(); keyIt.hasNext(); ) {
+                if (CacheManager.get(CACHE_KEY, keyIt.next()) == null) {
+                    keyIt.remove();
+                }
+            }
+            if (keys.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drop the results that used a data source
+     *
+     * @param source  the data source
+     */
+    static void flush(DataSource source) {
+        Set<List> keys;
+        synchronized (sourceToKeys) {
+            keys = sourceToKeys.remove(source);
+        }
+        if (keys == null) {
+            return;
+        }
+        logger.debug("flushing {} derived results of {}", keys.size(),
+                     source);
+        for (List key : keys) {
+            CacheManager.remove(CACHE_KEY, key);
+        }
+    }
+
+    /**
+     * Make a copy of some data with its grids as CachedFlatFields
+     *
+     * @param data  the data
+     *
+     * @return the copy, or data itself if it is not a grid or a sequence
+     *         of grids
+     *
+     * @throws RemoteException  Java RMI problem
+     * @throws VisADException  VisAD problem
+     */
+    private static Data toCached(Data data)
+            throws VisADException, RemoteException {
+        if ((data instanceof CachedFlatField) || data.isMissing()) {
+            return data;
+        }
+        if (data instanceof FlatField) {
+            FlatField ff    = (FlatField) data;
+            MathType  range = ((FunctionType) ff.getType()).getRange();
+            // CachedFlatField does not keep a range CoordinateSystem
+            if ((range instanceof RealTupleType)
+                    && (((RealTupleType) range).getCoordinateSystem()
+                        != null)) {
+                return data;
+            }
+            Unit[][] rangeUnits = ff.getRangeUnits();
+            Unit[]   units      = new Unit[rangeUnits.length];
+            for (int i = 0; i < units.length; i++) {
+                units[i] = rangeUnits[i][0];
+            }
+            CachedFlatField cff =
+                new CachedFlatField((FunctionType) ff.getType(),
+                                    ff.getDomainSet(), null,
+                                    ff.getRangeSets(), units,
+                                    ff.getFloats(false));
+            cff.setMetadataMap(ff.getMetadataMap());
+            return cff;
+        }
+        if ((data instanceof FieldImpl)
+                && ((FieldImpl) data).getClass().equals(FieldImpl.class)) {
+            FieldImpl fi = (FieldImpl) data;
+            FieldImpl copy = new FieldImpl((FunctionType) fi.getType(),
+                                           fi.getDomainSet());
+            for (int i = 0; i < fi.getLength(); i++) {
+                Data sample = fi.getSample(i, false);
+                if (sample != null) {
+                    copy.setSample(i, toCached(sample), false);
+                }
+            }
+            copy.setMetadataMap(fi.getMetadataMap());
+            return copy;
+        }
+        return data;
+    }
+}
@@ -363,19 +363,23 @@ public class DerivedDataChoice extends ListDataChoice {
 
     /**
      * A utility to collect all of the operands (held as {@link DataOperand}s)
+     * and bind them to their DataChoices. The data is not read here; the
+     * reads are added to the given list so they can be skipped when the
+     * result is already cached.
      *
      * @param category       We ignore this.
      * @param dataSelection  We pass this through to the children getData calls.
      * @param requestProperties  extra request properties
+     * @param reads  filled with the {@link OperandRead}s to do, in order
      *
-     * @return List of {@link DataOperand}s holding the data.
+     * @return List of {@link DataOperand}s to hold the data.
      *
      * @throws RemoteException    Java RMI problem
      * @throws VisADException     VisAD problem
      */
     private List collectOperands(DataCategory category,
                                  DataSelection dataSelection,
-                                 Hashtable requestProperties)
+                                 Hashtable requestProperties, List reads)
             throws VisADException, RemoteException {
 
 
@@ -511,8 +515,6 @@ public class DerivedDataChoice extends ListDataChoice {
         }
 
 
-        Hashtable dataChoiceToData = new Hashtable();
-
         //Go through the list of jython operands and put any that
         //we don't have in the list of DataOperands
         for (int i = 0; i < nonUserOperands.size(); i++) {
@@ -559,8 +561,7 @@ public class DerivedDataChoice extends ListDataChoice {
                     }
                 }
             }
-            setData(boundChoice, op, dataChoiceToData, dataSelection,
-                    requestProperties);
+            reads.add(new OperandRead(boundChoice, op));
         }
 
 
@@ -606,19 +607,16 @@ public class DerivedDataChoice extends ListDataChoice {
                 userSelectedChoices.put(op.getParamName(), selectedChoice);
                 //Do an .equals instead of an instanceof because DerivedDataChoice
                 //derived from ListDataChoice
-                setData(selectedChoice, op, dataChoiceToData, dataSelection,
-                        requestProperties);
+                reads.add(new OperandRead(selectedChoice, op));
             }
         }
 
-        //Now, do the getData calls on any DataOperand-s that hold a DataChoice.
+        //Now, queue the getData calls on any DataOperand-s that hold a DataChoice.
         for (int i = 0; i < operands.size(); i++) {
             DataOperand op   = (DataOperand) operands.get(i);
             Object      data = op.getData();
             if (data instanceof DataChoice) {
-                DataChoice dataChoice = (DataChoice) data;
-                setData(dataChoice, op, dataChoiceToData, dataSelection,
-                        requestProperties);
+                reads.add(new OperandRead((DataChoice) data, op));
             }
         }
 
@@ -628,6 +626,67 @@ public class DerivedDataChoice extends ListDataChoice {
     }
 
 
+    /**
+     * Do the reads collected by {@link #collectOperands}
+     *
+     * @param reads the {@link OperandRead}s
+     * @param dataSelection properties
+     * @param requestProperties properties
+     *
+     * @throws RemoteException On badness
+     * @throws VisADException On badness
+     */
+    private void readOperands(List reads, DataSelection dataSelection,
+                              Hashtable requestProperties)
+            throws VisADException, RemoteException {
+        Hashtable dataChoiceToData = new Hashtable();
+        for (int i = 0; i < reads.size(); i++) {
+            OperandRead read = (OperandRead) reads.get(i);
+            setData(read.dataChoice, read.operand, dataChoiceToData,
+                    dataSelection, requestProperties);
+        }
+    }
+
+    /**
+     * Make the key the result of this evaluation is cached under in the
+     * {@link DerivedDataCache}
+     *
+     * @param ops the operands from {@link #collectOperands}
+     * @param reads the reads from {@link #collectOperands}
+     * @param dataSelection the selection the operands are read with
+     * @param requestProperties properties
+     * @param sources filled with the DataSources the operands come from
+     *
+     * @return the key
+     */
+    private List makeCacheKey(List ops, List reads,
+                              DataSelection dataSelection,
+                              Hashtable requestProperties, List sources) {
+        List operandKey = new ArrayList();
+        for (int i = 0; i < reads.size(); i++) {
+            OperandRead read = (OperandRead) reads.get(i);
+            operandKey.add(Misc.newList(read.operand.getName(),
+                                        read.dataChoice));
+            read.dataChoice.getDataSources(sources);
+        }
+        //The values of the user operands
+        for (int i = 0; i < ops.size(); i++) {
+            DataOperand op   = (DataOperand) ops.get(i);
+            Object      data = op.getData();
+            if ((data != null) && !(data instanceof DataChoice)) {
+                operandKey.add(Misc.newList(op.getName(), data));
+            }
+        }
+        List uniqueSources = Misc.makeUnique(sources);
+        sources.clear();
+        sources.addAll(uniqueSources);
+        return DerivedDataCache.makeKey((descriptor != null)
+                                        ? descriptor.getId()
+                                        : null, constructedCode, operandKey,
+                                        dataSelection, requestProperties,
+                                        sources);
+    }
+
     /**
      * get the data from the dataChoice and set it on the operand
      *
@@ -760,14 +819,6 @@ public class DerivedDataChoice extends ListDataChoice {
             DataSelection.merge(incomingDataSelection, myDataSelection);
 
 
-        /**
-         *  For now, don't do any caching here.
-         * Object cacheKey = Misc.newList (category, dataSelection);
-         * Data cachedData = (Data) CacheManager.get (this, cacheKey);
-         * if (cachedData != null) {
-         *   return cachedData;
-         * }
-         */
         if (requestProperties == null) {
             requestProperties = new Hashtable();
         }
@@ -776,8 +827,9 @@ public class DerivedDataChoice extends ListDataChoice {
 
         Trace.call1("DerivedData.getData");
         //First, collect the DataOperand-s. This also sets the "constructedCode" member
+        List reads = new ArrayList();
         List ops = collectOperands(category, dataSelection,
-                                   requestProperties);
+                                   requestProperties, reads);
 
         if (tmpProperty != null) {
             requestProperties.put(PROP_FROMDERIVED, tmpProperty);
@@ -790,7 +842,17 @@ public class DerivedDataChoice extends ListDataChoice {
             throw new DataCancelException();
         }
 
-        Data result = null;
+        //Other displays of the same quantity may have computed this already
+        List sources  = new ArrayList();
+        List cacheKey = makeCacheKey(ops, reads, dataSelection,
+                                     requestProperties, sources);
+        Data result   = DerivedDataCache.get(cacheKey);
+        if (result != null) {
+            Trace.call2("DerivedData.getData", " cached");
+            return result;
+        }
+
+        readOperands(reads, dataSelection, requestProperties);
 
         //Get the interpreter, synchronize so we don't have conflicts with the
         //operand setting.
@@ -825,14 +887,6 @@ public class DerivedDataChoice extends ListDataChoice {
                     interp.set(cleanOperandName, op.getData());
                 }
 
-                //Check here because the hashCode/equals on this object
-                //that the cache manager uses to do lookups
-                //is set in the code above.
-                /*
-                  for now don't do any caching
-                  result = (Data) CacheManager.get (this, cacheKey);
-                */
-
                 interp.set("derivedDataChoice", this);
                 if (result == null) {
                     //Sometime we may want to do an exec here, instead of an eval.
@@ -880,14 +934,6 @@ public class DerivedDataChoice extends ListDataChoice {
                     } else {
                         result = (Data) resultObject;
                     }
-                    //              System.err.println ("adding to cache:" + this);
-                    /*
-                      for now don't do any caching
-                      CacheManager.put (this, cacheKey, result);
-                    */
-
-                } else {
-                    //              System.err.println ("had data in cache:" + this);
                 }
 
             } finally {
@@ -913,6 +959,9 @@ public class DerivedDataChoice extends ListDataChoice {
                 }
             }
         }
+        if (result != null) {
+            result = DerivedDataCache.put(cacheKey, result, sources);
+        }
         Trace.call2("DerivedData.getData");
         return result;
     }
@@ -1281,6 +1330,30 @@ public class DerivedDataChoice extends ListDataChoice {
     }
 
 
+    /**
+     * A DataChoice whose data an operand still has to be given
+     */
+    private static class OperandRead {
+
+        /** where the data comes from */
+        DataChoice dataChoice;
+
+        /** the operand */
+        DataOperand operand;
+
+        /**
+         * ctor
+         *
+         * @param dataChoice where the data comes from
+         * @param operand the operand
+         */
+        OperandRead(DataChoice dataChoice, DataOperand operand) {
+            this.dataChoice = dataChoice;
+            this.operand    = operand;
+        }
+    }
+
+
 
 
 }
@@ -33,6 +33,7 @@ import ucar.unidata.data.DataUtil;
 import ucar.unidata.data.point.PointObFactory;
 
 import ucar.unidata.util.DateUtil;
+import ucar.unidata.util.JobManager;
 import ucar.unidata.util.Misc;
 import ucar.unidata.util.Range;
 
@@ -66,6 +67,7 @@ import visad.georef.EarthLocation;
 import visad.georef.EarthLocationLite;
 
 import visad.util.DataUtility;
+import visad.util.ParallelTasks;
 
 import java.rmi.RemoteException;
 
@@ -73,6 +75,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -436,15 +440,9 @@ public class DerivedGridFactory {
             FieldImpl vFI)
             throws VisADException, RemoteException {
 
-        boolean      UisSequence = (GridUtil.isTimeSequence(uFI));
-        boolean      VisSequence = (GridUtil.isTimeSequence(vFI));
-        FieldImpl    rvFI        = null;
-        FlatField    dvdx        = null;
-        FlatField    dudy        = null;
-        FlatField    rvFF        = null;
-        FlatField    uFF         = null;
-        FlatField    vFF         = null;
-        FunctionType rvFFType    = null;
+        boolean   UisSequence = (GridUtil.isTimeSequence(uFI));
+        boolean   VisSequence = (GridUtil.isTimeSequence(vFI));
+        FieldImpl rvFI        = null;
 
         if (UisSequence) {
 
@@ -459,103 +457,20 @@ public class DerivedGridFactory {
                 vFI = (FieldImpl) vFI.resample(timeSet);
             }
 
-            // compute each rel vort  FlatField for time steps in turn;
-            // load in FieldImpl
-            RealType     rvRT      = null;
-            TupleType    rangeType = null;
-            FunctionType innerType = null;
-
-            for (int i = 0; i < timeSet.getLength(); i++) {
-                FieldImpl funcFF = null;
-                if (ensble) {
-                    FieldImpl sample1   = (FieldImpl) uFI.getSample(i);
-                    FieldImpl sample2   = (FieldImpl) vFI.getSample(i);
-                    Set       ensDomain = sample1.getDomainSet();
-
-                    for (int j = 0; j < ensDomain.getLength(); j++) {
-                        FlatField innerField1 =
-                            (FlatField) sample1.getSample(j, false);
-                        FlatField innerField2 =
-                            (FlatField) sample2.getSample(j, false);
-                        if ((innerField1 == null) || (innerField2 == null)) {
-                            continue;
-                        }
-                        // System.out.print("      type of u FF is "+((FunctionType)uFF.getType()));
-                        // the derivative of u by y
-                        dudy = (FlatField) GridMath.ddy(innerField1);
-
-                        // the derivative of v by x
-                        dvdx = (FlatField) GridMath.ddx(innerField2);
-
-                        // sum is dvdx - dudy  for final result at this time step
-                        FlatField innerrvFF =
-                            (FlatField) (dvdx.subtract(dudy));
-
-
-                        if (rangeType == null) {
-                            rangeType = GridUtil.getParamType(innerrvFF);
-                            innerType = new FunctionType(
-                                DataUtility.getDomainType(ensDomain),
-                                innerrvFF.getType());
-                        }
-                        if (j == 0) {
-                            funcFF = new FieldImpl(innerType, ensDomain);
-                            funcFF.setMetadataMap(uFI.getMetadataMap());
-                        }
-
-
-                        funcFF.setSample(j, innerrvFF, false);
-
-                    }
-                    if (rvFI == null) {
-                        FunctionType newFieldType =
-                            new FunctionType(
-                                ((SetType) timeSet.getType()).getDomain(),
-                                funcFF.getType());
-                        rvFI = new FieldImpl(newFieldType, timeSet);
-                        rvFI.setMetadataMap(uFI.getMetadataMap());
-                    }
-                    rvFI.setSample(i, funcFF, false);
-                } else {
-                    // System.out.print(" "+i); //...
-                    // get u and v single grids for this time step
-                    uFF = (FlatField) uFI.getSample(i);
-                    vFF = (FlatField) vFI.getSample(i);
-
-                    // System.out.print("      type of u FF is "+((FunctionType)uFF.getType()));
-                    // the derivative of u by y
-                    dudy = (FlatField) GridMath.ddy(uFF);
-
-                    // the derivative of v by x
-                    dvdx = (FlatField) GridMath.ddx(vFF);
-
-                    // sum is dvdx - dudy  for final result at this time step
-                    rvFF = (FlatField) (dvdx.subtract(dudy));
-
-                    if (i == 0) {
-
-                        // first time through, set up rvFI
-                        // make the VisAD FunctionType for the rel vort; several steps
-                        FunctionType functionType =
-                            new FunctionType(
-                                ((FunctionType) uFI.getType()).getDomain(),
-                                rvFF.getType());
-
-                        // System.out.println ("       rvFI func type = "+functionType);
-                        // make the new FieldImpl (but as yet empty of data)
-                        rvFI = new FieldImpl(functionType, timeSet);
-                        rvFI.setMetadataMap(uFI.getMetadataMap());
-                    }
-
-                    // System.out.println ("    rv single grid range type = "+
-                    // ((FunctionType)rvFF.getType()).getRange());
-
-                    // set this time's grid
-                    rvFI.setSample(i, rvFF, false);
+            // compute each rel vort FlatField (dvdx - dudy) for the time
+            // steps in parallel
+            rvFI = mapOverTimes("Computing relative vorticity",
+                                new FieldImpl[] { uFI, vFI }, ensble,
+                                new StepFunction() {
+                public FlatField apply(FlatField[] grids)
+                        throws VisADException, RemoteException {
+                    FlatField dudy = (FlatField) GridMath.ddy(grids[0]);
+                    FlatField dvdx = (FlatField) GridMath.ddx(grids[1]);
+                    return (FlatField) (dvdx.subtract(dudy));
                 }
-            }
+            });
         } else {
-            rvFI = (FieldImpl) GridMath.ddx(vFF).subtract(GridMath.ddy(uFF));
+            rvFI = (FieldImpl) GridMath.ddx(vFI).subtract(GridMath.ddy(uFI));
         }
 
         Unit     rvUnit = GridUtil.getParamUnits(rvFI)[0];
@@ -2283,77 +2198,17 @@ public class DerivedGridFactory {
             if (timeSet.getLength() > 1) {
                 vGrid = (FieldImpl) vGrid.resample(timeSet);
             }
-            TupleType    rangeType = null;
-            FunctionType innerType = null;
-            // compute each divFlatField in turn; load in FieldImpl
-            for (int i = 0; i < timeSet.getLength(); i++) {
-
-                FieldImpl funcFF = null;
-                if (ensble) {
-                    FieldImpl sample1   = (FieldImpl) uGrid.getSample(i);
-                    FieldImpl sample2   = (FieldImpl) vGrid.getSample(i);
-                    FieldImpl sample3   = (FieldImpl) paramGrid.getSample(i);
-                    Set       ensDomain = sample1.getDomainSet();
-
-                    for (int j = 0; j < ensDomain.getLength(); j++) {
-                        FlatField innerField1 =
-                            (FlatField) sample1.getSample(j, false);
-                        FlatField innerField2 =
-                            (FlatField) sample2.getSample(j, false);
-                        FlatField innerField3 =
-                            (FlatField) sample3.getSample(j, false);
-                        if ((innerField1 == null) || (innerField2 == null)) {
-                            continue;
-                        }
-                        FlatField innerdivFF =
-                            makeHorizontalAdvection(innerField3, innerField1,
-                                innerField2);
-
-                        if (rangeType == null) {
-                            rangeType = GridUtil.getParamType(innerdivFF);
-                            innerType = new FunctionType(
-                                DataUtility.getDomainType(ensDomain),
-                                innerdivFF.getType());
-                        }
-                        if (j == 0) {
-                            funcFF = new FieldImpl(innerType, ensDomain);
-                            funcFF.setMetadataMap(paramGrid.getMetadataMap());
-                        }
-
-
-                        funcFF.setSample(j, innerdivFF, false);
-
-                    }
-                    if (divFI == null) {
-                        FunctionType newFieldType =
-                            new FunctionType(
-                                ((SetType) timeSet.getType()).getDomain(),
-                                funcFF.getType());
-                        divFI = new FieldImpl(newFieldType, timeSet);
-                        divFI.setMetadataMap(paramGrid.getMetadataMap());
-                    }
-                    divFI.setSample(i, funcFF, false);
-                } else {
-                    FlatField divFF = makeHorizontalAdvection(
-                                          (FlatField) paramGrid.getSample(i),
-                                          (FlatField) uGrid.getSample(i),
-                                          (FlatField) vGrid.getSample(i));
-
-                    if (i == 0) {  // first time through
-                        FunctionType functionType =
-                            new FunctionType(
-                                ((FunctionType) paramGrid.getType()).getDomain(),
-                                divFF.getType());
-
-                        // make the new FieldImpl for advection
-                        divFI = new FieldImpl(functionType, timeSet);
-                        divFI.setMetadataMap(paramGrid.getMetadataMap());
-                    }
-
-                    // add data for this time step
-                    divFI.setSample(i, divFF, false);
+            // compute each advection FlatField for the time steps in
+            // parallel
+            divFI = mapOverTimes("Computing advection",
+                                 new FieldImpl[] { paramGrid,
+                    uGrid, vGrid }, ensble, new StepFunction() {
+                public FlatField apply(FlatField[] grids)
+                        throws VisADException, RemoteException {
+                    return makeHorizontalAdvection(grids[0], grids[1],
+                            grids[2]);
                 }
-            }  // end isSequence
+            });
         } else {
 
             // make FlatField for one time
@@ -2577,9 +2432,7 @@ public class DerivedGridFactory {
         // get a grid of pressure values
         Boolean ensble = (GridUtil.hasEnsemble(temperFI)
                           && GridUtil.hasEnsemble(rhFI));
-        TupleType    rangeType = null;
-        FunctionType innerType = null;
-        FlatField    press     = null;
+        FlatField press = null;
 
         if (isSequence) {
             if (ensble) {
@@ -2603,75 +2456,17 @@ public class DerivedGridFactory {
                 rhFI = (FieldImpl) rhFI.resample(timeSet);
             }
 
-            // compute each FlatField in turn; load in FieldImpl
-            for (int i = 0; i < timeSet.getLength(); i++) {
-
-                if (ensble) {
-                    FieldImpl sample1   = (FieldImpl) temperFI.getSample(i);
-                    FieldImpl sample2   = (FieldImpl) rhFI.getSample(i);
-
-                    Set       ensDomain = sample1.getDomainSet();
-                    FieldImpl funcFF    = null;
-
-                    for (int j = 0; j < ensDomain.getLength(); j++) {
-                        FlatField innerField1 =
-                            (FlatField) sample1.getSample(j, false);
-                        FlatField innerField2 =
-                            (FlatField) sample2.getSample(j, false);
-
-                        if ((innerField1 == null) || (innerField2 == null)) {
-                            continue;
-                        }
-                        FlatField innerdivFF =
-                            makeDewpointFromTAndRH(innerField1, innerField2);
-
-                        if (rangeType == null) {
-                            rangeType = GridUtil.getParamType(innerdivFF);
-                            innerType = new FunctionType(
-                                DataUtility.getDomainType(ensDomain),
-                                innerdivFF.getType());
-                        }
-                        if (j == 0) {
-                            funcFF = new FieldImpl(innerType, ensDomain);
-                            funcFF.setMetadataMap(temperFI.getMetadataMap());
-                        }
-
-
-                        funcFF.setSample(j, innerdivFF, false);
-
-                    }
-                    if (eptFI == null) {
-                        FunctionType newFieldType =
-                            new FunctionType(
-                                ((SetType) timeSet.getType()).getDomain(),
-                                funcFF.getType());
-                        eptFI = new FieldImpl(newFieldType, timeSet);
-                        eptFI.setMetadataMap(temperFI.getMetadataMap());
-                    }
-                    eptFI.setSample(i, funcFF, false);
-                } else {
-                    FlatField eptFF =
-                        (FlatField) ept.create(press,
-                            (FlatField) temperFI.getSample(i),
-                            (FlatField) mixingRatioFI.getSample(i));
-
-                    // first time through
-                    if (i == 0) {
-                        FunctionType functionType =
-                            new FunctionType(
-                                ((FunctionType) temperFI.getType()).getDomain(),
-                                eptFF.getType());
-
-                        // make the new FieldImpl for mixing ratio
-                        // (but as yet empty of data)
-                        eptFI = new FieldImpl(functionType, timeSet);
-                        eptFI.setMetadataMap(temperFI.getMetadataMap());
-                    }
-
-                    eptFI.setSample(i, eptFF, false);
+            // compute each ept FlatField for the time steps in parallel
+            final FlatField pressFF = press;
+            eptFI = mapOverTimes("Computing equivalent potential temperature",
+                                 new FieldImpl[] { temperFI,
+                    mixingRatioFI }, ensble, new StepFunction() {
+                public FlatField apply(FlatField[] grids)
+                        throws VisADException, RemoteException {
+                    return (FlatField) EquivalentPotentialTemperature.create(
+                        pressFF, grids[0], grids[1]);
                 }
-            }  // end isSequence
-
+            });
         }
         // if one time only
         else {
@@ -3743,13 +3538,9 @@ public class DerivedGridFactory {
                                       FieldImpl absvor)
             throws VisADException, RemoteException {
 
-        boolean        TisSequence = (GridUtil.isTimeSequence(temperFI));
-        boolean        PisSequence = (GridUtil.isTimeSequence(pressFI));
-        FieldImpl      ipvFI       = null;
-        FlatField      dtdp        = null;
-        RealType       pressure    = null;
-        visad.Function dthdp       = null;
-        FunctionType   ipvFFType   = null;
+        boolean   TisSequence = (GridUtil.isTimeSequence(temperFI));
+        boolean   PisSequence = (GridUtil.isTimeSequence(pressFI));
+        FieldImpl ipvFI       = null;
 
         if (TisSequence) {
 
@@ -3765,165 +3556,61 @@ public class DerivedGridFactory {
             }
 
             // will need little "g" - Earth surface's grav accel
-            Real g = ucar.visad.quantities.Gravity.newReal();
+            final Real g = ucar.visad.quantities.Gravity.newReal();
 
             // System.out.println ("    g = "+g.getValue() );
             Boolean ensble = GridUtil.hasEnsemble(temperFI)
                              && GridUtil.hasEnsemble(absvor);
 
-            TupleType    rangeType = null;
-            FunctionType innerType = null;
-            // compute each theta FlatField for time steps in turn;
-            // make IPV from it and load in FieldImpl
-            for (int i = 0; i < timeSet.getLength(); i++) {
-
-                if (ensble) {
-                    FieldImpl sample1   = (FieldImpl) temperFI.getSample(i);
-                    FieldImpl sample2   = (FieldImpl) ((PisSequence == true)
-                            ? pressFI.getSample(0)
-                            : pressFI);
-                    FieldImpl sample3   = (FieldImpl) absvor.getSample(i);
-
-                    Set       ensDomain = sample1.getDomainSet();
-                    FieldImpl funcFF    = null;
-
-                    for (int j = 0; j < ensDomain.getLength(); j++) {
-                        FlatField innerField1 =
-                            (FlatField) sample1.getSample(j, false);
-                        FlatField innerField2 = (FlatField) ((PisSequence
-                                                    == true)
-                                ? (FlatField) sample2.getSample(j, false)
-                                : sample2);
-                        FlatField innerField3 =
-                            (FlatField) sample3.getSample(j, false);
-
-                        if ((innerField1 == null) || (innerField2 == null)) {
-                            continue;
-                        }
-                        FlatField innerdivFF =
-                            (FlatField) PotentialTemperature.create(
-                                innerField2, innerField1);
-
-                        if (pressure == null) {
-
-                            // first time through
-                            // get the "level" coord of the grid; x,y,level; a "RealType"
-                            pressure =
-                                (RealType) ((FunctionType) innerdivFF.getType()).getDomain()
-                                .getComponent(2);
-                        }
-
-                        if ( !Unit.canConvert(pressure.getDefaultUnit(),
-                                CommonUnits.HECTOPASCAL)) {
-                            throw new VisADException(
-                                "Need a pressure vertical coordinate");
-                        }
-                        // the derivative of theta by pressure level
-                        dtdp = (FlatField) GridMath.partial(innerdivFF, 2);
-
-                        // multiply by little g - surface gravity acceleration
-                        dtdp = (FlatField) dtdp.multiply(g).negate();
-
-                        // multiply by absolute vorticity grid for this time step
-                        dtdp = (FlatField) (dtdp.multiply(innerField3));
-
-                        if (rangeType == null) {
-                            Unit ipvUnit = dtdp.getRangeUnits()[0][0];
-                            RealType ipvRT = DataUtil.makeRealType("ipv",
-                                                 ipvUnit);
-                            ipvFFType = new FunctionType(
-                                ((FunctionType) dtdp.getType()).getDomain(),
-                                ipvRT);
-
-                            rangeType = GridUtil.getParamType(innerdivFF);
-                            innerType = new FunctionType(
-                                DataUtility.getDomainType(ensDomain),
-                                ipvFFType);
-                        }
-                        if (j == 0) {
-                            funcFF = new FieldImpl(innerType, ensDomain);
-                            funcFF.setMetadataMap(temperFI.getMetadataMap());
-                        }
-                        dtdp = (FlatField) dtdp.changeMathType(ipvFFType);
-
-                        funcFF.setSample(j, dtdp, false);
-
-                    }
-                    if (ipvFI == null) {
-                        FunctionType newFieldType =
-                            new FunctionType(
-                                ((SetType) timeSet.getType()).getDomain(),
-                                funcFF.getType());
-                        ipvFI = new FieldImpl(newFieldType, timeSet);
-                        ipvFI.setMetadataMap(temperFI.getMetadataMap());
-                    }
-                    ipvFI.setSample(i, funcFF, false);
-                } else {
-                    // System.out.print(" "+i);
+            // the pressure grid of the first time is used for all of them
+            FieldImpl pressure = (PisSequence == true)
+                                 ? (FieldImpl) pressFI.getSample(0)
+                                 : pressFI;
+
+            // compute each theta FlatField for the time steps in parallel;
+            // make IPV from it
+            ipvFI = mapOverTimes("Computing isentropic potential vorticity",
+                                 new FieldImpl[] { temperFI,
+                    pressure, absvor }, ensble, new StepFunction() {
+                public FlatField apply(FlatField[] grids)
+                        throws VisADException, RemoteException {
                     // make potential temperature "theta" for this time step
                     FlatField thetaFF =
-                        (FlatField) PotentialTemperature.create((PisSequence
-                            == true)
-                            ? pressFI.getSample(0)
-                            : pressFI, (FlatField) temperFI.getSample(i));
-
-                    if (i == 0) {
-
-                        // first time through
-                        // get the "level" coord of the grid; x,y,level; a "RealType"
-                        pressure =
-                            (RealType) ((FunctionType) thetaFF.getType()).getDomain()
-                            .getComponent(2);
-                    }
-
-                    if ( !Unit.canConvert(pressure.getDefaultUnit(),
+                        (FlatField) PotentialTemperature.create(grids[1],
+                            grids[0]);
+
+                    // get the "level" coord of the grid; x,y,level; a "RealType"
+                    RealType level =
+                        (RealType) ((FunctionType) thetaFF.getType()).getDomain()
+                        .getComponent(2);
+                    if ( !Unit.canConvert(level.getDefaultUnit(),
                                           CommonUnits.HECTOPASCAL)) {
                         throw new VisADException(
                             "Need a pressure vertical coordinate");
                     }
 
                     // the derivative of theta by pressure level
-                    dtdp = (FlatField) GridMath.partial(thetaFF, 2);
+                    FlatField dtdp = (FlatField) GridMath.partial(thetaFF,
+                                         2);
 
                     // multiply by little g - surface gravity acceleration
                     dtdp = (FlatField) dtdp.multiply(g).negate();
 
                     // multiply by absolute vorticity grid for this time step
-                    dtdp = (FlatField) (dtdp.multiply(
-                        ((FlatField) absvor.getSample(i))));
-
-                    if (i == 0) {
-
-                        // first time through, set up ipvFI
-                        // make the VisAD FunctionType for the IPV; several steps
-                        Unit     ipvUnit = dtdp.getRangeUnits()[0][0];
-                        RealType ipvRT = DataUtil.makeRealType("ipv",
-                                             ipvUnit);
-
-                        // change unit from 0.01 s-1 K kg-1 m2 to
-                        // E-6 s-1 K kg-1 m2 the "IPV Unit"
-                        // ipvUnit.scale(0.0001);
-                        ipvFFType = new FunctionType(
-                            ((FunctionType) dtdp.getType()).getDomain(),
-                            ipvRT);
-
-                        FunctionType functionType =
-                            new FunctionType(
-                                ((FunctionType) temperFI.getType()).getDomain(),
-                                ipvFFType);
-
-                        // System.out.println ("    first func type = "+functionType);
-                        // make the new FieldImpl for IPV (but as yet empty of data)
-                        ipvFI = new FieldImpl(functionType, timeSet);
-                        ipvFI.setMetadataMap(temperFI.getMetadataMap());
-                    }
-
-                    dtdp = (FlatField) dtdp.changeMathType(ipvFFType);
-
-                    // set this time's ipv grid
-                    ipvFI.setSample(i, dtdp, false);
+                    dtdp = (FlatField) (dtdp.multiply(grids[2]));
+
+                    // change unit from 0.01 s-1 K kg-1 m2 to
+                    // E-6 s-1 K kg-1 m2 the "IPV Unit"
+                    // ipvUnit.scale(0.0001);
+                    Unit     ipvUnit = dtdp.getRangeUnits()[0][0];
+                    RealType ipvRT   = DataUtil.makeRealType("ipv", ipvUnit);
+                    FunctionType ipvFFType = new FunctionType(
+                                                 ((FunctionType) dtdp.getType()).getDomain(),
+                                                 ipvRT);
+
+                    return (FlatField) dtdp.changeMathType(ipvFFType);
                 }
-            }
+            });
         } else {
             System.out.println("   not GridUtil.isTimeSequence(temperFI) ");
         }
@@ -3950,11 +3637,9 @@ public class DerivedGridFactory {
             throws VisADException, RemoteException {
         FieldImpl absvorFI = createAbsoluteVorticity(getUComponent(vectorFI),
                                  getVComponent(vectorFI));
-        boolean        TisSequence = (GridUtil.isTimeSequence(thetaFI));
-        boolean        AisSequence = (GridUtil.isTimeSequence(absvorFI));
-        FieldImpl      pvorFI      = null;
-        visad.Function dthdp       = null;
-        FunctionType   pvorFIType  = null;
+        boolean   TisSequence = (GridUtil.isTimeSequence(thetaFI));
+        boolean   AisSequence = (GridUtil.isTimeSequence(absvorFI));
+        FieldImpl pvorFI      = null;
 
         if (TisSequence) {  // assumes avor is also a sequence
 
@@ -3971,74 +3656,15 @@ public class DerivedGridFactory {
 
             Boolean ensble = GridUtil.hasEnsemble(thetaFI)
                              && GridUtil.hasEnsemble(vectorFI);
-            TupleType    rangeType = null;
-            FunctionType innerType = null;
-            // make PVOR from it and load in FieldImpl
-            for (int i = 0; i < timeSet.getLength(); i++) {
-
-                if (ensble) {
-                    FieldImpl sample1   = (FieldImpl) thetaFI.getSample(i);
-                    FieldImpl sample2   = (FieldImpl) absvorFI.getSample(i);
-
-                    Set       ensDomain = sample1.getDomainSet();
-                    FieldImpl funcFF    = null;
-
-                    for (int j = 0; j < ensDomain.getLength(); j++) {
-                        FlatField innerField1 =
-                            (FlatField) sample1.getSample(j, false);
-                        FlatField innerField2 =
-                            (FlatField) sample2.getSample(j, false);
-
-                        if ((innerField1 == null) || (innerField2 == null)) {
-                            continue;
-                        }
-                        FlatField innerdivFF = createPVOR(innerField1,
-                                                   innerField2);
-
-                        if (rangeType == null) {
-                            rangeType = GridUtil.getParamType(innerdivFF);
-                            innerType = new FunctionType(
-                                DataUtility.getDomainType(ensDomain),
-                                innerdivFF.getType());
-                        }
-                        if (funcFF == null) {
-                            funcFF = new FieldImpl(innerType, ensDomain);
-                            funcFF.setMetadataMap(thetaFI.getMetadataMap());
-                        }
-                        funcFF.setSample(j, innerdivFF, false);
-
-                    }
-                    if (pvorFI == null) {
-                        FunctionType newFieldType =
-                            new FunctionType(
-                                ((SetType) timeSet.getType()).getDomain(),
-                                funcFF.getType());
-                        pvorFI = new FieldImpl(newFieldType, timeSet);
-                        pvorFI.setMetadataMap(thetaFI.getMetadataMap());
-                    }
-                    pvorFI.setSample(i, funcFF, false);
-                } else {
-                    FlatField pvorFF =
-                        createPVOR((FlatField) thetaFI.getSample(i),
-                                   (FlatField) absvorFI.getSample(i));
-
-                    if ((pvorFIType == null) && (pvorFF != null)) {
-                        pvorFIType = new FunctionType(
-                            ((SetType) timeSet.getType()).getDomain(),
-                            pvorFF.getType());
-
-                        // System.out.println ("    first func type = "+functionType);
-                        // make the new FieldImpl for IPV (but as yet empty of data)
-                        pvorFI = new FieldImpl(pvorFIType, timeSet);
-                        pvorFI.setMetadataMap(thetaFI.getMetadataMap());
-                    }
-
-                    // set this time's ipv grid
-                    if (pvorFF != null) {
-                        pvorFI.setSample(i, pvorFF, false);
-                    }
+            // make PVOR for the time steps in parallel
+            pvorFI = mapOverTimes("Computing potential vorticity",
+                                  new FieldImpl[] { thetaFI,
+                    absvorFI }, ensble, new StepFunction() {
+                public FlatField apply(FlatField[] grids)
+                        throws VisADException, RemoteException {
+                    return createPVOR(grids[0], grids[1]);
                 }
-            }
+            });
         } else {
             pvorFI = (FieldImpl) createPVOR((FlatField) thetaFI,
                                             (FlatField) absvorFI);
@@ -7404,4 +7030,156 @@ public class DerivedGridFactory {
 
         return newField;
     }
+
+    /**
+     * The derivation for the grids of one time step (or one ensemble
+     * member of one time step).
+     */
+    private interface StepFunction {
+
+        /**
+         * Derive one grid
+         *
+         * @param grids  the inputs for this step, in the order given to
+         *               {@link #mapOverTimes}
+         *
+         * @return the derived grid, or null to leave this step missing
+         *
+         * @throws VisADException   VisAD Error
+         * @throws RemoteException  Java RMI error
+         */
+        FlatField apply(FlatField[] grids)
+                throws VisADException, RemoteException;
+    }
+
+    /**
+     * Apply a derivation to every time step, and every ensemble member, of
+     * some grids. The steps are independent, so they run in parallel on
+     * the common pool; the results are put back together in time order.
+     * Progress is shown through the JobManager, and cancelling the job
+     * stops steps that have not started yet.
+     *
+     * @param label  what is being derived, for the progress dialog
+     * @param inputs  the grids; the first one must be a time sequence and
+     *                gives the time (and ensemble) domain and metadata of
+     *                the result. An input that is not a time sequence is
+     *                used for every time step.
+     * @param ensemble  true if the time steps are ensembles
+     * @param function  the derivation
+     *
+     * @return time sequence of the derived grids, or null if every step
+     *         was missing
+     *
+     * @throws VisADException   VisAD Error or the job was cancelled
+     * @throws RemoteException  Java RMI error
+     */
+    private static FieldImpl mapOverTimes(String label,
+                                          final FieldImpl[] inputs,
+                                          final boolean ensemble,
+                                          final StepFunction function)
+            throws VisADException, RemoteException {
+
+        final Set       timeSet  = inputs[0].getDomainSet();
+        final int       numTimes = timeSet.getLength();
+        final boolean[] isSeq    = new boolean[inputs.length];
+        for (int k = 0; k < inputs.length; k++) {
+            isSeq[k] = GridUtil.isTimeSequence(inputs[k]);
+        }
+        // one task per time step, or per member of each time step
+        Set[] ensDomains = new Set[numTimes];
+        List<int[]> steps = new ArrayList<int[]>();
+        for (int i = 0; i < numTimes; i++) {
+            if (ensemble) {
+                ensDomains[i] =
+                    ((FieldImpl) inputs[0].getSample(i)).getDomainSet();
+                for (int j = 0; j < ensDomains[i].getLength(); j++) {
+                    steps.add(new int[] { i, j });
+                }
+            } else {
+                steps.add(new int[] { i, -1 });
+            }
+        }
+
+        final Object loadId = JobManager.getManager().startLoad(label,
+                                  true);
+        final AtomicInteger done     = new AtomicInteger();
+        final int           numSteps = steps.size();
+        List<FlatField>     results;
+        try {
+            results = ParallelTasks.map(numSteps, n -> {
+                if ( !JobManager.getManager().canContinue(loadId)) {
+                    // stops the steps that have not started
+                    throw new CancellationException();
+                }
+                int[]       step  = steps.get(n);
+                FlatField[] grids = new FlatField[inputs.length];
+                for (int k = 0; k < inputs.length; k++) {
+                    Data data = isSeq[k]
+                                ? inputs[k].getSample(step[0])
+                                : inputs[k];
+                    if (ensemble && !(data instanceof FlatField)) {
+                        data = ((FieldImpl) data).getSample(step[1], false);
+                    }
+                    if (data == null) {
+                        return null;
+                    }
+                    grids[k] = (FlatField) data;
+                }
+                FlatField result = function.apply(grids);
+                JobManager.getManager().setDialogLabel1(loadId,
+                        label + ": " + done.incrementAndGet() + "/"
+                        + numSteps);
+                return result;
+            });
+        } catch (CancellationException ce) {
+            throw new VisADException("Cancelled deriving " + label);
+        } catch (VisADException | RemoteException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new VisADException("Problem deriving " + label + ": " + e);
+        } finally {
+            JobManager.getManager().stopLoad(loadId);
+        }
+
+        // put the results back together in time order
+        FieldImpl    timeFI    = null;
+        FunctionType innerType = null;
+        int          n         = 0;
+        for (int i = 0; i < numTimes; i++) {
+            FieldImpl stepFI = null;
+            if (ensemble) {
+                for (int j = 0; j < ensDomains[i].getLength(); j++) {
+                    FlatField result = results.get(n++);
+                    if (result == null) {
+                        continue;
+                    }
+                    if (innerType == null) {
+                        innerType = new FunctionType(
+                            DataUtility.getDomainType(ensDomains[i]),
+                            result.getType());
+                    }
+                    if (stepFI == null) {
+                        stepFI = new FieldImpl(innerType, ensDomains[i]);
+                        stepFI.setMetadataMap(inputs[0].getMetadataMap());
+                    }
+                    stepFI.setSample(j, result, false);
+                }
+            } else {
+                stepFI = results.get(n++);
+            }
+            if (stepFI == null) {
+                continue;
+            }
+            if (timeFI == null) {
+                FunctionType timeType =
+                    new FunctionType(
+                        ((SetType) timeSet.getType()).getDomain(),
+                        stepFI.getType());
+                timeFI = new FieldImpl(timeType, timeSet);
+                timeFI.setMetadataMap(inputs[0].getMetadataMap());
+            }
+            timeFI.setSample(i, stepFI, false);
+        }
+        return timeFI;
+    }
 }
@@ -163,6 +163,9 @@ public class GeoGridAdapter {
     /** Used to synchronize read access on the data set */
     private Object readLock;
 
+    /** ranges the geogrid was subset with, null if it was not subset */
+    private ucar.ma2.Range[] subsetRanges;
+
     /** Default vertical transform */
     private String vertcs = DataUtil.STD_ATMOSPHERE;
 
@@ -344,6 +347,17 @@ public class GeoGridAdapter {
         return geoGrid;
     }
 
+    /**
+     * Set the ranges the geogrid was subset with, so the same subset can
+     * be made on another handle to the file.
+     *
+     * @param subsetRanges the ensemble, level, y and x ranges, or null if
+     *                     the geogrid is not a subset
+     */
+    void setSubsetRanges(ucar.ma2.Range[] subsetRanges) {
+        this.subsetRanges = subsetRanges;
+    }
+
 
 
 
@@ -1353,6 +1367,12 @@ public class GeoGridAdapter {
             GeoGridFlatField ggff = new GeoGridFlatField(geoGrid,
                                         readLockToUse, timeIndex, ensIndex,
                                         domainSet, ffType);
+            GridDatasetPool pool = (dataSource.isLocalFile()
+                                    ? dataSource.getDatasetPool()
+                                    : null);
+            if (pool != null) {
+                ggff.setDatasetPool(pool, subsetRanges);
+            }
 
 
             ggff.setReadLabel(readLabel);
@@ -1479,7 +1499,11 @@ public class GeoGridAdapter {
                 }
 
             }
-            if ((dataSource.getIdv() == null) || dataSource.isLocalFile()) {
+            // local files are read in parallel only when each thread
+            // can get its own handle on the file
+            if ((dataSource.getIdv() == null)
+                    || (dataSource.isLocalFile()
+                        && (dataSource.getDatasetPool() == null))) {
                 threadManager.runSequentially();
             } else {
                 threadManager
@@ -175,6 +175,26 @@ public class GeoGridDataSource extends GridDataSource {
     /** This is used to synchronize geogrid read access */
     protected final Object readLock = new Object();
 
+    /**
+     * System property to turn off parallel reads of local files through
+     * separately opened handles (default true)
+     */
+    public static final String PROP_LOCAL_PARALLEL =
+        "idv.data.grid.localparallel";
+
+    /** extra handles on a local file for parallel reads; null until needed */
+    private volatile GridDatasetPool datasetPool;
+
+    /** true once we have decided this data source cannot use a pool */
+    private volatile boolean noDatasetPool = false;
+
+    /**
+     * Guards making and closing the pool. The reader threads ask for the
+     * pool while getData holds this data source's monitor, so it must not
+     * be this.
+     */
+    private final Object datasetPoolLock = new Object();
+
     /** logging category */
     static ucar.unidata.util.LogUtil.LogCategory log_ =
         ucar.unidata.util.LogUtil.getLogInstance(
@@ -626,6 +646,7 @@ public class GeoGridDataSource extends GridDataSource {
      * Clear out the data set
      */
     public void reloadData() {
+        closeDatasetPool();
         myTimes   = null;
         dataset   = null;
         gcsVsTime = new Hashtable();
@@ -652,6 +673,7 @@ public class GeoGridDataSource extends GridDataSource {
      */
     public void doRemove() {
         super.doRemove();
+        closeDatasetPool();
         try {
             if (dataset != null) {
                 dataset.close();
@@ -1238,6 +1260,69 @@ public class GeoGridDataSource extends GridDataSource {
         }
     }
 
+    /**
+     * Get the pool of extra handles used to read time steps of a local
+     * file in parallel. The pool is only made for a single, plain local
+     * file and is bounded by the maximum data thread count.
+     *
+     * @return the pool or null if reads should go through the shared
+     *         dataset under the read lock
+     */
+    public GridDatasetPool getDatasetPool() {
+        GridDatasetPool pool = datasetPool;
+        if ((pool != null) || noDatasetPool) {
+            return pool;
+        }
+        synchronized (datasetPoolLock) {
+            if ((datasetPool != null) || noDatasetPool) {
+                return datasetPool;
+            }
+            return makeDatasetPool();
+        }
+    }
+
+    /**
+     * Make the pool, or decide that there should not be one.
+     * Called with the pool lock held.
+     *
+     * @return the pool or null
+     */
+    private GridDatasetPool makeDatasetPool() {
+        GridDataset myDataset = dataset;
+        int maxThreads = (getIdv() == null)
+                         ? 1
+                         : getIdv().getMaxDataThreadCount();
+        if ( !Boolean.parseBoolean(System.getProperty(PROP_LOCAL_PARALLEL,
+                "true")) || (maxThreads < 2) || (myDataset == null)
+                    || ((sources != null) && (sources.size() > 1))) {
+            noDatasetPool = true;
+            return null;
+        }
+        String location = myDataset.getLocation();
+        if ((location != null) && location.startsWith("file:")) {
+            location = location.substring("file:".length());
+        }
+        if ((location == null) || !new File(location).isFile()) {
+            noDatasetPool = true;
+            return null;
+        }
+        datasetPool = new GridDatasetPool(location, maxThreads);
+        return datasetPool;
+    }
+
+    /**
+     * Close the extra handles, if any
+     */
+    private void closeDatasetPool() {
+        synchronized (datasetPoolLock) {
+            if (datasetPool != null) {
+                datasetPool.close();
+            }
+            datasetPool   = null;
+            noDatasetPool = false;
+        }
+    }
+
     /**
      * Return the GridDataset associated with this DataSource.
      *
@@ -1626,6 +1711,7 @@ public class GeoGridDataSource extends GridDataSource {
             return null;
         }
         Object  extraCacheKey = null;
+        Range[] subsetRanges  = null;
         GeoGrid geoGrid       = findGridForDataChoice(myDataset, dataChoice);
         String  paramName     = dataChoice.getStringId();
         if (geoGrid == null) {
@@ -1809,12 +1895,16 @@ public class GeoGridDataSource extends GridDataSource {
                 //                System.out.println("level range(1):  " + levelRange);
                 geoGrid = (GeoGrid) geoGrid.makeSubset(null, ensRange, null,
                         levelRange, yRange, xRange);
+                subsetRanges = new Range[] { ensRange, levelRange, yRange,
+                                             xRange };
             } else if (levelRange != null) {
                 extraCacheKey = levelRange;
                 //                System.out.println("level range(2):  " + levelRange);
                 //geoGrid = geoGrid.subset(null, levelRange, null, null);
                 geoGrid = (GeoGrid) geoGrid.makeSubset(null, ensRange, null,
                         levelRange, yRange, xRange);
+                subsetRanges = new Range[] { ensRange, levelRange, yRange,
+                                             xRange };
             }
         } catch (InvalidRangeException ire) {
             throw new IllegalArgumentException("Invalid range:" + ire, ire);
@@ -1900,6 +1990,7 @@ public class GeoGridDataSource extends GridDataSource {
                                      extraCacheKey);
 
         adapter.cacheFile = filename.toString();
+        adapter.setSubsetRanges(subsetRanges);
         return adapter;
     }
 
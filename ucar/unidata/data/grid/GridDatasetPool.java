@@ -0,0 +1,215 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package ucar.unidata.data.grid;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ucar.nc2.dt.grid.GridDataset;
+
+import java.io.IOException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+
+/**
+ * A bounded set of separately opened GridDatasets on one local file.
+ *
+ * Every handle has its own file pointer and buffers, so a thread holding
+ * one can read without the data source wide read lock. Handles are opened
+ * on demand, at most {@code maxHandles} of them, and {@link #acquire()}
+ * waits when all of them are in use.
+ */
+public class GridDatasetPool {
+
+    private static final Logger logger =
+        LoggerFactory.getLogger(GridDatasetPool.class);
+
+    /** the file every handle is opened on */
+    private final String location;
+
+    /** the most handles open at once */
+    private final int maxHandles;
+
+    /** handles not in use */
+    private final Deque<GridDataset> idle = new ArrayDeque<GridDataset>();
+
+    /** every handle opened and not yet closed */
+    private final List<GridDataset> opened = new ArrayList<GridDataset>();
+
+    /** handles being opened right now */
+    private int opening = 0;
+
+    /** set once close has been called */
+    private boolean closed = false;
+
+    /**
+     * Create a pool. No handle is opened until one is needed.
+     *
+     * @param location   path to the local file
+     * @param maxHandles the most handles to keep open
+     */
+    public GridDatasetPool(String location, int maxHandles) {
+        this.location   = location;
+        this.maxHandles = Math.max(1, maxHandles);
+    }
+
+    /**
+     * Get the location
+     *
+     * @return the file the handles are opened on
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * Get the most handles this pool keeps open
+     *
+     * @return the bound
+     */
+    public int getMaxHandles() {
+        return maxHandles;
+    }
+
+    /**
+     * Borrow a handle, opening a new one if the bound allows it and
+     * waiting for one to be released otherwise. Every handle returned must
+     * be given back with {@link #release(GridDataset)}.
+     *
+     * @return a handle, or null if the pool has been closed
+     *
+     * @throws IOException if a new handle could not be opened
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public GridDataset acquire() throws IOException, InterruptedException {
+        synchronized (this) {
+            while ( !closed && idle.isEmpty()
+                    && (opened.size() + opening >= maxHandles)) {
+                wait();
+            }
+            if (closed) {
+                return null;
+            }
+            if ( !idle.isEmpty()) {
+                return idle.pop();
+            }
+            opening++;
+        }
+        // open outside the lock, it can take a while for big GRIB files
+        GridDataset dataset = null;
+        boolean     keep    = false;
+        try {
+            dataset = GridDataset.open(location);
+        } finally {
+            synchronized (this) {
+                opening--;
+                keep = (dataset != null) && !closed;
+                if (keep) {
+                    opened.add(dataset);
+                    logger.debug("opened handle {} of {} on {}",
+                                 opened.size(), maxHandles, location);
+                } else {
+                    notifyAll();
+                }
+            }
+        }
+        if ( !keep) {
+            closeQuietly(dataset);
+            return null;
+        }
+        return dataset;
+    }
+
+    /**
+     * Give back a handle from {@link #acquire()}
+     *
+     * @param dataset the handle
+     */
+    public void release(GridDataset dataset) {
+        if (dataset == null) {
+            return;
+        }
+        synchronized (this) {
+            if ( !closed) {
+                idle.push(dataset);
+                notifyAll();
+                return;
+            }
+            opened.remove(dataset);
+        }
+        closeQuietly(dataset);
+    }
+
+    /**
+     * Is this pool closed
+     *
+     * @return true if close has been called
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Close the idle handles now and the borrowed ones as they come back
+     */
+    public void close() {
+        List<GridDataset> toClose;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed  = true;
+            toClose = new ArrayList<GridDataset>(idle);
+            opened.removeAll(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (GridDataset dataset : toClose) {
+            closeQuietly(dataset);
+        }
+    }
+
+    /**
+     * Close a handle, logging any problem
+     *
+     * @param dataset the handle
+     */
+    private void closeQuietly(GridDataset dataset) {
+        try {
+            dataset.close();
+        } catch (IOException ioe) {
+            logger.warn("Problem closing " + location, ioe);
+        }
+    }
+}
@@ -1170,27 +1170,33 @@ public class GridMath {
                                 ? 1
                                 : 0;
             //System.out.println("nave = "+nave+", nav2 = "+nav2+", noe= "+noe);
-            FlatField sample      = (FlatField) newGrid.getSample(0);
+            // the clone is deep, so the input time steps can be read
+            // straight from the original grid without another copy
+            FlatField sample      = (FlatField) grid.getSample(0);
             float[][] missingData = Misc.cloneArray(sample.getFloats(false));
             Misc.fillArray(missingData, Float.NaN);
+            final int   numComps    = missingData.length;
+            final int   numPoints   = missingData[0].length;
             int         lwork       = numTimeSteps + 2 * nav2;
-            float[][]   values      = null;
             float[][][] work        = new float[lwork][][];
+            boolean[]   workMissing = new boolean[lwork];
             float[][][] x           = new float[npts][][];
+            boolean[]   xMissing    = new boolean[npts];
             int[]       timeIndices = new int[lwork];
             // Prefill with missing values (OPT_MISSING)
             //System.out.println("new array has " + lwork + " elements");
             for (int n = 0; n < lwork; n++) {
                 work[n]        = missingData;
+                workMissing[n] = true;
                 timeIndices[n] = -1;
             }
             for (int n = 0; n < npts; n++) {
-                sample = (FlatField) newGrid.getSample(n);
-                float[][] timeStepValues =
-                    Misc.cloneArray(sample.getFloats(false));
+                sample = (FlatField) grid.getSample(n);
                 //System.out.println("setting timestep " + n + " at position " + (nav2+n));
-                x[n]                  = timeStepValues;
+                x[n]                  = sample.getFloats(false);
+                xMissing[n]           = Misc.isNaN(x[n]);
                 work[nav2 + n]        = x[n];
+                workMissing[nav2 + n] = xMissing[n];
                 timeIndices[nav2 + n] = n;
             }
             int lpts = npts - 1;
@@ -1198,18 +1204,22 @@ public class GridMath {
                 for (int n = 0; n < nav2; n++) {
                     //System.out.println("setting work array " + (nav2-(n+1)) + " with time " + (n+1));
                     work[nav2 - (n + 1)]        = x[n + 1];
+                    workMissing[nav2 - (n + 1)] = xMissing[n + 1];
                     timeIndices[nav2 - (n + 1)] = n + 1;
                     //System.out.println("setting work array " + (lpts+nav2+(n+1)) + " with time " + (lpts-(n+1)));
                     work[lpts + nav2 + (n + 1)]        = x[lpts - (n + 1)];
+                    workMissing[lpts + nav2 + (n + 1)] = xMissing[lpts - (n + 1)];
                     timeIndices[lpts + nav2 + (n + 1)] = lpts - (n + 1);
                 }
             } else if (opt == OPT_CYCLIC) {
                 for (int n = 0; n < nav2; n++) {
                     //System.out.println("setting work array " + (nav2-(n+1)) + " with time " + (lpts-n));
                     work[nav2 - (n + 1)]        = x[lpts - n];
+                    workMissing[nav2 - (n + 1)] = xMissing[lpts - n];
                     timeIndices[nav2 - (n + 1)] = lpts - n;
                     //System.out.println("setting work array " + (lpts+nav2+n+1) + " with time " + (n));
                     work[lpts + nav2 + n + 1]        = x[n];
+                    workMissing[lpts + nav2 + n + 1] = xMissing[n];
                     timeIndices[lpts + nav2 + n + 1] = n;
                 }
             }
@@ -1218,21 +1228,20 @@ public class GridMath {
                 int       nmid   = n + nav2 + noe;
                 int       mstart = nmid - nav2;
                 int       mlast  = mstart + nave;
-                float[][] sum    = Misc.cloneArray(missingData);
-                Misc.fillArray(sum, 0);
                 boolean   haveMissing = false;
                 boolean[] missData    = new boolean[nave];
                 int       idx         = 0;
+                // the time steps and weights that go into this average
+                final float[][][] terms   = new float[nave][][];
+                final float[]     weights = new float[nave];
+                int               nterms  = 0;
                 for (int m = mstart; m < mlast; m++) {
                     //System.out.println("for time " + n + ", adding time " + timeIndices[m]);
-                    values = work[m];
-                    if ( !Misc.isNaN(values)) {
+                    if ( !workMissing[m]) {
                         // TODO:  what if single timestep values are missing?
-                        for (int i = 0; i < values.length; i++) {
-                            for (int j = 0; j < values[i].length; j++) {
-                                sum[i][j] += values[i][j] * wgts[m - mstart];
-                            }
-                        }
+                        terms[nterms]   = work[m];
+                        weights[nterms] = wgts[m - mstart];
+                        nterms++;
                     } else {
                         haveMissing   = true;
                         missData[idx] = true;
@@ -1250,12 +1259,27 @@ public class GridMath {
                         wsum = 1f / wsum;
                     }
                 }
+                float[][] sum;
                 if ( !haveMissing || skipMissing) {
-                    for (int i = 0; i < values.length; i++) {
-                        for (int j = 0; j < values[i].length; j++) {
-                            sum[i][j] *= wsum;
+                    final float[][] total  = new float[numComps][numPoints];
+                    final int       count  = nterms;
+                    final float     factor = wsum;
+                    GridUtil.forEachRowBand(numPoints, 4096, (from, to) -> {
+                        for (int i = 0; i < numComps; i++) {
+                            float[] t = total[i];
+                            for (int k = 0; k < count; k++) {
+                                float[] v = terms[k][i];
+                                float   w = weights[k];
+                                for (int j = from; j < to; j++) {
+                                    t[j] += v[j] * w;
+                                }
+                            }
+                            for (int j = from; j < to; j++) {
+                                t[j] *= factor;
+                            }
                         }
-                    }
+                    });
+                    sum = total;
                 } else {
                     sum = missingData;
                 }
@@ -1363,85 +1387,15 @@ public class GridMath {
                 newGrid.setSamples(grid.getFloats(false), true);
                 return newGrid;
             }
-            final boolean doMax      = function.equals(FUNC_MAX);
-            final boolean doMin      = function.equals(FUNC_MIN);
-            final boolean doStd      = function.equals(FUNC_STDEV);
-            float[][]     values     = null;
-            float[][]     values2    = null;
-            int[][]       nums       = null;
-            final Set     timeDomain = Util.getDomainSet(grid);
-            for (int timeStepIdx = startIdx;
-                    timeStepIdx < timeDomain.getLength();
-                    timeStepIdx += idxStride) {
-                FieldImpl sample = (FieldImpl) grid.getSample(timeStepIdx);
-                float[][] timeStepValues = sample.getFloats(false);
-                if (values == null) {  // first pass through
-                    values = Misc.cloneArray(timeStepValues);
-                    nums   = new int[values.length][values[0].length];
-                    if (doStd) {
-                        values2 = new float[values.length][values[0].length];
-                    }
-                    for (int i = 0; i < timeStepValues.length; i++) {
-                        for (int j = 0; j < timeStepValues[i].length; j++) {
-                            float value = timeStepValues[i][j];
-                            if (value != value) {
-                                continue;
-                            }
-                            nums[i][j] = 1;
-                            if (doStd) {
-                                values2[i][j] = value * value;
-                            }
-                        }
-                    }
-                    newGrid = (FlatField) sample.clone();
-                    continue;
-                }
-                for (int i = 0; i < timeStepValues.length; i++) {
-                    for (int j = 0; j < timeStepValues[i].length; j++) {
-                        float value = timeStepValues[i][j];
-                        if (value != value) {
-                            continue;
-                        }
-                        if (doMax) {
-                            values[i][j] = missingMax(values[i][j], value);
-                        } else if (doMin) {
-                            values[i][j] = missingMin(values[i][j], value);
-                        } else if (doStd) {
-                            values[i][j]  += value;
-                            values2[i][j] += value * value;
-                        } else {
-                            values[i][j] += value;
-                        }
-                        nums[i][j]++;
-                    }
-                }
-            }
-            if (function.equals(FUNC_AVERAGE)) {
-                for (int i = 0; i < values.length; i++) {
-                    for (int j = 0; j < values[i].length; j++) {
-                        int num = nums[i][j];
-                        if (num > 0) {
-                            values[i][j] = values[i][j] / num;
-                        } else {
-                            values[i][j] = Float.NaN;
-                        }
-                    }
-                }
-            }
-            if (function.equals(FUNC_STDEV)) {
-                for (int i = 0; i < values.length; i++) {
-                    for (int j = 0; j < values[i].length; j++) {
-                        int num = nums[i][j];
-                        if (num > 0) {
-                            float mean = values[i][j] / num;
-                            float var  = values2[i][j] / num - mean * mean;
-                            values[i][j] = (float) Math.sqrt(var);
-                        } else {
-                            values[i][j] = Float.NaN;
-                        }
-                    }
-                }
-            }
+            final Set   timeDomain = Util.getDomainSet(grid);
+            final int   numSteps   = (timeDomain.getLength() - startIdx
+                                      + idxStride - 1) / idxStride;
+            GridReducer reducer    = new GridReducer(function, false);
+            reducer.addAll(numSteps,
+                           k -> ((FieldImpl) grid.getSample(startIdx
+                               + k * idxStride)).getFloats(false));
+            float[][] values = reducer.getResult();
+            newGrid = (FlatField) grid.getSample(startIdx).clone();
             newGrid.setSamples(values, false);
             if (makeTimes) {
                 return (FieldImpl) Util.makeTimeField(newGrid,
@@ -1480,91 +1434,20 @@ public class GridMath {
                 newGrid.setSamples(grids[0].getFloats(false), true);
                 return newGrid;
             }
-            final boolean doMax   = function.equals(FUNC_MAX);
-            final boolean doMin   = function.equals(FUNC_MIN);
-            final boolean doStd   = function.equals(FUNC_STDEV);
-            float[][]     values  = null;
-            float[][]     values2 = null;
-            int[][]       nums    = null;
-
-            for (int gridIdx = 0; gridIdx < numGrids; gridIdx++) {
-                FieldImpl sample     = (FieldImpl) grids[gridIdx];
-                float[][] gridValues = sample.getFloats(false);
+            GridReducer reducer = new GridReducer(function, false);
+            reducer.addAll(numGrids, k -> {
+                float[][] gridValues = grids[k].getFloats(false);
                 // be careful about missing grids
-                if (Misc.isNaN(gridValues)) {
-                    continue;
-                }
-                if (values == null) {  // first pass through
-                    values = Misc.cloneArray(gridValues);
-                    nums   = new int[values.length][values[0].length];
-                    if (doStd) {
-                        values2 = new float[values.length][values[0].length];
-                    }
-                    for (int i = 0; i < gridValues.length; i++) {
-                        for (int j = 0; j < gridValues[i].length; j++) {
-                            float value = gridValues[i][j];
-                            if (value != value) {
-                                continue;
-                            }
-                            nums[i][j] = 1;
-                            if (doStd) {
-                                values2[i][j] = value * value;
-                            }
-                        }
-                    }
-                    newGrid = (FlatField) sample.clone();
-                    continue;
-                }
-                for (int i = 0; i < gridValues.length; i++) {
-                    for (int j = 0; j < gridValues[i].length; j++) {
-                        float value = gridValues[i][j];
-                        if (value != value) {
-                            continue;
-                        }
-                        if (doMax) {
-                            values[i][j] = missingMax(values[i][j], value);
-                        } else if (doMin) {
-                            values[i][j] = missingMin(values[i][j], value);
-                        } else if (doStd) {
-                            values[i][j]  += value;
-                            values2[i][j] += value * value;
-                        } else {
-                            values[i][j] += value;
-                        }
-                        nums[i][j]++;
-                    }
-                }
-            }
+                return Misc.isNaN(gridValues)
+                       ? null
+                       : gridValues;
+            });
+            float[][] values = reducer.getResult();
             // all grids were missing
-            if (newGrid == null) {
+            if (values == null) {
                 return null;
             }
-            if (function.equals(FUNC_AVERAGE)) {
-                for (int i = 0; i < values.length; i++) {
-                    for (int j = 0; j < values[i].length; j++) {
-                        int num = nums[i][j];
-                        if (num > 0) {
-                            values[i][j] = values[i][j] / num;
-                        } else {
-                            values[i][j] = Float.NaN;
-                        }
-                    }
-                }
-            }
-            if (function.equals(FUNC_STDEV)) {
-                for (int i = 0; i < values.length; i++) {
-                    for (int j = 0; j < values[i].length; j++) {
-                        int num = nums[i][j];
-                        if (num > 0) {
-                            float mean = values[i][j] / num;
-                            float var  = values2[i][j] / num - mean * mean;
-                            values[i][j] = (float) Math.sqrt(var);
-                        } else {
-                            values[i][j] = Float.NaN;
-                        }
-                    }
-                }
-            }
+            newGrid = (FlatField) grids[0].clone();
             newGrid.setSamples(values, false);
             return newGrid;
         } catch (CloneNotSupportedException cnse) {
@@ -1648,7 +1531,6 @@ public class GridMath {
             int         numMembers   = 0;
             TupleType   rangeType    = null;
             TupleType   newRangeType = null;
-            float[][][] valuesAll    = null;
 
             for (int timeStepIdx = 0; timeStepIdx < timeDomain.getLength();
                     timeStepIdx++) {
@@ -1658,8 +1540,9 @@ public class GridMath {
                 float[][] values    = null;
                 numMembers = ensDomain.getLength();
                 GriddedSet newDomain = null;
+                // member values, read once; missing points count as 0
+                final float[][][] members = new float[numMembers][][];
 
-                float[][]  stdevs    = null;
                 for (int k = 0; k < numMembers; k++) {
                     FlatField innerField = (FlatField) sample.getSample(k,
                                                false);
@@ -1675,54 +1558,54 @@ public class GridMath {
                             "_" + function);
                     }
 
-                    float[][] ensStepValues = innerField.getFloats(false);
+                    members[k] = innerField.getFloats(false);
                     if (values == null) {
-                        values    = Misc.cloneArray(ensStepValues);
-                        valuesAll =
-                            new float[values.length][values[0].length][numMembers];
-                    }
-                    for (int i = 0; i < ensStepValues.length; i++) {
-                        for (int j = 0; j < ensStepValues[i].length; j++) {
-                            float value = ensStepValues[i][j];
-                            if (value != value) {
-                                continue;
-                            }
-                            valuesAll[i][j][k] = value;
-                        }
+                        values = Misc.cloneArray(members[k]);
                     }
-
                 }
+                final float[][] results = values;
+                final int       count   = numMembers;
                 // do the math
                 if (function.equals(FUNC_PRCNTL) && (numMembers > 1)) {
-                    int percent = (int) statThreshold;
-                    for (int i = 0; i < values.length; i++) {
-                        for (int j = 0; j < values[i].length; j++) {
-                            values[i][j] =
-                                evaluatePercentile(valuesAll[i][j], 0,
-                                    numMembers, percent);
+                    final int percent = (int) statThreshold;
+                    if ((percent > 100) || (percent <= 0)) {
+                        throw new VisADException(
+                            "out of bounds percentile value:  must be in (0, 100)");
+                    }
+                    GridUtil.forEachRowBand(values[0].length, 1024,
+                                            (from, to) -> {
+                        float[] work = new float[count];
+                        for (int i = 0; i < results.length; i++) {
+                            for (int j = from; j < to; j++) {
+                                gatherMembers(members, i, j, work);
+                                results[i][j] = selectPercentile(work,
+                                        count, percent);
+                            }
                         }
-                    }
+                    });
                 }
 
                 if (function.equals(FUNC_MODE) && (numMembers > 1)) {
-                    for (int i = 0; i < values.length; i++) {
-                        for (int j = 0; j < values[i].length; j++) {
-                            values[i][j] = evaluateMode(valuesAll[i][j]);
+                    GridUtil.forEachRowBand(values[0].length, 1024,
+                                            (from, to) -> {
+                        float[] work = new float[count];
+                        for (int i = 0; i < results.length; i++) {
+                            for (int j = from; j < to; j++) {
+                                gatherMembers(members, i, j, work);
+                                results[i][j] = evaluateMode(work);
+                            }
                         }
-                    }
+                    });
                 }
 
                 if (function.equals(FUNC_UPROB) && (numMembers > 1)) {
+                    float[] tmpValues = new float[numMembers];
                     for (int i = 0; i < values.length; i++) {
                         for (int j = 0; j < values[i].length; j++) {
                             // check if ens values are within bounds.
                             int     numValidMembers = numMembers;
 
-                            float[] tmpValues       = new float[numMembers];
-
-                            for (int k = 0; k < numMembers; k++) {
-                                tmpValues[k] = valuesAll[i][j][k];
-                            }
+                            gatherMembers(members, i, j, tmpValues);
 
 
                             for (int k = 0; k < numMembers; k++) {
@@ -1801,10 +1684,6 @@ public class GridMath {
                 //todo
                 return newGrid;
             }
-            final boolean doMax        = function.equals(FUNC_MAX);
-            final boolean doMin        = function.equals(FUNC_MIN);
-            final boolean doRange      = function.equals(FUNC_RNG);
-
             final Set     timeDomain   = Util.getDomainSet(grid);
             int           numMembers   = 0;
             TupleType     rangeType    = null;
@@ -1812,14 +1691,12 @@ public class GridMath {
 
             for (int timeStepIdx = 0; timeStepIdx < timeDomain.getLength();
                     timeStepIdx++) {
-                FieldImpl sample = (FieldImpl) grid.getSample(timeStepIdx);
+                final FieldImpl sample =
+                    (FieldImpl) grid.getSample(timeStepIdx);
                 FlatField newField;
                 Set       ensDomain = sample.getDomainSet();
                 numMembers = ensDomain.getLength();
                 GriddedSet newDomain = null;
-                float[][]  values    = null;
-                float[][]  stdevs    = null;
-                float[][]  rangev    = null;
 
                 for (int k = 0; k < numMembers; k++) {
                     FlatField innerField = (FlatField) sample.getSample(k,
@@ -1835,89 +1712,19 @@ public class GridMath {
                             GridUtil.getParamType(innerField),
                             "_" + function);
                     }
-
-                    float[][] ensStepValues = innerField.getFloats(false);
-                    if (values == null) {
-                        values = Misc.cloneArray(ensStepValues);
-                        rangev = Misc.cloneArray(ensStepValues);
-                        continue;
-                    }
-                    for (int i = 0; i < ensStepValues.length; i++) {
-                        for (int j = 0; j < ensStepValues[i].length; j++) {
-                            float value = ensStepValues[i][j];
-                            if (value != value) {
-                                continue;
-                            }
-                            if (doMax) {
-                                values[i][j] = missingMax(values[i][j], value);
-                            } else if (doMin) {
-                                values[i][j] = missingMin(values[i][j], value);
-                            } else if (doRange) {
-                                values[i][j] = missingMax(values[i][j], value);
-                                rangev[i][j] = missingMin(rangev[i][j], value);
-                            } else {
-                                values[i][j] += value;
-                            }
-                        }
-                    }
-
-                }
-                // do the math
-                if (function.equals(FUNC_AVERAGE) && (numMembers > 1)) {
-                    for (int i = 0; i < values.length; i++) {
-                        for (int j = 0; j < values[i].length; j++) {
-                            values[i][j] = values[i][j] / numMembers;
-                        }
-                    }
-                }
-
-                if (function.equals(FUNC_RNG) && (numMembers > 1)) {
-                    for (int i = 0; i < values.length; i++) {
-                        for (int j = 0; j < values[i].length; j++) {
-                            values[i][j] = values[i][j] - rangev[i][j];
-                        }
-                    }
-                }
-
-                if (function.equals(FUNC_STDEV) && (numMembers > 1)) {
-                    //cal the average
-                    stdevs = new float[values.length][values[0].length];
-                    for (int i = 0; i < values.length; i++) {
-                        for (int j = 0; j < values[i].length; j++) {
-                            values[i][j] = values[i][j] / numMembers;
-                        }
-                    }
-                    // diff * diff
-                    for (int k = 0; k < numMembers; k++) {
-                        FlatField innerField =
-                            (FlatField) sample.getSample(k, false);
-                        if (innerField == null) {
-                            continue;
-                        }
-
-                        float[][] ensStepValues = innerField.getFloats(false);
-                        for (int i = 0; i < ensStepValues.length; i++) {
-                            for (int j = 0; j < ensStepValues[i].length;
-                                    j++) {
-                                float value = ensStepValues[i][j];
-                                if (value != value) {
-                                    continue;
-                                }
-                                stdevs[i][j] += (values[i][j] - value)
-                                        * (values[i][j] - value);
-
-                            }
-                        }
-                    }
-                    values = Misc.cloneArray(stdevs);
-                    // sqrt (v/n)
-                    for (int i = 0; i < values.length; i++) {
-                        for (int j = 0; j < values[i].length; j++) {
-                            values[i][j] = (float) Math.sqrt(values[i][j]
-                                    / (numMembers - 1));
-                        }
-                    }
                 }
+                // a single member is passed through as is
+                GridReducer reducer = new GridReducer((numMembers > 1)
+                        ? function
+                        : FUNC_AVERAGE, true);
+                reducer.addAll(numMembers, k -> {
+                    FlatField innerField = (FlatField) sample.getSample(k,
+                                               false);
+                    return (innerField == null)
+                           ? null
+                           : innerField.getFloats(false);
+                });
+                float[][] values = reducer.getResult();
 
                 FunctionType newFT =
                     new FunctionType(
@@ -2734,26 +2541,134 @@ public class GridMath {
         if (length == 1) {
             return values[begin];  // always return single value for n = 1
         }
-        double  n      = length;
-        double  pos    = p * (n + 1) / 100;
-        double  fpos   = Math.floor(pos);
-        int     intPos = (int) fpos;
-        float   dif    = (float) (pos - fpos);
-        float[] sorted = new float[length];
-        System.arraycopy(values, begin, sorted, 0, length);
-        QuickSort.sort(sorted);
+        float[] work = new float[length];
+        System.arraycopy(values, begin, work, 0, length);
+        return selectPercentile(work, length, p);
+    }
+
+    /**
+     * Percentile of the first {@code length} values of {@code work}, found
+     * by selection rather than a full sort. The values are reordered.
+     *
+     * @param work  the values; reordered on return
+     * @param length  number of values, at least one
+     * @param p  the percentage, in (0, 100]
+     *
+     * @return the percentile
+     */
+    private static float selectPercentile(float[] work, int length,
+                                          double p) {
+        if (length == 1) {
+            return work[0];
+        }
+        double n      = length;
+        double pos    = p * (n + 1) / 100;
+        double fpos   = Math.floor(pos);
+        int    intPos = (int) fpos;
+        float  dif    = (float) (pos - fpos);
 
         if (pos < 1) {
-            return sorted[0];
+            return selectKth(work, length, 0);
         }
         if (pos >= n) {
-            return sorted[length - 1];
+            return selectKth(work, length, length - 1);
+        }
+        float lower = selectKth(work, length, intPos - 1);
+        // everything after the selected value is at least as large
+        float upper = work[intPos];
+        for (int i = intPos + 1; i < length; i++) {
+            if (work[i] < upper) {
+                upper = work[i];
+            }
         }
-        float lower = sorted[intPos - 1];
-        float upper = sorted[intPos];
         return lower + dif * (upper - lower);
     }
 
+    /**
+     * Hoare selection: move the {@code k}th smallest of the first
+     * {@code length} values into {@code work[k]}, with nothing larger
+     * before it and nothing smaller after it.
+     *
+     * @param work  the values; reordered on return
+     * @param length  number of values
+     * @param k  zero based rank
+     *
+     * @return the kth smallest value
+     */
+    private static float selectKth(float[] work, int length, int k) {
+        int lo = 0;
+        int hi = length - 1;
+        while (hi > lo) {
+            int mid = (lo + hi) >>> 1;
+            // median of three as the pivot
+            if (work[mid] < work[lo]) {
+                swap(work, lo, mid);
+            }
+            if (work[hi] < work[lo]) {
+                swap(work, lo, hi);
+            }
+            if (work[hi] < work[mid]) {
+                swap(work, mid, hi);
+            }
+            float pivot = work[mid];
+            int   i     = lo;
+            int   j     = hi;
+            while (i <= j) {
+                while (work[i] < pivot) {
+                    i++;
+                }
+                while (work[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(work, i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                break;
+            }
+        }
+        return work[k];
+    }
+
+    /**
+     * Swap two values
+     *
+     * @param work  the values
+     * @param i  one index
+     * @param j  the other
+     */
+    private static void swap(float[] work, int i, int j) {
+        float tmp = work[i];
+        work[i] = work[j];
+        work[j] = tmp;
+    }
+
+    /**
+     * Copy the ensemble member values at one point, with missing members
+     * and missing values as 0.
+     *
+     * @param members  values of each member, null for a missing member
+     * @param comp  range component
+     * @param point  point index
+     * @param work  where to put the values, one per member
+     */
+    private static void gatherMembers(float[][][] members, int comp,
+                                      int point, float[] work) {
+        for (int k = 0; k < members.length; k++) {
+            float value = (members[k] == null)
+                          ? 0f
+                          : members[k][comp][point];
+            work[k] = (value != value)
+                      ? 0f
+                      : value;
+        }
+    }
+
     /**
      * evaluate mode value
      *
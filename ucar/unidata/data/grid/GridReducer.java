@@ -0,0 +1,337 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package ucar.unidata.data.grid;
+
+
+import visad.VisADException;
+
+import visad.util.ParallelTasks;
+
+import java.rmi.RemoteException;
+
+import java.util.Arrays;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Point by point reduction (sum, average, standard deviation, min, max or
+ * range) of a stream of grids that share one domain, such as the time
+ * steps of a sequence or the members of an ensemble.
+ *
+ * Only one grid is held at a time besides the running state, and the next
+ * grid is read while the current one is folded in. Each grid is split into
+ * bands of points that are folded in parallel. The running state is kept
+ * in doubles, and mean and variance use Welford's update, so sums, means
+ * and standard deviations stay accurate over long sequences. Missing
+ * (NaN) values are skipped; a per point count is only allocated once a
+ * missing value shows up.
+ */
+final class GridReducer {
+
+    /** Fewest points worth handing to a task. */
+    private static final int MIN_BAND_POINTS = 8192;
+
+    /** Reads grid {@code index} of the stream. */
+    interface Source {
+
+        /**
+         * Read a grid
+         *
+         * @param index  which grid
+         *
+         * @return the values, or null to skip this grid
+         *
+         * @throws VisADException  problem reading
+         * @throws RemoteException  problem reading remote data
+         */
+        float[][] read(int index) throws VisADException, RemoteException;
+    }
+
+    /** the function */
+    private final boolean doMax, doMin, doRange, doStd, doAverage;
+
+    /** divide the sum of squares by n - 1 instead of n */
+    private final boolean sampleVariance;
+
+    /** running sum, mean, min or max */
+    private double[][] values;
+
+    /** running sum of squared differences (stdev) or min (range) */
+    private double[][] extra;
+
+    /** valid values per point; null while every point has all of them */
+    private int[][] counts;
+
+    /** grids folded in so far */
+    private int steps = 0;
+
+    /**
+     * Create a reducer
+     *
+     * @param function  one of the GridMath FUNC_ names; anything other
+     *                  than average, standard deviation, min, max or
+     *                  range is a sum
+     * @param sampleVariance  true for the sample standard deviation,
+     *                        false for the population one
+     */
+    GridReducer(String function, boolean sampleVariance) {
+        doMax               = function.equals(GridMath.FUNC_MAX);
+        doMin               = function.equals(GridMath.FUNC_MIN);
+        doRange             = function.equals(GridMath.FUNC_RNG);
+        doStd               = function.equals(GridMath.FUNC_STDEV);
+        doAverage           = function.equals(GridMath.FUNC_AVERAGE);
+        this.sampleVariance = sampleVariance;
+    }
+
+    /**
+     * Fold in grids {@code 0} to {@code count - 1} of a source, reading
+     * each one in the background while the one before it is folded in.
+     *
+     * @param count  number of grids
+     * @param source  where to read them
+     *
+     * @throws VisADException  problem reading or interrupted
+     * @throws RemoteException  problem reading remote data
+     */
+    void addAll(int count, Source source)
+            throws VisADException, RemoteException {
+        if (count <= 0) {
+            return;
+        }
+        FutureTask<float[][]> next = null;
+        float[][]         grid = source.read(0);
+        try {
+            for (int index = 0; index < count; index++) {
+                if (index > 0) {
+                    grid = take(next);
+                }
+                final int nextIndex = index + 1;
+                next = null;
+                if (nextIndex < count) {
+                    // reads wait on the file or server, so they go on the
+                    // I/O pool rather than the common pool
+                    next = new FutureTask<float[][]>(
+                        () -> source.read(nextIndex));
+                    ParallelTasks.getIOPool().execute(next);
+                }
+                if (grid != null) {
+                    add(grid);
+                }
+            }
+        } finally {
+            if (next != null) {
+                next.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Fold in one grid
+     *
+     * @param grid  the values; not modified
+     *
+     * @throws VisADException  interrupted
+     */
+    void add(final float[][] grid) throws VisADException {
+        if (values == null) {
+            values = new double[grid.length][grid[0].length];
+            if (doStd || doRange) {
+                extra = new double[grid.length][grid[0].length];
+            }
+        }
+        final int length = values[0].length;
+        if (counts == null) {
+            final AtomicBoolean missing = new AtomicBoolean(false);
+            GridUtil.forEachRowBand(length, MIN_BAND_POINTS, (from, to) -> {
+                for (int i = 0; (i < grid.length) && !missing.get(); i++) {
+                    float[] x = grid[i];
+                    for (int j = from; j < to; j++) {
+                        if (x[j] != x[j]) {
+                            missing.set(true);
+                            return;
+                        }
+                    }
+                }
+            });
+            if (missing.get()) {
+                counts = new int[values.length][length];
+                for (int[] c : counts) {
+                    Arrays.fill(c, steps);
+                }
+            }
+        }
+        final int n0 = steps + 1;
+        GridUtil.forEachRowBand(length, MIN_BAND_POINTS, (from, to) -> {
+            for (int i = 0; i < grid.length; i++) {
+                double[] e = (extra == null)
+                            ? null
+                            : extra[i];
+                int[]    c = (counts == null)
+                            ? null
+                            : counts[i];
+                foldBand(grid[i], values[i], e, c, n0, from, to);
+            }
+        });
+        steps++;
+    }
+
+    /**
+     * Fold one band of one component in
+     *
+     * @param x  the new values
+     * @param v  running sum, mean, min or max
+     * @param e  running sum of squares or min, may be null
+     * @param c  valid counts, null if every point is valid so far
+     * @param n0  count for each point when c is null
+     * @param from  first point
+     * @param to  one past the last point
+     */
+    private void foldBand(float[] x, double[] v, double[] e, int[] c, int n0,
+                          int from, int to) {
+        for (int j = from; j < to; j++) {
+            double value = x[j];
+            if (value != value) {
+                continue;
+            }
+            int n = (c == null)
+                    ? n0
+                    : ++c[j];
+            if (n == 1) {
+                v[j] = value;
+                if (e != null) {
+                    e[j] = doRange
+                           ? value
+                           : 0;
+                }
+            } else if (doMax) {
+                v[j] = Math.max(v[j], value);
+            } else if (doMin) {
+                v[j] = Math.min(v[j], value);
+            } else if (doRange) {
+                v[j] = Math.max(v[j], value);
+                e[j] = Math.min(e[j], value);
+            } else if (doStd) {
+                double delta = value - v[j];
+                v[j] += delta / n;
+                e[j] += delta * (value - v[j]);
+            } else if (doAverage) {
+                v[j] += (value - v[j]) / n;
+            } else {
+                v[j] += value;
+            }
+        }
+    }
+
+    /**
+     * Finish the reduction. The reducer should not be used afterwards.
+     *
+     * @return the reduced values, NaN where no grid had a value, or null
+     *         if nothing was folded in
+     *
+     * @throws VisADException  interrupted
+     */
+    float[][] getResult() throws VisADException {
+        if (values == null) {
+            return null;
+        }
+        final int length = values[0].length;
+        final int bias   = sampleVariance
+                           ? 1
+                           : 0;
+        final float[][] result = new float[values.length][length];
+        GridUtil.forEachRowBand(length, MIN_BAND_POINTS, (from, to) -> {
+            for (int i = 0; i < values.length; i++) {
+                double[] v = values[i];
+                float[]  r = result[i];
+                for (int j = from; j < to; j++) {
+                    int n = (counts == null)
+                            ? steps
+                            : counts[i][j];
+                    if (n == 0) {
+                        r[j] = Float.NaN;
+                    } else if (doRange) {
+                        r[j] = (float) (v[j] - extra[i][j]);
+                    } else if (doStd) {
+                        r[j] = (n > bias)
+                               ? (float) Math.sqrt(extra[i][j] / (n - bias))
+                               : Float.NaN;
+                    } else {
+                        r[j] = (float) v[j];
+                    }
+                }
+            }
+        });
+        values = null;
+        extra  = null;
+        counts = null;
+        return result;
+    }
+
+    /**
+     * Wait for a background read. If no pool thread has started it yet,
+     * it is run here, so a caller on a busy I/O pool does not wait on
+     * work queued behind it.
+     *
+     * @param future  the read
+     *
+     * @return the values
+     *
+     * @throws VisADException  problem reading or interrupted
+     * @throws RemoteException  problem reading remote data
+     */
+    private static float[][] take(FutureTask<float[][]> future)
+            throws VisADException, RemoteException {
+        try {
+            // does nothing if a pool thread already has it
+            future.run();
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new VisADException("Interrupted reading grid");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof VisADException) {
+                throw (VisADException) cause;
+            }
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
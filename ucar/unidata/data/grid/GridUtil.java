@@ -40,12 +40,14 @@ import ucar.ma2.DataType;
 
 import ucar.nc2.Attribute;
 import ucar.nc2.Dimension;
-import ucar.nc2.NetcdfFile;
-import ucar.nc2.NetcdfFileWriteable;
+import ucar.nc2.NetcdfFileWriter;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.CF;
 import ucar.nc2.iosp.mcidas.McIDASAreaProjection;
+import ucar.nc2.jni.netcdf.Nc4Iosp;
 import ucar.nc2.time.Calendar;
+import ucar.nc2.write.Nc4Chunking;
+import ucar.nc2.write.Nc4ChunkingStrategy;
 
 import ucar.unidata.data.DataUtil;
 import ucar.unidata.data.point.PointObTuple;
@@ -130,6 +132,7 @@ import visad.georef.NavigatedCoordinateSystem;
 import visad.georef.TrivialMapProjection;
 
 import visad.util.DataUtility;
+import visad.util.ParallelTasks;
 
 
 import java.awt.geom.Rectangle2D;
@@ -140,6 +143,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -156,9 +160,9 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 
@@ -6434,7 +6438,9 @@ public class GridUtil {
 
 
     /**
-     * Write grid out to a netCDF CF compliant file
+     * Write grid out to a netCDF CF compliant file. The file is netCDF-3
+     * unless the {@code idv.export.netcdf.deflate} system property gives a
+     * deflate level, in which case it is chunked, deflated netCDF-4.
      *
      * @param grid grid  to write
      * @param filename  filename
@@ -6443,29 +6449,64 @@ public class GridUtil {
      */
     public static void exportGridToNetcdf(FieldImpl grid, String filename)
             throws Exception {
+        exportGridToNetcdf(grid, filename,
+                           Integer.getInteger("idv.export.netcdf.deflate", 0));
+    }
+
+    /**
+     * Write grid out to a netCDF CF compliant file. The grid is walked one
+     * time step or ensemble member at a time and each one is written
+     * straight into its slab of the output variables, so only a few
+     * samples are ever held at once no matter how long the sequence is.
+     * Samples are unpacked in parallel, a processor's worth at a time,
+     * and written in order.
+     *
+     * @param grid grid  to write
+     * @param filename  filename
+     * @param deflateLevel  0 for netCDF-3, 1-9 for chunked netCDF-4
+     *                      deflated at that level. netCDF-4 needs the
+     *                      netCDF C library; without it netCDF-3 is written.
+     *
+     * @throws Exception  problem writing grid
+     */
+    public static void exportGridToNetcdf(FieldImpl grid, String filename,
+                                          int deflateLevel)
+            throws Exception {
     
         Object loadId =
             JobManager.getManager().startLoad("Writing grid to CF", true);
+        NetcdfFileWriter ncfile = null;
         try {
-            NetcdfFileWriteable ncfile =
-                NetcdfFileWriteable.createNew(makePathAbsolute(filename), false);
+            ncfile = createNetcdfWriter(makePathAbsolute(filename),
+                                        deflateLevel);
             boolean isTimeSequence = isTimeSequence(grid);
+            boolean hasEnsemble = hasEnsemble(grid);
             List<Dimension> dims = new ArrayList<Dimension>();
-            // make variables for the time and xyz axes
+            // make variables for the time, ensemble and xyz axes
             Set timeSet = null;
-            int numTimes = 0;
+            int numTimes = 1;
             if (isTimeSequence) {
                 timeSet = getTimeSet(grid);
                 Unit[] units = timeSet.getSetUnits();
                 numTimes = timeSet.getLength();
-                Dimension timeDim = new Dimension("time", numTimes, true);
-                dims.add(timeDim);
-                ncfile.addDimension(null, timeDim);
-                Variable timeVar = new Variable(ncfile, null, null, "time",
+                dims.add(ncfile.addDimension(null, "time", numTimes));
+                Variable timeVar = ncfile.addVariable(null, "time",
                     DataType.DOUBLE, "time");
-                timeVar.addAttribute(new Attribute("units",
+                ncfile.addVariableAttribute(timeVar, new Attribute("units",
                     units[0].toString()));
-                ncfile.addVariable(null, timeVar);
+            }
+            Gridded1DSet ensSet = null;
+            int numMembers = 1;
+            if (hasEnsemble) {
+                ensSet = getEnsembleSet(grid);
+                numMembers = ensSet.getLength();
+                dims.add(ncfile.addDimension(null, "ensemble", numMembers));
+                Variable ensVar = ncfile.addVariable(null, "ensemble",
+                    DataType.FLOAT, "ensemble");
+                ncfile.addVariableAttribute(ensVar, new Attribute("long_name",
+                    "ensemble member"));
+                ncfile.addVariableAttribute(ensVar, new Attribute(
+                    "_CoordinateAxisType", "Ensemble"));
             }
             GriddedSet domainSet = (GriddedSet) getSpatialDomain(grid);
             CoordinateSystem cs = domainSet.getCoordinateSystem();
@@ -6475,10 +6516,9 @@ public class GridUtil {
     
             // TODO: figure out a better way to do this
             Variable projVar = null;
-            java.util.Set keys = varData.keySet();
+            java.util.Set<Variable> keys = varData.keySet();
             if (!haveEmpirical) {
-                for (Iterator it = keys.iterator(); it.hasNext(); ) {
-                    Variable v = (Variable) it.next();
+                for (Variable v : keys) {
                     if (v.findAttribute(CF.GRID_MAPPING_NAME) != null) {
                         projVar = v;
                         break;
@@ -6488,44 +6528,47 @@ public class GridUtil {
             // make variable for the parameter(s)
             TupleType tType = getParamType(grid);
             RealType[] rTypes = tType.getRealComponents();
+            Variable[] paramVars = new Variable[rTypes.length];
             for (int i = 0; i < rTypes.length; i++) {
                 RealType rt = rTypes[i];
-                Variable v = new Variable(ncfile, null, null,
-                    getVarName(rt));
+                Variable v = ncfile.addVariable(null, getVarName(rt),
+                    DataType.FLOAT, dims);
                 Unit u = rt.getDefaultUnit();
                 if (u != null) {
-                    v.addAttribute(new Attribute("units",
+                    ncfile.addVariableAttribute(v, new Attribute("units",
                         rt.getDefaultUnit().toString()));
                 }
                 if (projVar != null) {
-                    v.addAttribute(new Attribute("grid_mapping",
-                        projVar.getName()));
+                    ncfile.addVariableAttribute(v, new Attribute(
+                        "grid_mapping", projVar.getShortName()));
                 }
                 if (haveEmpirical) {
-                    v.addAttribute(new Attribute("coordinates",
-                        "latitude longitude"));
+                    ncfile.addVariableAttribute(v, new Attribute(
+                        "coordinates", "latitude longitude"));
                 }
-                v.setDataType(DataType.FLOAT);
-                v.setDimensions(dims);
-                ncfile.addVariable(null, v);
+                paramVars[i] = v;
             }
-            ncfile.addGlobalAttribute(new Attribute("Conventions", "CF-1.X"));
-            ncfile.addGlobalAttribute(new Attribute("History",
+            ncfile.addGroupAttribute(null, new Attribute("Conventions",
+                "CF-1.X"));
+            ncfile.addGroupAttribute(null, new Attribute("History",
                 "Translated from VisAD grid to CF-1.X Conventions by IDV\n"
                     + "Original Dataset = " + grid.getType()
                     + "\nTranslation Date = " + new Date()));
             ncfile.create();
             // fill in the data
             if (isTimeSequence) {
-                Variable timeVar = ncfile.findVariable("time");
                 double[][] timeVals = timeSet.getDoubles(false);
                 Array varArray = Array.factory(DataType.DOUBLE,
                     new int[]{numTimes}, timeVals[0]);
-                ncfile.write(timeVar.getName(), varArray);
+                ncfile.write(ncfile.findVariable("time"), varArray);
+            }
+            if (hasEnsemble) {
+                Array varArray = Array.factory(DataType.FLOAT,
+                    new int[]{numMembers}, ensSet.getSamples(false)[0]);
+                ncfile.write(ncfile.findVariable("ensemble"), varArray);
             }
-            for (Iterator it = keys.iterator(); it.hasNext(); ) {
-                Variable v = (Variable) it.next();
-                if (v.getName().equals("ImageLine")) {
+            for (Variable v : keys) {
+                if (v.getShortName().equals("ImageLine")) {
                     Array af = varData.get(v);
                     for (int i = 0; i < af.getSize(); i++) {
                         float t = af.getFloat(i) + 1;
@@ -6533,51 +6576,160 @@ public class GridUtil {
                     }
                     varData.put(v, af);
                 }
-                ncfile.write(v.getName(), varData.get(v));
+                ncfile.write(v, varData.get(v));
             }
+
+            // write the data, one (time, member) slab at a time
             int numDims = dims.size();
             int[] sizes = new int[numDims];
             int index = 0;
             for (Dimension dim : dims) {
                 sizes[index++] = dim.getLength();
             }
-            // write the data
-            Array arr = null;
-            if (isTimeSequence) {
-                sizes[0] = 1;
-                int[] origin = new int[sizes.length];
-                for (int k = 1; k < sizes.length; k++) {
-                    origin[k] = 0;
+            int lead = (isTimeSequence ? 1 : 0) + (hasEnsemble ? 1 : 0);
+            int slabSize = 1;
+            for (int k = 0; k < lead; k++) {
+                sizes[k] = 1;
+            }
+            for (int k = lead; k < numDims; k++) {
+                slabSize *= sizes[k];
+            }
+            int numSlabs = numTimes * numMembers;
+            int window = Math.max(1,
+                Runtime.getRuntime().availableProcessors());
+            int[] origin = new int[numDims];
+            for (int first = 0; first < numSlabs; first += window) {
+                if ( !JobManager.getManager().canContinue(loadId)) {
+                    break;
                 }
-                for (int i = 0; i < timeSet.getLength(); i++) {
-                    origin[0] = i;
-                    FlatField sample = (FlatField) grid.getSample(i, false);
-                    float[][] samples = sample.getFloats(false);
+                int last = Math.min(numSlabs, first + window);
+                JobManager.getManager().setDialogLabel1(loadId,
+                    "Writing grid " + (isTimeSequence ? "time" : "member")
+                    + ":" + last + "/" + numSlabs);
+                List<float[][]> slabs = readSlabs(grid, isTimeSequence,
+                    hasEnsemble, numMembers, first, last, rTypes.length,
+                    slabSize);
+                for (int s = first; s < last; s++) {
+                    int k = 0;
+                    if (isTimeSequence) {
+                        origin[k++] = s / numMembers;
+                    }
+                    if (hasEnsemble) {
+                        origin[k] = s % numMembers;
+                    }
+                    float[][] samples = slabs.get(s - first);
                     for (int j = 0; j < rTypes.length; j++) {
-                        Variable v =
-                            ncfile.findVariable(getVarName(rTypes[j]));
-                        arr = Array.factory(DataType.FLOAT, sizes,
+                        Array arr = Array.factory(DataType.FLOAT, sizes,
                             samples[j]);
-                        ncfile.write(v.getName(), origin, arr);
+                        ncfile.write(paramVars[j], origin, arr);
                     }
                 }
-            } else {
-                float[][] samples = ((FlatField) grid).getFloats();
-                for (int j = 0; j < rTypes.length; j++) {
-                    Variable v = ncfile.findVariable(getVarName(rTypes[j]));
-                    arr = Array.factory(DataType.FLOAT, sizes, samples[j]);
-                    ncfile.write(v.getName(), arr);
-                }
             }
-            // write the file
-            ncfile.close();
         } catch (Exception exc) {
             LogUtil.logException("Writing grid to netCDF file: " + filename,
                 exc);
         } finally {
+            // write the file
+            if (ncfile != null) {
+                try {
+                    ncfile.close();
+                } catch (IOException ioe) {
+                    LogUtil.logException("Closing netCDF file: " + filename,
+                        ioe);
+                }
+            }
             JobManager.getManager().stopLoad(loadId);
         }
     }
+
+    /**
+     * Create the writer for {@link #exportGridToNetcdf(FieldImpl, String, int)}.
+     *
+     * @param path  absolute path of the file
+     * @param deflateLevel  0 for netCDF-3, otherwise the netCDF-4 deflate level
+     *
+     * @return the writer, in define mode
+     *
+     * @throws IOException  problem creating the file
+     */
+    private static NetcdfFileWriter createNetcdfWriter(String path,
+            int deflateLevel)
+            throws IOException {
+        if (deflateLevel > 0) {
+            if (Nc4Iosp.isClibraryPresent()) {
+                // the standard strategy chunks each record dimension by 1,
+                // which matches the one-slab-at-a-time writes
+                Nc4Chunking chunker = Nc4ChunkingStrategy.factory(
+                    Nc4Chunking.Strategy.standard,
+                    Math.min(deflateLevel, 9), true);
+                return NetcdfFileWriter.createNew(
+                    NetcdfFileWriter.Version.netcdf4, path, chunker);
+            }
+            LogUtil.consoleMessage(
+                "netCDF C library not found, writing netCDF-3 instead of netCDF-4");
+        }
+        return NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3,
+                                          path);
+    }
+
+    /**
+     * Unpack the range values of slabs {@code first} through
+     * {@code last - 1} of a grid in parallel. Slabs are numbered time
+     * major, ensemble member minor. A missing sample comes back as NaN.
+     *
+     * @param grid  the grid
+     * @param isTimeSequence  true if the outer domain is time
+     * @param hasEnsemble  true if there is an ensemble domain
+     * @param numMembers  number of ensemble members (1 if none)
+     * @param first  first slab
+     * @param last  one past the last slab
+     * @param numParams  number of range components
+     * @param slabSize  number of spatial points
+     *
+     * @return values of each slab, in order
+     *
+     * @throws VisADException  problem reading the grid
+     */
+    private static List<float[][]> readSlabs(final FieldImpl grid,
+            final boolean isTimeSequence, final boolean hasEnsemble,
+            final int numMembers, int first, int last, final int numParams,
+            final int slabSize)
+            throws VisADException {
+        final int start = first;
+        try {
+            return ParallelTasks.map(last - first,
+                                     new ParallelTasks.Step<float[][],
+                                         VisADException>() {
+                public float[][] run(int index) throws VisADException {
+                    int slab = start + index;
+                    try {
+                        Data d = grid;
+                        if (isTimeSequence) {
+                            d = grid.getSample(slab / numMembers, false);
+                        }
+                        if (hasEnsemble && (d instanceof FieldImpl)
+                                && !d.isMissing()) {
+                            d = ((FieldImpl) d).getSample(slab
+                                    % numMembers, false);
+                        }
+                        if ((d instanceof FlatField) && !d.isMissing()) {
+                            return ((FlatField) d).getFloats(false);
+                        }
+                    } catch (RemoteException re) {
+                        throw new VisADException("Problem reading grid: "
+                                                 + re);
+                    }
+                    float[][] missing = new float[numParams][slabSize];
+                    for (float[] m : missing) {
+                        Arrays.fill(m, Float.NaN);
+                    }
+                    return missing;
+                }
+            });
+        } catch (CancellationException ce) {
+            throw new VisADException("Interrupted reading grid");
+        }
+    }
     
     /**
      * Ensure that the given file path is absolute. If it is <b>not</b>
@@ -6628,7 +6780,8 @@ public class GridUtil {
      * @throws RemoteException  Java RMI Exception
      * @throws VisADException   Problem accessing VisAD object
      */
-    private static HashMap<Variable, Array> addSpatialVars(NetcdfFile ncfile,
+    private static HashMap<Variable, Array> addSpatialVars(
+            NetcdfFileWriter ncfile,
             SampledSet domainSet, List<Dimension> dims)
             throws VisADException, RemoteException {
 
@@ -6669,19 +6822,16 @@ public class GridUtil {
         String    xName = (haveEmpirical)
                           ? "xc"
                           : getVarName(types[0]);
-        Dimension xDim  = new Dimension(xName, sizeX, true);
-        ncfile.addDimension(null, xDim);
+        Dimension xDim  = ncfile.addDimension(null, xName, sizeX);
 
         String    yName = (haveEmpirical)
                           ? "yc"
                           : getVarName(types[1]);
-        Dimension yDim  = new Dimension(yName, sizeY, true);
-        ncfile.addDimension(null, yDim);
+        Dimension yDim  = ncfile.addDimension(null, yName, sizeY);
         String zName = null;
         if (dim == 3) {
             zName = getVarName(types[2]);
-            Dimension zDim = new Dimension(zName, sizeZ, true);
-            ncfile.addDimension(null, zDim);
+            Dimension zDim = ncfile.addDimension(null, zName, sizeZ);
             dims.add(zDim);
         }
         Variable      xVar = null;
@@ -6735,21 +6885,21 @@ public class GridUtil {
                 }
             }
 
-            Variable latVar = new Variable(ncfile, null, null, "latitude",
-                                           DataType.FLOAT, "yc xc");
-            latVar.addAttribute(new Attribute("units", "degrees_north"));
-            latVar.addAttribute(new Attribute("long_name",
+            Variable latVar = ncfile.addVariable(null, "latitude",
+                                  DataType.FLOAT, "yc xc");
+            ncfile.addVariableAttribute(latVar, new Attribute("units",
+                    "degrees_north"));
+            ncfile.addVariableAttribute(latVar, new Attribute("long_name",
                     "latitude of points"));
-            ncfile.addVariable(null, latVar);
             varArray = Array.factory(DataType.FLOAT, new int[] { sizeY,
                     sizeX }, latVals);
             varToArray.put(latVar, varArray);
-            Variable lonVar = new Variable(ncfile, null, null, "longitude",
-                                           DataType.FLOAT, "yc xc");
-            lonVar.addAttribute(new Attribute("units", "degrees_east"));
-            lonVar.addAttribute(new Attribute("long_name",
+            Variable lonVar = ncfile.addVariable(null, "longitude",
+                                  DataType.FLOAT, "yc xc");
+            ncfile.addVariableAttribute(lonVar, new Attribute("units",
+                    "degrees_east"));
+            ncfile.addVariableAttribute(lonVar, new Attribute("long_name",
                     "longitude of points"));
-            ncfile.addVariable(null, lonVar);
             varArray = Array.factory(DataType.FLOAT, new int[] { sizeY,
                     sizeX }, lonVals);
             varToArray.put(lonVar, varArray);
@@ -6757,31 +6907,33 @@ public class GridUtil {
         dims.add(yDim);
         dims.add(xDim);
         if (dim == 3) {
-            Variable zVar = new Variable(ncfile, null, null, zName,
-                                         DataType.FLOAT, zName);
+            Variable zVar = ncfile.addVariable(null, zName, DataType.FLOAT,
+                                               zName);
             Unit zUnit = units[2];
             if (zUnit != null) {
-                zVar.addAttribute(new Attribute("units", zUnit.toString()));
+                ncfile.addVariableAttribute(zVar, new Attribute("units",
+                        zUnit.toString()));
             }
             String upOrDown = "up";
             if (Unit.canConvert(units[2], CommonUnits.MILLIBAR)) {
                 upOrDown = "down";
             }
-            zVar.addAttribute(new Attribute("positive", upOrDown));
+            ncfile.addVariableAttribute(zVar, new Attribute("positive",
+                    upOrDown));
             if (cs == null) {
-                zVar.addAttribute(new Attribute("long_name",
+                ncfile.addVariableAttribute(zVar, new Attribute("long_name",
                         "altitude (MSL"));
-                zVar.addAttribute(new Attribute("standard_name", "altitude"));
+                ncfile.addVariableAttribute(zVar,
+                        new Attribute("standard_name", "altitude"));
             }
             varArray = Array.factory(DataType.FLOAT, new int[] { sizeZ },
                                      zVals);
             varToArray.put(zVar, varArray);
-            ncfile.addVariable(null, zVar);
 
             if (haveEmpirical) {
                 String dimString = zName + " yc xc";
                 String altName   = "height";
-                Variable altVar = new Variable(ncfile, null, null, altName,
+                Variable altVar = ncfile.addVariable(null, altName,
                                       DataType.FLOAT, dimString);
                 EmpiricalCoordinateSystem ecs =
                     (EmpiricalCoordinateSystem) cs;
@@ -6790,22 +6942,21 @@ public class GridUtil {
                 Unit[]     refUnits = refSet.getSetUnits();
                 Unit       altUnit  = refUnits[2];
                 if (altUnit != null) {
-                    altVar.addAttribute(new Attribute("units",
+                    ncfile.addVariableAttribute(altVar, new Attribute("units",
                             altUnit.toString()));
                 }
-                altVar.addAttribute(new Attribute("long_name",
+                ncfile.addVariableAttribute(altVar, new Attribute("long_name",
                         "height/depth of " + zName));
-                altVar.addAttribute(new Attribute("standard_name",
-                        "altitude"));
-                altVar.addAttribute(new Attribute("coordinates",
-                        "latitude longitude"));
+                ncfile.addVariableAttribute(altVar,
+                        new Attribute("standard_name", "altitude"));
+                ncfile.addVariableAttribute(altVar,
+                        new Attribute("coordinates", "latitude longitude"));
                 float[] altVals = refSet.getSamples(false)[2];
                 varArray = Array.factory(DataType.FLOAT,
                                          new int[] { refSizes[2],
                                                  refSizes[1],
                                                  refSizes[0] }, altVals);
                 varToArray.put(altVar, varArray);
-                ncfile.addVariable(null, altVar);
             }
 
         }
@@ -6830,7 +6981,7 @@ public class GridUtil {
      *
      * @return  the Variable
      */
-    private static Variable makeCoordinateVariable(NetcdfFile ncfile,
+    private static Variable makeCoordinateVariable(NetcdfFileWriter ncfile,
             String name, Unit unit, String desc, String standard_name,
             String dimName) {
         return makeCoordinateVariable(ncfile, name,
@@ -6852,19 +7003,17 @@ public class GridUtil {
      *
      * @return  the Variable
      */
-    private static Variable makeCoordinateVariable(NetcdfFile ncfile,
+    private static Variable makeCoordinateVariable(NetcdfFileWriter ncfile,
             String name, String unitName, String desc, String standard_name,
             String dimName) {
-        Variable v = new Variable(ncfile, null, null, name);
-        v.setDataType(DataType.FLOAT);
-        v.setDimensions(dimName);
+        Variable v = ncfile.addVariable(null, name, DataType.FLOAT, dimName);
 
         if (unitName != null) {
-            v.addAttribute(new Attribute("units", unitName));
+            ncfile.addVariableAttribute(v, new Attribute("units", unitName));
         }
-        v.addAttribute(new Attribute("long_name", desc));
-        v.addAttribute(new Attribute("standard_name", standard_name));
-        ncfile.addVariable(null, v);
+        ncfile.addVariableAttribute(v, new Attribute("long_name", desc));
+        ncfile.addVariableAttribute(v, new Attribute("standard_name",
+                standard_name));
         return v;
 
     }
@@ -6877,7 +7026,7 @@ public class GridUtil {
      *
      * @return the variable or null;
      */
-    private static Variable makeProjectionVar(NetcdfFile ncfile,
+    private static Variable makeProjectionVar(NetcdfFileWriter ncfile,
             MapProjection mp) {
         List<Attribute> attributes = new ArrayList<Attribute>();
         Variable        projVar    = null;
@@ -6924,15 +7073,13 @@ public class GridUtil {
                     }
                 }
             }
-            projVar = new Variable(ncfile, null, null, grid_name);
-            projVar.setDataType(DataType.CHAR);
-            projVar.setDimensions(new ArrayList<Dimension>());  // scalar
+            projVar = ncfile.addVariable(null, grid_name, DataType.CHAR,
+                                         new ArrayList<Dimension>());  // scalar
 
             for (int i = 0; i < attributes.size(); i++) {
                 Attribute att = (Attribute) attributes.get(i);
-                projVar.addAttribute(att);
+                ncfile.addVariableAttribute(projVar, att);
             }
-            ncfile.addVariable(null, projVar);
         } else if (mp instanceof AREACoordinateSystem) {
             AREACoordinateSystem acs = (AREACoordinateSystem) mp;
             int[]                dir = acs.getDirBlock();
@@ -8095,9 +8242,9 @@ public class GridUtil {
 
 
         int       ni, no, nnw, kxd, kyd, ksub1, ksub2, zero, ier;
-        int       nwl, nr, jw, iw, jj, ii, is, ie, js, je, j, i, indx;
+        int       nwl, nr, jw, iw, is, j, i;
         float[]   gnnw, gnist, gnost;
-        float     sgma, sumw, sumf, sig2, aa, x, y;
+        float     sgma, sumw, sig2, aa, x, y;
         float[][] w = new float[MAXWTS][MAXWTS];
         int sizeX, sizeY, sizeZ;
 
@@ -8192,39 +8339,15 @@ public class GridUtil {
             sumw    *= 4.f;
             w[0][0] = 1.f - sumw;
 
-            for (jj = 1; jj <= kyd; jj++) {
-                for (ii = 1; ii <= kxd; ii++) {
-                    is   = ii - nr;
-                    ie   = ii + nr;
-                    js   = jj - nr;
-                    je   = jj + nr;
-                    sumw = 0.0f;
-                    sumf = 0.0f;
-                    for (j = js; j <= je; j++) {
-                        if ((j >= 1) && (j <= kyd)) {
-                            for (i = is; i <= ie; i++) {
-                                if ((i >= 1) && (i <= kxd)) {
-                                    iw   = Math.abs(i - ii) + 1;
-                                    jw   = Math.abs(j - jj) + 1;
-                                    indx = (j - 1) * kxd + i;
-                                    if ( !Float.isNaN(gnist[indx - 1])) {
-                                        sumw += w[iw - 1][jw - 1];
-                                        sumf += gnist[indx - 1]
-                                                * w[iw - 1][jw - 1];
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    indx = (jj - 1) * kxd + ii;
-                    if ( !G_DIFFT(sumw, 0.0F, GDIFFD)
-                            && !Float.isNaN(gnist[indx - 1])) {
-                        gnost[indx - 1] = sumf / sumw;
-                    } else {
-                        gnost[indx - 1] = Float.NaN;
-                    }
-                }
-            }
+            // rows are independent, so smooth bands of them in parallel
+            final float[] in = gnist;
+            final float[] out = gnost;
+            final int nx = kxd;
+            final int ny = kyd;
+            final int radius = nr;
+            forEachRowBand(kyd, Math.max(radius, MIN_BAND_ROWS),
+                (from, to) -> smoothGaussianRows(in, out, nx, ny, radius, w,
+                                                 from, to));
             if (isCyclic) {
                 int kxdi = kxd - 2 * nr;
                 int m    = 0;
@@ -8244,6 +8367,48 @@ public class GridUtil {
 
     }
 
+    /**
+     * Gaussian weighted smoothing of rows {@code from} to {@code to - 1}
+     * of one level; see {@link #smoothGaussian(FlatField, int, TupleType)}.
+     */
+    private static void smoothGaussianRows(float[] in, float[] out, int nx,
+                                           int ny, int radius, float[][] w,
+                                           int from, int to) {
+        for (int jj = from + 1; jj <= to; jj++) {
+            for (int ii = 1; ii <= nx; ii++) {
+                int is = ii - radius;
+                int ie = ii + radius;
+                int js = jj - radius;
+                int je = jj + radius;
+                float sumw = 0.0f;
+                float sumf = 0.0f;
+                for (int j = js; j <= je; j++) {
+                    if ((j >= 1) && (j <= ny)) {
+                        for (int i = is; i <= ie; i++) {
+                            if ((i >= 1) && (i <= nx)) {
+                                int iw   = Math.abs(i - ii) + 1;
+                                int jw   = Math.abs(j - jj) + 1;
+                                int indx = (j - 1) * nx + i;
+                                if ( !Float.isNaN(in[indx - 1])) {
+                                    sumw += w[iw - 1][jw - 1];
+                                    sumf += in[indx - 1]
+                                            * w[iw - 1][jw - 1];
+                                }
+                            }
+                        }
+                    }
+                }
+                int indx = (jj - 1) * nx + ii;
+                if ( !G_DIFFT(sumw, 0.0F, GDIFFD)
+                        && !Float.isNaN(in[indx - 1])) {
+                    out[indx - 1] = sumf / sumw;
+                } else {
+                    out[indx - 1] = Float.NaN;
+                }
+            }
+        }
+    }
+
     /**
      * Apply a weigthed smoothing function to the grid.  The smoothing types are:
      * <p>
@@ -8287,11 +8452,10 @@ public class GridUtil {
         float beszero = 3.8317f;
 
         int   idist, nfp, npsq, njx, niy;
-        int   is, ie, js, je, ifp, jfp;
-        float dist, distsq, xfac, yfac, tot, totwt, xdist, ydist;
+        float dist, distsq, xfac, yfac, xdist, ydist;
         //float[][] fprint = new float[MAXWTS][MAXWTS];
         float[] pslab, work;
-        int     index, psindex;
+        int     index;
         int sizeX, sizeY, sizeZ;
 
         idist = radius;
@@ -8384,35 +8548,15 @@ public class GridUtil {
                 pslab = pslabi;
                 work  = worki;
             }
-            // now do the work of smoothing
-            for (int i = 0; i < niy; i++) {
-                for (int j = 0; j < njx; j++) {
-                    index = j + i * njx;
-                    if ( !Float.isNaN(pslab[index])) {
-                        tot   = 0.f;
-                        totwt = 0.f;
-                        is    = Math.max(0, i - idist);
-                        ie    = Math.min(niy - 1, i + idist);
-                        js    = Math.max(0, j - idist);
-                        je    = Math.min(njx - 1, j + idist);
-                        for (int ireg = is; ireg < ie; ireg++) {
-                            ifp = ireg - i + idist;
-                            for (int jreg = js; jreg < je; jreg++) {
-                                jfp     = jreg - j + idist;
-                                psindex = ireg * njx + jreg;
-                                if ( !Float.isNaN(pslab[psindex])) {
-                                    totwt = totwt + fprint[jfp][ifp];
-                                    tot = tot
-                                          + fprint[jfp][ifp] * pslab[psindex];
-                                }
-                            }
-                        }
-                        work[index] = tot / totwt;
-                    } else {
-                        work[index] = Float.NaN;
-                    }
-                }
-            }
+            // now do the work of smoothing, bands of rows in parallel
+            final float[] in = pslab;
+            final float[] out = work;
+            final int nx = njx;
+            final int ny = niy;
+            final int reach = idist;
+            forEachRowBand(niy, Math.max(reach, MIN_BAND_ROWS),
+                (from, to) -> smoothWeightedRows(in, out, nx, ny, reach,
+                                                 fprint, from, to));
             if (isCyclic) {
                 int njxi = njx - 2 * idist;
                 int m    = 0;
@@ -8434,6 +8578,43 @@ public class GridUtil {
 
     }
 
+    /**
+     * Weighted smoothing of rows {@code from} to {@code to - 1} of one
+     * level; see {@link #smoothWeighted(FlatField, int, String, TupleType)}.
+     */
+    private static void smoothWeightedRows(float[] in, float[] out, int nx,
+                                           int ny, int dist, float[][] fprint,
+                                           int from, int to) {
+        for (int i = from; i < to; i++) {
+            for (int j = 0; j < nx; j++) {
+                int index = j + i * nx;
+                if ( !Float.isNaN(in[index])) {
+                    float tot   = 0.f;
+                    float totwt = 0.f;
+                    int   is    = Math.max(0, i - dist);
+                    int   ie    = Math.min(ny - 1, i + dist);
+                    int   js    = Math.max(0, j - dist);
+                    int   je    = Math.min(nx - 1, j + dist);
+                    for (int ireg = is; ireg < ie; ireg++) {
+                        int ifp = ireg - i + dist;
+                        for (int jreg = js; jreg < je; jreg++) {
+                            int jfp = jreg - j + dist;
+                            int psindex = ireg * nx + jreg;
+                            if ( !Float.isNaN(in[psindex])) {
+                                totwt = totwt + fprint[jfp][ifp];
+                                tot = tot
+                                      + fprint[jfp][ifp] * in[psindex];
+                            }
+                        }
+                    }
+                    out[index] = tot / totwt;
+                } else {
+                    out[index] = Float.NaN;
+                }
+            }
+        }
+    }
+
     /**
      * Pad the cyclical grid on each edge by ncols
      * @param data  the data to pad
@@ -8933,7 +9114,7 @@ public class GridUtil {
 
         for (int t=0; t<outerLen; t++) {
             FlatField ff = (FlatField) filtField.getSample(t, false);
-            medianFilter(ff, window_lenx, window_leny);
+            filtField.setSample(t, medianFilter(ff, window_lenx, window_leny), false);
         }
 
         return filtField;
@@ -8977,239 +9158,194 @@ public class GridUtil {
         return filtFld;
     }
 
-    public static float[] medianFilter(float[] A, int lenx, int leny, int window_lenx, int window_leny)
+    /**
+     * Median filter a 2D array. The window at {@code (i, j)} covers columns
+     * {@code i - window_lenx/2} to {@code i + window_lenx/2 - 1} and rows
+     * {@code j - window_leny/2} to {@code j + window_leny/2 - 1}, clipped to
+     * the grid. NaN values are left out of the window, and NaN input
+     * points stay NaN.
+     *
+     * <p>The grid is cut into bands of rows that are filtered in parallel.
+     * Each band reads the rows it needs around it, replaces its values by
+     * their rank among the band's distinct values, and then snakes the
+     * window across the band keeping a histogram of ranks, so moving the
+     * window by one point costs one column or row of updates instead of a
+     * sort of the whole window.</p>
+     *
+     * @param A values, x varying fastest
+     * @param lenx number of columns
+     * @param leny number of rows
+     * @param window_lenx window width
+     * @param window_leny window height
+     *
+     * @return the filtered values
+     *
+     * @throws VisADException problem filtering
+     */
+    public static float[] medianFilter(final float[] A, final int lenx,
+                                       final int leny, int window_lenx,
+                                       int window_leny)
             throws VisADException {
-        float[] result =  new float[A.length];
-        float[] window =  new float[window_lenx*window_leny];
-        float[] sortedWindow =  new float[window_lenx*window_leny];
-        int[] sort_indexes = new int[window_lenx*window_leny];
-        int[] indexes = new int[window_lenx*window_leny];
-        int[] indexesB = new int[window_lenx*window_leny];
-
-        int[] numToInsertAt = new int[window_lenx*window_leny];
-        float[][] valsToInsert = new float[window_lenx*window_leny][window_lenx*window_leny];
-        int[][] idxsToInsert = new int[window_lenx*window_leny][window_lenx*window_leny];
-
-        int[] numBefore = new int[window_lenx*window_leny];
-        float[][] valsBefore = new float[window_lenx*window_leny][window_lenx*window_leny];
-        int[][] idxsBefore = new int[window_lenx*window_leny][window_lenx*window_leny];
-
-        int[] numAfter = new int[window_lenx*window_leny];
-        float[][] valsAfter = new float[window_lenx*window_leny][window_lenx*window_leny];
-        int[][] idxsAfter = new int[window_lenx*window_leny][window_lenx*window_leny];
-
-        float[] sortedArray = new float[window_lenx*window_leny];
-
-        int a_idx;
-        int w_idx;
-
-        int w_lenx = window_lenx/2;
-        int w_leny = window_leny/2;
-
-        int lo;
-        int hi;
-        int ww_jj;
-        int ww_ii;
-        int cnt=0;
-        int ncnt;
-        int midx;
-        float median;
-
-        int lenA = A.length;
-
-        for (int i=0; i<lenx; i++) { // zig-zag better? Maybe, but more complicated
-            for (int j=0; j<leny; j++) {
-                a_idx = j*lenx + i;
-
-                if (j > 0) {
-                    ncnt = 0;
-                    for (int t=0; t<cnt; t++) {
-                        // last window index in data coords: A[lenx,leny]
-                        int k = indexes[sort_indexes[t]];
-                        ww_jj = k/lenx;
-                        ww_ii = k % lenx;
-
-                        // current window bounds in data coords
-                        int ww_jj_lo = j - w_leny;
-                        int ww_jj_hi = j + w_leny;
-                        int ww_ii_lo = i - w_lenx;
-                        int ww_ii_hi = i + w_lenx;
-
-                        if (ww_jj_lo < 0) ww_jj_lo = 0;
-                        if (ww_ii_lo < 0) ww_ii_lo = 0;
-                        if (ww_jj_hi > leny-1) ww_jj_hi = leny-1;
-                        if (ww_ii_hi > lenx-1) ww_ii_hi = lenx-1;
-
-
-                        // These are the points which overlap between the last and current window
-                        if ((ww_jj >= ww_jj_lo && ww_jj < ww_jj_hi) && (ww_ii >= ww_ii_lo && ww_ii < ww_ii_hi)) {
-                            window[ncnt] = sortedWindow[t];
-                            indexesB[ncnt] = k;
-                            ncnt++;
-                        }
-                    }
-
-
-                    // Add the new points from sliding the window to the overlap points above
-                    java.util.Arrays.fill(numToInsertAt, 0);
-                    java.util.Arrays.fill(numBefore, 0);
-                    java.util.Arrays.fill(numAfter, 0);
-
-                    ww_jj = w_leny-1 + j;
-                    for (int w_i=-w_lenx; w_i<w_lenx; w_i++) {
-                        ww_ii = w_i + i;
-                        int k = ww_jj*lenx+ww_ii;
-                        if (k >= 0 && k < lenA) {
-                            float val = A[k];
-                            if (ncnt > 0) {
-                                int t = 0;
-                                if (val < window[t]) {
-                                    valsBefore[0][numBefore[0]] = val;
-                                    idxsBefore[0][numBefore[0]] = k;
-                                    numBefore[0]++;
-                                    continue;
-                                }
-                                t = ncnt-1;
-                                if (val >= window[t]) {
-                                    valsAfter[0][numAfter[0]] = val;
-                                    idxsAfter[0][numAfter[0]] = k;
-                                    numAfter[0]++;
-                                    continue;
-                                }
-
-                                for (t=0; t<ncnt-1; t++) {
-                                    if (val >= window[t] && val < window[t+1]) {
-                                        valsToInsert[t][numToInsertAt[t]] = val;
-                                        idxsToInsert[t][numToInsertAt[t]] = k;
-                                        numToInsertAt[t]++;
-                                        break;
-                                    }
-                                }
-                            }
-                            else if (!Float.isNaN(val)) {
-                                valsBefore[0][numBefore[0]] = val;
-                                idxsBefore[0][numBefore[0]] = k;
-                                numBefore[0]++;
-                                continue;
-                            }
-                        }
-                    }
-
-                    // insert new unsorted values into the already sorted overlap window region
-                    int tcnt = 0;
-
-                    for (int it=0; it<numBefore[0]; it++) {
-                        sortedArray[tcnt] = valsBefore[0][it];
-                        indexes[tcnt] = idxsBefore[0][it];
-                        tcnt++;
-                    }
+        final float[] result = new float[A.length];
+        final int w_lenx = window_lenx / 2;
+        final int w_leny = window_leny / 2;
+        forEachRowBand(leny, Math.max(2 * w_leny, MIN_BAND_ROWS),
+            (from, to) -> medianFilterBand(A, result, lenx, leny, w_lenx,
+                                           w_leny, from, to));
+        return result;
+    }
 
-                    for (int t=0; t<ncnt; t++) {
-                        sortedArray[tcnt] = window[t];
-                        indexes[tcnt] = indexesB[t];
-                        tcnt++;
-                        if (numToInsertAt[t] > 0) {
-                            if (numToInsertAt[t] == 2) { // two item sort here to save work for QuickSort
-                                float val0 = valsToInsert[t][0];
-                                float val1 = valsToInsert[t][1];
-
-                                if (val0 <= val1) {
-                                    sortedArray[tcnt] = val0;
-                                    indexes[tcnt] = idxsToInsert[t][0];
-                                    tcnt++;
-
-                                    sortedArray[tcnt] = val1;
-                                    indexes[tcnt] = idxsToInsert[t][1];
-                                    tcnt++;
-                                }
-                                else {
-                                    sortedArray[tcnt] = val1;
-                                    indexes[tcnt] = idxsToInsert[t][1];
-                                    tcnt++;
-
-                                    sortedArray[tcnt] = val0;
-                                    indexes[tcnt] = idxsToInsert[t][0];
-                                    tcnt++;
-                                }
-                            }
-                            else if (numToInsertAt[t] == 1) {
-                                sortedArray[tcnt] = valsToInsert[t][0];
-                                indexes[tcnt] = idxsToInsert[t][0];
-                                tcnt++;
-                            }
-                            else {
-                                for (int it=0; it<numToInsertAt[t]; it++) {
-                                    sortedArray[tcnt] = valsToInsert[t][it];
-                                    indexes[tcnt] = idxsToInsert[t][it];
-                                    tcnt++;
-                                }
-                            }
-                        }
-                    }
+    /**
+     * Median filter rows {@code from} to {@code to - 1}; see
+     * {@link #medianFilter(float[], int, int, int, int)}.
+     */
+    private static void medianFilterBand(float[] A, float[] result, int lenx,
+                                         int leny, int w_lenx, int w_leny,
+                                         int from, int to) {
+        // rows any window in the band can touch
+        int r0 = Math.max(0, from - w_leny);
+        int r1 = Math.min(leny, to + w_leny - 1);
+        int base = r0 * lenx;
+        int n = (r1 - r0) * lenx;
 
-                    for (int it=0; it<numAfter[0]; it++) {
-                        sortedArray[tcnt] = valsAfter[0][it];
-                        indexes[tcnt] = idxsAfter[0][it];
-                        tcnt++;
-                    }
+        // replace values by their rank among the distinct values
+        float[] distinct = new float[n];
+        int numVals = 0;
+        for (int k = 0; k < n; k++) {
+            float val = A[base + k];
+            if ( !Float.isNaN(val)) {
+                distinct[numVals++] = val;
+            }
+        }
+        Arrays.sort(distinct, 0, numVals);
+        int numDistinct = 0;
+        for (int k = 0; k < numVals; k++) {
+            if ((numDistinct == 0)
+                    || (Float.compare(distinct[k], distinct[numDistinct - 1]) != 0)) {
+                distinct[numDistinct++] = distinct[k];
+            }
+        }
+        int[] ranks = new int[n];
+        for (int k = 0; k < n; k++) {
+            float val = A[base + k];
+            ranks[k] = Float.isNaN(val)
+                       ? -1
+                       : Arrays.binarySearch(distinct, 0, numDistinct, val);
+        }
 
-                    // Now sort the new unsorted and overlap sorted points together to get the new window median
+        // counts of each rank in the window, as a Fenwick tree
+        int[] tree = new int[numDistinct + 1];
+        int top = Integer.highestOneBit(Math.max(numDistinct, 1));
+        int cnt = 0;
 
-                    System.arraycopy(sortedArray, 0, sortedWindow, 0, tcnt);
-                    if (tcnt > 0) {
-                        sort_indexes = QuickSort.sort(sortedWindow, 0, tcnt-1);
-                        median = sortedWindow[tcnt/2];
-                    }
-                    else {
-                        median = Float.NaN;
-                    }
-                    cnt = tcnt;
-
-                }
-                else { // full sort done once for each row (see note on zigzag above)
-
-                    cnt = 0;
-                    for (int w_j=-w_leny; w_j<w_leny; w_j++) {
-                        for (int w_i=-w_lenx; w_i<w_lenx; w_i++) {
-                            ww_jj = w_j + j;
-                            ww_ii = w_i + i;
-                            w_idx = (w_j+w_leny)*window_lenx + (w_i+w_lenx);
-                            if ((ww_jj >= 0) && (ww_ii >=0) && (ww_jj < leny) && (ww_ii < lenx)) {
-                                int k = ww_jj*lenx+ww_ii;
-                                float val = A[k];
-                                if (!Float.isNaN(val)) {
-                                    window[cnt] = val;
-                                    indexes[cnt] = k;
-                                    cnt++;
-                                }
-                            }
+        int i = 0;
+        int step = 1;
+        for (int j = from; j < to; j++) {
+            if (j == from) {
+                cnt += updateWindow(ranks, tree, lenx, leny, r0, j - w_leny,
+                                    j + w_leny, i - w_lenx, i + w_lenx, 1);
+            } else {
+                // move down a row at the end of the last one
+                cnt += updateWindow(ranks, tree, lenx, leny, r0,
+                                    j - 1 - w_leny, j - w_leny, i - w_lenx,
+                                    i + w_lenx, -1);
+                cnt += updateWindow(ranks, tree, lenx, leny, r0,
+                                    j - 1 + w_leny, j + w_leny, i - w_lenx,
+                                    i + w_lenx, 1);
+            }
+            for (int c = 0; c < lenx; c++) {
+                if (c > 0) {
+                    // slide one column along the row
+                    int drop = (step > 0)
+                               ? i - w_lenx
+                               : i + w_lenx - 1;
+                    i += step;
+                    int add = (step > 0)
+                              ? i + w_lenx - 1
+                              : i - w_lenx;
+                    cnt += updateWindow(ranks, tree, lenx, leny, r0,
+                                        j - w_leny, j + w_leny, drop,
+                                        drop + 1, -1);
+                    cnt += updateWindow(ranks, tree, lenx, leny, r0,
+                                        j - w_leny, j + w_leny, add,
+                                        add + 1, 1);
+                }
+                int a_idx = j * lenx + i;
+                if (Float.isNaN(A[a_idx]) || (cnt == 0)) {
+                    result[a_idx] = Float.NaN;
+                } else {
+                    // smallest rank whose cumulative count exceeds cnt/2
+                    int pos = 0;
+                    int rem = cnt / 2;
+                    for (int bit = top; bit > 0; bit >>= 1) {
+                        int next = pos + bit;
+                        if ((next <= numDistinct) && (tree[next] <= rem)) {
+                            pos = next;
+                            rem -= tree[next];
                         }
                     }
-
-
-                    System.arraycopy(window, 0, sortedWindow, 0, cnt);
-                    if (cnt > 0) {
-                        sort_indexes = QuickSort.sort(sortedWindow, 0, cnt-1);
-                        midx = cnt/2;
-                        median = sortedWindow[midx];
-                    }
-                    else {
-                        median = Float.NaN;
-                    }
-
+                    result[a_idx] = distinct[pos];
                 }
+            }
+            step = -step;
+        }
+    }
 
-                if (Float.isNaN(A[a_idx])) {
-                    result[a_idx] = Float.NaN;
-                }
-                else {
-                    result[a_idx] = median;
+    /**
+     * Add {@code delta} to the histogram for each ranked point in rows
+     * {@code rowLo} to {@code rowHi - 1} and columns {@code colLo} to
+     * {@code colHi - 1}, clipped to the grid.
+     *
+     * @return change in the number of points in the window
+     */
+    private static int updateWindow(int[] ranks, int[] tree, int lenx,
+                                    int leny, int r0, int rowLo, int rowHi,
+                                    int colLo, int colHi, int delta) {
+        rowLo = Math.max(rowLo, 0);
+        rowHi = Math.min(rowHi, leny);
+        colLo = Math.max(colLo, 0);
+        colHi = Math.min(colHi, lenx);
+        int changed = 0;
+        for (int r = rowLo; r < rowHi; r++) {
+            int offset = (r - r0) * lenx;
+            for (int c = colLo; c < colHi; c++) {
+                int rank = ranks[offset + c];
+                if (rank >= 0) {
+                    for (int k = rank + 1; k < tree.length; k += k & -k) {
+                        tree[k] += delta;
+                    }
+                    changed += delta;
                 }
-
             }
         }
+        return changed;
+    }
 
-        return result;
+    /** Fewest rows worth handing to a task in the parallel kernels. */
+    private static final int MIN_BAND_ROWS = 16;
+
+    /** Work on rows {@code from} to {@code to - 1} of a grid. */
+    interface RowBand {
+        void run(int from, int to);
+    }
+
+    /**
+     * Split {@code rows} into bands and run them in parallel. Each band
+     * must only write its own rows, but may read any row of the input.
+     *
+     * @param rows number of rows
+     * @param minRows fewest rows in a band
+     * @param band the work
+     *
+     * @throws VisADException  the work was interrupted
+     */
+    static void forEachRowBand(int rows, int minRows, RowBand band)
+            throws VisADException {
+        try {
+            ParallelTasks.forEachRange(rows, minRows, band::run);
+        } catch (CancellationException ce) {
+            throw new VisADException("Interrupted processing grid");
+        }
     }
 
     public static float[] medianFilterOrg(float[] A, int lenx, int leny, int window_lenx, int window_leny)
@@ -0,0 +1,542 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package ucar.unidata.idv.control;
+
+
+import java.awt.geom.Rectangle2D;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+
+/**
+ * A declutter index over the display positions of a set of stations or
+ * observations, built once and then queried at any glyph scale.
+ *
+ * Every point gets a rank: the glyph spacing is divided down from the
+ * extent of the data in steps of {@link #RATIO}, and at each step the
+ * points not yet ranked are placed greedily, in their given (priority)
+ * order, if their glyph box does not overlap one already placed. The rank
+ * of a point is the first step it was placed at, so the decluttered set
+ * for a glyph size is every point whose rank is at or below the step for
+ * that size. A coarse grid of buckets, each sorted by rank, answers the
+ * viewport part of the query without walking every point. Ranks are only
+ * worked out down to the smallest glyph asked for so far, so zooming in
+ * extends the index rather than rebuilding it.
+ *
+ * The first items may be fixed: they are always shown, so they take their
+ * space at every rank, overlapping or not, and no other point is placed
+ * on top of them.
+ *
+ * The index depends on the display projection (the positions) and on the
+ * shape of the glyph (the station model bounds), so it has to be rebuilt
+ * when either changes.
+ */
+final class DeclutterIndex {
+
+    /** Glyph spacing shrinks by this much from one rank to the next */
+    private static final double RATIO = Math.pow(2, 0.25);
+
+    /** The most ranks; the smallest spacing is the extent / RATIO^80 */
+    private static final int MAX_RANKS = 80;
+
+    /** Rank of points that are never shown, e.g. duplicates */
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    /** Number of buckets along each side of the viewport grid */
+    private static final int BUCKETS = 32;
+
+    /** The items, in priority order */
+    private final Object[] items;
+
+    /** Position of each item in the index */
+    private final IdentityHashMap<Object, Integer> positions;
+
+    /** Display coordinates */
+    private final double[] xs, ys;
+
+    /** Number of leading items that are always shown */
+    private final int numFixed;
+
+    /** Unscaled glyph size */
+    private final double glyphWidth, glyphHeight;
+
+    /** Rank of each point; NEVER until it has been placed */
+    private final int[] ranks;
+
+    /** Glyph spacing, in glyph units, of rank 0 */
+    private final double topSpacing;
+
+    /** Bounds of the valid points in display coordinates */
+    private final double minX, minY, bucketWidth, bucketHeight;
+
+    /** Points placed so far, in rank order */
+    private final int[] placed;
+
+    /** Number of placed points */
+    private int numPlaced = 0;
+
+    /** Points not placed yet, in priority order */
+    private final int[] waiting;
+
+    /** Number of points waiting */
+    private int numWaiting = 0;
+
+    /** The next rank to work out */
+    private int nextRank = 0;
+
+    /** Points of each bucket, by rank */
+    private final int[][] buckets;
+
+    /** Number of points in each bucket */
+    private final int[] bucketCounts;
+
+    /**
+     * Build the index
+     *
+     * @param items  the stations or observations, most important first
+     * @param xs  display x of each item; NaN if it is not on the display
+     * @param ys  display y of each item
+     * @param glyphWidth  unscaled width of the glyph
+     * @param glyphHeight  unscaled height of the glyph
+     */
+    DeclutterIndex(Object[] items, double[] xs, double[] ys,
+                   double glyphWidth, double glyphHeight) {
+        this(items, xs, ys, glyphWidth, glyphHeight, 0);
+    }
+
+    /**
+     * Build the index
+     *
+     * @param items  the stations or observations, most important first
+     * @param xs  display x of each item; NaN if it is not on the display
+     * @param ys  display y of each item
+     * @param glyphWidth  unscaled width of the glyph
+     * @param glyphHeight  unscaled height of the glyph
+     * @param numFixed  number of leading items that are always shown
+     */
+    DeclutterIndex(Object[] items, double[] xs, double[] ys,
+                   double glyphWidth, double glyphHeight, int numFixed) {
+        this.items       = items;
+        this.numFixed    = numFixed;
+        this.xs          = xs;
+        this.ys          = ys;
+        this.glyphWidth  = glyphWidth;
+        this.glyphHeight = glyphHeight;
+        int n = items.length;
+        positions = new IdentityHashMap<Object, Integer>(2 * n);
+        for (int i = 0; i < n; i++) {
+            positions.put(items[i], i);
+        }
+
+        double x0 = Double.POSITIVE_INFINITY,
+               y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY,
+               y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (isValid(i)) {
+                x0 = Math.min(x0, xs[i]);
+                x1 = Math.max(x1, xs[i]);
+                y0 = Math.min(y0, ys[i]);
+                y1 = Math.max(y1, ys[i]);
+            }
+        }
+        if (x0 > x1) {
+            x0 = x1 = y0 = y1 = 0;
+        }
+        minX         = x0;
+        minY         = y0;
+        bucketWidth  = Math.max((x1 - x0) / BUCKETS, Double.MIN_NORMAL);
+        bucketHeight = Math.max((y1 - y0) / BUCKETS, Double.MIN_NORMAL);
+        topSpacing   = Math.max(Math.max((x1 - x0) / glyphWidth,
+                                         (y1 - y0) / glyphHeight), 1e-9);
+
+        ranks   = new int[n];
+        placed  = new int[n];
+        waiting = new int[n];
+        int[] sizes = new int[BUCKETS * BUCKETS];
+        for (int i = 0; i < n; i++) {
+            ranks[i] = NEVER;
+            if (isValid(i)) {
+                if (i < numFixed) {
+                    ranks[i]            = 0;
+                    placed[numPlaced++] = i;
+                } else {
+                    waiting[numWaiting++] = i;
+                }
+                sizes[bucketOf(i)]++;
+            }
+        }
+        buckets      = new int[sizes.length][];
+        bucketCounts = new int[sizes.length];
+        for (int b = 0; b < sizes.length; b++) {
+            buckets[b] = new int[sizes[b]];
+        }
+        // the fixed points go first, so the buckets stay sorted by rank
+        for (int k = 0; k < numPlaced; k++) {
+            int b = bucketOf(placed[k]);
+            buckets[b][bucketCounts[b]++] = placed[k];
+        }
+    }
+
+    /**
+     * Was this index built for a glyph of the given size
+     *
+     * @param width  unscaled glyph width
+     * @param height  unscaled glyph height
+     *
+     * @return true if it was
+     */
+    boolean isFor(double width, double height) {
+        return (width == glyphWidth) && (height == glyphHeight);
+    }
+
+    /**
+     * Get the number of leading items that are always shown
+     *
+     * @return the number
+     */
+    int getNumFixed() {
+        return numFixed;
+    }
+
+    /**
+     * Find where some items are in this index. The ranks only hold for the
+     * items the index was built from, so the items have to be exactly
+     * those, in any order.
+     *
+     * @param list  the items
+     *
+     * @return the position of each item, or null if the items are not the
+     *         ones in the index
+     */
+    int[] lookup(List list) {
+        if (list.size() != items.length) {
+            return null;
+        }
+        int[]     result = new int[list.size()];
+        boolean[] seen   = new boolean[items.length];
+        for (int i = 0; i < result.length; i++) {
+            Integer position = positions.get(list.get(i));
+            if ((position == null) || seen[position]) {
+                return null;
+            }
+            seen[position] = true;
+            result[i]      = position;
+        }
+        return result;
+    }
+
+    /**
+     * Get the decluttered points for a glyph size
+     *
+     * @param scale  glyph scale; a glyph covers scale * the unscaled size
+     * @param viewport  the visible part of the display
+     * @param maxCells  the most glyphs that may be placed along each side
+     *                  of the viewport
+     *
+     * @return for each position, whether it is shown
+     */
+    synchronized boolean[] select(double scale, Rectangle2D viewport,
+                                  int maxCells) {
+        // never pack more than maxCells glyphs across the viewport
+        double spacing =
+            Math.max(scale,
+                     Math.max(viewport.getWidth() / (maxCells * glyphWidth),
+                              viewport.getHeight()
+                              / (maxCells * glyphHeight)));
+        int cutoff = (spacing >= topSpacing)
+                     ? 0
+                     : (int) Math.floor(Math.log(topSpacing / spacing)
+                                        / Math.log(RATIO));
+        cutoff = Math.min(cutoff, MAX_RANKS - 1);
+        rankTo(cutoff);
+
+        boolean[] shown = new boolean[items.length];
+        int bx0 = bucket(viewport.getMinX(), minX, bucketWidth);
+        int bx1 = bucket(viewport.getMaxX(), minX, bucketWidth);
+        int by0 = bucket(viewport.getMinY(), minY, bucketHeight);
+        int by1 = bucket(viewport.getMaxY(), minY, bucketHeight);
+        for (int by = by0; by <= by1; by++) {
+            for (int bx = bx0; bx <= bx1; bx++) {
+                int   b      = by * BUCKETS + bx;
+                int[] points = buckets[b];
+                for (int k = 0; k < bucketCounts[b]; k++) {
+                    int i = points[k];
+                    if (ranks[i] > cutoff) {
+                        break;
+                    }
+                    if (viewport.contains(xs[i], ys[i])) {
+                        shown[i] = true;
+                    }
+                }
+            }
+        }
+        return shown;
+    }
+
+    /**
+     * Does point i have a position on the display
+     *
+     * @param i  the point
+     *
+     * @return true if it does
+     */
+    private boolean isValid(int i) {
+        return !Double.isNaN(xs[i]) && !Double.isNaN(ys[i])
+               && !Double.isInfinite(xs[i]) && !Double.isInfinite(ys[i]);
+    }
+
+    /**
+     * Work out the ranks down to a cutoff. The points placed at each rank
+     * go to the end of their bucket, so the buckets stay sorted by rank.
+     *
+     * @param cutoff  the last rank needed
+     */
+    private void rankTo(int cutoff) {
+        double spacing = topSpacing / Math.pow(RATIO, nextRank);
+        for (; (nextRank <= cutoff) && (numWaiting > 0); nextRank++) {
+            CellMap cells = new CellMap(numPlaced + numWaiting, ranks.length);
+            // ranked points are at least one step apart, so each has a
+            // cell to itself, but fixed points may share one
+            for (int k = 0; k < numPlaced; k++) {
+                int i = placed[k];
+                cells.put(cellX(i, spacing), cellY(i, spacing), i);
+            }
+            int stillWaiting = 0;
+            for (int k = 0; k < numWaiting; k++) {
+                int i = waiting[k];
+                if (isClear(cells, i, spacing)) {
+                    ranks[i]            = nextRank;
+                    placed[numPlaced++] = i;
+                    cells.put(cellX(i, spacing), cellY(i, spacing), i);
+                    int b = bucketOf(i);
+                    buckets[b][bucketCounts[b]++] = i;
+                } else {
+                    waiting[stillWaiting++] = i;
+                }
+            }
+            numWaiting = stillWaiting;
+            spacing    /= RATIO;
+        }
+    }
+
+    /**
+     * Is the glyph box of point i clear of the ones already placed
+     *
+     * @param cells  the placed points
+     * @param i  the point
+     * @param spacing  glyph spacing in glyph units
+     *
+     * @return true if clear
+     */
+    private boolean isClear(CellMap cells, int i, double spacing) {
+        double w  = spacing * glyphWidth;
+        double h  = spacing * glyphHeight;
+        long   cx = cellX(i, spacing);
+        long   cy = cellY(i, spacing);
+        for (long y = cy - 1; y <= cy + 1; y++) {
+            for (long x = cx - 1; x <= cx + 1; x++) {
+                for (int j = cells.get(x, y); j >= 0; j = cells.next(j)) {
+                    if ((Math.abs(xs[i] - xs[j]) < w)
+                            && (Math.abs(ys[i] - ys[j]) < h)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cell column of point i
+     *
+     * @param i  the point
+     * @param spacing  glyph spacing in glyph units
+     *
+     * @return the column
+     */
+    private long cellX(int i, double spacing) {
+        return (long) Math.floor((xs[i] - minX) / (spacing * glyphWidth));
+    }
+
+    /**
+     * Cell row of point i
+     *
+     * @param i  the point
+     * @param spacing  glyph spacing in glyph units
+     *
+     * @return the row
+     */
+    private long cellY(int i, double spacing) {
+        return (long) Math.floor((ys[i] - minY) / (spacing * glyphHeight));
+    }
+
+    /**
+     * Viewport bucket of point i
+     *
+     * @param i  the point
+     *
+     * @return the bucket
+     */
+    private int bucketOf(int i) {
+        return bucket(ys[i], minY, bucketHeight) * BUCKETS
+               + bucket(xs[i], minX, bucketWidth);
+    }
+
+    /**
+     * Bucket of a coordinate, clamped to the grid
+     *
+     * @param value  the coordinate
+     * @param min  where the grid starts
+     * @param size  bucket size
+     *
+     * @return the bucket
+     */
+    private static int bucket(double value, double min, double size) {
+        double b = Math.floor((value - min) / size);
+        if ( !(b > 0)) {
+            return 0;
+        }
+        return (int) Math.min(b, BUCKETS - 1);
+    }
+
+    /**
+     * Map from a cell to the points placed in it
+     */
+    private static final class CellMap {
+
+        /** marks an empty slot */
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        /** the cells */
+        private final long[] keys;
+
+        /** the last point put in each cell */
+        private final int[] values;
+
+        /** the point put in the same cell before each point, or -1 */
+        private final int[] next;
+
+        /** table size - 1 */
+        private final int mask;
+
+        /**
+         * Make a map
+         *
+         * @param capacity  the most entries it will hold
+         * @param numPoints  number of points
+         */
+        CellMap(int capacity, int numPoints) {
+            int size = Integer.highestOneBit(Math.max(2 * capacity, 8) - 1)
+                       << 1;
+            keys   = new long[size];
+            values = new int[size];
+            mask   = size - 1;
+            next   = new int[numPoints];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * Put a point in a cell
+         *
+         * @param x  cell column
+         * @param y  cell row
+         * @param value  the point
+         */
+        void put(long x, long y, int value) {
+            long key  = key(x, y);
+            int  slot = slot(key);
+            while ((keys[slot] != EMPTY) && (keys[slot] != key)) {
+                slot = (slot + 1) & mask;
+            }
+            next[value]  = (keys[slot] == key)
+                           ? values[slot]
+                           : -1;
+            keys[slot]   = key;
+            values[slot] = value;
+        }
+
+        /**
+         * Get the last point put in a cell
+         *
+         * @param x  cell column
+         * @param y  cell row
+         *
+         * @return the point, or -1 if the cell is empty
+         */
+        int get(long x, long y) {
+            long key  = key(x, y);
+            int  slot = slot(key);
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Get the point put in the same cell before a point
+         *
+         * @param value  the point
+         *
+         * @return the point, or -1 if there is none
+         */
+        int next(int value) {
+            return next[value];
+        }
+
+        /**
+         * Pack a cell into a key
+         *
+         * @param x  cell column
+         * @param y  cell row
+         *
+         * @return the key
+         */
+        private static long key(long x, long y) {
+            return (x << 32) ^ (y & 0xffffffffL);
+        }
+
+        /**
+         * Hash a key to a slot
+         *
+         * @param key  the key
+         *
+         * @return the slot
+         */
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+    }
+}
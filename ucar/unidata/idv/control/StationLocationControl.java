@@ -78,7 +78,6 @@ import ucar.unidata.data.DataChoice;
 import ucar.unidata.data.DataInstance;
 import ucar.unidata.geoloc.Bearing;
 import ucar.unidata.geoloc.LatLonPointImpl;
-import ucar.unidata.gis.SpatialGrid;
 import ucar.unidata.idv.ControlContext;
 import ucar.unidata.idv.DisplayConventions;
 import ucar.unidata.idv.MapViewManager;
@@ -226,6 +225,9 @@ public class StationLocationControl extends StationModelControl {
      */
     private List lastDeclutteredStationList;
 
+    /** Key of the station declutter index in declutterIndexes */
+    private static final String STATIONS_INDEX_KEY = "stations";
+
 
     /** the symbol type */
     private int symbolType = StationLocationDisplayable.SYMBOL_CIRCLE;
@@ -1392,44 +1394,61 @@ public class StationLocationControl extends StationModelControl {
         if ((stations == null) || stations.isEmpty()) {
             return stations;
         }
-        Rectangle obView  = getMyStationModel().getBounds();
+        Rectangle obView      = getMyStationModel().getBounds();
+        double    glyphWidth  = Math.max(obView.getWidth(), 1);
+        double    glyphHeight = Math.max(obView.getHeight(), 1);
         float     myScale = getScale() * .0025f * getDeclutterFilter();
 
-        Rectangle2D viewBounds = new Rectangle2D.Double(obView.getX()
-                                     * myScale, obView.getY() * myScale,
-                                         obView.getWidth() * myScale,
-                                         obView.getHeight() * myScale);
-        Vector      v           = new Vector();
-        SpatialGrid stationGrid = new SpatialGrid(100, 100);
-        stationGrid.clear();
-        stationGrid.setGrid(getBounds(), viewBounds);
-        double[] xyz = null;
-        Rectangle2D.Double obBounds = new Rectangle2D.Double(0, 0,
-                                          viewBounds.getWidth(),
-                                          viewBounds.getHeight());
-        double vbX = viewBounds.getX();
-        double vbY = viewBounds.getY();
-
+        //The preloaded stations get their space before the others
+        List ordered    = new ArrayList();
+        int  numPreLoad = 0;
         if (preLoad != null) {
             for (Iterator iter = preLoad.iterator(); iter.hasNext(); ) {
                 NamedStationImpl station = (NamedStationImpl) iter.next();
-                EarthLocation    el      = station.getEarthLocation();
-                xyz        = earthToBox(el);
-                obBounds.x = xyz[0] + vbX;
-                obBounds.y = xyz[1] + vbY;
-                stationGrid.markIfClear(obBounds, el);
+                ordered.add(station);
                 stations.remove(station);
             }
+            numPreLoad = ordered.size();
+        }
+        ordered.addAll(stations);
+
+        //Use the index from the last time if it has exactly these
+        //stations, with the same ones preloaded
+        DeclutterIndex index =
+            (DeclutterIndex) declutterIndexes.get(STATIONS_INDEX_KEY);
+        int[] positions = null;
+        if ((index != null) && index.isFor(glyphWidth, glyphHeight)
+                && (index.getNumFixed() == numPreLoad)) {
+            positions = index.lookup(ordered);
+            for (int i = 0; (positions != null) && (i < numPreLoad); i++) {
+                if (positions[i] != i) {
+                    positions = null;
+                }
+            }
         }
-
-        for (Iterator iter = stations.iterator(); iter.hasNext(); ) {
-            NamedStationImpl station = (NamedStationImpl) iter.next();
-            EarthLocation    el      = station.getEarthLocation();
-            xyz        = earthToBox(el);
-            obBounds.x = xyz[0] + vbX;
-            obBounds.y = xyz[1] + vbY;
-            if (stationGrid.markIfClear(obBounds, el)) {
-                v.add(station);
+        if (positions == null) {
+            double[] xs = new double[ordered.size()];
+            double[] ys = new double[ordered.size()];
+            positions = new int[ordered.size()];
+            for (int i = 0; i < ordered.size(); i++) {
+                NamedStationImpl station = (NamedStationImpl) ordered.get(i);
+                double[] xyz = earthToBox(station.getEarthLocation());
+                xs[i]        = xyz[0];
+                ys[i]        = xyz[1];
+                positions[i] = i;
+            }
+            //The preloaded stations are always drawn, so they keep their
+            //space even where they overlap each other
+            index = new DeclutterIndex(ordered.toArray(), xs, ys,
+                                       glyphWidth, glyphHeight, numPreLoad);
+            declutterIndexes.put(STATIONS_INDEX_KEY, index);
+        }
+
+        Vector    v     = new Vector();
+        boolean[] shown = index.select(myScale, getBounds(), 100);
+        for (int i = numPreLoad; i < ordered.size(); i++) {
+            if (shown[positions[i]]) {
+                v.add(ordered.get(i));
             }
         }
         return v;
@@ -42,7 +42,6 @@ import ucar.unidata.data.point.PointDataSource;
 import ucar.unidata.data.point.PointOb;
 import ucar.unidata.data.point.PointObFactory;
 import ucar.unidata.geoloc.Bearing;
-import ucar.unidata.gis.SpatialGrid;
 import ucar.unidata.idv.ControlContext;
 import ucar.unidata.idv.control.chart.LineState;
 import ucar.unidata.idv.control.chart.PointParam;
@@ -117,6 +116,7 @@ import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
@@ -269,9 +269,6 @@ public class StationModelControl extends ObsDisplayControl {
     String modelName;
 
 
-    /** grid for decluttering */
-    private SpatialGrid stationGrid;
-
     /** flag for decluttering */
     private boolean declutter = true;
 
@@ -317,6 +314,15 @@ public class StationModelControl extends ObsDisplayControl {
     /** Keep around the last set of decluttered data */
     protected FieldImpl lastDeclutteredData;
 
+    /**
+     * The declutter index of each time step (Integer time index, -1 when
+     * there are no times), kept across zooms and pans
+     */
+    protected Hashtable declutterIndexes = new Hashtable();
+
+    /** The times left by the last time decluttering, if any */
+    private Set lastTimeDeclutterSet;
+
     /** The currently displayed data */
     protected FieldImpl currentStationData;
 
@@ -1779,6 +1785,15 @@ public class StationModelControl extends ObsDisplayControl {
                 LogUtil.message("Observation display: subsetting times");
                 Trace.call1("doDeclutterTime");
                 theData = doDeclutterTime(theData);
+                // the time step indexes the declutter indexes are kept
+                // under change with the times that are left
+                Set timeSet = GridUtil.isTimeSequence(theData)
+                              ? theData.getDomainSet()
+                              : null;
+                if ( !Misc.equals(timeSet, lastTimeDeclutterSet)) {
+                    declutterIndexes.clear();
+                    lastTimeDeclutterSet = timeSet;
+                }
                 GuiUtils.enableComponents(timeDeclutterComps, getTimeDeclutterEnabled());
                 Trace.call2("doDeclutterTime");
             }
@@ -2050,6 +2065,7 @@ public class StationModelControl extends ObsDisplayControl {
      */
     public void projectionChanged() {
         super.projectionChanged();
+        declutterIndexes.clear();
         //Handle this in a thread
         Misc.run(new Runnable() {
             public void run() {
@@ -2324,6 +2340,7 @@ public class StationModelControl extends ObsDisplayControl {
     private void setStationModel(StationModel sm) {
         try {
             stationModel = sm;
+            declutterIndexes.clear();
             if (layoutModelWidget != null) {
                 layoutModelWidget.setLayoutModel(sm);
             }
@@ -2900,6 +2917,7 @@ public class StationModelControl extends ObsDisplayControl {
      */
     protected void timeDeclutterChanged() {
         lastDeclutteredData = null;
+        declutterIndexes.clear();
         GuiUtils.enableComponents(timeDeclutterComps,
                                   getTimeDeclutterEnabled());
         loadDataInThread();
@@ -3208,6 +3226,7 @@ public class StationModelControl extends ObsDisplayControl {
      */
     public void applyFilters() {
         lastDeclutteredData = null;
+        declutterIndexes.clear();
         initFilters();
         loadData();
     }
@@ -3383,7 +3402,7 @@ public class StationModelControl extends ObsDisplayControl {
             for (int i = 0; i < numTimes; i++) {
                 FieldImpl oneTime = (FieldImpl) obs.getSample(i);
                 FieldImpl subTime = doTheActualDecluttering(oneTime,
-                                        timestamp);
+                                        Integer.valueOf(i), timestamp);
                 if (timestamp != loadDataTimestamp) {
                     return null;
                 }
@@ -3392,7 +3411,8 @@ public class StationModelControl extends ObsDisplayControl {
                 }
             }
         } else {
-            declutteredField = doTheActualDecluttering(obs, timestamp);
+            declutteredField = doTheActualDecluttering(obs,
+                    Integer.valueOf(-1), timestamp);
         }
         //System.out.println("Subsetting took : " +
         //    (System.currentTimeMillis() - millis) + " ms");
@@ -3400,9 +3420,13 @@ public class StationModelControl extends ObsDisplayControl {
     }
 
     /**
-     * a     * Declutters a single timestep of observations.
+     * Declutters a single timestep of observations. The observations that
+     * are shown come from the {@link DeclutterIndex} for the time step,
+     * which is only rebuilt when the observations, the projection or the
+     * station model bounds change.
      *
      * @param pointObs  point observations for one timestep.
+     * @param indexKey  which time step, for finding its declutter index
      * @param timestamp  the timestamp
      *
      * @return a decluttered version of pointObs
@@ -3411,7 +3435,7 @@ public class StationModelControl extends ObsDisplayControl {
      * @throws VisADException   VisAD Error
      */
     private FieldImpl doTheActualDecluttering(FieldImpl pointObs,
-            int timestamp)
+            Object indexKey, int timestamp)
             throws VisADException, RemoteException {
         if ((pointObs == null) || pointObs.isMissing()) {
             return pointObs;
@@ -3423,55 +3447,53 @@ public class StationModelControl extends ObsDisplayControl {
 
         long        t1                = System.currentTimeMillis();
         Rectangle   glyphBounds       = getStationModel().getBounds();
+        double      glyphWidth        = Math.max(glyphBounds.getWidth(), 1);
+        double      glyphHeight       = Math.max(glyphBounds.getHeight(), 1);
 
         float       myScale = getScale() * .0025f * getDeclutterFilter();
 
-        Rectangle2D scaledGlyphBounds =
-            new Rectangle2D.Double(glyphBounds.getX() * myScale,
-                                   glyphBounds.getY() * myScale,
-                                   glyphBounds.getWidth() * myScale,
-                                   glyphBounds.getHeight() * myScale);
-        NavigatedDisplay   navDisplay = getNavigatedDisplay();
-
-        Rectangle2D.Double obBounds   = new Rectangle2D.Double();
-        obBounds.width  = scaledGlyphBounds.getWidth();
-        obBounds.height = scaledGlyphBounds.getHeight();
-
         Rectangle2D bounds = getBounds();
         //        System.out.println("my bounds: x:" + bounds.getX()+"-" +(bounds.getX()+bounds.getWidth())+" y:" +
         //                           bounds.getY()+"-" +(bounds.getY()+bounds.getHeight()));
 
+        PointOb[] obs = new PointOb[numObs];
+        for (int i = 0; i < numObs; i++) {
+            obs[i] = (PointOb) pointObs.getSample(i);
+        }
 
-        if (stationGrid == null) {
-            stationGrid = new SpatialGrid(200, 200);
+        //Use the index from the last time if it has exactly these obs
+        DeclutterIndex index =
+            (DeclutterIndex) declutterIndexes.get(indexKey);
+        int[] positions = null;
+        if ((index != null) && index.isFor(glyphWidth, glyphHeight)) {
+            positions = index.lookup(Arrays.asList(obs));
         }
-        stationGrid.clear();
-        stationGrid.setGrid(bounds, scaledGlyphBounds);
-        if (getDeclutterFilter() < 0.3f) {
-            //      stationGrid.setOverlap((int)((1.0-getDeclutterFilter())*100));
-            //      stationGrid.setOverlap(          (int)((.5f-getDeclutterFilter())*100));
-        } else {
-            //      stationGrid.setOverlap(0);
+        if (positions == null) {
+            NavigatedDisplay navDisplay = getNavigatedDisplay();
+            double[]         xs         = new double[numObs];
+            double[]         ys         = new double[numObs];
+            double[]         xyz        = new double[3];
+            positions = new int[numObs];
+            for (int i = 0; i < numObs; i++) {
+                if (timestamp != loadDataTimestamp) {
+                    return null;
+                }
+                xyz = navDisplay.getSpatialCoordinates(
+                    obs[i].getEarthLocation(), xyz, 0);
+                xs[i]        = xyz[0];
+                ys[i]        = xyz[1];
+                positions[i] = i;
+            }
+            index = new DeclutterIndex(obs, xs, ys, glyphWidth, glyphHeight);
+            declutterIndexes.put(indexKey, index);
         }
 
-        double[] xyz = new double[3];
-        //TODO: The repeated getSpatialCoords is a bit expensive
+        boolean[] shown = index.select(myScale, bounds, 200);
         for (int i = 0; i < numObs; i++) {
-            if (timestamp != loadDataTimestamp) {
-                return null;
-            }
-            PointOb ob = (PointOb) pointObs.getSample(i);
-            xyz = navDisplay.getSpatialCoordinates(ob.getEarthLocation(),
-                    xyz, 0);
-            obBounds.x = xyz[0];
-            obBounds.y = xyz[1];
-            //            if(i<30)
-            //                System.err.println("\tel:" + ob.getEarthLocation() +" obBounds:" + obBounds.x +"/" + obBounds.y);
-            if (stationGrid.markIfClear(obBounds, "") || isSelected(ob)) {
-                v.add(ob);  // is in the bounds
+            if (shown[positions[i]] || isSelected(obs[i])) {
+                v.add(obs[i]);  // is in the bounds
             }
         }
-        //      stationGrid.print();
         long t2 = System.currentTimeMillis();
 
 
@@ -34,12 +34,14 @@ import org.slf4j.LoggerFactory;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
 import ucar.ma2.Index;
+import ucar.ma2.Range;
 
 //import ucar.nc2.dataset.grid.*;
 import ucar.nc2.dataset.CoordinateAxis1DTime;
 import ucar.nc2.dt.grid.*;
 
 import ucar.unidata.data.DataUtil;
+import ucar.unidata.data.grid.GridDatasetPool;
 import ucar.unidata.util.IOUtil;
 
 
@@ -59,6 +61,7 @@ import visad.util.DataUtility;
 import java.io.*;
 
 import java.rmi.RemoteException;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -90,6 +93,12 @@ public class GeoGridFlatField extends CachedFlatField {
     /** a read lock  */
     transient private Object readLock;
 
+    /** other handles on the file, for reading without the read lock */
+    transient private GridDatasetPool datasetPool;
+
+    /** ensemble, level, y and x ranges the geogrid was subset with */
+    transient private Range[] subsetRanges;
+
     /** the run time  */
     CalendarDateTime runTime;
 
@@ -164,6 +173,8 @@ public class GeoGridFlatField extends CachedFlatField {
         this.domainSet = that.domainSet;
         this.timeIndex = that.timeIndex;
         this.ensIndex = that.ensIndex;
+        this.datasetPool  = that.datasetPool;
+        this.subsetRanges = that.subsetRanges;
     }
 
     /**
@@ -237,6 +248,20 @@ public class GeoGridFlatField extends CachedFlatField {
         return readLock;
     }
 
+    /**
+     * Read through a handle from the pool instead of holding the read lock.
+     * The geogrid is found by name in the pooled handle and subset the same
+     * way as the one this field was made with.
+     *
+     * @param pool  handles on the same file as the geogrid
+     * @param subsetRanges  the ensemble, level, y and x ranges the geogrid
+     *                      was subset with, or null if it was not subset
+     */
+    public void setDatasetPool(GridDatasetPool pool, Range[] subsetRanges) {
+        this.datasetPool  = pool;
+        this.subsetRanges = subsetRanges;
+    }
+
     /**
      * Get the read lock
      *
@@ -255,6 +280,70 @@ public class GeoGridFlatField extends CachedFlatField {
         return coordinateBounds;
     }
 
+    /**
+     * Set the run time and the time coordinate bounds for our time index
+     *
+     * @param grid  the grid to read the time axes from
+     *
+     * @throws VisADException  problem making the times
+     */
+    private void readTimeInfo(GeoGrid grid) throws VisADException {
+        CoordinateAxis1DTime ccar = grid.getCoordinateSystem().getRunTimeAxis();
+        CoordinateAxis1DTime cca = grid.getCoordinateSystem().getTimeAxis1D();
+        if(cca != null && cca.getCoordBoundsDate(timeIndex) != null)
+            coordinateBounds = cca.getCoordBounds(timeIndex);
+
+        if(ccar != null) {
+            List timesR = DataUtil.makeDateTimes(ccar);
+            //List times = DataUtil.makeDateTimes(cca);
+
+            if (timesR.size() == 1)
+                runTime = (CalendarDateTime) timesR.get(0);
+            else if (timeIndex > timesR.size())
+                runTime = (CalendarDateTime) timesR.get(timesR.size() - 1);
+            else
+                runTime = (CalendarDateTime) timesR.get(timeIndex);
+        }
+    }
+
+    /**
+     * Read our slice through a handle from the dataset pool.
+     *
+     * @return the data, or null if the pooled handle could not be used and
+     *         the caller should read under the read lock instead
+     */
+    private Array readPooled() {
+        GridDataset dataset = null;
+        try {
+            dataset = datasetPool.acquire();
+            if (dataset == null) {
+                return null;
+            }
+            GeoGrid grid = dataset.findGridByName(geoGrid.getFullName());
+            if ((grid != null) && (subsetRanges != null)) {
+                grid = (GeoGrid) grid.makeSubset(null, subsetRanges[0], null,
+                        subsetRanges[1], subsetRanges[2], subsetRanges[3]);
+            }
+            if ((grid == null)
+                    || !Arrays.equals(grid.getShape(), geoGrid.getShape())) {
+                logger.debug("no matching grid for {} in {}",
+                             geoGrid.getFullName(), datasetPool.getLocation());
+                return null;
+            }
+            readTimeInfo(grid);
+            return grid.readDataSlice(0, ensIndex, timeIndex, -1, -1, -1);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception exc) {
+            logger.debug("pooled read of {} failed, using the shared handle",
+                         geoGrid.getFullName(), exc);
+            return null;
+        } finally {
+            datasetPool.release(dataset);
+        }
+    }
+
     /**
      * Used to provide a hook to derived classes to dynamically read in the data
      *
@@ -275,46 +364,35 @@ public class GeoGridFlatField extends CachedFlatField {
             msg("readData");
             Trace.call1("GeoGridFlatField.geogrid.readVolumeData");
 
-            synchronized (getReadLock()) {
-                LogUtil.message(readLabel);
-                ucar.unidata.data.DataSourceImpl
-                    .incrOutstandingGetDataCalls();
-                try {
-                    CoordinateAxis1DTime ccar = geoGrid.getCoordinateSystem().getRunTimeAxis();
-                    CoordinateAxis1DTime cca = geoGrid.getCoordinateSystem().getTimeAxis1D();
-                    if(cca != null && cca.getCoordBoundsDate(timeIndex) != null)
-                        coordinateBounds = cca.getCoordBounds(timeIndex);
-
-                    if(ccar != null) {
-                        List timesR = DataUtil.makeDateTimes(ccar);
-                        //List times = DataUtil.makeDateTimes(cca);
-
-                        if (timesR.size() == 1)
-                            runTime = (CalendarDateTime) timesR.get(0);
-                        else if (timeIndex > timesR.size())
-                            runTime = (CalendarDateTime) timesR.get(timesR.size() - 1);
-                        else
-                            runTime = (CalendarDateTime) timesR.get(timeIndex);
-                    }
-                    //System.out.println("Index = " + timeIndex + " Run hour = " + runTime + " " + coordinateBounds[1]  + " "  + coordinateBounds[0]  + "\n");
-                    //arr = geoGrid.readVolumeData(timeIndex);
-                    arr = geoGrid.readDataSlice(0, ensIndex, timeIndex, -1, -1,
-                            -1);
-                    /*if(geoGrid.getDataType().equals(DataType.BYTE)){
-                        Attribute att = geoGrid.findAttributeIgnoreCase("_unsigned");
-                        if(att != null && att.getStringValue().equals("true")){
-                            arr.setUnsigned(true);
+            LogUtil.message(readLabel);
+            ucar.unidata.data.DataSourceImpl.incrOutstandingGetDataCalls();
+            arr = (datasetPool == null)
+                  ? null
+                  : readPooled();
+            if (arr == null) {
+                synchronized (getReadLock()) {
+                    try {
+                        readTimeInfo(geoGrid);
+                        //System.out.println("Index = " + timeIndex + " Run hour = " + runTime + " " + coordinateBounds[1]  + " "  + coordinateBounds[0]  + "\n");
+                        //arr = geoGrid.readVolumeData(timeIndex);
+                        arr = geoGrid.readDataSlice(0, ensIndex, timeIndex, -1, -1,
+                                -1);
+                        /*if(geoGrid.getDataType().equals(DataType.BYTE)){
+                            Attribute att = geoGrid.findAttributeIgnoreCase("_unsigned");
+                            if(att != null && att.getStringValue().equals("true")){
+                                arr.setUnsigned(true);
+                            }
+                        } */
+                    } catch(Exception exc) {
+                        if(exc.toString().indexOf("Inconsistent array length read")>=0) {
+                            throw new ucar.unidata.data.BadDataException("Error reading data from server");
+                        } else {
+                            throw new RuntimeException(exc);
                         }
-                    } */
-                } catch(Exception exc) {
-                    if(exc.toString().indexOf("Inconsistent array length read")>=0) {
-                        throw new ucar.unidata.data.BadDataException("Error reading data from server");
-                    } else {
-                        throw new RuntimeException(exc);
                     }
                 }
-                LogUtil.message("");
             }
+            LogUtil.message("");
             Trace.call2("GeoGridFlatField.geogrid.readVolumeData");
             // 3D grid with one level - slice to 2D grid
             if ((arr.getRank() > 2) && (domainSet.getDimension() == 2)) {
@@ -726,7 +726,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
        so in operations (e.g., unary, binary) that deal with the data we try
        to keep it to be floats if we can (for size efficiency).
      **/
-    private boolean  shouldBeDouble () {
+    boolean  shouldBeDouble () {
       for (int i=0; i<TupleDimension; i++) {
           if (RangeMode[i] == DOUBLE) {
               return true;
@@ -1255,6 +1255,13 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     return range;
   }
 
+  /** unpack an array of floats from field sample values according to the
+      RangeSet-s, for callers that only read them; the returned array may
+      be shared and must not be changed */
+  protected float[][] unpackFloatsForRead() throws VisADException {
+    return unpackFloats(false);
+  }
+
   /**
    * Unpack one range component, makes a copy.
    *
@@ -1569,7 +1576,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
    */
   public float[][] getFloats (boolean copy) throws VisADException {
       pr ("getFloats(" + copy + ")");
-      float[][] values = unpackFloats(copy);
+      float[][] values = copy ? unpackFloats(true) : unpackFloatsForRead();
 
       Unit[] units_out =  ((FunctionType) Type).getFlatRange().getDefaultUnits();
       //Only converty the data if the output units not equal to the input units
@@ -2088,6 +2095,13 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
           return new_type.missingData();
       }
 
+      // defer simple element-wise arithmetic on a shared domain
+      FlatField fused =
+        FusedFlatField.tryBinary(this, (FlatField) data, op, new_type, error_mode);
+      if (fused != null) {
+          return fused;
+      }
+
       // resample data if needed
       data = ((FlatField) data).resample(getDomainSet(), sampling_mode, error_mode);
 
@@ -2671,6 +2685,14 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
         return new_type.missingData();
       }
 
+      if (data instanceof Real) {
+        FlatField fused =
+          FusedFlatField.tryBinary(this, (Real) data, op, new_type, error_mode);
+        if (fused != null) {
+          return fused;
+        }
+      }
+
 
       // get data values and possibly apply coordinate transform
       double[][] vals = new double[TupleDimension][1];
@@ -3186,6 +3208,11 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
             throw new TypeException("unary: new_type may not be null");
         }
 
+        FlatField fused = FusedFlatField.tryUnary(this, op, new_type, error_mode);
+        if (fused != null) {
+            return fused;
+        }
+
         Unit[] units_out = new Unit[TupleDimension];
 
         /*
@@ -4580,32 +4607,55 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
 
     int i, j, k; // loop indices
 
-    // create an array containing all indices of 'this'
     int length = set.getLength();
-    int[] wedge = set.getWedge();
-
-    // get values from wedge and possibly transform coordinates
-    float[][] vals = set.indexToValue(wedge);
-    // holder for sampling errors of transformed set; these are
-    // only useful to help estmate range errors due to resampling
-    ErrorEstimate[] errors_out = new ErrorEstimate[dim];
-    float[][] oldvals = vals;
-    visad.util.Trace.call1("FlatField.resample:transformCoords");
-    try {  // this is only to throw a more meaningful message
-      vals = CoordinateSystem.transformCoordinates(
-                      ((FunctionType) Type).getDomain(), 
-                      getDomainCoordinateSystem(),
-                      getDomainUnits(), errors_out,
-                      ((SetType) set.getType()).getDomain(), coord_sys,
-                      units, errors, vals, false);
-    } catch (UnitException ue) {
-        throw new VisADException(
-          "Sampling set is not compatible with domain",
-          ue
-        );
+    RealTupleType domain_in = ((FunctionType) Type).getDomain();
+    CoordinateSystem domain_cs = getDomainCoordinateSystem();
+    Unit[] domain_units = getDomainUnits();
+
+    // a time sequence resampled to one Set repeats the same transform
+    // and search for every step, so reuse the plan when we have one
+    ResampleCache.Plan plan = (error_mode == NO_ERRORS) ?
+      ResampleCache.get(domainSet, set, sampling_mode, domain_in,
+                        domain_cs, domain_units) : null;
+
+    int[] wedge;
+    float[][] vals;
+    float[][] oldvals;
+    ErrorEstimate[] errors_out;
+    boolean coord_transform;
+    if (plan != null) {
+      wedge = plan.wedge;
+      vals = plan.vals;
+      oldvals = plan.oldvals;
+      errors_out = plan.errorsOut;
+      coord_transform = plan.coordTransform;
+    }
+    else {
+      // create an array containing all indices of 'this'
+      wedge = set.getWedge();
+
+      // get values from wedge and possibly transform coordinates
+      vals = set.indexToValue(wedge);
+      // holder for sampling errors of transformed set; these are
+      // only useful to help estmate range errors due to resampling
+      errors_out = new ErrorEstimate[dim];
+      oldvals = vals;
+      visad.util.Trace.call1("FlatField.resample:transformCoords");
+      try {  // this is only to throw a more meaningful message
+        vals = CoordinateSystem.transformCoordinates(
+                        domain_in, domain_cs,
+                        domain_units, errors_out,
+                        ((SetType) set.getType()).getDomain(), coord_sys,
+                        units, errors, vals, false);
+      } catch (UnitException ue) {
+          throw new VisADException(
+            "Sampling set is not compatible with domain",
+            ue
+          );
+      }
+      visad.util.Trace.call2("FlatField.resample:transformCoords");
+      coord_transform = !(vals == oldvals);
     }
-    visad.util.Trace.call2("FlatField.resample:transformCoords");
-    boolean coord_transform = !(vals == oldvals);
 
     // check whether we need to do sampling error calculations
     boolean sampling_errors = (error_mode != NO_ERRORS);
@@ -4630,7 +4680,7 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
     float[][] values = null;
     if (sampling_errors || (10 * length > getLength()) || 
         !shouldBeDouble() || sampling_mode == WEIGHTED_AVERAGE) {
-      values = unpackFloats(false);
+      values = unpackFloatsForRead();
       // values = Set.doubleToFloat(unpackValues());
     }
 
@@ -4640,9 +4690,21 @@ public class FlatField extends FieldImpl implements FlatFieldIface {
 
     if (sampling_mode == WEIGHTED_AVERAGE && domainSet instanceof SimpleSet) {
       // resample by interpolation
-      int[][] indices = new int[length][];
-      float[][] coefs = new float[length][];
-      ((SimpleSet) domainSet).valueToInterp(vals, indices, coefs);
+      if (plan == null) {
+        int[][] indices = new int[length][];
+        float[][] coefs = new float[length][];
+        ((SimpleSet) domainSet).valueToInterp(vals, indices, coefs);
+        plan = ResampleCache.Plan.interpolate(domain_in, domain_units, wedge,
+                                              coord_transform, oldvals, vals,
+                                              errors_out, indices, coefs);
+        if (error_mode == NO_ERRORS) {
+          ResampleCache.put(domainSet, set, sampling_mode, domain_cs, plan);
+        }
+      }
+      // terms of sample i are start[i] .. start[i+1]-1
+      int[] start = plan.start;
+      int[] index = plan.index;
+      float[] weight = plan.weight;
 
 /* DEBUG
 // System.out.println("DomainSet = " + domainSet);
@@ -4677,12 +4739,12 @@ for (i=0; i<ii; i++) {
           valuesJ = values[j];
           new_valuesJ = new_values[j];
           for (i=0; i<length; i++) {
-            float v = Float.NaN;
-            int len = indices[i] == null ? 0 : indices[i].length;
-            if (len > 0) {
-              v = valuesJ[indices[i][0]] * coefs[i][0];
-              for (k=1; k<len; k++) {
-                v += valuesJ[indices[i][k]] * coefs[i][k];
+            int lo = start[i];
+            int hi = start[i+1];
+            if (lo < hi) {
+              float v = valuesJ[index[lo]] * weight[lo];
+              for (k=lo+1; k<hi; k++) {
+                v += valuesJ[index[k]] * weight[k];
               }
               new_valuesJ[wedge[i]] = v;
             }
@@ -4694,18 +4756,19 @@ for (i=0; i<ii; i++) {
       }
       else {
         for (i=0; i<length; i++) {
-          int len = indices[i] == null ? 0 : indices[i].length;
+          int lo = start[i];
+          int len = start[i+1] - lo;
           if (len > 0) {
             float[][] xvals = new float[len][];
             for (k = 0; k<len; k++) {
-              xvals[k] = unpackFloats(indices[i][k]);
+              xvals[k] = unpackFloats(index[lo + k]);
             }
             for (j=0; j<TupleDimension; j++) {
-              float v = xvals[0][j] * coefs[i][0];
-              for (k=1; k<len; k++) v += xvals[k][j] * coefs[i][k];
+              float v = xvals[0][j] * weight[lo];
+              for (k=1; k<len; k++) v += xvals[k][j] * weight[lo + k];
               new_values[j][wedge[i]] = v;
             }
-          }         
+          }
           else { // values outside grid
             for (j=0; j<TupleDimension; j++) {
               new_values[j][wedge[i]] = Float.NaN;
@@ -4749,7 +4812,16 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     }
     else { // NEAREST_NEIGHBOR or set is not SimpleSet
       // simple resampling
-      int[] indices = domainSet.valueToIndex(vals);
+      if (plan == null) {
+        plan = ResampleCache.Plan.nearest(domain_in, domain_units, wedge,
+                                          coord_transform, oldvals, vals,
+                                          errors_out,
+                                          domainSet.valueToIndex(vals));
+        if (error_mode == NO_ERRORS) {
+          ResampleCache.put(domainSet, set, sampling_mode, domain_cs, plan);
+        }
+      }
+      int[] indices = plan.nearest;
 /* DEBUG
 // System.out.println("DomainSet = " + domainSet);
 // System.out.println("set = " + set);
@@ -5030,7 +5102,7 @@ if (pr) System.out.println("value = " + new_values[0][0]);
     float[][] values = null;
     if (sampling_errors || (10 * length > getLength()) || 
         !shouldBeDouble() || sampling_mode == WEIGHTED_AVERAGE) {
-      values = unpackFloats(false);
+      values = unpackFloatsForRead();
       // values = Set.doubleToFloat(unpackValues());
     }
 
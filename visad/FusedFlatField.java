@@ -0,0 +1,540 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+//
+// FusedFlatField.java
+//
+
+package visad;
+
+import java.lang.ref.WeakReference;
+
+import visad.data.CachedFlatField;
+import visad.util.ParallelTasks;
+
+/**
+   FusedFlatField is a FlatField whose range values are defined by a
+   pending element-wise expression over other FlatFields on the same
+   domain.<P>
+
+   FlatField.binary and FlatField.unary hand simple cases to tryBinary
+   and tryUnary, which record the operation instead of computing it.
+   Chained arithmetic (as in a Jython formula like (a - b) * c + 1)
+   therefore builds a small expression tree rather than one full size
+   intermediate array per operator. The tree is evaluated the first
+   time the values are requested, in a single pass over the domain
+   split across the common fork/join pool, and is then discarded.<P>
+
+   Only single-component float fields with no range coordinate system,
+   no error estimates and units that need no conversion are fused;
+   everything else returns null from tryBinary/tryUnary and takes the
+   normal path. Each operator is evaluated in double and rounded to
+   float exactly as the normal float path does, so results are
+   identical. Operand values are copied when the operation is recorded,
+   so changing an operand's samples afterwards, even in place through
+   getFloats(false), does not change the result.<P>
+*/
+public class FusedFlatField extends CachedFlatField {
+
+  /** smallest domain worth deferring */
+  private static final int MIN_LENGTH = 1 << 16;
+
+  /** largest expression recorded before an operand is evaluated */
+  private static final int MAX_NODES = 64;
+
+  /** samples per evaluation block */
+  private static final int BLOCK = 4096;
+
+  private static volatile boolean enabled =
+    !Boolean.getBoolean("visad.fusedmath.disable");
+
+  /** pending expression, null once evaluated */
+  private transient Node expression;
+
+  /** values from the last evaluation, for racing readers */
+  private transient WeakReference<float[][]> evaluated;
+
+  private FusedFlatField(FunctionType type, Set domainSet, Set[] rangeSets,
+                         Unit[] units, Node expression)
+         throws VisADException {
+    super(type, domainSet, (CoordinateSystem) null, rangeSets, units, null);
+    this.expression = expression;
+  }
+
+  /**
+   * Enable or disable fusing of FlatField arithmetic.
+   *
+   * @param value  true to fuse eligible operations
+   */
+  public static void setEnabled(boolean value) {
+    enabled = value;
+  }
+
+  /**
+   * @return true if eligible FlatField arithmetic is fused
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Record 'left op right' if both fields can be fused.
+   *
+   * @param left  left operand
+   * @param right  right operand, already known to match the type of left
+   * @param op  operation (e.g. ADD, MULTIPLY)
+   * @param new_type  MathType of the result
+   * @param error_mode  error estimate mode
+   * @return the deferred result, or null to use the normal path
+   * @throws VisADException  couldn't create new VisAD object
+   */
+  static FlatField tryBinary(FlatField left, FlatField right, int op,
+                             MathType new_type, int error_mode)
+         throws VisADException {
+    if (!canFuse(left, error_mode) || !canFuse(right, error_mode) ||
+        right.getLength() != left.getLength() ||
+        !left.getDomainSet().equals(right.getDomainSet())) {
+      return null;
+    }
+    Unit[] out = binaryUnit(op, left.RangeUnits[0], right.RangeUnits[0]);
+    if (out == null) {
+      return null;
+    }
+    Node l = nodeFor(left);
+    Node r = nodeFor(right);
+    if (l.size + r.size >= MAX_NODES) {
+      l = new Leaf(left);
+      r = new Leaf(right);
+    }
+    return make(left, new_type, out, new Binary(op, l, r, 0));
+  }
+
+  /**
+   * Record 'field op real' if the field can be fused.
+   *
+   * @param left  field operand
+   * @param right  scalar operand
+   * @param op  operation (e.g. ADD, MULTIPLY)
+   * @param new_type  MathType of the result
+   * @param error_mode  error estimate mode
+   * @return the deferred result, or null to use the normal path
+   * @throws VisADException  couldn't create new VisAD object
+   */
+  static FlatField tryBinary(FlatField left, Real right, int op,
+                             MathType new_type, int error_mode)
+         throws VisADException {
+    if (!canFuse(left, error_mode) ||
+        (error_mode != Data.NO_ERRORS && right.getError() != null)) {
+      return null;
+    }
+    Unit unit = right.getUnit();
+    if (!isRational(unit)) {
+      return null;
+    }
+    Unit[] out = binaryUnit(op, left.RangeUnits[0], unit);
+    if (out == null) {
+      return null;
+    }
+    Node l = nodeFor(left);
+    if (l.size + 1 >= MAX_NODES) {
+      l = new Leaf(left);
+    }
+    return make(left, new_type, out,
+                new Binary(op, l, null, right.getValue()));
+  }
+
+  /**
+   * Record 'op field' if the field can be fused.
+   *
+   * @param field  operand
+   * @param op  operation (e.g. ABS, SQRT)
+   * @param new_type  MathType of the result
+   * @param error_mode  error estimate mode
+   * @return the deferred result, or null to use the normal path
+   * @throws VisADException  couldn't create new VisAD object
+   */
+  static FlatField tryUnary(FlatField field, int op, MathType new_type,
+                            int error_mode)
+         throws VisADException {
+    if (!canFuse(field, error_mode)) {
+      return null;
+    }
+    Unit in = field.RangeUnits[0];
+    Unit out;
+    switch (op) {
+      case Data.ABS:
+      case Data.CEIL:
+      case Data.FLOOR:
+      case Data.NEGATE:
+      case Data.RINT:
+        out = in;
+        break;
+      case Data.EXP:
+      case Data.LOG:
+        out = CommonUnit.dimensionless.equals(in) ? in : null;
+        break;
+      case Data.SQRT:
+        out = null;
+        if (in != null) {
+          try {
+            out = in.sqrt();
+          }
+          catch (IllegalArgumentException e) {
+          }
+          catch (UnitException e) {
+          }
+        }
+        break;
+      default:
+        return null;
+    }
+    Node n = nodeFor(field);
+    if (n.size + 1 >= MAX_NODES) {
+      n = new Leaf(field);
+    }
+    return make(field, new_type, new Unit[] {out}, new Unary(op, n));
+  }
+
+  /**
+   * Evaluate the pending expression.
+   *
+   * @return the range values
+   */
+  public synchronized float[][] readData() {
+    if (expression == null) {
+      return (evaluated == null) ? null : evaluated.get();
+    }
+    float[][] values = new float[][] {evaluate(expression, getLength())};
+    evaluated = new WeakReference<float[][]>(values);
+    expression = null;
+    return values;
+  }
+
+  private static boolean canFuse(FlatField field, int error_mode)
+          throws VisADException {
+    if (!enabled || field.TupleDimension != 1 ||
+        field.getLength() < MIN_LENGTH ||
+        field.RangeCoordinateSystem != null ||
+        field.RangeCoordinateSystems != null ||
+        field.isMissing() || field.shouldBeDouble() ||
+        !(((FunctionType) field.getType()).getRange() instanceof RealType)) {
+      return false;
+    }
+    if (error_mode != Data.NO_ERRORS) {
+      ErrorEstimate[] errors = field.getRangeErrors();
+      if (errors != null && errors[0] != null) {
+        return false;
+      }
+    }
+    return isRational(field.RangeUnits[0]);
+  }
+
+  /**
+   * True if makeRational and the binary unit handling would leave
+   * values in this unit unchanged.
+   */
+  private static boolean isRational(Unit unit) {
+    if (unit == null || unit == CommonUnit.promiscuous) {
+      return true;
+    }
+    if (!unit.getAbsoluteUnit().equals(unit)) {
+      return false;
+    }
+    return CommonUnit.dimensionless.equals(unit) ||
+           !Unit.canConvert(unit, CommonUnit.dimensionless);
+  }
+
+  /**
+   * Result unit of 'this op that' as FlatField.binary computes it, or
+   * null if the operands would need converting first.  The unit is
+   * returned as a one element array since it may itself be null.
+   */
+  private static Unit[] binaryUnit(int op, Unit thisUnit, Unit thatUnit) {
+    boolean both = thisUnit != null && thatUnit != null;
+    switch (op) {
+      case Data.ADD:
+      case Data.SUBTRACT:
+      case Data.INV_SUBTRACT:
+      case Data.MAX:
+      case Data.MIN:
+        if (!both) {
+          return new Unit[] {null};
+        }
+        if (thisUnit == CommonUnit.promiscuous) {
+          return new Unit[] {thatUnit.getAbsoluteUnit()};
+        }
+        if (thatUnit == CommonUnit.promiscuous) {
+          return new Unit[] {thisUnit.getAbsoluteUnit()};
+        }
+        return thisUnit.equals(thatUnit) ? new Unit[] {thisUnit} : null;
+      case Data.MULTIPLY:
+      case Data.DIVIDE:
+      case Data.INV_DIVIDE:
+        if (!both) {
+          return new Unit[] {null};
+        }
+        try {
+          switch (op) {
+            case Data.MULTIPLY:
+              return new Unit[] {thisUnit.equals(CommonUnit.promiscuous)
+                ? thatUnit
+                : thatUnit.equals(CommonUnit.promiscuous)
+                  ? thisUnit
+                  : thisUnit.multiply(thatUnit)};
+            case Data.DIVIDE:
+              return new Unit[] {thatUnit.equals(CommonUnit.promiscuous)
+                ? thisUnit
+                : thisUnit.divide(thatUnit)};
+            default:
+              return new Unit[] {thisUnit.equals(CommonUnit.promiscuous)
+                ? thatUnit
+                : thatUnit.divide(thisUnit)};
+          }
+        }
+        catch (UnitException e) {
+          return null;
+        }
+      case Data.POW:
+        return new Unit[] {(thisUnit != null &&
+                            (thisUnit.equals(CommonUnit.promiscuous) ||
+                             thisUnit.equals(CommonUnit.dimensionless)))
+                           ? thisUnit : null};
+      case Data.INV_POW:
+        return new Unit[] {(thatUnit != null &&
+                            (thatUnit.equals(CommonUnit.promiscuous) ||
+                             thatUnit.equals(CommonUnit.dimensionless)))
+                           ? thatUnit : null};
+      case Data.ATAN2:
+      case Data.INV_ATAN2:
+      case Data.ATAN2_DEGREES:
+      case Data.INV_ATAN2_DEGREES:
+      case Data.REMAINDER:
+      case Data.INV_REMAINDER:
+        if (both && !thisUnit.equals(thatUnit)) {
+          return null;
+        }
+        switch (op) {
+          case Data.ATAN2:
+          case Data.INV_ATAN2:
+            return new Unit[] {CommonUnit.radian};
+          case Data.ATAN2_DEGREES:
+          case Data.INV_ATAN2_DEGREES:
+            return new Unit[] {CommonUnit.degree};
+          case Data.REMAINDER:
+            return new Unit[] {thisUnit};
+          default:
+            return new Unit[] {thatUnit};
+        }
+      default:
+        return null;
+    }
+  }
+
+  private static Node nodeFor(FlatField field) throws VisADException {
+    if (field instanceof FusedFlatField) {
+      FusedFlatField fused = (FusedFlatField) field;
+      synchronized (fused) {
+        if (fused.expression != null && !fused.haveData()) {
+          return fused.expression;
+        }
+      }
+    }
+    return new Leaf(field);
+  }
+
+  private static FusedFlatField make(FlatField field, MathType new_type,
+                                     Unit[] units, Node expression)
+          throws VisADException {
+    FunctionType type = (FunctionType) new_type;
+    RealTupleType domain = type.getDomain();
+    Set set = field.getDomainSet();
+    if (!domain.equals(((FunctionType) field.getType()).getDomain())) {
+      set = (Set) set.cloneButType(domain);
+    }
+    Set[] sets = {new FloatSet(new SetType(type.getFlatRange().getComponent(0)))};
+    FusedFlatField result =
+      new FusedFlatField(type, set, sets, units, expression);
+    result.setMetadataMap(field.getMetadataMap());
+    return result;
+  }
+
+  private static float[] evaluate(final Node expression, final int length) {
+    final float[] values = new float[length];
+    int blocks = (length + BLOCK - 1) / BLOCK;
+    ParallelTasks.forEachRange(blocks, 1, (first, stop) -> {
+      float[] block = new float[BLOCK];
+      for (int b = first; b < stop; b++) {
+        int start = b * BLOCK;
+        int count = Math.min(BLOCK, length - start);
+        expression.eval(start, count, block);
+        System.arraycopy(block, 0, values, start, count);
+      }
+    });
+    return values;
+  }
+
+  /** a node of a pending expression */
+  private abstract static class Node {
+    /** number of nodes in this subtree */
+    final int size;
+
+    Node(int size) {
+      this.size = size;
+    }
+
+    /** write samples start .. start+count-1 to out[0 .. count-1] */
+    abstract void eval(int start, int count, float[] out);
+  }
+
+  /** a copy of the values of a FlatField */
+  private static final class Leaf extends Node {
+    private final float[] values;
+
+    Leaf(FlatField field) throws VisADException {
+      super(1);
+      // a copy, since the field's own array may be changed in place
+      values = field.unpackFloats(true)[0];
+    }
+
+    void eval(int start, int count, float[] out) {
+      System.arraycopy(values, start, out, 0, count);
+    }
+  }
+
+  /** left op right, or left op scalar when right is null */
+  private static final class Binary extends Node {
+    private final int op;
+    private final Node left;
+    private final Node right;
+    private final double scalar;
+
+    Binary(int op, Node left, Node right, double scalar) {
+      super(1 + left.size + ((right == null) ? 0 : right.size));
+      this.op = op;
+      this.left = left;
+      this.right = right;
+      this.scalar = scalar;
+    }
+
+    void eval(int start, int count, float[] out) {
+      left.eval(start, count, out);
+      if (right == null) {
+        for (int i = 0; i < count; i++) {
+          out[i] = (float) apply(op, out[i], scalar);
+        }
+      }
+      else {
+        float[] that = new float[count];
+        right.eval(start, count, that);
+        for (int i = 0; i < count; i++) {
+          out[i] = (float) apply(op, out[i], that[i]);
+        }
+      }
+    }
+
+    private static double apply(int op, double a, double b) {
+      switch (op) {
+        case Data.ADD:
+          return a + b;
+        case Data.SUBTRACT:
+          return a - b;
+        case Data.INV_SUBTRACT:
+          return b - a;
+        case Data.MAX:
+          return Math.max(a, b);
+        case Data.MIN:
+          return Math.min(a, b);
+        case Data.MULTIPLY:
+          return a * b;
+        case Data.DIVIDE:
+          return a / b;
+        case Data.INV_DIVIDE:
+          return b / a;
+        case Data.POW:
+          return Math.pow(a, b);
+        case Data.INV_POW:
+          return Math.pow(b, a);
+        case Data.ATAN2:
+          return Math.atan2(a, b);
+        case Data.ATAN2_DEGREES:
+          return Data.RADIANS_TO_DEGREES * Math.atan2(a, b);
+        case Data.INV_ATAN2:
+          return Math.atan2(b, a);
+        case Data.INV_ATAN2_DEGREES:
+          return Data.RADIANS_TO_DEGREES * Math.atan2(b, a);
+        case Data.REMAINDER:
+          return a % b;
+        case Data.INV_REMAINDER:
+          return b % a;
+        default:
+          throw new ArithmeticException("FusedFlatField: illegal operation");
+      }
+    }
+  }
+
+  /** op operand */
+  private static final class Unary extends Node {
+    private final int op;
+    private final Node operand;
+
+    Unary(int op, Node operand) {
+      super(1 + operand.size);
+      this.op = op;
+      this.operand = operand;
+    }
+
+    void eval(int start, int count, float[] out) {
+      operand.eval(start, count, out);
+      for (int i = 0; i < count; i++) {
+        out[i] = (float) apply(op, out[i]);
+      }
+    }
+
+    private static double apply(int op, double a) {
+      switch (op) {
+        case Data.ABS:
+          return Math.abs(a);
+        case Data.CEIL:
+          return Math.ceil(a);
+        case Data.EXP:
+          return Math.exp(a);
+        case Data.FLOOR:
+          return Math.floor(a);
+        case Data.LOG:
+          return Math.log(a);
+        case Data.NEGATE:
+          return -a;
+        case Data.RINT:
+          return Math.rint(a);
+        case Data.SQRT:
+          return Math.sqrt(a);
+        default:
+          throw new ArithmeticException("FusedFlatField: illegal operation");
+      }
+    }
+  }
+}
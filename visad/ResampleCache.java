@@ -0,0 +1,346 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+//
+// ResampleCache.java
+//
+
+package visad;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+   ResampleCache keeps the sample indices and interpolation weights that
+   FlatField.resample computes for a (domain Set, target Set, sampling
+   mode) triple.<P>
+
+   The fields of a time sequence usually share one domain Set instance,
+   and are usually resampled to one target Set, so every time step after
+   the first can skip the coordinate transform and the valueToInterp or
+   valueToIndex search and go straight to a gather (weighted sum) over
+   the range values.<P>
+
+   Sets and the domain CoordinateSystem are matched by identity and held
+   weakly, so the cache never keeps a Set alive. Total plan size is
+   bounded by the visad.resample.cache.mb system property (0 disables
+   the cache), with least recently used plans dropped first. Any plan
+   that fits under the bound is cached. The default bound is an eighth
+   of the maximum heap, at most 512 MB: a bilinear plan takes about 40
+   bytes per target point (more with a coordinate transform), so a
+   typical 2 million point model or satellite target grid needs around
+   100 MB. Only NO_ERRORS resampling is cached.<P>
+*/
+public final class ResampleCache {
+
+  private static long maxBytes =
+    Long.getLong("visad.resample.cache.mb",
+                 Math.min(512L, (Runtime.getRuntime().maxMemory() >> 20) / 8))
+    << 20;
+
+  private static final ReferenceQueue<Object> cleared =
+    new ReferenceQueue<Object>();
+
+  private static final LinkedHashMap<Key, Plan> plans =
+    new LinkedHashMap<Key, Plan>(16, 0.75f, true);
+
+  private static long bytes;
+
+  private static long hits;
+
+  private static long misses;
+
+  private ResampleCache() {
+  }
+
+  /**
+   * @return number of resamples that reused a cached plan
+   */
+  public static synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of cacheable resamples that had to build a plan
+   */
+  public static synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return approximate bytes held by cached plans
+   */
+  public static synchronized long getMemoryUsed() {
+    return bytes;
+  }
+
+  /**
+   * @return number of cached plans
+   */
+  public static synchronized int getSize() {
+    expunge();
+    return plans.size();
+  }
+
+  /**
+   * @return the memory bound, in bytes
+   */
+  public static synchronized long getMaxMemory() {
+    return maxBytes;
+  }
+
+  /**
+   * Change the memory bound; 0 disables caching.
+   *
+   * @param max  bound in bytes
+   */
+  public static synchronized void setMaxMemory(long max) {
+    maxBytes = Math.max(0L, max);
+    trim();
+  }
+
+  /**
+   * Drop all cached plans and reset the counters.
+   */
+  public static synchronized void clear() {
+    plans.clear();
+    bytes = 0L;
+    hits = 0L;
+    misses = 0L;
+    while (cleared.poll() != null) {
+    }
+  }
+
+  /**
+   * @return a one line summary of the cache, for logs
+   */
+  public static synchronized String getStatistics() {
+    expunge();
+    return "ResampleCache: " + plans.size() + " plans, " + (bytes >> 10) +
+           " KB, " + hits + " hits, " + misses + " misses";
+  }
+
+  /**
+   * Find the plan for resampling from domain to target.
+   *
+   * @return the cached plan, or null
+   */
+  static synchronized Plan get(Set domain, Set target, int mode,
+                               RealTupleType domainType,
+                               CoordinateSystem domainCS,
+                               Unit[] domainUnits) {
+    if (maxBytes <= 0L) {
+      return null;
+    }
+    expunge();
+    Plan plan = plans.get(new Key(domain, target, mode, domainCS, null));
+    if (plan != null && plan.domainType.equals(domainType) &&
+        Arrays.equals(plan.domainUnits, domainUnits)) {
+      hits++;
+      return plan;
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * Remember a plan built by FlatField.resample.
+   */
+  static synchronized void put(Set domain, Set target, int mode,
+                               CoordinateSystem domainCS, Plan plan) {
+    if (plan.bytes > maxBytes) {
+      return;
+    }
+    Plan old = plans.put(new Key(domain, target, mode, domainCS, cleared),
+                         plan);
+    if (old != null) {
+      bytes -= old.bytes;
+    }
+    bytes += plan.bytes;
+    trim();
+  }
+
+  private static void trim() {
+    Iterator<Plan> it = plans.values().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      bytes -= it.next().bytes;
+      it.remove();
+    }
+  }
+
+  /** drop plans whose Sets have been collected */
+  private static void expunge() {
+    Object ref;
+    while ((ref = cleared.poll()) != null) {
+      Plan plan = plans.remove(((KeyRef) ref).key);
+      if (plan != null) {
+        bytes -= plan.bytes;
+      }
+    }
+  }
+
+  /**
+     The reusable part of one resample: target sample order, transformed
+     coordinates (kept only when a coordinate transform happened, since
+     only vector ranges need them afterwards), and either nearest
+     indices or interpolation indices and weights in compressed rows.
+  */
+  static final class Plan {
+    final RealTupleType domainType;
+    final Unit[] domainUnits;
+    final int[] wedge;
+    final boolean coordTransform;
+    final float[][] oldvals;
+    final float[][] vals;
+    final ErrorEstimate[] errorsOut;
+    /** nearest neighbor index per target sample, -1 outside */
+    final int[] nearest;
+    /** interpolation terms of target sample i are start[i] .. start[i+1]-1 */
+    final int[] start;
+    final int[] index;
+    final float[] weight;
+    final long bytes;
+
+    private Plan(RealTupleType domainType, Unit[] domainUnits, int[] wedge,
+                 boolean coordTransform, float[][] oldvals, float[][] vals,
+                 ErrorEstimate[] errorsOut, int[] nearest,
+                 int[] start, int[] index, float[] weight) {
+      this.domainType = domainType;
+      this.domainUnits = domainUnits;
+      this.wedge = wedge;
+      this.coordTransform = coordTransform;
+      this.oldvals = coordTransform ? oldvals : null;
+      this.vals = coordTransform ? vals : null;
+      this.errorsOut = errorsOut;
+      this.nearest = nearest;
+      this.start = start;
+      this.index = index;
+      this.weight = weight;
+      long b = 4L * wedge.length;
+      if (coordTransform) {
+        for (int i=0; i<vals.length; i++) {
+          b += 4L * (oldvals[i].length + vals[i].length);
+        }
+      }
+      if (nearest != null) {
+        b += 4L * nearest.length;
+      }
+      else {
+        b += 4L * start.length + 8L * index.length;
+      }
+      bytes = b;
+    }
+
+    /** plan for NEAREST_NEIGHBOR resampling */
+    static Plan nearest(RealTupleType domainType, Unit[] domainUnits,
+                        int[] wedge, boolean coordTransform,
+                        float[][] oldvals, float[][] vals,
+                        ErrorEstimate[] errorsOut, int[] indices) {
+      return new Plan(domainType, domainUnits, wedge, coordTransform,
+                      oldvals, vals, errorsOut, indices, null, null, null);
+    }
+
+    /** plan for WEIGHTED_AVERAGE resampling, from valueToInterp output */
+    static Plan interpolate(RealTupleType domainType, Unit[] domainUnits,
+                            int[] wedge, boolean coordTransform,
+                            float[][] oldvals, float[][] vals,
+                            ErrorEstimate[] errorsOut,
+                            int[][] indices, float[][] coefs) {
+      int length = indices.length;
+      int[] start = new int[length + 1];
+      int total = 0;
+      for (int i=0; i<length; i++) {
+        start[i] = total;
+        total += (indices[i] == null) ? 0 : indices[i].length;
+      }
+      start[length] = total;
+      int[] index = new int[total];
+      float[] weight = new float[total];
+      for (int i=0; i<length; i++) {
+        if (indices[i] != null) {
+          System.arraycopy(indices[i], 0, index, start[i], indices[i].length);
+          System.arraycopy(coefs[i], 0, weight, start[i], indices[i].length);
+        }
+      }
+      return new Plan(domainType, domainUnits, wedge, coordTransform,
+                      oldvals, vals, errorsOut, null, start, index, weight);
+    }
+  }
+
+  private static final class KeyRef extends WeakReference<Object> {
+    final Key key;
+
+    KeyRef(Object referent, Key key, ReferenceQueue<Object> queue) {
+      super(referent, queue);
+      this.key = key;
+    }
+  }
+
+  /** identity key over weakly held Sets and domain CoordinateSystem */
+  private static final class Key {
+    private final WeakReference<Object> domain;
+    private final WeakReference<Object> target;
+    private final WeakReference<Object> cs;
+    private final boolean hasCS;
+    private final int mode;
+    private final int hash;
+
+    Key(Set domain, Set target, int mode, CoordinateSystem domainCS,
+        ReferenceQueue<Object> queue) {
+      this.domain = new KeyRef(domain, this, queue);
+      this.target = new KeyRef(target, this, queue);
+      this.hasCS = domainCS != null;
+      this.cs = hasCS ? new KeyRef(domainCS, this, queue) : null;
+      this.mode = mode;
+      this.hash = 31 * (31 * System.identityHashCode(domain) +
+                        System.identityHashCode(target)) + mode;
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) obj;
+      Object d = domain.get();
+      Object t = target.get();
+      return d != null && t != null && mode == that.mode &&
+             hasCS == that.hasCS &&
+             d == that.domain.get() && t == that.target.get() &&
+             (!hasCS || (cs.get() != null && cs.get() == that.cs.get()));
+    }
+  }
+}
@@ -37,17 +37,51 @@ import org.slf4j.LoggerFactory;
 
 import visad.*;
 import visad.util.DataUtility;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.rmi.RemoteException;
 
 
 /**
  * This is a FloatField that caches to disk its float array.
+ *
+ * <p>In off-heap mode (see {@link #setOffHeapMode(String)}) the values are
+ * instead kept in a memory-mapped temporary file or in direct buffers, and
+ * are read through {@link #getFloatBuffers()}, {@link #getSample(int)} and
+ * {@link #unpackFloats(int)} without touching the heap.
+ * {@code unpackFloats(true)}, {@code getFloats(false)}, {@code resample}
+ * and the other read-only paths each get a transient heap copy and leave
+ * the values off heap.
+ * Only {@code unpackFloats(false)}, whose callers may change that array in
+ * place and expect the change to stick, moves the values back onto the heap
+ * under the DataCacheManager for good.</p>
  */
 public class CachedFlatField extends FlatField {
 
     private static final Logger logger =
         LoggerFactory.getLogger(CachedFlatField.class);
 
+    /** Values stay on the heap and are managed by the DataCacheManager */
+    public static final String OFF_HEAP_NONE = "none";
+
+    /** Values live in memory-mapped temporary files in the cache dir */
+    public static final String OFF_HEAP_MAPPED = "mapped";
+
+    /** Values live in direct buffers */
+    public static final String OFF_HEAP_DIRECT = "direct";
+
+    /** Where new values go; one of the OFF_HEAP constants */
+    private static volatile String offHeapMode =
+        parseOffHeapMode(System.getProperty("visad.data.offheap",
+                                            OFF_HEAP_NONE));
+
+    /**
+     * The values when kept off heap; may be shared with clones. Read without
+     * a lock by the accessors, so volatile.
+     */
+    private transient volatile OffHeapFloatStore offHeap;
+
     /** the id for this instance */
     private Object cacheId;
 
@@ -179,7 +213,11 @@ public class CachedFlatField extends FlatField {
         this.inCache = false;
 
         //Get the values from the cloned field if they had read their values
-        if(that.haveData()) {
+        if (that.offHeap != null) {
+            // stores never change, so share rather than copy
+            this.offHeap = that.offHeap;
+            clearMissing();
+        } else if(that.haveData()) {
             //            msg("CCF - cloned object is in cache");
             // We used to ignore the copy flag - if this causes problems, 
             // change back to true 
@@ -291,6 +329,9 @@ public class CachedFlatField extends FlatField {
             //      msg("CCF.clone");
             CachedFlatField ccf = (CachedFlatField) super.clone();
             ccf.cacheId = null;
+            if (ccf.offHeap != null) {
+                return ccf;
+            }
             float[][]newValues = ccf.unpackFloats(false);
             ccf.nullRanges();
             ccf.initCache(newValues);
@@ -311,13 +352,14 @@ public class CachedFlatField extends FlatField {
      * @throws VisADException initializing field
      */
     protected void initCache(float[][] data) throws VisADException {
-        if(data!=null) {
+        if(data!=null && storeOffHeap(data)) {
             if(cacheId!=null) {
-                DataCacheManager.getCacheManager().updateData(cacheId, data);
-            } else {
-                cacheId = DataCacheManager.getCacheManager().addToCache(getClass().getSimpleName(), data);
+                DataCacheManager.getCacheManager().removeFromCache(cacheId);
+                cacheId = null;
             }
-            inCache = true;
+            inCache = false;
+        } else if(data!=null) {
+            cacheOnHeap(data);
         }
         //Read the ranges when we first have data
         if (ranges == null) {
@@ -327,6 +369,140 @@ public class CachedFlatField extends FlatField {
     }
 
 
+    /**
+     * Hand the values to the DataCacheManager
+     *
+     * @param data the values
+     */
+    private void cacheOnHeap(float[][] data) {
+        if(cacheId!=null) {
+            DataCacheManager.getCacheManager().updateData(cacheId, data);
+        } else {
+            cacheId = DataCacheManager.getCacheManager().addToCache(getClass().getSimpleName(), data);
+        }
+        inCache = true;
+    }
+
+    /**
+     * Move off-heap values back onto the heap, under the DataCacheManager,
+     * for callers that may change them in place.
+     *
+     * @param store the store the caller saw
+     */
+    private synchronized void moveToHeap(OffHeapFloatStore store) {
+        if (offHeap != store) {
+            // another caller already moved them, or new values were set
+            return;
+        }
+        cacheOnHeap(store.toArrays());
+        // readers check offHeap first, so clear it only once the heap
+        // values are in place
+        offHeap = null;
+    }
+
+    /**
+     * Copy the values into a new off-heap store if off-heap mode is on.
+     * Falls back to the heap if the store cannot be made.
+     *
+     * @param data the values
+     *
+     * @return true if the values are now off heap
+     */
+    private boolean storeOffHeap(float[][] data) {
+        String mode = offHeapMode;
+        if (OFF_HEAP_NONE.equals(mode)) {
+            offHeap = null;
+            return false;
+        }
+        try {
+            offHeap = OffHeapFloatStore.create(data,
+                OFF_HEAP_MAPPED.equals(mode),
+                DataCacheManager.getCacheManager().getCacheDir());
+            return true;
+        } catch (IOException | OutOfMemoryError e) {
+            logger.warn("Could not store values off heap, keeping them on the heap", e);
+            offHeap = null;
+            return false;
+        }
+    }
+
+    /**
+     * Choose where newly read or set values are kept. Fields that already
+     * have values keep them where they are.
+     *
+     * @param mode {@link #OFF_HEAP_NONE}, {@link #OFF_HEAP_MAPPED} or
+     *             {@link #OFF_HEAP_DIRECT}
+     */
+    public static void setOffHeapMode(String mode) {
+        offHeapMode = parseOffHeapMode(mode);
+    }
+
+    /**
+     * @return the current off-heap mode
+     */
+    public static String getOffHeapMode() {
+        return offHeapMode;
+    }
+
+    /**
+     * @return bytes of range values currently held off heap by all fields
+     */
+    public static long getOffHeapBytes() {
+        return OffHeapFloatStore.getTotalBytes();
+    }
+
+    private static String parseOffHeapMode(String mode) {
+        if (mode != null) {
+            String m = mode.trim().toLowerCase();
+            if (OFF_HEAP_MAPPED.equals(m) || OFF_HEAP_DIRECT.equals(m)) {
+                return m;
+            }
+            if ("true".equals(m)) {
+                return OFF_HEAP_MAPPED;
+            }
+            if (!m.isEmpty() && !OFF_HEAP_NONE.equals(m) && !"false".equals(m)) {
+                logger.warn("Unknown off-heap mode '{}', keeping values on the heap", mode);
+            }
+        }
+        return OFF_HEAP_NONE;
+    }
+
+    /**
+     * @return true if this field's values are kept off heap
+     */
+    public boolean isOffHeap() {
+        return offHeap != null;
+    }
+
+    /**
+     * Read-only views of the values, one per range component. Off heap
+     * these are views of the store; otherwise they wrap the heap arrays.
+     *
+     * @return the views, or null if there are no values
+     *
+     * @throws VisADException problem reading the values
+     */
+    public FloatBuffer[] getFloatBuffers() throws VisADException {
+        OffHeapFloatStore store = offHeap;
+        if (store != null) {
+            return store.getBuffers();
+        }
+        float[][] values = getMyValues();
+        store = offHeap;
+        if (store != null) {
+            // reading the data just moved it off heap
+            return store.getBuffers();
+        }
+        if (values == null) {
+            return null;
+        }
+        FloatBuffer[] buffers = new FloatBuffer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            buffers[i] = FloatBuffer.wrap(values[i]).asReadOnlyBuffer();
+        }
+        return buffers;
+    }
+
     /**
      * Set the sample ranges
      *
@@ -379,7 +555,17 @@ public class CachedFlatField extends FlatField {
             return sampleRanges;
         }
         //        msg("making ranges");
-        return getRanges(unpackFloats(false));
+        OffHeapFloatStore store = offHeap;
+        if (store != null) {
+            float[][] minMax = store.getMinMax();
+            DataRange[] offHeapRanges = new DataRange[minMax.length];
+            for (int i = 0; i < minMax.length; i++) {
+                offHeapRanges[i] = new DataRange(minMax[i][0], minMax[i][1]);
+            }
+            ranges = offHeapRanges;
+            return ranges;
+        }
+        return getRanges(unpackFloatsForRead());
     }
 
 
@@ -453,6 +639,10 @@ public class CachedFlatField extends FlatField {
      */
     private float[][] getMyValues() throws VisADException {
         //        msg("CCF - getMyValues " + inCache);
+        OffHeapFloatStore store = offHeap;
+        if (store != null) {
+            return store.toArrays();
+        }
         if(inCache) {
             if(cacheId == null) {
                 //                msg("CCF - WHoa, inCache=true but no cacheId");
@@ -487,7 +677,7 @@ public class CachedFlatField extends FlatField {
 
 
     public boolean haveData() {
-        return inCache;
+        return inCache || offHeap != null;
     }
 
 
@@ -513,9 +703,13 @@ public class CachedFlatField extends FlatField {
      */
     public Data getSample(int index) throws VisADException, RemoteException {
         //        msg("getSample");
-        float[][] values = getMyValues();
+        OffHeapFloatStore store = offHeap;
+        float[][] values = (store == null) ? getMyValues() : null;
+        if (store == null) {
+            store = offHeap;
+        }
 
-        if (values == null) {
+        if (values == null && store == null) {
             //            msg("Floats still null");
             return null;
         }
@@ -528,7 +722,9 @@ public class CachedFlatField extends FlatField {
         }
         double[][] range = new double[TupleDimension][1];
         for (int i = 0; i < TupleDimension; i++) {
-            range[i][0] = (double) values[i][index];
+            range[i][0] = (double) ((store != null)
+                                    ? store.get(i, index)
+                                    : values[i][index]);
         }
 
         MathType RangeType = ((FunctionType) Type).getRange();
@@ -583,7 +779,7 @@ public class CachedFlatField extends FlatField {
      * @throws VisADException On badness
      */
     protected double[][] unpackValues(boolean copy) throws VisADException {
-        float[][] values = unpackFloats(false);
+        float[][] values = unpackFloatsForRead();
         if (values == null) {
             msg ("unpackValues: ccf: values are null ");
             return null;
@@ -612,6 +808,14 @@ public class CachedFlatField extends FlatField {
      */
     public float[][] unpackFloats(boolean copy) throws VisADException {
         //        msg("unpackFloats copy=" + copy);
+        OffHeapFloatStore store = offHeap;
+        if (store != null) {
+            if (copy) {
+                // the store itself is read-only
+                return store.toArrays();
+            }
+            moveToHeap(store);
+        }
         float[][] values = getMyValues();
         if (values == null) {
             //            msg("unpackFloats gives null");
@@ -631,6 +835,23 @@ public class CachedFlatField extends FlatField {
     }
 
 
+    /**
+     * Get the float values for a caller that only reads them. Off-heap
+     * values are copied rather than moved back onto the heap.
+     *
+     * @return The values
+     *
+     * @throws VisADException On badness
+     */
+    protected float[][] unpackFloatsForRead() throws VisADException {
+        OffHeapFloatStore store = offHeap;
+        if (store != null) {
+            return store.toArrays();
+        }
+        return unpackFloats(false);
+    }
+
+
     /**
      * Unpack floats
      *
@@ -641,6 +862,14 @@ public class CachedFlatField extends FlatField {
      * @throws VisADException  Problem in VisAD land
      */
     protected float[] unpackFloats(int s_index) throws VisADException {
+        OffHeapFloatStore store = offHeap;
+        if (store != null) {
+            float[] range = new float[store.getTupleDimension()];
+            for (int i = 0; i < TupleDimension; i++) {
+                range[i] = store.get(i, s_index);
+            }
+            return range;
+        }
         float[][] values = getMyValues();
         if (values == null) {
             return null;
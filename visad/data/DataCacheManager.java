@@ -28,20 +28,29 @@
 
 package visad.data;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,15 +83,33 @@ import org.slf4j.LoggerFactory;
  * </pre>
  *
  * The cachemanager will keep the data arrays in memory until the total size
- * is greater than getMaxSize(). Then it will serialize the data arrays in a
+ * is greater than getMaxSize(). Then it will write the data arrays to disk in a
  * least recently used manner until the totalSize less than the max size.
+ *
+ * <p>The cache is safe for concurrent use. Entries are held in a
+ * {@link ConcurrentHashMap} and each {@code CacheInfo} is its own lock, so
+ * reading one spilled entry back from disk does not block access to any
+ * other entry. Eviction runs on whichever thread first notices the cache is
+ * over its limit; other threads do not wait for it.</p>
+ *
+ * <p>Eviction uses a clock (second chance) policy: in-memory entries sit in
+ * a ring, an access only sets the entry's referenced bit, and the evictor
+ * skips (and clears) referenced entries once before flushing them. Both
+ * access and eviction are O(1) per entry; nothing is sorted. Flushed
+ * entries are handed to a background writer, so the evicting thread only
+ * drops its reference. An entry that is asked for again before the writer
+ * gets to it is simply taken back.</p>
+ *
+ * <p>Spill files hold the raw primitive values (in native byte order)
+ * preceded by the array lengths, and are read back through a memory-mapped
+ * {@link FileChannel} rather than Java serialization.</p>
  */
 public class DataCacheManager  implements Runnable {
   
   private static final Logger logger =
       LoggerFactory.getLogger(DataCacheManager.class);
   
-  private double memoryPercentage = 0.25;
+  private volatile double memoryPercentage = 0.25;
 
   /** the singleton */
   private static DataCacheManager cacheManager;
@@ -91,20 +118,33 @@ public class DataCacheManager  implements Runnable {
   private File cacheDir;
 
   /** for unique ids */
-  private int idCnt = 0;
+  private final AtomicInteger idCnt = new AtomicInteger();
 
   /** for unique ids */
   private long baseTime;
 
   /** The cache */
-  private Hashtable<Object, CacheInfo> cache = new Hashtable<Object,
-                                                 CacheInfo>();
+  private final ConcurrentHashMap<Object, CacheInfo> cache =
+      new ConcurrentHashMap<Object, CacheInfo>();
 
-  /** a mutex */
-  private final Object MUTEX = new Object();
+  /** Only one thread at a time evicts; the others just carry on. */
+  private final ReentrantLock evictionLock = new ReentrantLock();
 
   /** Total number of bytes in memory */
-  private int totalSize = 0;
+  private final AtomicLong totalSize = new AtomicLong();
+
+  /** in-memory entries that are removed rather than written when evicted */
+  private final Clock volatileClock = new Clock();
+
+  /** in-memory entries that are written to disk when evicted */
+  private final Clock clock = new Clock();
+
+  /** writes evicted entries to their spill files */
+  private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+    Thread t = new Thread(r, "DataCacheManager writer");
+    t.setDaemon(true);
+    return t;
+  });
 
   private boolean running = false;
 
@@ -115,7 +155,8 @@ public class DataCacheManager  implements Runnable {
     baseTime = System.currentTimeMillis();
     try {
       //Start  the cache monitor in a thread
-      Thread t = new Thread(this);
+      Thread t = new Thread(this, "DataCacheManager");
+      t.setDaemon(true);
       t.start();
     } catch(Exception exc) {
       throw new RuntimeException(exc);
@@ -127,7 +168,7 @@ public class DataCacheManager  implements Runnable {
    *
    * @return the cache manager
    */
-  public static DataCacheManager getCacheManager() {
+  public static synchronized DataCacheManager getCacheManager() {
     if (cacheManager == null) {
       cacheManager = new DataCacheManager();
     }
@@ -139,7 +180,7 @@ public class DataCacheManager  implements Runnable {
     running= true;
     try {
       while (true) {
-        Thread.currentThread().sleep(5000);
+        Thread.sleep(5000);
         checkCache();
       }
     } catch(Exception exc) {
@@ -175,7 +216,7 @@ public class DataCacheManager  implements Runnable {
    * @return unique id
    */
   public Object getId() {
-    return "data_" + baseTime + "_" + (idCnt++);
+    return "data_" + baseTime + "_" + idCnt.getAndIncrement();
   }
 
   /**
@@ -187,16 +228,15 @@ public class DataCacheManager  implements Runnable {
    * @return the unique id
    */
   private Object addToCache(String what, Object data, int type, boolean removeIfNeeded) {
-    synchronized (MUTEX) {
-      CacheInfo info = new CacheInfo(this, getId(), data, type, removeIfNeeded);
-      if (what != null) {
-        info.what = what;
-      }
-      cache.put(info.getId(), info);
-      totalSize += info.getSize();
-      checkCache();
-      return info.getId();
+    CacheInfo info = new CacheInfo(this, getId(), data, type, removeIfNeeded);
+    if (what != null) {
+      info.what = what;
     }
+    cache.put(info.getId(), info);
+    totalSize.addAndGet(info.getSize());
+    makeResident(info);
+    checkCache();
+    return info.getId();
   }
 
   /**
@@ -206,76 +246,81 @@ public class DataCacheManager  implements Runnable {
    * @param data  the new data
    */
   public void updateData(Object cacheId, Object data) {
-    synchronized (MUTEX) {
-      //      if(cacheId == null)
-      //          return addToCache(data, findType(data));
-      CacheInfo info = cache.get(cacheId);
-//      if(info==null) {
-//        return addToCache(data);
-//      }
-
+    CacheInfo info = cache.get(cacheId);
+    synchronized (info) {
       int oldSize = info.data != null
                   ? info.getSize()
                   : 0;
+      info.pending = null;
       info.setData(data);
       int newSize = info.getSize();
-      totalSize -= oldSize;
-      totalSize += newSize;
-      checkCache();
+      totalSize.addAndGet(newSize - oldSize);
     }
+    makeResident(info);
+    checkCache();
   }
 
   public boolean inMemory(Object cacheId) {
-    synchronized (MUTEX) {
-      CacheInfo info =  cache.get(cacheId);
-      if (info == null) {
-        return false;
-      }
-      info.dataAccessed();
-      return (info.data!=null);
+    CacheInfo info =  cache.get(cacheId);
+    if (info == null) {
+      return false;
     }
+    info.dataAccessed();
+    return (info.data!=null);
   }
 
   /**
-   *
+   * Get the data for the given id. If it has been flushed it is taken back
+   * from the writer queue if still there, otherwise read from its spill
+   * file. Only the entry itself is locked while the file is read.
    *
    * @param cacheId  the cache id
    *
-   * @return
+   * @return the data array or {@code null} if {@code cacheId} is unknown
    */
   private Object getData(Object cacheId) {
-    CacheInfo info = null;
-    Object data = null;
-    synchronized (MUTEX) {
-      info = cache.get(cacheId);
-      if (info == null) {
-        return null;
-      }
+    CacheInfo info = cache.get(cacheId);
+    if (info == null) {
+      return null;
+    }
+    info.dataAccessed();
+    Object data = info.data;
+    if (data != null) {
+      info.cacheHit();
+      return data;
+    }
+    synchronized (info) {
       data = info.data;
-      info.dataAccessed();
       if (data != null) {
+        info.cacheHit();
+        return data;
+      }
+      if (info.pending != null) {
+        // not written yet; just take it back
+        data = info.pending;
+        info.pending = null;
+        info.setDataFromCache(data);
+        totalSize.addAndGet(info.getSize());
+        info.cacheHit();
+        makeResident(info);
         return data;
       }
       try {
         long t1 = System.currentTimeMillis();
-        FileInputStream fis = new FileInputStream(info.cacheFile);
-        BufferedInputStream bis = new BufferedInputStream(fis,100000);
-        ObjectInputStream ois = new ObjectInputStream(bis);
-        info.setDataFromCache(data = ois.readObject());
-        long t2 = System.currentTimeMillis();
-        System.err.println("Read " + info.getSize() +" bytes from file in " + (t2-t1) +" ms");
-        totalSize += info.getSize();
-        ois.close();
-        bis.close();
-        fis.close();
-        checkCache();
+        data = readSpillFile(info.cacheFile);
+        info.setDataFromCache(data);
+        totalSize.addAndGet(info.getSize());
         info.cacheMissed();
-        return data;
+        makeResident(info);
+        long t2 = System.currentTimeMillis();
+        logger.trace("Read {} bytes from file in {} ms", info.getSize(), (t2-t1));
       }
-      catch (Exception exc) {
+      catch (IOException exc) {
         throw new RuntimeException(exc);
       }
     }
+    checkCache();
+    return data;
   }
 
   public  File getCacheFile() {
@@ -288,9 +333,10 @@ public class DataCacheManager  implements Runnable {
    * @param cacheId  the cache id
    */
   public void removeFromCache(Object cacheId) {
-    synchronized (MUTEX) {
-      removeFromCache(cache.get(cacheId));
+    if (cacheId == null) {
+      return;
     }
+    removeFromCache(cache.get(cacheId));
   }
 
 
@@ -298,23 +344,30 @@ public class DataCacheManager  implements Runnable {
     if (info == null) {
       return;
     }
-    synchronized (MUTEX) {
+    cache.remove(info.id, info);
+    synchronized (info) {
       if (info.data != null) {
         info.data = null;
-        totalSize -= info.getSize();
+        totalSize.addAndGet(-info.getSize());
       }
-      cache.remove(info.id);
+      info.pending = null;
       info.remove();
     }
   }
 
   public void flushAllCachedData() {
-    synchronized (MUTEX) {
-      for (CacheInfo info : getCacheInfos()) {
-        flushCachedData(info);
-      }
-      Runtime.getRuntime().gc();
+    for (CacheInfo info : getCacheInfos()) {
+      flushCachedData(info);
+    }
+    // wait for the writer so the flushed arrays can actually be collected
+    try {
+      writer.submit(() -> {}).get();
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException exc) {
+      logger.error("Error flushing DataCacheManager", exc);
     }
+    Runtime.getRuntime().gc();
   }
 
   /**
@@ -324,43 +377,91 @@ public class DataCacheManager  implements Runnable {
    * {@link Runtime#gc()}.</p>
    */
   public void clearCache() {
-    synchronized (MUTEX) {
-      for (CacheInfo info : getCacheInfos()) {
-        removeFromCache(info);
-      }
+    for (CacheInfo info : new ArrayList<CacheInfo>(cache.values())) {
+      removeFromCache(info);
     }
   }
 
   /**
-   * If this cacheinfo has never been written to disk then write it
-   * null out the data reference
+   * Null out the data reference. If this cacheinfo has never been written
+   * to disk then queue it for the writer.
    *
    * @param info  the cacheinfo
    */
   private void flushCachedData(CacheInfo info) {
-    try {
-      if (info.removeIfNeeded) {
-        removeFromCache(info);
+    if (info.removeIfNeeded) {
+      removeFromCache(info);
+      return;
+    }
+    synchronized (info) {
+      if (info.data == null || !cache.containsKey(info.id)) {
         return;
       }
+      if (!info.cacheFileGood) {
+        info.pending = info.data;
+        writer.execute(() -> writeBehind(info));
+      }
+      info.data = null;
+      totalSize.addAndGet(-info.getSize());
+    }
+  }
 
-      if (info.data == null) {
+  /**
+   * Write the pending data of the given entry to its spill file. Runs on
+   * the writer thread; the entry is only locked to publish the result.
+   *
+   * @param info  the cacheinfo
+   */
+  private void writeBehind(CacheInfo info) {
+    Object pending;
+    int version;
+    synchronized (info) {
+      pending = info.pending;
+      version = info.version;
+    }
+    if (pending == null) {
+      return;
+    }
+    IOException error = null;
+    try {
+      writeSpillFile(info.cacheFile, pending);
+    } catch (IOException exc) {
+      error = exc;
+    }
+    synchronized (info) {
+      if (!cache.containsKey(info.id)) {
+        info.remove();
         return;
       }
-
-      if (!info.cacheFileGood) {
-        FileOutputStream fos = new FileOutputStream(info.cacheFile);
-        BufferedOutputStream bos = new BufferedOutputStream(fos,100000);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
-        oos.writeObject(info.data);
-        oos.close();
-        bos.close();
-        fos.close();
+      if (info.version != version) {
+        // updated while we were writing
+        return;
+      }
+      if (error == null) {
+        info.cacheFileGood = true;
+        info.cacheSpilled();
+        if (info.pending == pending) {
+          info.pending = null;
+        }
+      } else if (info.pending == pending) {
+        // keep the data rather than lose it
+        logger.error("Error writing cache file:" + info.cacheFile, error);
+        info.pending = null;
+        info.setDataFromCache(pending);
+        totalSize.addAndGet(info.getSize());
+        makeResident(info);
       }
-      info.data = null;
-      totalSize -= info.getSize();
-    } catch (Exception exc) {
-      throw new RuntimeException(exc);
+    }
+  }
+
+  /**
+   * Put the entry into its clock ring if it is not already there.
+   *
+   * @param info  the cacheinfo
+   */
+  private void makeResident(CacheInfo info) {
+    if (info.inClock.compareAndSet(false, true)) {
+      (info.removeIfNeeded ? volatileClock : clock).offer(info);
     }
   }
 
@@ -370,15 +471,15 @@ public class DataCacheManager  implements Runnable {
    * @return  Sorted list of cacheinfos
    */
   public List<CacheInfo> getCacheInfos() {
-    synchronized (MUTEX) {
-      List<CacheInfo> infos = new ArrayList<CacheInfo>(cache.size());
-      for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-        CacheInfo info = cache.get(keys.nextElement());
-        infos.add(info);
-      }
-      Collections.sort(infos);
-      return infos;
+    List<CacheInfo> infos = new ArrayList<CacheInfo>(cache.values());
+    // entries can be touched while we sort, so sort on a snapshot of the
+    // access times rather than on the live values
+    final Map<CacheInfo, Long> times = new IdentityHashMap<CacheInfo, Long>(infos.size());
+    for (CacheInfo info : infos) {
+      times.put(info, info.lastTime);
     }
+    infos.sort((a, b) -> Long.compare(times.get(a), times.get(b)));
+    return infos;
   }
 
   public  void setMemoryPercent(double percentage) {
@@ -387,37 +488,58 @@ public class DataCacheManager  implements Runnable {
   }
 
   public int getMaxSize() {
-    return (int)(memoryPercentage*Runtime.getRuntime().maxMemory());
+    return (int)Math.min(Integer.MAX_VALUE, memoryPercentage*Runtime.getRuntime().maxMemory());
   }
 
   /**
-   *  Check if we are above the max size. If so then flush data from memory  until we are below the threshold
+   *  Check if we are above the max size. If so then flush data from memory  until we are below the threshold.
+   *  If another thread is already doing this then return immediately.
    */
     public  void checkCache() {
-      if (totalSize < getMaxSize()) {
+      if (totalSize.get() < getMaxSize()) {
+        return;
+      }
+      if (!evictionLock.tryLock()) {
         return;
       }
-      synchronized (MUTEX) {
+      try {
         //First do the volatile ones
-        for (CacheInfo info : getCacheInfos()) {
-          if(info.removeIfNeeded) {
-            flushCachedData(info);
-            if (totalSize <= getMaxSize()) {
-              break;
-            }
-          }
-        }
-        if (totalSize <= getMaxSize()) {
-          for (CacheInfo info : getCacheInfos()) {
-            flushCachedData(info);
-            if (totalSize <= getMaxSize()) {
-              break;
-            }
-          }
+        sweep(volatileClock);
+        if (totalSize.get() > getMaxSize()) {
+          sweep(clock);
         }
+      } finally {
+        evictionLock.unlock();
       }
     }
 
+  /**
+   * Advance the clock hand, flushing unreferenced entries until we are below
+   * the max size. Each entry gets at most one second chance per sweep.
+   *
+   * @param ring the clock ring to sweep
+   */
+  private void sweep(Clock ring) {
+    int steps = 2 * ring.size() + 1;
+    while (steps-- > 0 && totalSize.get() > getMaxSize()) {
+      CacheInfo info = ring.poll();
+      if (info == null) {
+        return;
+      }
+      if (info.data == null || !cache.containsKey(info.id)) {
+        info.inClock.set(false);
+        continue;
+      }
+      if (info.referenced) {
+        info.referenced = false;
+        ring.offer(info);
+        continue;
+      }
+      info.inClock.set(false);
+      flushCachedData(info);
+    }
+  }
+
   /**
    * Print out the cache statistics
    */
@@ -426,40 +548,26 @@ public class DataCacheManager  implements Runnable {
   }
 
   public String getStats() {
-    synchronized (MUTEX) {
-      StringBuffer sb = new StringBuffer();
-      int mb =(int)( getMaxSize()/(double)1000000.0);
-      int total =(int)( totalSize/(double)1000000.0);
-      sb.append("Cache total size:" + total +" MB   max size:" + mb +" MB  (" + (100*memoryPercentage)+"% of max memory)");
+    StringBuffer sb = new StringBuffer();
+    int mb =(int)( getMaxSize()/(double)1000000.0);
+    int total =(int)( totalSize.get()/(double)1000000.0);
+    sb.append("Cache total size:" + total +" MB   max size:" + mb +" MB  (" + (100*memoryPercentage)+"% of max memory)");
+    sb.append("\n");
+    List<CacheInfo> infos= getCacheInfos();
+    if(infos.size()==0) {
+      sb.append("nothing in cache");
       sb.append("\n");
-      List<CacheInfo> infos= getCacheInfos();
-      if(infos.size()==0) {
-        sb.append("nothing in cache");
-        sb.append("\n");
-      } else {
-        sb.append("entry size/in cache/data access/cache miss/last touched");
-        sb.append("\n");
-        int cnt = 0;
-        for (CacheInfo info : infos) {
-          sb.append("   #" + (++cnt) +" ");
-          sb.append(info.toString());
-          /*
-                          "   #" + (++cnt) +" cache entry:" + info.getSize() + "   " + (info.data != null) +
-                                   "   " + info.dataAccessedCnt + "   " + info.cacheMissedCnt + "   " +
-                                   new Date(info.lastTime));
-          */
-          sb.append('\n');
-
-          /*
-          sb.append("what:" + info.what);
-          sb.append("\n");
-          sb.append(info.where.substring(300));
-          sb.append("\n");
-          */
-        }
+    } else {
+      sb.append("entry size/in cache/data access/cache hit/cache miss/spilled/last touched");
+      sb.append("\n");
+      int cnt = 0;
+      for (CacheInfo info : infos) {
+        sb.append("   #" + (++cnt) +" ");
+        sb.append(info.toString());
+        sb.append('\n');
       }
-      return sb.toString();
     }
+    return sb.toString();
   }
 
   /**
@@ -468,25 +576,207 @@ public class DataCacheManager  implements Runnable {
    * @param where
    */
   private void checkStats(String where) {
-    synchronized (MUTEX) {
-      int tmp = 0;
-      for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-        CacheInfo info = cache.get(keys.nextElement());
-        if (info.data != null) tmp += info.getSize();
-      }
+    long tmp = 0;
+    for (CacheInfo info : cache.values()) {
+      if (info.data != null) tmp += info.getSize();
+    }
 
-      if (tmp != totalSize) {
+    if (tmp != totalSize.get()) {
+      System.err.println(
+        "WHOAA: " + where + "  " + tmp + " != total size:" + totalSize.get());
+      for (CacheInfo info : cache.values()) {
         System.err.println(
-          "WHOAA: " + where + "  " + tmp + " != total size:" + totalSize);
-        for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-          CacheInfo info = cache.get(keys.nextElement());
-          System.err.println(
-            "   cache entry:" + info.getSize() + " " + (info.data != null));
-        }
+          "   cache entry:" + info.getSize() + " " + (info.data != null));
       }
     }
   }
 
+  /**
+   * Write the array to a spill file. The file holds, for each level of the
+   * array, its length (-1 for a null sub-array) followed by either the
+   * sub-arrays or the raw primitive values.
+   *
+   * @param f the file
+   * @param data the array
+   *
+   * @throws IOException On badness
+   */
+  private static void writeSpillFile(File f, Object data) throws IOException {
+    long size = getSpillSize(data);
+    try (RandomAccessFile raf = new RandomAccessFile(f, "rw");
+         FileChannel channel = raf.getChannel()) {
+      raf.setLength(size);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.nativeOrder());
+      writeArray(buffer, data);
+      buffer.force();
+    }
+  }
+
+  /**
+   * Read an array written by {@link #writeSpillFile(File, Object)}.
+   *
+   * @param f the file
+   *
+   * @return the array
+   *
+   * @throws IOException On badness
+   */
+  private static Object readSpillFile(File f) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(f, "r");
+         FileChannel channel = raf.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.nativeOrder());
+      return readArray(buffer);
+    }
+  }
+
+  /** kinds of values stored in a spill file */
+  private static final byte SPILL_ARRAY = 0;
+  private static final byte SPILL_DOUBLE = 1;
+  private static final byte SPILL_FLOAT = 2;
+  private static final byte SPILL_INT = 3;
+  private static final byte SPILL_SHORT = 4;
+  private static final byte SPILL_BYTE = 5;
+
+  /** Number of bytes needed to spill the given array */
+  private static long getSpillSize(Object data) {
+    // one byte for the kind, four for the length
+    long size = 5;
+    if (data == null) return size;
+    if (data instanceof double[]) return size + 8L * ((double[])data).length;
+    if (data instanceof float[]) return size + 4L * ((float[])data).length;
+    if (data instanceof int[]) return size + 4L * ((int[])data).length;
+    if (data instanceof short[]) return size + 2L * ((short[])data).length;
+    if (data instanceof byte[]) return size + ((byte[])data).length;
+    for (Object sub : (Object[])data) {
+      size += getSpillSize(sub);
+    }
+    return size;
+  }
+
+  private static void writeArray(ByteBuffer buffer, Object data) {
+    if (data == null) {
+      buffer.put(SPILL_ARRAY);
+      buffer.putInt(-1);
+    } else if (data instanceof double[]) {
+      double[] a = (double[])data;
+      buffer.put(SPILL_DOUBLE).putInt(a.length);
+      buffer.asDoubleBuffer().put(a);
+      buffer.position(buffer.position() + 8 * a.length);
+    } else if (data instanceof float[]) {
+      float[] a = (float[])data;
+      buffer.put(SPILL_FLOAT).putInt(a.length);
+      buffer.asFloatBuffer().put(a);
+      buffer.position(buffer.position() + 4 * a.length);
+    } else if (data instanceof int[]) {
+      int[] a = (int[])data;
+      buffer.put(SPILL_INT).putInt(a.length);
+      buffer.asIntBuffer().put(a);
+      buffer.position(buffer.position() + 4 * a.length);
+    } else if (data instanceof short[]) {
+      short[] a = (short[])data;
+      buffer.put(SPILL_SHORT).putInt(a.length);
+      buffer.asShortBuffer().put(a);
+      buffer.position(buffer.position() + 2 * a.length);
+    } else if (data instanceof byte[]) {
+      byte[] a = (byte[])data;
+      buffer.put(SPILL_BYTE).putInt(a.length);
+      buffer.put(a);
+    } else {
+      Object[] a = (Object[])data;
+      buffer.put(SPILL_ARRAY).putInt(a.length);
+      for (Object sub : a) {
+        writeArray(buffer, sub);
+      }
+    }
+  }
+
+  private static Object readArray(ByteBuffer buffer) {
+    byte kind = buffer.get();
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    switch (kind) {
+      case SPILL_DOUBLE: {
+        double[] a = new double[length];
+        buffer.asDoubleBuffer().get(a);
+        buffer.position(buffer.position() + 8 * length);
+        return a;
+      }
+      case SPILL_FLOAT: {
+        float[] a = new float[length];
+        buffer.asFloatBuffer().get(a);
+        buffer.position(buffer.position() + 4 * length);
+        return a;
+      }
+      case SPILL_INT: {
+        int[] a = new int[length];
+        buffer.asIntBuffer().get(a);
+        buffer.position(buffer.position() + 4 * length);
+        return a;
+      }
+      case SPILL_SHORT: {
+        short[] a = new short[length];
+        buffer.asShortBuffer().get(a);
+        buffer.position(buffer.position() + 2 * length);
+        return a;
+      }
+      case SPILL_BYTE: {
+        byte[] a = new byte[length];
+        buffer.get(a);
+        return a;
+      }
+      default:
+        break;
+    }
+    // peek at the first non-null element to pick the right array type
+    Object[] subs = new Object[length];
+    Class<?> componentType = null;
+    for (int i = 0; i < length; i++) {
+      subs[i] = readArray(buffer);
+      if (componentType == null && subs[i] != null) {
+        componentType = subs[i].getClass();
+      }
+    }
+    if (componentType == null) {
+      return subs;
+    }
+    Object[] result = (Object[])java.lang.reflect.Array.newInstance(componentType, length);
+    System.arraycopy(subs, 0, result, 0, length);
+    return result;
+  }
+
+  /**
+   * The ring of in-memory entries used by the clock policy. Keeps its own
+   * count since {@link ConcurrentLinkedQueue#size()} is not O(1).
+   */
+  private static class Clock {
+
+    private final ConcurrentLinkedQueue<CacheInfo> ring =
+        new ConcurrentLinkedQueue<CacheInfo>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private void offer(CacheInfo info) {
+      ring.offer(info);
+      size.incrementAndGet();
+    }
+
+    private CacheInfo poll() {
+      CacheInfo info = ring.poll();
+      if (info != null) {
+        size.decrementAndGet();
+      }
+      return info;
+    }
+
+    private int size() {
+      return size.get();
+    }
+  }
+
   /**
    * Class CacheInfo
    *
@@ -508,10 +798,22 @@ public class DataCacheManager  implements Runnable {
     private Object id;
 
     /**  */
-    private long lastTime;
+    private volatile long lastTime;
 
     /**  */
-    private Object data;
+    private volatile Object data;
+
+    /** data waiting on the writer thread */
+    private Object pending;
+
+    /** bumped whenever the data is replaced */
+    private int version;
+
+    /** set on access, cleared by the clock hand */
+    private volatile boolean referenced = true;
+
+    /** true while the entry is in a clock ring */
+    private final AtomicBoolean inClock = new AtomicBoolean();
 
     /**  */
     private File cacheFile;
@@ -520,10 +822,16 @@ public class DataCacheManager  implements Runnable {
     private boolean cacheFileGood = false;
 
     /**           */
-    private int dataAccessedCnt = 0;
+    private final AtomicInteger dataAccessedCnt = new AtomicInteger();
 
     /**           */
-    private int cacheMissedCnt = 0;
+    private final AtomicInteger cacheHitCnt = new AtomicInteger();
+
+    /**           */
+    private final AtomicInteger cacheMissedCnt = new AtomicInteger();
+
+    /**           */
+    private final AtomicInteger cacheSpilledCnt = new AtomicInteger();
 
     private String where;
 
@@ -557,14 +865,29 @@ public class DataCacheManager  implements Runnable {
      */
     private void dataAccessed() {
       lastTime = System.currentTimeMillis();
-      dataAccessedCnt++;
+      referenced = true;
+      dataAccessedCnt.incrementAndGet();
+    }
+
+    /**
+     *
+     */
+    private void cacheHit() {
+      cacheHitCnt.incrementAndGet();
     }
 
     /**
      *
      */
     private void cacheMissed() {
-      cacheMissedCnt++;
+      cacheMissedCnt.incrementAndGet();
+    }
+
+    /**
+     *
+     */
+    private void cacheSpilled() {
+      cacheSpilledCnt.incrementAndGet();
     }
 
     /**
@@ -575,6 +898,8 @@ public class DataCacheManager  implements Runnable {
     private void setData(Object data) {
       lastTime = System.currentTimeMillis();
       this.data = data;
+      referenced = true;
+      version++;
       cacheFileGood = false;
       size = getArraySize(type, data);
     }
@@ -590,7 +915,7 @@ public class DataCacheManager  implements Runnable {
     }
 
     public String toString() {
-        return what+"   " + getTypeName(type) + ":" + getSize() + "   " + (data != null) + "   " + dataAccessedCnt + "   " + cacheMissedCnt + "   " + new Date(lastTime);
+        return what+"   " + getTypeName(type) + ":" + getSize() + "   " + (data != null) + "   " + dataAccessedCnt + "   " + cacheHitCnt + "   " + cacheMissedCnt + "   " + cacheSpilledCnt + "   " + new Date(lastTime);
     }
 
     /**
@@ -602,9 +927,7 @@ public class DataCacheManager  implements Runnable {
      */
     public int compareTo(CacheInfo o) {
       CacheInfo that = (CacheInfo)o;
-      if (this.lastTime < that.lastTime) return -1;
-      if (this.lastTime == that.lastTime) return 0;
-      return 1;
+      return Long.compare(this.lastTime, that.lastTime);
     }
 
     /**
@@ -614,6 +937,7 @@ public class DataCacheManager  implements Runnable {
      */
     private void setDataFromCache(Object data) {
       lastTime = System.currentTimeMillis();
+      referenced = true;
       this.data = data;
     }
 
@@ -621,8 +945,9 @@ public class DataCacheManager  implements Runnable {
      *
      */
     private void remove() {
-      if (cacheFile != null) {
-        cacheFile.delete();
+      if (cacheFile != null && cacheFile.exists() && !cacheFile.delete()) {
+        // a mapping of the file may still be live on some platforms
+        cacheFile.deleteOnExit();
       }
     }
 
@@ -0,0 +1,237 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+
+package visad.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.lang.ref.Cleaner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable float samples kept outside the Java heap, either in a
+ * memory-mapped temporary file or in direct buffers. One buffer is kept
+ * per range component.
+ *
+ * <p>The backing file is unlinked as soon as it is mapped where the
+ * platform allows it, so the operating system reclaims the pages once the
+ * mapping is collected; elsewhere it is deleted on exit. Because a store
+ * never changes after it is created, several {@link CachedFlatField}
+ * clones can share one.</p>
+ */
+final class OffHeapFloatStore {
+
+    private static final Cleaner cleaner = Cleaner.create();
+
+    /** Bytes held by all live stores. */
+    private static final AtomicLong totalBytes = new AtomicLong();
+
+    private final FloatBuffer[] buffers;
+
+    private final long bytes;
+
+    private OffHeapFloatStore(FloatBuffer[] buffers, long bytes, File file) {
+        this.buffers = buffers;
+        this.bytes = bytes;
+        totalBytes.addAndGet(bytes);
+        cleaner.register(this, new Release(bytes, file));
+    }
+
+    /**
+     * Copy the values out of the heap.
+     *
+     * @param values the values; no component may exceed 2GB
+     * @param mapped true for a memory-mapped file in {@code dir}, false for
+     *               direct buffers
+     * @param dir directory for the mapped file
+     *
+     * @return the store
+     *
+     * @throws IOException if the file cannot be created or mapped
+     */
+    static OffHeapFloatStore create(float[][] values, boolean mapped,
+                                    File dir) throws IOException {
+        long bytes = 0L;
+        for (float[] component : values) {
+            if (component.length > Integer.MAX_VALUE / 4) {
+                throw new IOException("Range component too large to map: "
+                                      + component.length);
+            }
+            bytes += 4L * component.length;
+        }
+        FloatBuffer[] buffers = new FloatBuffer[values.length];
+        if (!mapped) {
+            for (int i = 0; i < values.length; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(4 * values[i].length)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+                buffers[i].put(values[i]).clear();
+            }
+            return new OffHeapFloatStore(buffers, bytes, null);
+        }
+        File file = File.createTempFile("ccf_", ".dat", dir);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            raf.setLength(bytes);
+            long offset = 0L;
+            for (int i = 0; i < values.length; i++) {
+                long size = 4L * values[i].length;
+                buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                         offset, size)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+                buffers[i].put(values[i]).clear();
+                offset += size;
+            }
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
+        // the mapping keeps the pages; on platforms that refuse to delete
+        // a mapped file, fall back to deleting it at exit
+        if (file.delete()) {
+            file = null;
+        } else {
+            file.deleteOnExit();
+        }
+        return new OffHeapFloatStore(buffers, bytes, file);
+    }
+
+    /**
+     * @return bytes held off heap by all live stores
+     */
+    static long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * @return bytes held off heap by this store
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return number of range components
+     */
+    int getTupleDimension() {
+        return buffers.length;
+    }
+
+    /**
+     * @param component range component
+     * @param index sample index
+     *
+     * @return the value
+     */
+    float get(int component, int index) {
+        return buffers[component].get(index);
+    }
+
+    /**
+     * @return read-only views, one per range component, positioned at 0
+     */
+    FloatBuffer[] getBuffers() {
+        FloatBuffer[] views = new FloatBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            views[i] = buffers[i].asReadOnlyBuffer();
+        }
+        return views;
+    }
+
+    /**
+     * @return a new heap copy of the values
+     */
+    float[][] toArrays() {
+        float[][] values = new float[buffers.length][];
+        for (int i = 0; i < buffers.length; i++) {
+            values[i] = new float[buffers[i].capacity()];
+            buffers[i].duplicate().get(values[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Min and max of each component, ignoring NaN.
+     *
+     * @return {@code [component][0]} is the min, {@code [component][1]} the
+     *         max
+     */
+    float[][] getMinMax() {
+        float[][] minMax = new float[buffers.length][2];
+        float[] chunk = new float[8192];
+        for (int i = 0; i < buffers.length; i++) {
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            FloatBuffer buffer = buffers[i].duplicate();
+            while (buffer.hasRemaining()) {
+                int n = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                for (int j = 0; j < n; j++) {
+                    float value = chunk[j];
+                    if (max < value) {
+                        max = value;
+                    }
+                    if (min > value) {
+                        min = value;
+                    }
+                }
+            }
+            minMax[i][0] = min;
+            minMax[i][1] = max;
+        }
+        return minMax;
+    }
+
+    /** Runs once the store is unreachable; must not refer back to it. */
+    private static final class Release implements Runnable {
+
+        private final long bytes;
+
+        private final File file;
+
+        private Release(long bytes, File file) {
+            this.bytes = bytes;
+            this.file = file;
+        }
+
+        public void run() {
+            totalBytes.addAndGet(-bytes);
+            if (file != null) {
+                // the buffers may not be unmapped yet, so this can still fail
+                file.delete();
+            }
+        }
+    }
+}
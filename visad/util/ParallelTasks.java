@@ -0,0 +1,284 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2026
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * https://www.ssec.wisc.edu/mcidas/
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/.
+ */
+//
+// ParallelTasks.java
+//
+
+package visad.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+   ParallelTasks runs a fixed set of independent tasks and waits for all
+   of them, the same way for every caller.<P>
+
+   Computation runs on the common ForkJoinPool, so nested use (a task
+   that itself splits its work) helps rather than blocks. Work that waits
+   on files or the network runs on {@link #getIOPool()}, a bounded pool
+   of daemon threads shared by all readers.<P>
+
+   Failure and cancellation: once a task throws, tasks that have not
+   started yet are skipped, and the call returns only after the tasks
+   already running have finished, so no task outlives the call. The
+   exception of the first failed task (in task order) is then rethrown
+   as it was thrown, with any later ones added as suppressed. If the
+   calling thread is interrupted while waiting, the tasks are stopped the
+   same way, the interrupt status is restored and a CancellationException
+   is thrown. A task may throw CancellationException itself to stop the
+   others, e.g. when the user cancels a job.<P>
+*/
+public final class ParallelTasks {
+
+  /** most tasks per pool thread that a range is split into */
+  private static final int TASKS_PER_THREAD = 8;
+
+  /** marks threads of the I/O pool, which run nested work inline */
+  private static final ThreadLocal<Boolean> inIOPool =
+    new ThreadLocal<Boolean>();
+
+  private static final ExecutorService ioPool =
+    Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+      r -> {
+        Thread t = new Thread(() -> {
+          inIOPool.set(Boolean.TRUE);
+          r.run();
+        }, "ParallelTasks I/O");
+        t.setDaemon(true);
+        return t;
+      });
+
+  private ParallelTasks() {
+  }
+
+  /** work on the indices from to to - 1 */
+  public interface Range<E extends Exception> {
+    void run(int from, int to) throws E;
+  }
+
+  /** work on one index, with a result */
+  public interface Step<T, E extends Exception> {
+    T run(int index) throws E;
+  }
+
+  /**
+   * @return the pool for tasks that block on file or network I/O
+   */
+  public static ExecutorService getIOPool() {
+    return ioPool;
+  }
+
+  /**
+   * Split 0 to length - 1 into ranges of at least minLength indices and
+   * run them on the common ForkJoinPool.
+   *
+   * @param length number of indices
+   * @param minLength fewest indices worth a task of their own
+   * @param range the work; must only write the indices it is given
+   */
+  public static <E extends Exception> void forEachRange(int length,
+          int minLength, Range<E> range) throws E {
+    forEachRange(ForkJoinPool.commonPool(), length, minLength, range);
+  }
+
+  /**
+   * Split 0 to length - 1 into ranges of at least minLength indices, and
+   * at most {@value #TASKS_PER_THREAD} per thread of the pool, and run
+   * them on pool. A single range is run on the calling thread.
+   *
+   * @param pool where to run the ranges
+   * @param length number of indices
+   * @param minLength fewest indices worth a task of their own
+   * @param range the work; must only write the indices it is given
+   */
+  public static <E extends Exception> void forEachRange(ExecutorService pool,
+          final int length, int minLength, final Range<E> range) throws E {
+    if (length <= 0) {
+      return;
+    }
+    long most = (long) TASKS_PER_THREAD * parallelism(pool);
+    final int tasks = (int) Math.max(1L,
+      Math.min(most, length / Math.max(1, minLength)));
+    if (tasks == 1) {
+      range.run(0, length);
+      return;
+    }
+    map(pool, tasks, t -> {
+      range.run((int) ((long) length * t / tasks),
+                (int) ((long) length * (t + 1) / tasks));
+      return null;
+    }, null);
+  }
+
+  /**
+   * Run step for each index 0 to count - 1 on the common ForkJoinPool.
+   *
+   * @return the result of each index, in order
+   */
+  public static <T, E extends Exception> List<T> map(int count,
+          Step<T, E> step) throws E {
+    return map(ForkJoinPool.commonPool(), count, step, null);
+  }
+
+  /**
+   * Run step for each index 0 to count - 1 on pool. A single index, or a
+   * call from a thread of the I/O pool, is run on the calling thread.
+   *
+   * @param pool where to run the steps
+   * @param count number of steps
+   * @param step the work
+   * @param discard if not null, given every result that was made when
+   *                the call fails, e.g. to close it
+   *
+   * @return the result of each index, in order
+   */
+  public static <T, E extends Exception> List<T> map(ExecutorService pool,
+          int count, final Step<T, E> step, Consumer<? super T> discard)
+          throws E {
+    List<T> results = new ArrayList<T>(Collections.nCopies(count, null));
+    if (count == 1 || (pool == ioPool && inIOPool.get() != null)) {
+      try {
+        for (int i = 0; i < count; i++) {
+          results.set(i, step.run(i));
+        }
+      }
+      catch (Throwable t) {
+        discardAll(results, discard);
+        throw t;
+      }
+      return results;
+    }
+
+    final AtomicBoolean stop = new AtomicBoolean(false);
+    List<Future<T>> futures = new ArrayList<Future<T>>(count);
+    Throwable failure = null;
+    try {
+      for (int i = 0; i < count; i++) {
+        final int index = i;
+        futures.add(pool.submit(() -> {
+          if (stop.get()) {
+            return null;
+          }
+          try {
+            return step.run(index);
+          }
+          catch (Throwable t) {
+            stop.set(true);
+            throw t;
+          }
+        }));
+      }
+    }
+    catch (RejectedExecutionException e) {
+      stop.set(true);
+      failure = e;
+    }
+
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); i++) {
+      while (true) {
+        try {
+          results.set(i, futures.get(i).get());
+          break;
+        }
+        catch (InterruptedException e) {
+          // stop the rest, but still wait for the running ones
+          interrupted = true;
+          stop.set(true);
+        }
+        catch (ExecutionException e) {
+          Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+          if (failure == null) {
+            failure = cause;
+          }
+          else if (failure != cause) {
+            failure.addSuppressed(cause);
+          }
+          break;
+        }
+        catch (CancellationException e) {
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+      if (failure == null) {
+        failure = new CancellationException("interrupted");
+      }
+    }
+    if (failure == null) {
+      return results;
+    }
+    discardAll(results, discard);
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    // the steps only throw E or unchecked exceptions
+    @SuppressWarnings("unchecked")
+    E checked = (E) failure;
+    throw checked;
+  }
+
+  private static <T> void discardAll(List<T> results,
+                                     Consumer<? super T> discard) {
+    if (discard == null) {
+      return;
+    }
+    for (T result : results) {
+      if (result != null) {
+        try {
+          discard.accept(result);
+        }
+        catch (RuntimeException e) {
+          // keep discarding the rest
+        }
+      }
+    }
+  }
+
+  private static int parallelism(ExecutorService pool) {
+    if (pool instanceof ForkJoinPool) {
+      return ((ForkJoinPool) pool).getParallelism();
+    }
+    return Runtime.getRuntime().availableProcessors();
+  }
+}